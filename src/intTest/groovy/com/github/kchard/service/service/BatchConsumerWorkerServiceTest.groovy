@@ -0,0 +1,69 @@
+package com.github.kchard.service
+
+import static org.junit.Assert.*
+
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+import org.junit.Test
+
+import com.github.kchard.util.itestUtils.MultiThreadedUtil
+
+class BatchConsumerWorkerServiceTest {
+
+	static final long MAX_WAIT = 5000
+
+	@Test
+	void testBatchesGrowUnderBacklog() {
+
+		def queue = new LinkedBlockingQueue<Integer>()
+		(1..50000).each { queue.add(it) }
+
+		def consumed = new AtomicInteger()
+		def largest = new AtomicInteger()
+		def consumer = [consume: { List batch ->
+			consumed.addAndGet(batch.size())
+			largest.set(Math.max(largest.get(), batch.size()))
+		}] as BatchConsumer
+
+		Service service = new ServiceBuilder().batchConsumers(consumer).maxConsumers(1).targetP99(10L, TimeUnit.MILLISECONDS).batchSizes(1, 64).forQueue(queue)
+		                                      .build()
+
+		service.initialize()
+		service.start()
+
+		MultiThreadedUtil.waitUntil({ consumed.get() == 50000 }, MAX_WAIT)
+		service.shutdown()
+
+		assertEquals(50000, consumed.get())
+		assertTrue("Largest batch " + largest.get(), largest.get() > 1)
+	}
+
+	@Test
+	void testEmitsEachConsumedItem() {
+
+		def queue = new LinkedBlockingQueue<Integer>()
+		(1..1000).each { queue.add(it) }
+
+		def events = new ConcurrentLinkedQueue()
+		def sink = [isEnabled: { ServiceEvent event -> event == ServiceEvent.ITEM_CONSUMED },
+		            onEvent: { ServiceEvent event, Service service, Object subject -> events << subject }] as EventSink
+
+		def consumer = [consume: { List batch -> }] as BatchConsumer
+
+		Service service = new ServiceBuilder().withEventSink(sink)
+		                                      .batchConsumers(consumer).maxConsumers(2).batchSizes(1, 64).forQueue(queue)
+		                                      .build()
+
+		service.initialize()
+		service.start()
+
+		MultiThreadedUtil.waitUntil({ events.size() == 1000 }, MAX_WAIT)
+		service.shutdown()
+
+		assertEquals((1..1000).toList(), events.toList().sort())
+		assertEquals(1000L, ((WorkerService) ((CompositeService) service).children()[0]).itemsProcessed())
+	}
+}
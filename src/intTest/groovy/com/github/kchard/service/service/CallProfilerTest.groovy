@@ -0,0 +1,78 @@
+package com.github.kchard.service
+
+import static org.junit.Assert.*
+
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+import org.junit.Test
+
+import com.github.kchard.util.itestUtils.MultiThreadedUtil
+
+class CallProfilerTest {
+
+	static final long MAX_WAIT = 5000
+
+	@Test
+	void testSleepingConsumerWaitsAndAllocates() {
+
+		def queue = new LinkedBlockingQueue<Integer>()
+		def consumed = new AtomicInteger()
+		def sink = []
+		def consumer = [consume: { Integer item ->
+			sink = new byte[16 * 1024]
+			Thread.sleep(2L)
+			consumed.incrementAndGet()
+		}] as Consumer
+
+		CompositeService service = new ServiceBuilder().withProfiling(2).consumers(consumer).maxConsumers(1).forQueue(queue).build()
+		WorkerService consumers = service.children().find { it instanceof WorkerService }
+		CallProfiler profiler = consumers.profiler()
+
+		service.initialize()
+		service.start()
+		(1..100).each { queue.put(it) }
+
+		MultiThreadedUtil.waitUntil({ consumed.get() == 100 }, MAX_WAIT)
+		service.shutdown()
+
+		assertEquals(50L, profiler.samples())
+		assertTrue(profiler.meanCallTime(TimeUnit.MICROSECONDS) >= 2000.0)
+		if(profiler.cpuRatio() >= 0) {
+			assertTrue(profiler.toString(), profiler.cpuRatio() < 0.5)
+		}
+		if(profiler.meanWaitedTime(TimeUnit.MILLISECONDS) >= 0) {
+			assertTrue(profiler.toString(), profiler.meanWaitedTime(TimeUnit.MILLISECONDS) >= 1.0)
+		}
+		if(profiler.allocatedBytesPerItem() >= 0) {
+			assertTrue(profiler.toString(), profiler.allocatedBytesPerItem() >= 16 * 1024)
+		}
+	}
+
+	@Test
+	void testProducerBlockedOnFullQueue() {
+
+		def queue = new LinkedBlockingQueue<Integer>(1)
+		def producer = [produce: { 1 }] as Producer
+		def service = new ServiceBuilder().producers(producer).maxProducers(1).forQueue(queue).build()
+		ProducerWorkerService producers = service.children()[0]
+		def profiler = new CallProfiler(1, false)
+		producers.setProfiler(profiler)
+
+		service.initialize()
+		service.start()
+		MultiThreadedUtil.waitUntil({ queue.size() == 1 }, MAX_WAIT)
+
+		(1..20).each {
+			Thread.sleep(1L)
+			queue.take()
+		}
+
+		MultiThreadedUtil.waitUntil({ profiler.samples() >= 20 }, MAX_WAIT)
+		service.shutdown()
+
+		assertTrue(profiler.toString(), profiler.meanQueueTime(TimeUnit.NANOSECONDS) > profiler.meanCallTime(TimeUnit.NANOSECONDS))
+		assertEquals(-1.0, profiler.meanBlockedTime(TimeUnit.MILLISECONDS), 0.0)
+	}
+}
@@ -0,0 +1,124 @@
+package com.github.kchard.service
+
+import static org.junit.Assert.*
+
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+
+import org.junit.Test
+
+import com.github.kchard.util.itestUtils.MultiThreadedUtil
+
+class CancellableProducerTest {
+
+	static final long MAX_WAIT = 5000
+
+	@Test
+	void testProducerBlockedInAcceptIsCancelled() {
+
+		def server = new ServerSocket(0, 1, InetAddress.getByName("127.0.0.1"))
+		def accepting = new CountDownLatch(1)
+		def producer = [produce: { CancellationToken token ->
+			token.onCancel([run: { server.close() }] as Runnable)
+			accepting.countDown()
+			try {
+				return server.accept()
+			} catch(SocketException e) {
+				token.throwIfCancelled()
+				throw e
+			}
+		}] as CancellableProducer
+
+		CompositeService service = new ServiceBuilder().cancellableProducers(producer).maxProducers(1)
+		                                               .withShutdownTimeout(MAX_WAIT, TimeUnit.MILLISECONDS)
+		                                               .forQueue(new LinkedBlockingQueue<Socket>())
+		                                               .build()
+		WorkerService producers = service.children()[0]
+
+		service.initialize()
+		service.start()
+		assertTrue(accepting.await(MAX_WAIT, TimeUnit.MILLISECONDS))
+
+		long started = System.nanoTime()
+		service.shutdown()
+		long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started)
+
+		assertTrue("Shutdown took " + elapsed + " ms", elapsed < MAX_WAIT)
+		assertTrue(producers.awaitTermination(MAX_WAIT, TimeUnit.MILLISECONDS))
+		assertTrue(server.isClosed())
+		assertEquals([], producers.stragglers())
+		assertEquals(State.SHUTDOWN, service.currentState())
+	}
+
+	@Test
+	void testProducerThatIgnoresCancellationIsReported() {
+
+		def release = new AtomicBoolean()
+		def producing = new CountDownLatch(1)
+		def producer = [produce: {
+			producing.countDown()
+			while(!release.get()) {
+				try {
+					Thread.sleep(1L)
+				} catch(InterruptedException e) {
+					//Swallowed, as by code that ignores interruption
+				}
+			}
+			1
+		}] as Producer
+
+		def stragglers = new CopyOnWriteArrayList<Thread>()
+		def sink = [isEnabled: { ServiceEvent event -> event == ServiceEvent.WORKER_STRAGGLING },
+		            onEvent: { ServiceEvent event, Service service, Object subject -> stragglers << subject }] as EventSink
+
+		CompositeService service = new ServiceBuilder().withEventSink(sink)
+		                                               .producers(producer).maxProducers(1)
+		                                               .withShutdownTimeout(100L, TimeUnit.MILLISECONDS)
+		                                               .forQueue(new LinkedBlockingQueue<Integer>())
+		                                               .build()
+		WorkerService producers = service.children()[0]
+
+		service.initialize()
+		service.start()
+		assertTrue(producing.await(MAX_WAIT, TimeUnit.MILLISECONDS))
+
+		long started = System.nanoTime()
+		service.shutdown()
+		long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started)
+
+		//The stragglers are reported once the timeout passes, without holding up the shutdown
+		assertTrue("Shutdown took " + elapsed + " ms", elapsed < 100L)
+		MultiThreadedUtil.waitUntil({ producers.stragglers().size() == 1 }, MAX_WAIT)
+		assertEquals(1, stragglers.size())
+		assertEquals(producers.stragglers()[0], stragglers[0].getName())
+
+		release.set(true)
+		MultiThreadedUtil.waitUntil({ !stragglers[0].isAlive() }, MAX_WAIT)
+
+		//A shutdown without stragglers does not report those of the previous one
+		producers.restart()
+		producers.shutdown()
+
+		assertEquals([], producers.stragglers())
+	}
+
+	@Test
+	void testCancelActionRegisteredAfterCancellationRunsImmediately() {
+
+		def token = new CancellationToken()
+		def runs = []
+		token.onCancel([run: { runs << "before" }] as Runnable)
+		assertEquals(Long.MAX_VALUE, token.remaining(TimeUnit.MILLISECONDS))
+
+		token.cancel(1L, TimeUnit.MINUTES)
+		token.onCancel([run: { runs << "after" }] as Runnable)
+		token.cancel(1L, TimeUnit.MINUTES)
+
+		assertTrue(token.isCancelled())
+		assertEquals(["before", "after"], runs)
+		assertTrue(token.remaining(TimeUnit.SECONDS) > 50L)
+	}
+}
@@ -236,6 +236,22 @@ class CompositeServiceTest {
 		assertEquals(State.SHUTDOWN, child.currentState())
 		assertEquals(['shut1'], executionOrderList)
 	}
+
+	@Test
+	void testChildThatFailedToInitializeIsShutdown() {
+
+		def failing = new CommandService([{ throw new IllegalStateException("init failed") } as Runnable], [], [{ executionOrderList.add('shut0') } as Runnable])
+		services.add(failing)
+		services.add(new AService(1))
+
+		service = new CompositeService(services)
+		service.initialize()
+
+		assertEquals(State.EXCEPTIONAL, service.currentState())
+		assertEquals(State.EXCEPTIONAL, failing.currentState())
+		assertEquals(State.SHUTDOWN, services[1].currentState())
+		assertEquals(['shut1', 'shut0'], executionOrderList)
+	}
 	
 	
 	
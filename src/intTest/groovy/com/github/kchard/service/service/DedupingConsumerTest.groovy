@@ -0,0 +1,86 @@
+package com.github.kchard.service
+
+import static org.junit.Assert.*
+
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.TimeUnit
+
+import org.junit.Test
+
+import com.github.kchard.util.itestUtils.MultiThreadedUtil
+
+class DedupingConsumerTest {
+
+	static final long MAX_WAIT = 5000
+
+	@Test
+	void testRedeliveredItemsAreConsumedOnce() {
+
+		def consumed = new ConsumerRecorder()
+		def cache = new DedupeCache(1000, 1L, TimeUnit.MINUTES)
+		def queue = new LinkedBlockingQueue<Integer>()
+
+		CompositeService service = new ServiceBuilder().consumers(consumed).maxConsumers(4)
+		                                               .dedupeBy([key: { it }] as KeyExtractor, cache)
+		                                               .forQueue(queue)
+		                                               .build()
+
+		//Every item is delivered twice
+		(1..100).each { queue.put(it); queue.put(it) }
+
+		service.initialize()
+		service.start()
+		MultiThreadedUtil.waitUntil({ cache.hits() + cache.misses() == 200L }, MAX_WAIT)
+		service.shutdown()
+
+		assertEquals((1..100).toList(), consumed.items.sort())
+		assertEquals(100L, cache.misses())
+		assertEquals(100L, cache.hits())
+	}
+
+	@Test
+	void testItemsRejectedByOpenBreakerCanBeRedelivered() {
+
+		def clock = new VirtualClock()
+		def breaker = CircuitBreaker.defaults().withWindow(1).withOpenDuration(1L, TimeUnit.SECONDS).withProbes(1).withClock(clock)
+		breaker.tryAcquire()
+		breaker.onFailure(0L)
+
+		def consumed = new ConsumerRecorder()
+		def cache = new DedupeCache(1000, 1L, TimeUnit.MINUTES)
+		def queue = new LinkedBlockingQueue<Integer>()
+		def deadLetters = new LinkedBlockingQueue<Integer>()
+
+		CompositeService service = new ServiceBuilder().consumers(consumed).maxConsumers(1)
+		                                               .withCircuitBreaker(breaker).withDeadLetters(deadLetters)
+		                                               .dedupeBy([key: { it }] as KeyExtractor, cache)
+		                                               .forQueue(queue)
+		                                               .build()
+
+		(1..10).each { queue.put(it) }
+
+		service.initialize()
+		service.start()
+		MultiThreadedUtil.waitUntil({ deadLetters.size() == 10 }, MAX_WAIT)
+		assertEquals(0, cache.size())
+
+		//Once the breaker has closed again the dead letters are redriven
+		clock.advance(2L, TimeUnit.SECONDS)
+		deadLetters.drainTo(queue)
+		MultiThreadedUtil.waitUntil({ consumed.items.size() == 10 }, MAX_WAIT)
+		service.shutdown()
+
+		assertEquals((1..10).toList(), consumed.items.sort())
+	}
+
+	static class ConsumerRecorder implements Consumer<Integer> {
+
+		final Queue<Integer> items = new ConcurrentLinkedQueue<Integer>()
+
+		@Override
+		void consume(Integer item) {
+			items.add(item)
+		}
+	}
+}
@@ -0,0 +1,143 @@
+package com.github.kchard.service
+
+import static org.junit.Assert.*
+
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+import org.junit.Test
+
+import com.github.kchard.util.itestUtils.MultiThreadedUtil
+
+class IntrospectionTest {
+
+	static final long MAX_WAIT = 5000
+
+	@Test
+	void testSnapshotWalksTheTree() {
+
+		def queue = new ArrayBlockingQueue<Integer>(100)
+		def consumed = new AtomicInteger()
+		def consumer = [consume: { Integer item -> consumed.incrementAndGet() }] as Consumer
+
+		CompositeService service = new ServiceBuilder().onStartup({} as Runnable).consumers(consumer).maxConsumers(2).forQueue(queue).build()
+
+		service.initialize()
+		service.start()
+		(1..50).each { queue.put(it) }
+		MultiThreadedUtil.waitUntil({ consumed.get() == 50 }, MAX_WAIT)
+
+		def snapshot = ServiceSnapshot.of(service)
+		service.shutdown()
+
+		assertEquals(service.id(), snapshot.id())
+		assertEquals(State.STARTED, snapshot.state())
+		assertEquals(-1, snapshot.workers())
+		assertEquals(["CommandService", "ConsumerWorkerService"], snapshot.children()*.type())
+		assertEquals(3, snapshot.flatten().size())
+
+		def workers = snapshot.children()[1]
+		assertEquals(2, workers.workers())
+		assertEquals(0, workers.queueDepth())
+		assertEquals(50L, workers.itemsProcessed())
+		assertTrue(workers.throughput() > 0.0)
+		assertTrue(workers.actionTimes().started() > 0)
+	}
+
+	@Test
+	void testSnapshotOfServiceStuckInShutdown() {
+
+		def release = new CountDownLatch(1)
+		def shuttingDown = new CountDownLatch(1)
+		def stuck = new AbstractService("stuck") {
+
+			protected void doInitialize() {
+			}
+
+			protected void doStart() {
+			}
+
+			protected void doShutdown() {
+				shuttingDown.countDown()
+				release.await()
+			}
+		}
+
+		CompositeService service = new ServiceBuilder().consumers([consume: {}] as Consumer).maxConsumers(2).forQueue(new ArrayBlockingQueue<Integer>(10))
+		                                               .withChild(stuck)
+		                                               .build()
+		WorkerService workers = service.children()[0]
+
+		service.initialize()
+		service.start()
+		MultiThreadedUtil.waitUntil({ service.currentState() == State.STARTED }, MAX_WAIT)
+
+		//The composite and the stuck child hold their locks, another thread holds the lock of the worker service
+		Thread.start { service.shutdown() }
+		assertTrue(shuttingDown.await(MAX_WAIT, TimeUnit.MILLISECONDS))
+		def holding = new CountDownLatch(1)
+		Thread.start { synchronized(workers) { holding.countDown(); release.await() } }
+		assertTrue(holding.await(MAX_WAIT, TimeUnit.MILLISECONDS))
+
+		def snapshot = null
+		def taking = Thread.start { snapshot = ServiceSnapshot.of(service) }
+		taking.join(MAX_WAIT)
+		boolean blocked = taking.isAlive()
+		release.countDown()
+
+		assertFalse(blocked)
+		assertEquals(State.STARTED, snapshot.state())
+		assertEquals(2, snapshot.children()[0].workers())
+		MultiThreadedUtil.waitUntil({ service.currentState() == State.SHUTDOWN }, MAX_WAIT)
+	}
+
+	@Test
+	void testStuckConsumerShowsInQueueDepthAndThroughput() {
+
+		def queue = new ArrayBlockingQueue<Integer>(100)
+		def release = new CountDownLatch(1)
+		def consumer = [consume: { Integer item -> release.await() }] as Consumer
+
+		CompositeService service = new ServiceBuilder().consumers(consumer).maxConsumers(1).forQueue(queue).build()
+
+		service.initialize()
+		service.start()
+		(1..10).each { queue.put(it) }
+		MultiThreadedUtil.waitUntil({ queue.size() == 9 }, MAX_WAIT)
+
+		def first = ServiceSnapshot.of(service).children()[0]
+		Thread.sleep(50)
+		def second = ServiceSnapshot.of(service).children()[0]
+		release.countDown()
+		service.shutdown()
+
+		assertEquals(9, second.queueDepth())
+		assertEquals(1, second.activeThreads())
+		assertEquals(0.0, second.throughputSince(first), 0.0)
+	}
+
+	@Test
+	void testServesJsonWhileRunning() {
+
+		def queue = new ArrayBlockingQueue<Integer>(100)
+		CompositeService service = new ServiceBuilder().consumers([consume: { Integer item -> }] as Consumer).maxConsumers(1).forQueue(queue).build()
+		def server = new IntrospectionServer(service, 0)
+		service.addStateListener(server)
+
+		service.initialize()
+		service.start()
+		int port = server.port()
+		assertTrue(port > 0)
+
+		def json = new URL("http://127.0.0.1:" + port + "/").text
+		service.shutdown()
+
+		assertTrue(json, json.startsWith('{"id":"' + service.id() + '"'))
+		assertTrue(json, json.contains('"state":"STARTED"'))
+		assertTrue(json, json.contains('"type":"ConsumerWorkerService"'))
+		assertTrue(json, json.contains('"queueDepth":0'))
+		assertEquals(-1, server.port())
+	}
+}
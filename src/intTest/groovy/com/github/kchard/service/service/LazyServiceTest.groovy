@@ -0,0 +1,160 @@
+package com.github.kchard.service
+
+import static org.junit.Assert.*
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+import org.junit.Test
+
+import com.github.kchard.util.itestUtils.MultiThreadedUtil
+
+class LazyServiceTest {
+
+	static final long MAX_WAIT = 5000
+
+	@Test
+	void testConsumersStartOnFirstItem() {
+
+		def used = new LinkedBlockingQueue<Integer>()
+		def unused = new LinkedBlockingQueue<Integer>()
+		def consumed = new AtomicInteger()
+		def consumer = [consume: { Integer item -> consumed.incrementAndGet() }] as Consumer
+
+		CompositeService service = new ServiceBuilder().lazyChildren(1L, TimeUnit.MILLISECONDS)
+		                                               .consumers(consumer).maxConsumers(4).forQueue(used)
+		                                               .consumers(consumer).maxConsumers(4).forQueue(unused)
+		                                               .build()
+
+		service.initialize()
+		service.start()
+		MultiThreadedUtil.waitUntil({ service.currentState() == State.STARTED }, MAX_WAIT)
+
+		LazyService first = service.children()[0]
+		LazyService second = service.children()[1]
+		assertEquals(State.READY, first.delegate().currentState())
+		assertEquals(State.READY, second.delegate().currentState())
+		assertEquals(0, ((WorkerService) first.delegate()).workerCount())
+
+		(1..100).each { used.put(it) }
+
+		MultiThreadedUtil.waitUntil({ consumed.get() == 100 }, MAX_WAIT)
+		assertTrue(first.isActivated())
+		assertEquals(State.STARTED, first.delegate().currentState())
+		assertEquals(4, ((WorkerService) first.delegate()).workerCount())
+		assertFalse(second.isActivated())
+		assertEquals(State.READY, second.delegate().currentState())
+
+		def snapshot = ServiceSnapshot.of(service)
+		assertEquals(100L, snapshot.children()[0].children()[0].itemsProcessed())
+
+		service.shutdown()
+		assertEquals(State.SHUTDOWN, first.delegate().currentState())
+		assertEquals(State.READY, second.delegate().currentState())
+	}
+
+	@Test
+	void testProducerIsNotDeferred() {
+
+		def queue = new LinkedBlockingQueue<Integer>(10)
+		def produced = new AtomicInteger()
+		def consumed = new AtomicInteger()
+		def producer = [produce: { produced.incrementAndGet() }] as Producer
+		def consumer = [consume: { Integer item -> consumed.incrementAndGet() }] as Consumer
+
+		CompositeService service = new ServiceBuilder().lazyChildren(1L, TimeUnit.MILLISECONDS)
+		                                               .producers(producer).maxProducers(1).forQueue(queue)
+		                                               .consumers(consumer).maxConsumers(2).forQueue(queue)
+		                                               .build()
+
+		assertTrue(service.children()[0] instanceof ProducerWorkerService)
+		assertTrue(service.children()[1] instanceof LazyService)
+
+		service.initialize()
+		service.start()
+
+		MultiThreadedUtil.waitUntil({ consumed.get() >= 100 }, MAX_WAIT)
+		assertTrue(((LazyService) service.children()[1]).isActivated())
+
+		service.shutdown()
+		assertEquals(State.SHUTDOWN, service.currentState())
+	}
+
+	@Test
+	void testScheduleStartsAfterInitialDelay() {
+
+		def clock = new VirtualClock()
+		def runs = []
+		def command = [run: { runs << TimeUnit.NANOSECONDS.toSeconds(clock.nanoTime()) }] as Runnable
+
+		CompositeService service = new ServiceBuilder().withClock(clock)
+		                                               .lazyChildren()
+		                                               .schedule().withInitialDelay(10L).withTimeUnit(TimeUnit.SECONDS).command(command).withRate(5L)
+		                                               .build()
+
+		service.initialize()
+		service.start()
+		clock.runPending()
+
+		LazyService lazy = service.children()[0]
+		assertEquals(State.STARTED, service.currentState())
+		assertEquals(State.READY, lazy.delegate().currentState())
+
+		clock.advance(9L, TimeUnit.SECONDS)
+		assertEquals(State.READY, lazy.delegate().currentState())
+
+		//The delegate is started on the activator thread, the tasks it schedules become due at 10 seconds
+		clock.advance(1L, TimeUnit.SECONDS)
+		MultiThreadedUtil.waitUntil({ clock.runPending(); lazy.delegate().currentState() == State.STARTED }, MAX_WAIT)
+
+		clock.advance(10L, TimeUnit.SECONDS)
+		assertEquals([10L, 15L, 20L], runs)
+
+		service.shutdown()
+		assertEquals(0, clock.pendingTasks())
+	}
+
+	@Test
+	void testExceptionInDeferredServiceIsSupervised() {
+
+		def failing = [run: { throw new IllegalStateException("failed to start") }] as Runnable
+		def lazy = LazyService.afterDelay(new CommandService([], [failing], []), 10L, TimeUnit.MILLISECONDS, MonitorEngine.shared())
+
+		def service = new ServiceBuilder().withChild(lazy).build()
+
+		service.initialize()
+		service.start()
+		MultiThreadedUtil.waitUntil({ service.currentState() == State.EXCEPTIONAL }, MAX_WAIT)
+
+		assertTrue(lazy.isActivated())
+		assertEquals(State.EXCEPTIONAL, lazy.currentState())
+		assertEquals("failed to start", service.exception().getMessage())
+	}
+
+	@Test
+	void testSlowActivationDoesNotBlockEngine() {
+
+		def engine = new MonitorEngine("lazy-test")
+		def initializing = new CountDownLatch(1)
+		def release = new CountDownLatch(1)
+		def slowInit = [run: { initializing.countDown(); release.await() }] as Runnable
+		def lazy = LazyService.afterDelay(new CommandService([slowInit], [], []), 0L, TimeUnit.MILLISECONDS, engine)
+
+		lazy.initialize()
+		lazy.start()
+		assertTrue(initializing.await(MAX_WAIT, TimeUnit.MILLISECONDS))
+
+		def ran = new CountDownLatch(1)
+		engine.schedule("lazy-test", [run: { ran.countDown() }] as Runnable, 0L, TimeUnit.MILLISECONDS)
+		assertTrue(ran.await(MAX_WAIT, TimeUnit.MILLISECONDS))
+
+		release.countDown()
+		MultiThreadedUtil.waitUntil({ lazy.delegate().currentState() == State.STARTED }, MAX_WAIT)
+
+		lazy.shutdown()
+		engine.shutdown()
+		assertEquals(State.SHUTDOWN, lazy.delegate().currentState())
+	}
+}
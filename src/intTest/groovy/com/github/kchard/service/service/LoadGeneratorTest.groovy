@@ -0,0 +1,87 @@
+package com.github.kchard.service
+
+import static org.junit.Assert.*
+
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+import org.junit.Test
+
+import com.github.kchard.util.itestUtils.MultiThreadedUtil
+
+class LoadGeneratorTest {
+
+	static final long MAX_WAIT = 5000
+
+	@Test
+	void testOpenLoopRunsForDuration() {
+
+		def next = new AtomicLong()
+		def generator = new LoadGenerator<Long>([produce: { next.incrementAndGet() }] as Producer, LoadProfile.openLoop(500.0d))
+		def queue = new LinkedBlockingQueue<TimedItem<Long>>()
+		def consumer = [consume: { item -> }] as Consumer
+
+		Service service = new ServiceBuilder().load(generator).maxProducers(4).forQueue(queue)
+		                                      .consumers(generator.measure(consumer)).maxConsumers(2).forQueue(queue)
+		                                      .runFor(1L)
+		                                      .build()
+
+		service.initialize()
+		service.start()
+
+		MultiThreadedUtil.waitUntil({ service.currentState() == State.SHUTDOWN }, MAX_WAIT)
+
+		long count = generator.latencies().count()
+		assertTrue("Consumed " + count, count > 350 && count <= 600)
+		assertTrue(generator.latencies().percentile(50.0d, TimeUnit.MILLISECONDS) < 100)
+	}
+
+	@Test
+	void testOpenLoopCountsQueueingBehindSlowConsumer() {
+
+		def generator = new LoadGenerator<String>([produce: { "item" }] as Producer, LoadProfile.openLoop(200.0d))
+		def queue = new LinkedBlockingQueue<TimedItem<String>>()
+		//The consumer keeps up with half the arrival rate, so the backlog and the latency grow
+		def consumer = [consume: { item -> Thread.sleep(10) }] as Consumer
+
+		Service service = new ServiceBuilder().load(generator).maxProducers(1).forQueue(queue)
+		                                      .consumers(generator.measure(consumer)).maxConsumers(1).forQueue(queue)
+		                                      .build()
+
+		service.initialize()
+		service.start()
+
+		MultiThreadedUtil.waitUntil({ generator.latencies().count() >= 50 }, MAX_WAIT)
+		service.shutdown()
+
+		assertTrue(generator.latencies().max(TimeUnit.MILLISECONDS) >= 100)
+	}
+
+	@Test
+	void testClosedLoopLimitsItemsInFlight() {
+
+		def inFlight = new AtomicInteger()
+		def maxInFlight = new AtomicInteger()
+		def generator = new LoadGenerator<String>([produce: {
+			maxInFlight.set(Math.max(maxInFlight.get(), inFlight.incrementAndGet()))
+			"item"
+		}] as Producer, LoadProfile.closedLoop(2))
+		def queue = new LinkedBlockingQueue<TimedItem<String>>()
+		def consumer = [consume: { item -> Thread.sleep(1); inFlight.decrementAndGet() }] as Consumer
+
+		Service service = new ServiceBuilder().load(generator).maxProducers(4).forQueue(queue)
+		                                      .consumers(generator.measure(consumer)).maxConsumers(4).forQueue(queue)
+		                                      .build()
+
+		service.initialize()
+		service.start()
+
+		MultiThreadedUtil.waitUntil({ generator.latencies().count() >= 100 }, MAX_WAIT)
+		int observed = maxInFlight.get()
+		service.shutdown()
+
+		assertTrue("Items in flight: " + observed, observed <= 2)
+	}
+}
@@ -0,0 +1,59 @@
+package com.github.kchard.service
+
+import static org.junit.Assert.*
+
+import java.util.concurrent.atomic.AtomicLong
+
+import org.junit.Test
+
+import com.github.kchard.util.itestUtils.MultiThreadedUtil
+
+class LongWorkerServiceTest {
+
+	static final long MAX_WAIT = 5000
+
+	@Test
+	void testProduceToConsume() {
+
+		def channel = new LongChannel(16)
+		def next = new AtomicLong()
+		def sum = new AtomicLong()
+		def count = new AtomicLong()
+
+		def producer = [produce: { next.incrementAndGet() }] as LongProducer
+		def consumer = [consume: { long item -> sum.addAndGet(item); count.incrementAndGet() }] as LongConsumer
+
+		Service service = new ServiceBuilder().longProducers(producer).maxProducers(1).forChannel(channel)
+		                                      .longConsumers(consumer).maxConsumers(2).forChannel(channel)
+		                                      .build()
+
+		service.initialize()
+		service.start()
+
+		MultiThreadedUtil.waitUntil({ count.get() >= 1000 }, MAX_WAIT)
+		service.shutdown()
+
+		assertTrue(sum.get() > 0)
+		assertEquals(State.SHUTDOWN, service.currentState())
+	}
+
+	@Test
+	void testDoubleProduceToConsume() {
+
+		def channel = new DoubleChannel(16)
+		def count = new AtomicLong()
+
+		def producer = [produce: { 0.5d }] as DoubleProducer
+		def consumer = [consume: { double item -> count.incrementAndGet() }] as DoubleConsumer
+
+		Service service = new ServiceBuilder().doubleProducers(producer).maxProducers(1).forChannel(channel)
+		                                      .doubleConsumers(consumer).maxConsumers(1).forChannel(channel)
+		                                      .build()
+
+		service.initialize()
+		service.start()
+
+		MultiThreadedUtil.waitUntil({ count.get() >= 1000 }, MAX_WAIT)
+		service.shutdown()
+	}
+}
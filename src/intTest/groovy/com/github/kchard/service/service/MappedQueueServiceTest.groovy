@@ -0,0 +1,56 @@
+package com.github.kchard.service
+
+import static org.junit.Assert.*
+
+import java.nio.ByteBuffer
+import java.util.concurrent.atomic.AtomicLong
+
+import org.junit.Test
+
+import com.github.kchard.util.itestUtils.MultiThreadedUtil
+
+class MappedQueueServiceTest {
+
+	static final long MAX_WAIT = 5000
+
+	static class LongCodec implements BinaryCodec<Long> {
+
+		int size(Long item) { 8 }
+		void encode(Long item, ByteBuffer target) { target.putLong(item) }
+		Long decode(ByteBuffer source) { source.getLong() }
+	}
+
+	@Test
+	void testWorkerServicesOnEitherSide() {
+
+		def file = File.createTempFile("mapped-queue-service", ".q")
+		file.deleteOnExit()
+		def consumerSide = MappedQueue.create(file, 1024, new LongCodec())
+		def producerSide = MappedQueue.open(file, new LongCodec())
+
+		def next = new AtomicLong()
+		def sum = new AtomicLong()
+		def count = new AtomicLong()
+
+		Service consumers = new ServiceBuilder().consumers([consume: { Long item -> sum.addAndGet(item); count.incrementAndGet() }] as Consumer).maxConsumers(1)
+		                                        .forQueue(consumerSide)
+		                                        .build()
+		Service producers = new ServiceBuilder().producers([produce: { next.get() < 100000 ? next.incrementAndGet() : Thread.sleep(10000) }] as Producer).maxProducers(1)
+		                                        .forQueue(producerSide)
+		                                        .build()
+
+		consumers.initialize()
+		consumers.start()
+		producers.initialize()
+		producers.start()
+
+		MultiThreadedUtil.waitUntil({ count.get() == 100000 }, MAX_WAIT)
+		producers.shutdown()
+		consumers.shutdown()
+		producerSide.close()
+		consumerSide.close()
+
+		assertEquals((100000L * 100001L).intdiv(2L), sum.get())
+		assertEquals(0, consumerSide.size())
+	}
+}
@@ -0,0 +1,95 @@
+package com.github.kchard.service
+
+import static org.junit.Assert.*
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+
+import com.github.kchard.util.itestUtils.MultiThreadedUtil
+
+class MonitorEngineTest {
+
+	static final long MAX_WAIT = 250
+
+	MonitorEngine engine
+
+	@Before
+	void setUp() {
+		engine = new MonitorEngine("test-monitor")
+	}
+
+	@After
+	void tearDown() {
+		engine.shutdown()
+	}
+
+	@Test
+	void testTriggeredCheckOnlyRunsWhenTriggered() {
+
+		def count = 0
+		def registration = engine.register("check", [run: { count++ }] as Runnable)
+
+		MultiThreadedUtil.wait(50)
+		assertEquals(0, count)
+
+		registration.trigger()
+		MultiThreadedUtil.waitUntil({ registration.evaluations() == 1 }, MAX_WAIT)
+
+		assertEquals(1, count)
+	}
+
+	@Test
+	void testTriggersAreCoalesced() {
+
+		def latch = new CountDownLatch(1)
+		def blocker = engine.register("blocker", [run: { latch.await() }] as Runnable)
+		def registration = engine.register("check", [run: {}] as Runnable)
+
+		blocker.trigger()
+		10.times { registration.trigger() }
+		latch.countDown()
+
+		MultiThreadedUtil.waitUntil({ registration.evaluations() == 1 }, MAX_WAIT)
+		MultiThreadedUtil.wait(50)
+
+		assertEquals(1, registration.evaluations())
+	}
+
+	@Test
+	void testPeriodicCheck() {
+
+		def registration = engine.register("check", [run: {}] as Runnable, 5, TimeUnit.MILLISECONDS)
+
+		MultiThreadedUtil.waitUntil({ registration.evaluations() >= 3 }, MAX_WAIT)
+		registration.cancel()
+
+		assertTrue(registration.isCancelled())
+		assertFalse(engine.registrations().contains(registration))
+	}
+
+	@Test
+	void testDeadline() {
+
+		def fired = false
+		def registration = engine.schedule("deadline", [run: { fired = true }] as Runnable, 10, TimeUnit.MILLISECONDS)
+
+		MultiThreadedUtil.waitUntil({ fired }, MAX_WAIT)
+		MultiThreadedUtil.waitUntil({ registration.isCancelled() }, MAX_WAIT)
+
+		assertEquals(1, registration.evaluations())
+		assertTrue(registration.totalEvaluationTime(TimeUnit.NANOSECONDS) > 0)
+	}
+
+	@Test
+	void testExceptionDoesNotStopCheck() {
+
+		def registration = engine.register("check", [run: { throw new RuntimeException() }] as Runnable, 5, TimeUnit.MILLISECONDS)
+
+		MultiThreadedUtil.waitUntil({ registration.evaluations() >= 2 }, MAX_WAIT)
+		registration.cancel()
+	}
+}
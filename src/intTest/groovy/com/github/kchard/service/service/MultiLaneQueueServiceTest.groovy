@@ -0,0 +1,58 @@
+package com.github.kchard.service
+
+import static org.junit.Assert.*
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+import org.junit.Test
+
+import com.github.kchard.util.itestUtils.MultiThreadedUtil
+
+class MultiLaneQueueServiceTest {
+
+	static final long MAX_WAIT = 5000
+
+	@Test
+	void testOnePoolServesAllLanes() {
+
+		def queue = MultiLaneQueue.<String>weightedFair(4, 1)
+		def high = new AtomicInteger()
+		def low = new AtomicInteger()
+		def consumer = [consume: { String item -> item == "high" ? high.incrementAndGet() : low.incrementAndGet() }] as Consumer
+
+		Service service = new ServiceBuilder().producers([produce: { "high" }] as Producer).maxProducers(1).forQueue(queue.lane(0))
+		                                      .producers([produce: { "low" }] as Producer).maxProducers(1).forQueue(queue.lane(1))
+		                                      .consumers(consumer).maxConsumers(2).forQueue(queue)
+		                                      .build()
+
+		service.initialize()
+		service.start()
+
+		MultiThreadedUtil.waitUntil({ high.get() > 1000 && low.get() > 100 }, MAX_WAIT)
+		service.shutdown()
+
+		assertTrue(queue.waitTimes(0).count() > 1000)
+		assertTrue(queue.waitTimes(1).count() > 100)
+	}
+
+	@Test
+	void testLaneViewTakeIsNotStarvedByOtherLanes() {
+
+		def queue = MultiLaneQueue.<String>strictPriority(2)
+		def taken = new CountDownLatch(1)
+
+		Thread.start {
+			assertEquals("b", queue.lane(1).take())
+			taken.countDown()
+		}
+
+		Thread.sleep(50)
+		queue.lane(0).put("a")
+		queue.lane(1).put("b")
+
+		assertTrue(taken.await(MAX_WAIT, TimeUnit.MILLISECONDS))
+		assertEquals(["a"], queue.collect())
+	}
+}
@@ -41,7 +41,7 @@ class PredicateMonitorTest {
 		MultiThreadedUtil.waitUntil({ service.currentState().isShutdown() }, MAX_WAIT)
 		
 		assertTrue(service.currentState().isShutdown())
-		assertTrue(monitor.executor.isShutdown())
+		assertTrue(monitor.isStopped())
 		
 	}
 	
@@ -57,7 +57,7 @@ class PredicateMonitorTest {
 		MultiThreadedUtil.wait(MAX_WAIT)
 		
 		assertTrue(service.currentState().isShutdown())
-		assertTrue(monitor.executor.isShutdown())
+		assertTrue(monitor.isStopped())
 		
 	}
 	
@@ -73,7 +73,7 @@ class PredicateMonitorTest {
 		MultiThreadedUtil.wait(MAX_WAIT)
 		
 		assertTrue(service.currentState().isExceptional())
-		assertTrue(monitor.executor.isShutdown())
+		assertTrue(monitor.isStopped())
 	}
 	
 	@Test
@@ -96,7 +96,7 @@ class PredicateMonitorTest {
 		MultiThreadedUtil.wait(MAX_WAIT)
 		
 		assertTrue(service.currentState().isExceptional())
-		assertTrue(monitor.executor.isShutdown())
+		assertTrue(monitor.isStopped())
 	}
 	
 	class AService extends AbstractService {
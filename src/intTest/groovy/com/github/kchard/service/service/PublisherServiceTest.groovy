@@ -0,0 +1,113 @@
+package com.github.kchard.service
+
+import static org.junit.Assert.*
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.atomic.AtomicInteger
+
+import org.junit.Test
+
+import com.github.kchard.util.itestUtils.MultiThreadedUtil
+
+class PublisherServiceTest {
+
+	static final long MAX_WAIT = 5000
+
+	static class RecordingSubscriber implements Subscriber<Integer> {
+
+		Subscription subscription
+		List<Integer> items = new CopyOnWriteArrayList<Integer>()
+		List<Throwable> errors = new CopyOnWriteArrayList<Throwable>()
+		volatile boolean complete
+
+		void onSubscribe(Subscription subscription) { this.subscription = subscription }
+		void onNext(Integer item) { items << item }
+		void onError(Throwable throwable) { errors << throwable }
+		void onComplete() { complete = true }
+	}
+
+	@Test
+	void testProducesOnlyWhatIsRequested() {
+
+		def produced = new AtomicInteger()
+		def publisher = new PublisherService<Integer>([produce: { produced.incrementAndGet() }] as Producer, 2)
+		def subscriber = new RecordingSubscriber()
+		publisher.subscribe(subscriber)
+		subscriber.subscription.request(5)
+
+		publisher.initialize()
+		publisher.start()
+
+		MultiThreadedUtil.waitUntil({ subscriber.items.size() == 5 }, MAX_WAIT)
+		Thread.sleep(50)
+		assertEquals(5, produced.get())
+
+		subscriber.subscription.request(3)
+		MultiThreadedUtil.waitUntil({ subscriber.items.size() == 8 }, MAX_WAIT)
+
+		publisher.shutdown()
+		assertEquals(8, produced.get())
+		assertTrue(subscriber.complete)
+		assertEquals(0, publisher.subscribers())
+	}
+
+	@Test
+	void testInvalidRequestAndCancel() {
+
+		def publisher = new PublisherService<Integer>([produce: { 1 }] as Producer, 1)
+		def invalid = new RecordingSubscriber()
+		def cancelled = new RecordingSubscriber()
+		publisher.subscribe(invalid)
+		publisher.subscribe(cancelled)
+
+		invalid.subscription.request(0)
+		cancelled.subscription.cancel()
+
+		assertTrue(invalid.errors[0] instanceof IllegalArgumentException)
+		assertEquals(0, publisher.subscribers())
+
+		publisher.initialize()
+		publisher.start()
+		publisher.shutdown()
+
+		def late = new RecordingSubscriber()
+		publisher.subscribe(late)
+		assertTrue(late.complete)
+		assertFalse(cancelled.complete)
+	}
+
+	@Test
+	void testSlowSubscriberServiceBoundsWhatIsProduced() {
+
+		def produced = new AtomicInteger()
+		def consumed = new AtomicInteger()
+		def release = new CountDownLatch(1)
+		def publisher = new PublisherService<Integer>([produce: { produced.incrementAndGet() }] as Producer, 2)
+		def consumer = [consume: { Integer item ->
+			release.await()
+			consumed.incrementAndGet()
+		}] as Consumer
+
+		Service service = new ServiceBuilder().withChild(publisher)
+		                                      .consumers(consumer).maxConsumers(2).forPublisher(publisher, 16)
+		                                      .build()
+
+		service.initialize()
+		service.start()
+
+		//Two items are being consumed and the buffer is full, nothing more has been requested
+		MultiThreadedUtil.waitUntil({ produced.get() == 16 }, MAX_WAIT)
+		Thread.sleep(100)
+		assertEquals(16, produced.get())
+
+		release.countDown()
+		MultiThreadedUtil.waitUntil({ consumed.get() >= 1000 }, MAX_WAIT)
+		//Read before shutdown, which interrupts the consumers and may fail the items they hold
+		long requested = produced.get()
+		long done = consumed.get()
+		service.shutdown()
+
+		assertTrue(requested - done <= 16)
+	}
+}
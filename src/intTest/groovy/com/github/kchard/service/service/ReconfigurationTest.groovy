@@ -0,0 +1,146 @@
+package com.github.kchard.service
+
+import static org.junit.Assert.*
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+import org.junit.Test
+
+import com.github.kchard.util.itestUtils.MultiThreadedUtil
+
+class ReconfigurationTest {
+
+	static final long MAX_WAIT = 2000
+
+	@Test
+	void testGrowWorkerPool() {
+
+		def queue = new LinkedBlockingQueue<String>()
+		def release = new CountDownLatch(1)
+		def threads = Collections.newSetFromMap(new ConcurrentHashMap())
+
+		def consumer = [consume: { String item -> threads.add(Thread.currentThread().getName()); release.await() }] as Consumer
+		def service = new ConsumerWorkerService<String>(consumer, queue, 1)
+
+		service.initialize()
+		service.start()
+
+		4.times { queue.put("ITEM") }
+		MultiThreadedUtil.waitUntil({ threads.size() == 1 }, MAX_WAIT)
+
+		service.resize(3)
+		MultiThreadedUtil.waitUntil({ threads.size() == 3 }, MAX_WAIT)
+
+		assertEquals(3, service.maxWorkers())
+		assertEquals(1, queue.size())
+
+		release.countDown()
+		service.shutdown()
+	}
+
+	@Test
+	void testShrinkWorkerPoolKeepsQueue() {
+
+		def queue = new LinkedBlockingQueue<String>()
+		def consumed = new AtomicInteger()
+
+		def consumer = [consume: { String item -> consumed.incrementAndGet() }] as Consumer
+		def service = new ConsumerWorkerService<String>(consumer, queue, 4)
+
+		service.initialize()
+		service.start()
+
+		service.resize(1)
+		100.times { queue.put("ITEM") }
+
+		MultiThreadedUtil.waitUntil({ consumed.get() == 100 }, MAX_WAIT)
+		service.shutdown()
+
+		assertEquals(1, service.maxWorkers())
+	}
+
+	@Test
+	void testShrinkThenGrowIdleWorkerPool() {
+
+		def queue = new LinkedBlockingQueue<String>()
+		def release = new CountDownLatch(1)
+		def busy = new AtomicInteger()
+
+		def consumer = [consume: { String item -> busy.incrementAndGet(); release.await() }] as Consumer
+		def service = new ConsumerWorkerService<String>(consumer, queue, 4)
+
+		service.initialize()
+		service.start()
+		MultiThreadedUtil.waitUntil({ service.activeThreads() == 4 }, MAX_WAIT)
+
+		//The surplus workers are waiting for an item, their threads return without taking one
+		service.resize(1)
+		MultiThreadedUtil.waitUntil({ service.activeThreads() == 1 }, MAX_WAIT)
+
+		service.resize(3)
+		MultiThreadedUtil.waitUntil({ service.activeThreads() == 3 }, MAX_WAIT)
+
+		10.times { queue.put("ITEM") }
+		MultiThreadedUtil.waitUntil({ busy.get() == 3 }, MAX_WAIT)
+		Thread.sleep(100L)
+
+		assertEquals(3, busy.get())
+		assertEquals(7, queue.size())
+		assertEquals(3, service.workerCount())
+
+		release.countDown()
+		service.shutdown()
+	}
+
+	@Test
+	void testResizeBeforeStart() {
+
+		def service = new ConsumerWorkerService<String>([consume: {}] as Consumer, new LinkedBlockingQueue<String>(), 2)
+		service.resize(5)
+
+		assertEquals(5, service.maxWorkers())
+	}
+
+	@Test(expected = IllegalArgumentException)
+	void testInvalidSize() {
+		new ConsumerWorkerService<String>([consume: {}] as Consumer, new LinkedBlockingQueue<String>(), 2).resize(0)
+	}
+
+	@Test
+	void testRescheduleFixedRate() {
+
+		def count = new AtomicInteger()
+		def service = new FixedRateScheduledService([[run: { count.incrementAndGet() }] as Runnable], 0, 10000, TimeUnit.MILLISECONDS)
+
+		service.initialize()
+		service.start()
+
+		MultiThreadedUtil.waitUntil({ count.get() == 1 }, MAX_WAIT)
+
+		service.reschedule(5)
+		MultiThreadedUtil.waitUntil({ count.get() >= 5 }, MAX_WAIT)
+		service.shutdown()
+
+		assertEquals(5, service.delay())
+	}
+
+	@Test
+	void testRescheduleFixedDelay() {
+
+		def count = new AtomicInteger()
+		def service = new FixedDelayScheduledService([[run: { count.incrementAndGet() }] as Runnable], 0, 10000, TimeUnit.MILLISECONDS)
+
+		service.initialize()
+		service.start()
+
+		MultiThreadedUtil.waitUntil({ count.get() == 1 }, MAX_WAIT)
+
+		service.reschedule(5)
+		MultiThreadedUtil.waitUntil({ count.get() >= 5 }, MAX_WAIT)
+		service.shutdown()
+	}
+}
@@ -0,0 +1,210 @@
+package com.github.kchard.service
+
+import static org.junit.Assert.*
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.TimeoutException
+
+import org.junit.After
+import org.junit.Test
+
+import com.github.kchard.util.itestUtils.MultiThreadedUtil
+
+class RequestReplyServiceTest {
+
+	static final long MAX_WAIT = 5000
+
+	CountDownLatch release = new CountDownLatch(1)
+	List handled = new CopyOnWriteArrayList()
+	RequestReplyService<Integer, Integer> service
+
+	RequestReplyService<Integer, Integer> start(int maxWorkers, int maxInFlight) {
+		def handler = [handle: { Integer request ->
+			handled << request
+			if(request < 0) {
+				throw new IllegalArgumentException("negative")
+			}
+
+			if(request == 0) {
+				release.await()
+			}
+
+			request * 2
+		}] as RequestHandler
+
+		service = new RequestReplyService<Integer, Integer>(handler, maxWorkers, maxInFlight)
+		service.initialize()
+		service.start()
+		service
+	}
+
+	@After
+	void tearDown() {
+		release.countDown()
+		service?.shutdown()
+	}
+
+	@Test
+	void testReply() {
+
+		start(2, 10)
+
+		assertEquals(42, service.submit(21).get(MAX_WAIT, TimeUnit.MILLISECONDS))
+	}
+
+	@Test
+	void testHandlerException() {
+
+		start(2, 10)
+
+		try {
+			service.submit(-1).get(MAX_WAIT, TimeUnit.MILLISECONDS)
+			fail()
+		} catch(ExecutionException e) {
+			assertTrue(e.getCause() instanceof IllegalArgumentException)
+		}
+
+		assertEquals(42, service.submit(21).get(MAX_WAIT, TimeUnit.MILLISECONDS))
+	}
+
+	@Test
+	void testRejectWhenFull() {
+
+		start(1, 2)
+
+		def blocked = service.submit(0)
+		def queued = service.submit(1)
+
+		try {
+			service.submit(2)
+			fail()
+		} catch(RejectedExecutionException e) {
+			assertEquals(1L, service.rejected())
+		}
+
+		release.countDown()
+		assertEquals(2, queued.get(MAX_WAIT, TimeUnit.MILLISECONDS))
+		assertEquals(0, blocked.get(MAX_WAIT, TimeUnit.MILLISECONDS))
+		MultiThreadedUtil.waitUntil({ service.inFlight() == 0 }, MAX_WAIT)
+	}
+
+	@Test
+	void testDeadline() {
+
+		start(1, 2)
+
+		def reply = service.submit(0, 50L, TimeUnit.MILLISECONDS)
+
+		try {
+			reply.get(MAX_WAIT, TimeUnit.MILLISECONDS)
+			fail()
+		} catch(ExecutionException e) {
+			assertTrue(e.getCause() instanceof TimeoutException)
+		}
+
+		assertTrue(reply.isExpired())
+		//Waiters are released before the deadline task counts the expiry
+		MultiThreadedUtil.waitUntil({ service.expired() == 1L }, MAX_WAIT)
+
+		//The handler is still running
+		assertEquals(1, service.inFlight())
+		release.countDown()
+		MultiThreadedUtil.waitUntil({ service.inFlight() == 0 }, MAX_WAIT)
+	}
+
+	@Test
+	void testSlowHandlerHoldsCapacityPastDeadline() {
+
+		start(2, 1)
+
+		def slow = service.submit(0, 20L, TimeUnit.MILLISECONDS)
+		MultiThreadedUtil.waitUntil({ slow.isExpired() }, MAX_WAIT)
+
+		//A second worker is idle, but the expired request has not returned
+		try {
+			service.submit(1)
+			fail()
+		} catch(RejectedExecutionException e) {
+			assertEquals(1L, service.rejected())
+		}
+
+		release.countDown()
+		MultiThreadedUtil.waitUntil({ service.inFlight() == 0 }, MAX_WAIT)
+		assertEquals(2, service.submit(1).get(MAX_WAIT, TimeUnit.MILLISECONDS))
+		assertEquals([0, 1], handled)
+	}
+
+	@Test
+	void testCancelledRequestIsNeverHandled() {
+
+		start(1, 10)
+
+		def blocked = service.submit(0)
+		MultiThreadedUtil.waitUntil({ handled.size() == 1 }, MAX_WAIT)
+
+		def queued = service.submit(1)
+		def listened = new CountDownLatch(1)
+		queued.addListener([run: { listened.countDown() }] as Runnable)
+		assertTrue(queued.cancel(false))
+		assertTrue(listened.await(MAX_WAIT, TimeUnit.MILLISECONDS))
+		assertEquals(1, service.inFlight())
+
+		release.countDown()
+		blocked.get(MAX_WAIT, TimeUnit.MILLISECONDS)
+		assertEquals(42, service.submit(21).get(MAX_WAIT, TimeUnit.MILLISECONDS))
+		assertEquals([0, 21], handled)
+	}
+
+	@Test
+	void testShutdownCancelsQueuedRequests() {
+
+		start(1, 10)
+
+		service.submit(0)
+		MultiThreadedUtil.waitUntil({ handled.size() == 1 }, MAX_WAIT)
+		def queued = service.submit(1)
+
+		service.shutdown()
+
+		//A worker may have taken the request just before shutdown, it cancels rather than handles it
+		MultiThreadedUtil.waitUntil({ queued.isDone() }, MAX_WAIT)
+		assertTrue(queued.isCancelled())
+		assertEquals([0], handled)
+		try {
+			service.submit(2)
+			fail()
+		} catch(RejectedExecutionException e) {
+		}
+	}
+
+	@Test
+	void testSubmitRacingShutdownIsSettled() {
+
+		20.times {
+			start(2, 1000)
+
+			def replies = new CopyOnWriteArrayList()
+			def submitters = (1..4).collect {
+				Thread.start {
+					try {
+						while(true) {
+							replies << service.submit(1)
+						}
+					} catch(RejectedExecutionException e) {
+						//The service is at capacity or has been shutdown
+					}
+				}
+			}
+
+			MultiThreadedUtil.waitUntil({ replies.size() > 100 }, MAX_WAIT)
+			service.shutdown()
+			submitters*.join(MAX_WAIT)
+
+			MultiThreadedUtil.waitUntil({ replies.every { it.isDone() } && service.inFlight() == 0 }, MAX_WAIT)
+		}
+	}
+}
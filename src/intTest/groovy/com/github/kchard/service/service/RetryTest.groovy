@@ -0,0 +1,76 @@
+package com.github.kchard.service
+
+import static org.junit.Assert.*
+
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+import org.junit.Test
+
+import com.github.kchard.util.itestUtils.MultiThreadedUtil
+
+class RetryTest {
+
+	static final long MAX_WAIT = 5000
+
+	@Test
+	void testPoisonItemsAreDeadLetteredWhileTheRestAreConsumed() {
+
+		def queue = new LinkedBlockingQueue<Integer>()
+		def deadLetters = new LinkedBlockingQueue<Integer>()
+		def consumed = new AtomicInteger()
+		def attempts = new AtomicInteger()
+		def consumer = [consume: { Integer item ->
+			if(item % 100 == 0) {
+				attempts.incrementAndGet()
+				throw new IllegalArgumentException("poison " + item)
+			}
+			consumed.incrementAndGet()
+		}] as Consumer
+
+		Service service = new ServiceBuilder().consumers(consumer).maxConsumers(2)
+		                                      .withRetries(RetryPolicy.retry(2, 10L, TimeUnit.MILLISECONDS))
+		                                      .withDeadLetters(deadLetters)
+		                                      .forQueue(queue)
+		                                      .build()
+
+		service.initialize()
+		service.start()
+		(1..1000).each { queue.put(it) }
+
+		MultiThreadedUtil.waitUntil({ deadLetters.size() == 10 }, MAX_WAIT)
+
+		assertEquals(990, consumed.get())
+		assertEquals(30, attempts.get())
+		assertEquals((1..10).collect { it * 100 }, deadLetters.sort())
+		assertEquals(State.STARTED, service.currentState())
+		service.shutdown()
+	}
+
+	@Test
+	void testWorkerSurvivesFailuresWithoutRetries() {
+
+		def queue = new LinkedBlockingQueue<Integer>()
+		def deadLetters = new LinkedBlockingQueue<Integer>()
+		def consumed = new AtomicInteger()
+		def consumer = [consume: { Integer item ->
+			if(item % 2 == 0) {
+				throw new IllegalArgumentException("poison " + item)
+			}
+			consumed.incrementAndGet()
+		}] as Consumer
+
+		Service service = new ServiceBuilder().consumers(consumer).maxConsumers(1).withDeadLetters(deadLetters).forQueue(queue).build()
+
+		service.initialize()
+		service.start()
+		(1..100).each { queue.put(it) }
+
+		MultiThreadedUtil.waitUntil({ consumed.get() == 50 && deadLetters.size() == 50 }, MAX_WAIT)
+		service.shutdown()
+
+		assertEquals(50, consumed.get())
+		assertEquals(50, deadLetters.size())
+	}
+}
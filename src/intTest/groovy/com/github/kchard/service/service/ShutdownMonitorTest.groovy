@@ -14,7 +14,6 @@ import com.github.kchard.util.itestUtils.MultiThreadedUtil
 class ShutdownMonitorTest {
 
 	static final long MAX_WAIT = 250
-	static final long MONITOR_INTERVAL = 10
 	static final long SHUTDOWN_AFTER = 100
 	
 	AbstractService service
@@ -27,7 +26,7 @@ class ShutdownMonitorTest {
 		service = new AService()
 		throwException = false
 		
-		monitor = new ScheduledShutdownMonitor(service, MONITOR_INTERVAL, SHUTDOWN_AFTER, TimeUnit.MILLISECONDS)
+		monitor = new ScheduledShutdownMonitor(service, SHUTDOWN_AFTER, TimeUnit.MILLISECONDS)
 	}
 	
 	@Test
@@ -41,7 +40,7 @@ class ShutdownMonitorTest {
 		MultiThreadedUtil.waitUntil({ service.currentState().isShutdown() }, MAX_WAIT)
 		
 		assertTrue(service.currentState().isShutdown())
-		assertTrue(monitor.executor.isShutdown())
+		assertTrue(monitor.isStopped())
 		
 	}
 	
@@ -57,7 +56,7 @@ class ShutdownMonitorTest {
 		MultiThreadedUtil.wait(MAX_WAIT)
 		
 		assertTrue(service.currentState().isShutdown())
-		assertTrue(monitor.executor.isShutdown())
+		assertTrue(monitor.isStopped())
 		
 	}
 	
@@ -73,7 +72,7 @@ class ShutdownMonitorTest {
 		MultiThreadedUtil.wait(MAX_WAIT)
 		
 		assertTrue(service.currentState().isExceptional())
-		assertTrue(monitor.executor.isShutdown())
+		assertTrue(monitor.isStopped())
 	}
 	
 	@Test
@@ -92,7 +91,7 @@ class ShutdownMonitorTest {
 		MultiThreadedUtil.wait(MAX_WAIT)
 		
 		assertTrue(service.currentState().isExceptional())
-		assertTrue(monitor.executor.isShutdown())
+		assertTrue(monitor.isStopped())
 	}
 	
 	class AService extends AbstractService {
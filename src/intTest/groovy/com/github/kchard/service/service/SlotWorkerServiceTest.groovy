@@ -0,0 +1,122 @@
+package com.github.kchard.service
+
+import static org.junit.Assert.*
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicReference
+
+import org.junit.Test
+
+import com.github.kchard.util.itestUtils.MultiThreadedUtil
+
+class SlotWorkerServiceTest {
+
+	static final long MAX_WAIT = 5000
+	static final int CAPACITY = 4
+
+	@Test
+	void testSlotsAreRecycled() {
+
+		def created = new AtomicLong()
+		def slotQueue = new SlotQueue<long[]>([newSlot: { created.incrementAndGet(); new long[1] }] as SlotFactory, CAPACITY)
+
+		def next = new AtomicLong()
+		def count = new AtomicLong()
+		def seen = Collections.newSetFromMap(new ConcurrentHashMap())
+
+		def producer = [produce: { long[] slot -> slot[0] = next.incrementAndGet() }] as SlotProducer
+		def consumer = [consume: { long[] slot -> seen.add(System.identityHashCode(slot)); count.incrementAndGet() }] as Consumer
+
+		Service service = new ServiceBuilder().slotProducers(producer).maxProducers(2).forSlots(slotQueue)
+		                                      .consumers(consumer).maxConsumers(2).forSlots(slotQueue)
+		                                      .build()
+
+		service.initialize()
+		service.start()
+
+		MultiThreadedUtil.waitUntil({ count.get() >= 1000 }, MAX_WAIT)
+		service.shutdown()
+
+		assertEquals(CAPACITY, created.get())
+		assertTrue(seen.size() <= CAPACITY)
+	}
+
+	@Test
+	void testSlotIsReleasedWhenConsumerFails() {
+
+		def slotQueue = new SlotQueue<long[]>([newSlot: { new long[1] }] as SlotFactory, 1)
+		def worker = new SlotConsumerWorker<long[]>([consume: { throw new RuntimeException() }] as Consumer, slotQueue)
+
+		slotQueue.publish(slotQueue.claim())
+		worker.run()
+
+		assertEquals(0, slotQueue.size())
+		assertNotNull(slotQueue.claim())
+	}
+
+	@Test
+	void testPublishedSlotIsNotReleasedWhenEventSinkFails() {
+
+		def slotQueue = new SlotQueue<long[]>([newSlot: { new long[1] }] as SlotFactory, 1)
+		def owner = new AbstractService("owner") {
+
+			protected void doInitialize() {
+			}
+
+			protected void doStart() {
+			}
+
+			protected void doShutdown() {
+			}
+		}
+		owner.setEventSink([isEnabled: { ServiceEvent event -> true }, onEvent: { ServiceEvent event, Service service, Object subject ->
+			if(event == ServiceEvent.ITEM_PRODUCED) {
+				throw new IllegalStateException("sink failed")
+			}
+		}] as EventSink)
+
+		new SlotProducerWorker<long[]>([produce: { long[] slot -> slot[0] = 1L }] as SlotProducer, slotQueue, owner).run()
+		assertEquals(1, slotQueue.size())
+
+		//The only slot is published, so it cannot be claimed until it is consumed
+		def claimed = new AtomicReference()
+		def claimer = Thread.start { claimed.set(slotQueue.claim()) }
+		claimer.join(100L)
+		assertNull(claimed.get())
+
+		def published = slotQueue.poll()
+		slotQueue.release(published)
+		claimer.join(MAX_WAIT)
+		assertSame(published, claimed.get())
+	}
+
+	@Test(expected = IllegalStateException)
+	void testRejectedSlotsCannotBeDeadLettered() {
+
+		def slotQueue = new SlotQueue<long[]>([newSlot: { new long[1] }] as SlotFactory, CAPACITY)
+
+		new ServiceBuilder().consumers([consume: { long[] slot -> }] as Consumer)
+		                    .withCircuitBreaker(CircuitBreaker.defaults())
+		                    .withDeadLetters(new LinkedList<long[]>())
+		                    .forSlots(slotQueue)
+	}
+
+	@Test
+	void testSlotIsNotItsOwnKey() {
+
+		def slotQueue = new SlotQueue<long[]>([newSlot: { new long[1] }] as SlotFactory, 1)
+		def builder = new ServiceBuilder().consumers([consume: { long[] slot -> }] as Consumer)
+		                                  .dedupeBy([key: { it }] as KeyExtractor, 10, 1L, TimeUnit.MINUTES)
+		builder.forSlots(slotQueue)
+
+		def consumer = builder.guarded()
+		slotQueue.publish(slotQueue.claim())
+		try {
+			consumer.consume(slotQueue.take())
+			fail()
+		} catch(IllegalStateException e) {
+		}
+	}
+}
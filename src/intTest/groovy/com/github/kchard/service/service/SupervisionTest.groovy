@@ -0,0 +1,183 @@
+package com.github.kchard.service
+
+import static org.junit.Assert.*
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+import org.junit.Before
+import org.junit.Test
+
+import com.github.kchard.util.itestUtils.MultiThreadedUtil
+
+class SupervisionTest {
+
+	static final long MAX_WAIT = 1000
+
+	def starts
+	def shutdowns
+	List<AService> children
+
+	@Before
+	void setUp() {
+		starts = Collections.synchronizedList([])
+		shutdowns = Collections.synchronizedList([])
+		children = [new AService(1), new AService(2), new AService(3)]
+	}
+
+	@Test
+	void testOneForOne() {
+
+		def service = start(SupervisionStrategy.oneForOne())
+
+		children[1].fail()
+		MultiThreadedUtil.waitUntil({ starts.size() == 4 }, MAX_WAIT)
+
+		assertEquals([1, 2, 3, 2], starts)
+		assertEquals([2], shutdowns)
+		assertEquals(State.STARTED, service.currentState())
+		children.each { assertEquals(State.STARTED, it.currentState()) }
+
+		service.shutdown()
+	}
+
+	@Test
+	void testRestForOne() {
+
+		def service = start(SupervisionStrategy.restForOne())
+
+		children[1].fail()
+		MultiThreadedUtil.waitUntil({ starts.size() == 5 }, MAX_WAIT)
+
+		assertEquals([1, 2, 3, 2, 3], starts)
+		assertEquals(State.STARTED, service.currentState())
+
+		service.shutdown()
+	}
+
+	@Test
+	void testOneForAll() {
+
+		def service = start(SupervisionStrategy.oneForAll())
+
+		children[2].fail()
+		MultiThreadedUtil.waitUntil({ starts.size() == 6 }, MAX_WAIT)
+
+		assertEquals([1, 2, 3, 1, 2, 3], starts)
+		assertEquals(State.STARTED, service.currentState())
+
+		service.shutdown()
+	}
+
+	@Test
+	void testIntensityExceededEscalates() {
+
+		def service = start(SupervisionStrategy.oneForOne().withIntensity(1, 1, TimeUnit.MINUTES))
+
+		children[0].fail()
+		MultiThreadedUtil.waitUntil({ starts.size() == 4 }, MAX_WAIT)
+
+		children[0].fail()
+		MultiThreadedUtil.waitUntil({ service.currentState().isExceptional() }, MAX_WAIT)
+
+		//The composite is EXCEPTIONAL before it has finished shutting its children down
+		MultiThreadedUtil.waitUntil({ children.every { it.currentState().compareTo(State.STARTED) > 0 } }, MAX_WAIT)
+	}
+
+	@Test
+	void testSiblingsRestartAfterFailedRestart() {
+
+		def service = start(SupervisionStrategy.oneForAll().withIntensity(1, 1, TimeUnit.MINUTES))
+
+		children[0].failNextStart = true
+		children[0].fail()
+		MultiThreadedUtil.waitUntil({ service.currentState().isExceptional() }, MAX_WAIT)
+
+		//The first child failed to restart, the others were restarted before the next round escalated
+		assertEquals([1, 2, 3, 2, 3], starts)
+	}
+
+	@Test
+	void testSlowRestartDoesNotBlockMonitors() {
+
+		def service = start(SupervisionStrategy.oneForOne())
+		def restarting = new CountDownLatch(1)
+		def release = new CountDownLatch(1)
+		children[1].blockNextStart = [restarting, release]
+
+		//The child holds its own lock until its restart is released
+		children[1].fail()
+		assertTrue(restarting.await(MAX_WAIT, TimeUnit.MILLISECONDS))
+
+		def ran = new CountDownLatch(1)
+		MonitorEngine.shared().schedule("supervision-test", [run: { ran.countDown() }] as Runnable, 0L, TimeUnit.MILLISECONDS)
+		assertTrue(ran.await(MAX_WAIT, TimeUnit.MILLISECONDS))
+
+		release.countDown()
+		MultiThreadedUtil.waitUntil({ children[1].currentState() == State.STARTED }, MAX_WAIT)
+		service.shutdown()
+	}
+
+	@Test
+	void testEscalateByDefault() {
+
+		def service = new ServiceBuilder().withChild(children[0]).withChild(children[1]).build()
+		service.initialize()
+		service.start()
+
+		children[0].fail()
+		MultiThreadedUtil.waitUntil({ service.currentState().isExceptional() }, MAX_WAIT)
+
+		//The composite is EXCEPTIONAL before it has finished shutting its children down
+		MultiThreadedUtil.waitUntil({ children[1].currentState() == State.SHUTDOWN }, MAX_WAIT)
+	}
+
+	private AbstractService start(SupervisionStrategy strategy) {
+		def service = new CompositeService(children, true, strategy)
+		service.initialize()
+		service.start()
+		MultiThreadedUtil.waitUntil({ service.currentState().isStarted() }, MAX_WAIT)
+		return service
+	}
+
+	private class AService extends AbstractService {
+
+		private final int order
+		volatile boolean failNextStart
+		volatile List<CountDownLatch> blockNextStart
+
+		AService(int order) {
+			this.order = order
+		}
+
+		void fail() {
+			reportException(new RuntimeException("BOOM!!!"))
+		}
+
+		@Override
+		protected void doInitialize() {
+		}
+
+		@Override
+		protected void doStart() {
+			if(failNextStart) {
+				failNextStart = false
+				throw new RuntimeException("BOOM!!!")
+			}
+
+			if(blockNextStart != null) {
+				def latches = blockNextStart
+				blockNextStart = null
+				latches[0].countDown()
+				latches[1].await()
+			}
+
+			starts.add(order)
+		}
+
+		@Override
+		protected void doShutdown() {
+			shutdowns.add(order)
+		}
+	}
+}
@@ -0,0 +1,103 @@
+package com.github.kchard.service
+
+import static org.junit.Assert.*
+
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+import org.junit.Test
+
+import com.github.kchard.util.itestUtils.MultiThreadedUtil
+
+class TransportTest {
+
+	static final long MAX_WAIT = 5000
+
+	@Test
+	void testItemsArriveInOrderThroughForQueue() {
+
+		def receiver = new TransportReceiver<Integer>(new SerializingCodec<Integer>(), 0, 64)
+		def consumed = new CopyOnWriteArrayList<Integer>()
+		def next = new AtomicInteger()
+
+		receiver.initialize()
+		def sender = new TransportSender<Integer>(new SerializingCodec<Integer>(), receiver.port())
+
+		Service consumers = new ServiceBuilder().withChild(receiver)
+		                                        .consumers([consume: { Integer item -> consumed << item }] as Consumer).maxConsumers(1).forQueue(receiver.queue())
+		                                        .build()
+		Service producers = new ServiceBuilder().withChild(sender)
+		                                        .producers([produce: { next.get() < 1000 ? next.incrementAndGet() : Thread.sleep(10000) }] as Producer).maxProducers(1).forQueue(sender.queue())
+		                                        .build()
+
+		consumers.initialize()
+		consumers.start()
+		producers.initialize()
+		producers.start()
+
+		MultiThreadedUtil.waitUntil({ consumed.size() == 1000 }, MAX_WAIT)
+		producers.shutdown()
+		consumers.shutdown()
+
+		assertEquals((1..1000).toList(), consumed)
+		assertEquals(1000L, sender.sent())
+		assertEquals(1000L, receiver.received())
+	}
+
+	@Test
+	void testSenderStopsAtCreditOfASlowReceiver() {
+
+		def receiver = new TransportReceiver<Integer>(new SerializingCodec<Integer>(), 0, 8)
+		receiver.initialize()
+		receiver.start()
+		def sender = new TransportSender<Integer>(new SerializingCodec<Integer>(), receiver.port())
+		sender.initialize()
+		sender.start()
+
+		(1..20).each { sender.queue().put(it) }
+
+		MultiThreadedUtil.waitUntil({ sender.sent() == 8 }, MAX_WAIT)
+		Thread.sleep(100)
+		assertEquals(8L, sender.sent())
+		assertEquals(0, sender.credits())
+		assertEquals(12, sender.queue().size())
+
+		//Taking a quarter of the capacity grants credit for two more
+		receiver.queue().take()
+		receiver.queue().take()
+		MultiThreadedUtil.waitUntil({ sender.sent() == 10 }, MAX_WAIT)
+
+		sender.shutdown()
+		receiver.shutdown()
+	}
+
+	@Test
+	void testSenderReconnectsToARestartedReceiver() {
+
+		def receiver = new TransportReceiver<Integer>(new SerializingCodec<Integer>(), 0, 16)
+		receiver.initialize()
+		receiver.start()
+		int port = receiver.port()
+
+		def sender = new TransportSender<Integer>(new SerializingCodec<Integer>(), port)
+		sender.initialize()
+		sender.start()
+
+		sender.queue().put(1)
+		assertEquals(1, receiver.queue().poll(MAX_WAIT, TimeUnit.MILLISECONDS))
+		receiver.shutdown()
+		MultiThreadedUtil.waitUntil({ sender.credits() == -1 }, MAX_WAIT)
+
+		def replacement = new TransportReceiver<Integer>(new SerializingCodec<Integer>(), port, 16)
+		replacement.initialize()
+		replacement.start()
+
+		sender.queue().put(2)
+		assertEquals(2, replacement.queue().poll(MAX_WAIT, TimeUnit.MILLISECONDS))
+		assertTrue(sender.connections() >= 2)
+
+		sender.shutdown()
+		replacement.shutdown()
+	}
+}
@@ -0,0 +1,54 @@
+package com.github.kchard.service;
+
+import java.util.Collection;
+import java.util.Map;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs {@link EventBenchmark} with the GC profiler and fails if any disabled path allocates.
+ *
+ * @author chardk
+ */
+public class AllocationCheck {
+
+	//Allow for measurement noise, a single allocation is at least 16 bytes
+	private static final double MAX_BYTES_PER_OPERATION = 1.0;
+
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder().include(EventBenchmark.class.getSimpleName())
+		                                      .addProfiler(GCProfiler.class)
+		                                      .build();
+
+		Collection<RunResult> results = new Runner(options).run();
+
+		boolean allocated = false;
+		for(RunResult result : results) {
+			Map<String, Result> secondaryResults = result.getSecondaryResults();
+			Result allocation = secondaryResults.get("gc.alloc.rate.norm");
+			if(allocation == null) {
+				//Older versions of JMH prefix secondary results
+				allocation = secondaryResults.get("\u00b7gc.alloc.rate.norm");
+			}
+
+			String benchmark = result.getParams().getBenchmark();
+			if(allocation == null) {
+				System.err.println("No allocation rate reported for " + benchmark);
+				allocated = true;
+			} else if(allocation.getScore() > MAX_BYTES_PER_OPERATION) {
+				System.err.println(benchmark + " allocated " + allocation.getScore() + " bytes per operation");
+				allocated = true;
+			}
+		}
+
+		if(allocated) {
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package com.github.kchard.service;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures the cost of the event and trace hooks on the worker and lifecycle hot paths when they are disabled.
+ *
+ * @author chardk
+ *
+ * @see AllocationCheck
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class EventBenchmark {
+
+	private final Logger logger = LoggerFactory.getLogger(getClass().getName());
+
+	private AbstractService service;
+	private Runnable command;
+	private Object item;
+
+	@Setup
+	public void setUp() {
+		List<Runnable> commands = Collections.emptyList();
+		service = new CommandService(commands, commands, commands);
+		command = new Runnable() {
+
+			@Override
+			public void run() {
+			}
+		};
+		item = new Object();
+	}
+
+	@Benchmark
+	public void disabledItemEvent() {
+		service.emit(ServiceEvent.ITEM_CONSUMED, item);
+	}
+
+	@Benchmark
+	public void disabledCommandEvent() {
+		service.emit(ServiceEvent.COMMAND_STARTED, command);
+	}
+
+	@Benchmark
+	public void disabledTrace() {
+		logger.trace("Running: {}", command.getClass().getName());
+	}
+}
@@ -0,0 +1,142 @@
+package com.github.kchard.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares handing items between two threads through a {@link MappedQueue} with sending them through a {@link TransportSender}
+ * and {@link TransportReceiver} on the loopback address. The benchmark thread puts items, a consumer thread takes them, so the
+ * throughput is that of the whole hand-off once the queue has filled. Run with the transportBenchmark task.
+ *
+ * @author chardk
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TransportBenchmark {
+
+	@Param({"8", "256"})
+	public int payloadSize;
+
+	private byte[] payload;
+	private File file;
+	private MappedQueue<byte[]> mappedProducer;
+	private MappedQueue<byte[]> mappedConsumer;
+	private TransportReceiver<byte[]> receiver;
+	private TransportSender<byte[]> sender;
+	private Thread mappedDrain;
+	private Thread socketDrain;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		payload = new byte[payloadSize];
+
+		//Falls back to the temporary directory where there is no shared memory file system
+		File shm = new File("/dev/shm");
+		file = File.createTempFile("transport-benchmark", ".q", shm.isDirectory() ? shm : null);
+		mappedProducer = MappedQueue.create(file, 1 << 20, new BytesCodec());
+		mappedConsumer = MappedQueue.open(file, new BytesCodec());
+		mappedDrain = drain(mappedConsumer);
+
+		receiver = new TransportReceiver<byte[]>(new BytesCodec(), 0, 4096);
+		receiver.initialize();
+		receiver.start();
+		sender = new TransportSender<byte[]>(new BytesCodec(), receiver.port());
+		sender.initialize();
+		sender.start();
+		socketDrain = drain(receiver.queue());
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		mappedDrain.interrupt();
+		socketDrain.interrupt();
+		sender.shutdown();
+		receiver.shutdown();
+		mappedProducer.close();
+		mappedConsumer.close();
+		file.delete();
+	}
+
+	@Benchmark
+	public void mappedQueue() throws InterruptedException {
+		mappedProducer.put(payload);
+	}
+
+	@Benchmark
+	public void socketTransport() throws InterruptedException {
+		sender.queue().put(payload);
+	}
+
+	private static Thread drain(final BlockingQueue<byte[]> queue) {
+		Thread thread = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					while(true) {
+						queue.take();
+					}
+				} catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}, "benchmark-drain");
+		thread.setDaemon(true);
+		thread.start();
+		return thread;
+	}
+
+	/**
+	 * Copies the payload on both sides, as a codec of a real item type would
+	 */
+	private static final class BytesCodec implements BinaryCodec<byte[]>, Codec<byte[]> {
+
+		@Override
+		public int size(final byte[] item) {
+			return item.length;
+		}
+
+		@Override
+		public void encode(final byte[] item, final ByteBuffer target) {
+			target.put(item);
+		}
+
+		@Override
+		public byte[] decode(final ByteBuffer source) {
+			byte[] item = new byte[source.remaining()];
+			source.get(item);
+			return item;
+		}
+
+		@Override
+		public byte[] encode(final byte[] item) {
+			return item;
+		}
+
+		@Override
+		public byte[] decode(final byte[] bytes) {
+			return bytes;
+		}
+	}
+}
@@ -1,6 +1,9 @@
 package com.github.kchard.service;
 
+import java.io.IOException;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -21,6 +24,7 @@ import org.slf4j.LoggerFactory;
  * 	<li>A service may only transition to INITIALIZED if it is READY</li>
  *  <li>A service may only transition to STARTED if it is INITIALIZED or PENDING</li>
  *  <li>A service may only transition to SHUTDOWN if it is not shutdown already</li>
+ *  <li>A service may only transition back to READY, using {@link #reset()}, if it is SHUTDOWN or EXCEPTIONAL</li>
  * </ol>
  * 
  * <p>If a RuntimeException occurs during any of the state transitions and shutdownOnException is enabled, 
@@ -28,7 +32,11 @@ import org.slf4j.LoggerFactory;
  * 
  * <p>If a RuntimeException occurs during any of the state transitions and shutdownOnException is disabled, 
  * the service will enter the EXCEPTIONAL state and then rethrow the Exception. 
- * The only allowable action once a service has entered the EXCEPTIONAL state is shutdown.</p>
+ * The only allowable actions once a service has entered the EXCEPTIONAL state are shutdown and reset.</p>
+ * 
+ * <p>A service given a {@link WarmState} restores it from its {@link Checkpoint}, or rebuilds it if the checkpoint is not usable,
+ * before {@link #doInitialize()} is invoked. The state is saved to the checkpoint after {@link #doShutdown()} if the service
+ * was shutdown while PENDING or STARTED.</p>
  * 
  * <p>This class is thread safe.</p>
  *  
@@ -46,11 +54,19 @@ public abstract class AbstractService implements Service {
 	
 	private final String id;
 	private final String name; 
+	private final List<StateListener> stateListeners = new CopyOnWriteArrayList<StateListener>();
+	private volatile EventSink eventSink = EventSinks.noOp();
 	
 	private boolean shutdownOnException;
-	private State state;
-	private ActionTimes actionTimes;
-	private Exception e;
+	//Written while holding the lock, read without it so that monitors are not held up by a service that is busy changing state
+	private volatile State state;
+	private volatile ActionTimes actionTimes;
+	private volatile Exception e;
+	//Whether doShutdown has run since the service was last reset, an EXCEPTIONAL service may or may not have been shutdown
+	private volatile boolean shutdownRun;
+	private WarmState warmState;
+	private Checkpoint checkpoint;
+	private boolean restoredFromCheckpoint;
 	
 	public AbstractService() {
 		this(null);
@@ -81,7 +97,7 @@ public abstract class AbstractService implements Service {
 	 * @return The current state of the Service
 	 */
 	@Override
-	public final synchronized State currentState() {
+	public final State currentState() {
 		return state;
 	}
 	
@@ -89,15 +105,82 @@ public abstract class AbstractService implements Service {
 	 * @return The current state of the Service
 	 */
 	@Override
-	public final synchronized Exception exception() {
+	public final Exception exception() {
 		return e;
 	}
 	
 	@Override
-	public final synchronized ActionTimes actionTimes() {
+	public final ActionTimes actionTimes() {
 		return actionTimes;
 	}
 
+	/**
+	 * Registers a listener that will be notified after each {@link State} transition of this service.
+	 *
+	 * @param listener The listener to notify
+	 */
+	public final void addStateListener(final StateListener listener) {
+		stateListeners.add(listener);
+	}
+
+	public final void removeStateListener(final StateListener listener) {
+		stateListeners.remove(listener);
+	}
+
+	/**
+	 * Sets the sink that receives the {@link ServiceEvent}s of this service and its workers.
+	 *
+	 * @param eventSink The sink to deliver events to, or null to disable events
+	 */
+	public final void setEventSink(final EventSink eventSink) {
+		this.eventSink = eventSink == null ? EventSinks.noOp() : eventSink;
+	}
+
+	public final EventSink eventSink() {
+		return eventSink;
+	}
+
+	/**
+	 * Sets the state this service warms up when it is initialized. The state takes effect the next time the service is initialized.
+	 *
+	 * @param warmState The state, or null for none
+	 * @param checkpoint The checkpoint the state is restored from and saved to, or null to always rebuild the state
+	 */
+	public final synchronized void setWarmState(final WarmState warmState, final Checkpoint checkpoint) {
+		this.warmState = warmState;
+		this.checkpoint = checkpoint;
+	}
+
+	/**
+	 * @return true if the warm state was restored from its checkpoint the last time this service was initialized
+	 */
+	public final synchronized boolean restoredFromCheckpoint() {
+		return restoredFromCheckpoint;
+	}
+
+	/**
+	 * Delivers an event to this service's {@link EventSink} if the sink is enabled for it. This method never allocates.
+	 *
+	 * @param event The type of event
+	 * @param subject The object the event is about, see {@link ServiceEvent}
+	 */
+	protected final void emit(final ServiceEvent event, final Object subject) {
+		if(event == ServiceEvent.ITEM_PRODUCED || event == ServiceEvent.ITEM_CONSUMED) {
+			itemProcessed();
+		}
+		
+		EventSink sink = eventSink;
+		if(sink.isEnabled(event)) {
+			sink.onEvent(event, this, subject);
+		}
+	}
+
+	/**
+	 * Called by {@link #emit(ServiceEvent, Object)} for each item produced or consumed, whether or not the sink is enabled
+	 */
+	void itemProcessed() {
+	}
+
     /**
      * Flag to instruct this service to call shutdown on itself in the event of an exception
      */
@@ -118,10 +201,15 @@ public abstract class AbstractService implements Service {
      * @param e
      */
     protected final synchronized void reportException(Exception e) {
+        State previous = state;
         this.state = State.EXCEPTIONAL;
         this.e = e;
         actionTimes = ActionTimes.exception(actionTimes);
-        shutdown();
+        try {
+            shutdown();
+        } finally {
+            fireStateChanged(previous);
+        }
     }
 
     /**
@@ -144,6 +232,7 @@ public abstract class AbstractService implements Service {
         if(State.PENDING.equals(state)) {
             state = State.STARTED;
             actionTimes = ActionTimes.start(actionTimes);
+            fireStateChanged(State.PENDING);
         } else {
             logger.warn("Attempting to update a service to STARTED that is not PENDING. This will have no affect.");
         }
@@ -155,9 +244,12 @@ public abstract class AbstractService implements Service {
 	 */
 	@Override
 	public final synchronized void initialize() {
-		logger.debug("Initializing service: " + name);
+		logger.debug("Initializing service: {}", name);
+		emit(ServiceEvent.INITIALIZING, state);
 		if(State.READY.equals(state)) {
+			State previous = state;
 			try {
+				warmUp();
 				doInitialize();
 				//This check is necessary in case doInitialize calls start or shutdown
 				if(State.READY.equals(state)) {
@@ -173,6 +265,8 @@ public abstract class AbstractService implements Service {
 				} else {
 					throw e;
 				}
+			} finally {
+				fireStateChanged(previous);
 			}
 
 		} else {
@@ -191,8 +285,10 @@ public abstract class AbstractService implements Service {
 	 */
 	@Override
 	public final synchronized void start() {
-		logger.debug("Starting up service: " + name);
+		logger.debug("Starting up service: {}", name);
+		emit(ServiceEvent.STARTING, state);
 		if(State.INITIALIZED.equals(state)) {
+			State previous = state;
 			try {
 				doStart();
 				//This check is necessary in case doStart calls shutdown
@@ -213,6 +309,8 @@ public abstract class AbstractService implements Service {
 				} else {
 					throw e;
 				}
+			} finally {
+				fireStateChanged(previous);
 			}
 		} else {
 			logger.warn("Attempting to start a service that has already been started or was never initialized. It will not be started again.");
@@ -230,10 +328,15 @@ public abstract class AbstractService implements Service {
 	 */
 	@Override
 	public final synchronized void shutdown() {
-		logger.debug("Shutting down service: " + name);
+		logger.debug("Shutting down service: {}", name);
+		emit(ServiceEvent.SHUTTING_DOWN, state);
 		if (!State.SHUTDOWN.equals(state)) {
+			State previous = state;
 			try {
 				doShutdown();
+				if(previous.isPending() || previous.isStarted()) {
+					saveCheckpoint();
+				}
 			} catch(RuntimeException e) {
                 actionTimes = ActionTimes.exception(actionTimes);
                 state = State.EXCEPTIONAL;
@@ -244,7 +347,10 @@ public abstract class AbstractService implements Service {
 					state = State.SHUTDOWN;
 				}
 
+				shutdownRun = true;
+
                 actionTimes = ActionTimes.shutdown(actionTimes);
+                fireStateChanged(previous);
 			}
 			
 		} else {
@@ -252,8 +358,91 @@ public abstract class AbstractService implements Service {
 		}
 	}
 	
+	/**
+	 * @return Whether {@link #shutdown()} has run since the service was created or last reset
+	 */
+	final boolean hasShutdown() {
+		return shutdownRun;
+	}
+
 	/**
 	 * This method is invoked during the transition from SHUTDOWN from {@link #shutdown()}
 	 */
 	protected abstract void doShutdown();
+
+	/**
+	 * Returns a SHUTDOWN or EXCEPTIONAL service to READY so that it can be initialized and started again.
+	 * The exception is cleared and the action times other than the creation time are reset.
+	 */
+	public final synchronized void reset() {
+		logger.debug("Resetting service: {}", name);
+		if(State.SHUTDOWN.equals(state) || State.EXCEPTIONAL.equals(state)) {
+			State previous = state;
+			state = State.READY;
+			e = null;
+			shutdownRun = false;
+			actionTimes = new ActionTimes(actionTimes.created(), -1, -1, -1, -1);
+			fireStateChanged(previous);
+		} else {
+			logger.warn("Attempting to reset a service that is still running. It will not be reset.");
+		}
+	}
+
+	/**
+	 * Shuts the service down if necessary, resets it and then initializes and starts it again.
+	 */
+	public final synchronized void restart() {
+		if(!State.SHUTDOWN.equals(state) && !State.EXCEPTIONAL.equals(state)) {
+			shutdown();
+		}
+
+		reset();
+		initialize();
+		start();
+	}
+
+	private void warmUp() {
+		restoredFromCheckpoint = false;
+		if(warmState == null) {
+			return;
+		}
+
+		restoredFromCheckpoint = checkpoint != null && checkpoint.restore(warmState);
+		if(!restoredFromCheckpoint) {
+			logger.info("Rebuilding the warm state of {}", name);
+			warmState.rebuild();
+		}
+	}
+
+	private void saveCheckpoint() {
+		if(warmState == null || checkpoint == null) {
+			return;
+		}
+
+		try {
+			checkpoint.save(warmState);
+		} catch(IOException e) {
+			//The state is rebuilt on the next initialization, which must not prevent the shutdown
+			logger.error("Failed to save the warm state of {}: {}", name, e.getMessage());
+		} catch(RuntimeException e) {
+			logger.error("Failed to save the warm state of {}: {}", name, e.getMessage());
+		}
+	}
+
+	private void fireStateChanged(final State previous) {
+		if(previous.equals(state)) {
+			return;
+		}
+
+		emit(ServiceEvent.STATE_CHANGED, state);
+
+		for(StateListener listener : stateListeners) {
+			try {
+				listener.stateChanged(this, previous, state);
+			} catch(RuntimeException e) {
+				//A misbehaving listener must not interfere with the state transition
+				logger.error("Exception occurred in state listener: " + e.getMessage());
+			}
+		}
+	}
 }
@@ -0,0 +1,17 @@
+package com.github.kchard.service;
+
+import java.util.List;
+
+/**
+ * Consumes items in batches. The list passed to {@link #consume(List)} is reused by the worker once the call returns,
+ * so it must not be retained.
+ *
+ * @author chardk
+ *
+ * @param <T>
+ * @see BatchConsumerWorkerService
+ */
+public interface BatchConsumer<T> {
+
+	void consume(List<T> batch);
+}
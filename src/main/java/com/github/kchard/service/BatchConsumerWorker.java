@@ -0,0 +1,92 @@
+package com.github.kchard.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A worker that waits for an item, takes as many further items as are already queued up to the batch size chosen by
+ * its {@link BatchSizeController}, and passes them to a {@link BatchConsumer} in a single call.
+ *
+ * @author chardk
+ *
+ * @param <T>
+ * 
+ * @see WorkerFactory
+ * @see WorkerService
+ */
+public class BatchConsumerWorker<T> implements Worker {
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+	
+	private final BatchConsumer<T> consumer;
+	private final BlockingQueue<T> workQueue;
+	private final BatchSizeController controller;
+	private final BatchSizeController.Window window;
+	private final List<T> batch = new ArrayList<T>();
+	
+	private final AbstractService owner;
+	
+	private volatile boolean run = true;
+	
+	/**
+	 * @param consumer The consumer to invoke
+	 * @param workQueue The queue to take items from
+	 * @param controller The controller that chooses the batch size
+	 * @param owner The service whose {@link EventSink} receives this worker's events, or null for no events
+	 */
+	public BatchConsumerWorker(final BatchConsumer<T> consumer, final BlockingQueue<T> workQueue, final BatchSizeController controller, final AbstractService owner) {
+		this.consumer = consumer;
+		this.workQueue = workQueue;
+		this.controller = controller;
+		this.window = controller.newWindow();
+		this.owner = owner;
+	}
+	
+	@Override
+	public final void run() {
+		while(run) {
+			try {
+				batch.clear();
+				batch.add(workQueue.take());
+				workQueue.drainTo(batch, controller.batchSize() - 1);
+				int queueDepth = workQueue.size();
+				
+				long start = System.nanoTime();
+				consumer.consume(batch);
+				window.record(System.nanoTime() - start, queueDepth);
+				if(owner != null) {
+					//The batch list is reused, so emit each item rather than the list itself
+					for(int i = 0; i < batch.size(); i++) {
+						owner.emit(ServiceEvent.ITEM_CONSUMED, batch.get(i));
+					}
+				}
+			} catch (InterruptedException e) {
+				//This handles the case when BlockingQueue.take is interrupted
+				
+				//Stop the worker 
+				cancel();
+				
+				//Preserve the interrupted status of the Thread
+				Thread.currentThread().interrupt();
+				
+			} catch (RuntimeException e) {
+				//In the case of any other exception, stop the Worker.
+				//If more work needs to be done, the code that started this Worker can start additional Workers at its discretion
+				cancel();
+				
+				logger.info("Shutting down {} due to an Exception: {}", getClass(), e.getMessage());
+				if(owner != null) {
+					owner.emit(ServiceEvent.WORKER_STOPPED, e);
+				}
+			}
+		}
+	}
+	
+	public final void cancel() {
+		run = false;
+	}
+}
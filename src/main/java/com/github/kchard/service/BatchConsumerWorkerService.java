@@ -0,0 +1,54 @@
+package com.github.kchard.service;
+
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A worker service whose workers consume items in batches sized by a shared {@link BatchSizeController}.
+ *
+ * @author chardk
+ *
+ * @param <T>
+ * @see BatchConsumer
+ * @see BatchConsumerWorker
+ * @see BatchSizeController
+ */
+public class BatchConsumerWorkerService<T> extends WorkerService {
+
+	private final BlockingQueue<T> workQueue;
+	private final BatchSizeController controller;
+
+	public BatchConsumerWorkerService(final BatchConsumer<T> consumer, final BlockingQueue<T> workQueue, final BatchSizeController controller) {
+		this(consumer, workQueue, controller, DEFAULT_MAX_WORKERS);
+	}
+	
+	public BatchConsumerWorkerService(final BatchConsumer<T> consumer, final BlockingQueue<T> workQueue, final BatchSizeController controller, final int maxWorkers) {
+		super(new WorkerFactory() {
+
+			@Override
+			public Worker createWorker(AbstractService owner) {
+				return new BatchConsumerWorker<T>(consumer, workQueue, controller, owner);
+			}
+		}, maxWorkers);
+		this.workQueue = workQueue;
+		this.controller = controller;
+	}
+
+	public final BatchSizeController controller() {
+		return controller;
+	}
+
+	/**
+	 * @return The batch size currently chosen by the controller
+	 */
+	public final int batchSize() {
+		return controller.batchSize();
+	}
+
+	/**
+	 * @return The number of items waiting in the work queue
+	 */
+	@Override
+	public int queueDepth() {
+		return workQueue.size();
+	}
+}
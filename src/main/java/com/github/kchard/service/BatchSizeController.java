@@ -0,0 +1,161 @@
+package com.github.kchard.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Chooses how many items a {@link BatchConsumerWorker} takes from its queue for each call to its {@link BatchConsumer}.</p>
+ *
+ * <p>The controller adjusts the batch size once per window of batches recorded by a worker, additive increase and multiplicative decrease:
+ * when the p99 latency of the consume calls in the window exceeds the target the batch size is halved, otherwise if items
+ * were left waiting in the queue after most batches the batch size grows by one. Under light load the queue is rarely
+ * backed up so batches stay small, under heavy load they grow until the latency target is reached.</p>
+ *
+ * <p>This class is thread safe, a single controller is shared by all the workers of a service. Each worker records its
+ * batches in its own {@link Window}, so recording never contends with other workers, and the batch size is updated
+ * without locking when a window completes.</p>
+ *
+ * @author chardk
+ *
+ * @see BatchConsumerWorkerService
+ */
+public class BatchSizeController {
+
+	static final int DEFAULT_WINDOW = 32;
+
+	private final long targetNanos;
+	private final int minBatchSize;
+	private final int maxBatchSize;
+	private final int window;
+
+	private final AtomicInteger batchSize;
+	private final AtomicLong adjustments = new AtomicLong();
+	private volatile long lastP99Nanos = 0L;
+
+	/**
+	 * @param targetP99 The p99 latency of a consume call the controller aims for
+	 * @param unit The unit of time the target is specified in
+	 * @param minBatchSize The smallest batch size
+	 * @param maxBatchSize The largest batch size
+	 */
+	public BatchSizeController(final long targetP99, final TimeUnit unit, final int minBatchSize, final int maxBatchSize) {
+		this(targetP99, unit, minBatchSize, maxBatchSize, DEFAULT_WINDOW);
+	}
+
+	BatchSizeController(final long targetP99, final TimeUnit unit, final int minBatchSize, final int maxBatchSize, final int window) {
+		if(minBatchSize < 1 || maxBatchSize < minBatchSize) {
+			throw new IllegalArgumentException("Invalid batch sizes: " + minBatchSize + " to " + maxBatchSize);
+		}
+
+		this.targetNanos = unit.toNanos(targetP99);
+		this.minBatchSize = minBatchSize;
+		this.maxBatchSize = maxBatchSize;
+		this.window = window;
+		this.batchSize = new AtomicInteger(minBatchSize);
+	}
+
+	/**
+	 * @param batchSize The batch size to use for every batch
+	 * @return A controller that never changes the batch size
+	 */
+	public static BatchSizeController fixed(final int batchSize) {
+		return new BatchSizeController(Long.MAX_VALUE, TimeUnit.NANOSECONDS, batchSize, batchSize);
+	}
+
+	/**
+	 * @return The number of items to take for the next batch
+	 */
+	public int batchSize() {
+		return batchSize.get();
+	}
+
+	public long target(final TimeUnit unit) {
+		return unit.convert(targetNanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * @return The p99 latency of the consume calls in the last window completed by any worker
+	 */
+	public long lastP99(final TimeUnit unit) {
+		return unit.convert(lastP99Nanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * @return The number of times the batch size has changed
+	 */
+	public long adjustments() {
+		return adjustments.get();
+	}
+
+	/**
+	 * @return A new window for a single worker to record its batches in
+	 */
+	public Window newWindow() {
+		return new Window();
+	}
+
+	private void adjust(final long p99, final int samples, final int backedUp) {
+		int size;
+		int next;
+		do {
+			size = batchSize.get();
+			next = size;
+			if(p99 > targetNanos) {
+				next = Math.max(minBatchSize, size / 2);
+			} else if(backedUp * 2 > samples) {
+				next = Math.min(maxBatchSize, size + 1);
+			}
+		} while(next != size && !batchSize.compareAndSet(size, next));
+
+		if(next != size) {
+			adjustments.incrementAndGet();
+		}
+		lastP99Nanos = p99;
+	}
+
+	/**
+	 * <p>The batches recorded by a single worker. When the window is full it adjusts the batch size of its controller and
+	 * starts over.</p>
+	 *
+	 * <p>This class is not thread safe, each worker owns its window.</p>
+	 */
+	public final class Window {
+
+		private final LatencyRecorder latencies = new LatencyRecorder();
+
+		private int samples = 0;
+		private int backedUp = 0;
+
+		private Window() {
+		}
+
+		/**
+		 * Records a completed batch and adjusts the batch size of the controller when the window is full
+		 *
+		 * @param latencyNanos The time taken by the consume call
+		 * @param queueDepth The number of items left in the queue once the batch was taken
+		 */
+		public void record(final long latencyNanos, final int queueDepth) {
+			latencies.record(latencyNanos, TimeUnit.NANOSECONDS);
+			samples++;
+			if(queueDepth > 0) {
+				backedUp++;
+			}
+
+			if(samples < window) {
+				return;
+			}
+
+			adjust(latencies.percentile(99.0, TimeUnit.NANOSECONDS), samples, backedUp);
+			latencies.reset();
+			samples = 0;
+			backedUp = 0;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "BatchSizeController [batchSize=" + batchSize.get() + ", targetNanos=" + targetNanos + ", lastP99Nanos=" + lastP99Nanos + "]";
+	}
+}
@@ -0,0 +1,31 @@
+package com.github.kchard.service;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <p>Writes items directly into and reads them directly out of a buffer, so that a {@link MappedQueue} can hand them off
+ * without an intermediate copy.</p>
+ *
+ * @author chardk
+ *
+ * @param <T>
+ * @see MappedQueue
+ */
+public interface BinaryCodec<T> {
+
+	/**
+	 * @return The exact number of bytes {@link #encode(Object, ByteBuffer)} writes for the item
+	 */
+	int size(T item);
+
+	/**
+	 * Writes the item at the buffer's position, the buffer has exactly {@link #size(Object)} bytes remaining
+	 */
+	void encode(T item, ByteBuffer target);
+
+	/**
+	 * Reads an item from the buffer's position, the buffer's remaining bytes are those written by {@link #encode(Object, ByteBuffer)}.
+	 * The buffer is only valid until this method returns.
+	 */
+	T decode(ByteBuffer source);
+}
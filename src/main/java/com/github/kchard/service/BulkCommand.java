@@ -0,0 +1,130 @@
+package com.github.kchard.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>A command that moves up to a number of items each time it runs, used to let a scheduled service keep up with a queue
+ * that fills faster than one item per tick.</p>
+ *
+ * <p>Each run stops once the maximum number of items has been moved, once there is nothing more to move or, if a time budget
+ * is set, once the budget has been used. The number of items moved per tick is recorded so that the schedule and the
+ * maximum can be tuned to the load.</p>
+ *
+ * @author chardk
+ *
+ * @see DrainCommand
+ * @see ProduceCommand
+ */
+public abstract class BulkCommand implements Runnable {
+
+	private final int maxItems;
+	private final long budgetNanos;
+	private final Clock clock;
+
+	private final AtomicLong ticks = new AtomicLong();
+	private final AtomicLong items = new AtomicLong();
+	private final AtomicLong budgetExhausted = new AtomicLong();
+	private volatile int lastTick;
+	private volatile int maxTick;
+
+	/**
+	 * @param maxItems The most items moved per tick
+	 * @param budget The time a tick may take, 0 for no limit
+	 * @param unit The unit of time the budget is specified in
+	 * @param clock The clock used to measure the budget
+	 */
+	protected BulkCommand(final int maxItems, final long budget, final TimeUnit unit, final Clock clock) {
+		if(maxItems < 1) {
+			throw new IllegalArgumentException("A tick must move at least one item: " + maxItems);
+		}
+
+		this.maxItems = maxItems;
+		this.budgetNanos = unit.toNanos(budget);
+		this.clock = clock;
+	}
+
+	@Override
+	public final void run() {
+		long deadline = budgetNanos > 0 ? clock.nanoTime() + budgetNanos : 0L;
+		int moved = 0;
+		try {
+			while(moved < maxItems) {
+				if(!moveOne()) {
+					break;
+				}
+
+				moved++;
+				if(deadline != 0L && moved < maxItems && clock.nanoTime() - deadline >= 0) {
+					budgetExhausted.incrementAndGet();
+					break;
+				}
+			}
+		} finally {
+			ticks.incrementAndGet();
+			items.addAndGet(moved);
+			lastTick = moved;
+			if(moved > maxTick) {
+				maxTick = moved;
+			}
+		}
+	}
+
+	/**
+	 * @return True if an item was moved, false if there was nothing to move
+	 */
+	protected abstract boolean moveOne();
+
+	public final int maxItems() {
+		return maxItems;
+	}
+
+	/**
+	 * @return The number of times the command has run
+	 */
+	public final long ticks() {
+		return ticks.get();
+	}
+
+	/**
+	 * @return The number of items moved across all ticks
+	 */
+	public final long items() {
+		return items.get();
+	}
+
+	/**
+	 * @return The number of items moved by the last tick
+	 */
+	public final int lastTick() {
+		return lastTick;
+	}
+
+	/**
+	 * @return The most items moved by a single tick
+	 */
+	public final int maxTick() {
+		return maxTick;
+	}
+
+	/**
+	 * @return The mean number of items moved per tick
+	 */
+	public final double itemsPerTick() {
+		long count = ticks.get();
+		return count == 0 ? 0.0 : (double) items.get() / count;
+	}
+
+	/**
+	 * @return The number of ticks cut short by the time budget
+	 */
+	public final long budgetExhausted() {
+		return budgetExhausted.get();
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + " [maxItems=" + maxItems + ", ticks=" + ticks() + ", itemsPerTick=" + itemsPerTick()
+				+ ", maxTick=" + maxTick + ", budgetExhausted=" + budgetExhausted() + "]";
+	}
+}
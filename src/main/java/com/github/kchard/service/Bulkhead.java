@@ -0,0 +1,98 @@
+package com.github.kchard.service;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Limits the number of concurrent calls to a dependency so that a slow dependency cannot tie up every worker thread.</p>
+ *
+ * <p>This class is thread safe.</p>
+ *
+ * @author chardk
+ *
+ * @see GuardedConsumer
+ * @see GuardedProducer
+ */
+public class Bulkhead {
+
+	private final int maxConcurrent;
+	private final long maxWaitNanos;
+	private final Semaphore permits;
+	private final AtomicLong rejected = new AtomicLong();
+
+	/**
+	 * Creates a bulkhead that rejects calls immediately when it is full
+	 *
+	 * @param maxConcurrent The number of calls permitted at the same time
+	 */
+	public Bulkhead(final int maxConcurrent) {
+		this(maxConcurrent, 0L, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @param maxConcurrent The number of calls permitted at the same time
+	 * @param maxWait The time a call waits for the bulkhead before it is rejected
+	 * @param unit The unit of time the wait is specified in
+	 */
+	public Bulkhead(final int maxConcurrent, final long maxWait, final TimeUnit unit) {
+		if(maxConcurrent < 1) {
+			throw new IllegalArgumentException("At least one concurrent call must be permitted: " + maxConcurrent);
+		}
+
+		this.maxConcurrent = maxConcurrent;
+		this.maxWaitNanos = unit.toNanos(maxWait);
+		this.permits = new Semaphore(maxConcurrent);
+	}
+
+	/**
+	 * Waits up to the maximum wait to enter the bulkhead
+	 *
+	 * @return true if the call may proceed, in which case {@link #exit()} must be called once it completes
+	 */
+	public boolean tryEnter() {
+		boolean entered;
+		try {
+			entered = maxWaitNanos > 0 ? permits.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS) : permits.tryAcquire();
+		} catch(InterruptedException e) {
+			//Preserve the interrupted status of the Thread
+			Thread.currentThread().interrupt();
+			entered = false;
+		}
+
+		if(!entered) {
+			rejected.incrementAndGet();
+		}
+
+		return entered;
+	}
+
+	/**
+	 * Waits as long as necessary to enter the bulkhead, {@link #exit()} must be called once the call completes
+	 */
+	public void enter() throws InterruptedException {
+		permits.acquire();
+	}
+
+	public void exit() {
+		permits.release();
+	}
+
+	public int maxConcurrent() {
+		return maxConcurrent;
+	}
+
+	/**
+	 * @return The number of calls currently inside the bulkhead
+	 */
+	public int active() {
+		return maxConcurrent - permits.availablePermits();
+	}
+
+	/**
+	 * @return The number of calls rejected
+	 */
+	public long rejected() {
+		return rejected.get();
+	}
+}
@@ -0,0 +1,328 @@
+package com.github.kchard.service;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Samples the calls the workers of a {@link WorkerService} make to their {@link Consumer} or {@link Producer}, to tell
+ * which service is slow and why without attaching a profiler.</p>
+ *
+ * <p>One call in every {@code sampleEvery} is measured. For a sampled call the profiler records the wall time spent in the
+ * work queue, taking or putting the item, and the wall time, CPU time, blocked time, waiting time and allocated bytes of the
+ * user code, all measured on the worker thread through the {@link ThreadMXBean}. A call whose CPU time is well below its wall
+ * time is waiting on something, the blocked and waiting times tell whether that is a monitor or a wait, park or sleep.</p>
+ *
+ * <p>The cost of a sample is dominated by reading the blocked and waiting times, which takes a snapshot of the thread. Measuring
+ * them enables thread contention monitoring for the whole JVM, so it can be turned off, in which case they are reported as -1.
+ * CPU time and allocated bytes are read from the current thread only and are cheap. Calls that are not sampled cost an
+ * increment and a comparison. Blocked and waiting times have millisecond resolution, they are only meaningful as an average
+ * over many samples. Values the JVM does not support are reported as -1.</p>
+ *
+ * <p>This class is thread safe, the results are read without stopping the workers and are approximate.</p>
+ *
+ * @author chardk
+ *
+ * @see WorkerService#setProfiler(CallProfiler)
+ * @see ServiceBuilder#withProfiling(int)
+ */
+public final class CallProfiler {
+
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+	private final int sampleEvery;
+	private final boolean cpuTime;
+	private final boolean contention;
+	private final boolean allocation;
+
+	private final AtomicLong samples = new AtomicLong();
+	private final AtomicLong queueNanos = new AtomicLong();
+	private final AtomicLong callNanos = new AtomicLong();
+	private final AtomicLong cpuNanos = new AtomicLong();
+	private final AtomicLong blockedMillis = new AtomicLong();
+	private final AtomicLong waitedMillis = new AtomicLong();
+	private final AtomicLong allocatedBytes = new AtomicLong();
+
+	/**
+	 * Creates a profiler that measures blocked and waiting time
+	 *
+	 * @param sampleEvery The number of calls per sample, 1 to sample every call
+	 */
+	public CallProfiler(final int sampleEvery) {
+		this(sampleEvery, true);
+	}
+
+	/**
+	 * @param sampleEvery The number of calls per sample, 1 to sample every call
+	 * @param measureContention true to measure blocked and waiting time, which enables thread contention monitoring for the JVM
+	 */
+	public CallProfiler(final int sampleEvery, final boolean measureContention) {
+		if(sampleEvery < 1) {
+			throw new IllegalArgumentException("At least one call per sample is required: " + sampleEvery);
+		}
+
+		this.sampleEvery = sampleEvery;
+		this.cpuTime = THREADS.isCurrentThreadCpuTimeSupported() && THREADS.isThreadCpuTimeEnabled();
+		this.contention = measureContention && enableContentionMonitoring();
+		this.allocation = isAllocationSupported();
+	}
+
+	private static boolean enableContentionMonitoring() {
+		if(!THREADS.isThreadContentionMonitoringSupported()) {
+			return false;
+		}
+
+		if(!THREADS.isThreadContentionMonitoringEnabled()) {
+			THREADS.setThreadContentionMonitoringEnabled(true);
+		}
+
+		return true;
+	}
+
+	private static boolean isAllocationSupported() {
+		if(!(THREADS instanceof com.sun.management.ThreadMXBean)) {
+			return false;
+		}
+
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+		return threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled();
+	}
+
+	/**
+	 * @return A probe for the calling worker thread, a probe must only be used by the thread that created it
+	 */
+	public Probe probe() {
+		return new Probe(Thread.currentThread().getId());
+	}
+
+	/**
+	 * @return A probe for the calling worker thread of the service, or null if the service is not profiled
+	 */
+	static Probe probe(final AbstractService owner) {
+		if(!(owner instanceof WorkerService)) {
+			return null;
+		}
+
+		CallProfiler profiler = ((WorkerService) owner).profiler();
+		return profiler == null ? null : profiler.probe();
+	}
+
+	public int sampleEvery() {
+		return sampleEvery;
+	}
+
+	/**
+	 * @return The number of calls measured
+	 */
+	public long samples() {
+		return samples.get();
+	}
+
+	/**
+	 * @param unit The unit of time to report in
+	 * @return The mean time a sampled call spent taking its item from, or putting its item on, the work queue
+	 */
+	public double meanQueueTime(final TimeUnit unit) {
+		return mean(queueNanos.get(), TimeUnit.NANOSECONDS, unit);
+	}
+
+	/**
+	 * @param unit The unit of time to report in
+	 * @return The mean wall time of a sampled call to the user code
+	 */
+	public double meanCallTime(final TimeUnit unit) {
+		return mean(callNanos.get(), TimeUnit.NANOSECONDS, unit);
+	}
+
+	/**
+	 * @param unit The unit of time to report in
+	 * @return The mean CPU time of a sampled call to the user code, or -1 if CPU time is not supported
+	 */
+	public double meanCpuTime(final TimeUnit unit) {
+		return cpuTime ? mean(cpuNanos.get(), TimeUnit.NANOSECONDS, unit) : -1.0;
+	}
+
+	/**
+	 * @param unit The unit of time to report in
+	 * @return The mean time a sampled call to the user code was blocked entering a monitor, or -1 if not measured
+	 */
+	public double meanBlockedTime(final TimeUnit unit) {
+		return contention ? mean(blockedMillis.get(), TimeUnit.MILLISECONDS, unit) : -1.0;
+	}
+
+	/**
+	 * @param unit The unit of time to report in
+	 * @return The mean time a sampled call to the user code waited, parked or slept, or -1 if not measured
+	 */
+	public double meanWaitedTime(final TimeUnit unit) {
+		return contention ? mean(waitedMillis.get(), TimeUnit.MILLISECONDS, unit) : -1.0;
+	}
+
+	/**
+	 * @return The share of the wall time of the user code that was spent on the CPU, or -1 if CPU time is not supported
+	 */
+	public double cpuRatio() {
+		long wall = callNanos.get();
+		if(!cpuTime) {
+			return -1.0;
+		}
+
+		return wall == 0 ? 0.0 : (double) cpuNanos.get() / wall;
+	}
+
+	/**
+	 * @return The mean number of bytes allocated by a sampled call to the user code, or -1 if allocation is not measured
+	 */
+	public double allocatedBytesPerItem() {
+		if(!allocation) {
+			return -1.0;
+		}
+
+		long count = samples.get();
+		return count == 0 ? 0.0 : (double) allocatedBytes.get() / count;
+	}
+
+	/**
+	 * Discards all samples
+	 */
+	public void reset() {
+		samples.set(0L);
+		queueNanos.set(0L);
+		callNanos.set(0L);
+		cpuNanos.set(0L);
+		blockedMillis.set(0L);
+		waitedMillis.set(0L);
+		allocatedBytes.set(0L);
+	}
+
+	private double mean(final long total, final TimeUnit totalUnit, final TimeUnit unit) {
+		long count = samples.get();
+		if(count == 0) {
+			return 0.0;
+		}
+
+		return (double) totalUnit.toNanos(total) / count / unit.toNanos(1L);
+	}
+
+	private static long allocatedBytes(final long threadId) {
+		return ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(threadId);
+	}
+
+	/**
+	 * @return The means in microseconds, for logging
+	 */
+	public String report() {
+		TimeUnit unit = TimeUnit.MICROSECONDS;
+		return String.format("samples=%d, queue=%.1fus, call=%.1fus, cpu=%.1fus, blocked=%.1fus, waited=%.1fus, cpuRatio=%.2f, bytesPerItem=%.0f",
+				samples(), meanQueueTime(unit), meanCallTime(unit), meanCpuTime(unit), meanBlockedTime(unit), meanWaitedTime(unit), cpuRatio(), allocatedBytesPerItem());
+	}
+
+	@Override
+	public String toString() {
+		return "CallProfiler [sampleEvery=" + sampleEvery + ", " + report() + "]";
+	}
+
+	/**
+	 * <p>Measures the calls of a single worker thread. For each call the worker asks {@link #sample()} whether to measure it and,
+	 * if so, brackets the queue operation and the user code and then calls {@link #record()}. A sample that is not recorded,
+	 * because the user code threw, is discarded by the next call to {@link #sample()}.</p>
+	 */
+	public final class Probe {
+
+		private final long threadId;
+
+		private int calls;
+		private long queueStarted;
+		private long queue;
+		private long callStarted;
+		private long call;
+		private long cpuStarted;
+		private long cpu;
+		private long blockedStarted;
+		private long blocked;
+		private long waitedStarted;
+		private long waited;
+		private long allocatedStarted;
+		private long allocated;
+
+		private Probe(final long threadId) {
+			this.threadId = threadId;
+		}
+
+		/**
+		 * @return true if the current call is to be measured
+		 */
+		public boolean sample() {
+			if(++calls < sampleEvery) {
+				return false;
+			}
+
+			calls = 0;
+			queue = 0L;
+			call = 0L;
+			cpu = 0L;
+			blocked = 0L;
+			waited = 0L;
+			allocated = 0L;
+			return true;
+		}
+
+		public void queueStarted() {
+			queueStarted = System.nanoTime();
+		}
+
+		public void queueEnded() {
+			queue += System.nanoTime() - queueStarted;
+		}
+
+		public void callStarted() {
+			if(contention) {
+				ThreadInfo info = THREADS.getThreadInfo(threadId);
+				blockedStarted = info.getBlockedTime();
+				waitedStarted = info.getWaitedTime();
+			}
+
+			if(allocation) {
+				allocatedStarted = allocatedBytes(threadId);
+			}
+
+			if(cpuTime) {
+				cpuStarted = THREADS.getCurrentThreadCpuTime();
+			}
+
+			callStarted = System.nanoTime();
+		}
+
+		public void callEnded() {
+			call += System.nanoTime() - callStarted;
+			if(cpuTime) {
+				cpu += THREADS.getCurrentThreadCpuTime() - cpuStarted;
+			}
+
+			if(allocation) {
+				allocated += allocatedBytes(threadId) - allocatedStarted;
+			}
+
+			if(contention) {
+				ThreadInfo info = THREADS.getThreadInfo(threadId);
+				blocked += info.getBlockedTime() - blockedStarted;
+				waited += info.getWaitedTime() - waitedStarted;
+			}
+		}
+
+		/**
+		 * Adds the measurements of the current call to the profiler
+		 */
+		public void record() {
+			queueNanos.addAndGet(queue);
+			callNanos.addAndGet(call);
+			cpuNanos.addAndGet(cpu);
+			blockedMillis.addAndGet(blocked);
+			waitedMillis.addAndGet(waited);
+			allocatedBytes.addAndGet(allocated);
+			samples.incrementAndGet();
+		}
+	}
+}
@@ -0,0 +1,21 @@
+package com.github.kchard.service;
+
+/**
+ * <p>A {@link Producer} that is told when its worker is cancelled, so that a worker blocked in the producer can be stopped
+ * promptly even when the producer does not respond to interruption.</p>
+ *
+ * @author chardk
+ *
+ * @param <T>
+ * @see CancellationToken
+ * @see ProducerWorker
+ */
+public interface CancellableProducer<T> {
+
+	/**
+	 * @param token The token of the calling worker, the same token is passed to every call the worker makes
+	 * @return The item produced, or null if the token was cancelled before an item could be produced
+	 * @throws java.util.concurrent.CancellationException To give up once the token has been cancelled
+	 */
+	T produce(CancellationToken token);
+}
@@ -0,0 +1,113 @@
+package com.github.kchard.service;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>Tells a {@link CancellableProducer} that its worker has been cancelled and by when it should return.</p>
+ *
+ * <p>A producer that blocks in a call that ignores interruption, such as a read from a socket, can register an action with
+ * {@link #onCancel(Runnable)} that unblocks it, for example by closing the socket, or bound the call by {@link #remaining(TimeUnit)}.
+ * A producer that loops should check {@link #isCancelled()}.</p>
+ *
+ * <p>This class is thread safe. Cancel actions run once, on the thread that cancels the token.</p>
+ *
+ * @author chardk
+ *
+ * @see CancellableProducer
+ * @see WorkerService#setShutdownTimeout(long, TimeUnit)
+ */
+public final class CancellationToken {
+
+	private final Logger logger = LoggerFactory.getLogger(this.getClass().getName());
+
+	private final List<Runnable> actions = new CopyOnWriteArrayList<Runnable>();
+
+	private volatile boolean cancelled = false;
+	private volatile long deadlineNanos;
+
+	/**
+	 * @return true once the token has been cancelled
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * @param unit The unit of time to report in
+	 * @return The time left before the producer should have returned, 0 if it is overdue, or {@link Long#MAX_VALUE} if the token has not been cancelled
+	 */
+	public long remaining(final TimeUnit unit) {
+		if(!cancelled) {
+			return Long.MAX_VALUE;
+		}
+
+		return unit.convert(Math.max(0L, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * @throws CancellationException If the token has been cancelled
+	 */
+	public void throwIfCancelled() {
+		if(cancelled) {
+			throw new CancellationException("The worker has been cancelled");
+		}
+	}
+
+	/**
+	 * Registers an action that runs when the token is cancelled, or immediately if it already has been. Actions are kept until
+	 * the token is cancelled, so register one per resource rather than one per call, or remove it once the call returns.
+	 *
+	 * @param action The action that unblocks the producer
+	 */
+	public void onCancel(final Runnable action) {
+		actions.add(action);
+		if(cancelled && actions.remove(action)) {
+			run(action);
+		}
+	}
+
+	/**
+	 * @param action A previously registered action that should no longer run
+	 */
+	public void removeOnCancel(final Runnable action) {
+		actions.remove(action);
+	}
+
+	/**
+	 * Cancels the token and runs the registered actions
+	 *
+	 * @param grace The time the producer is given to return
+	 * @param unit The unit of time the grace period is specified in
+	 */
+	public void cancel(final long grace, final TimeUnit unit) {
+		synchronized(this) {
+			if(cancelled) {
+				return;
+			}
+
+			deadlineNanos = System.nanoTime() + unit.toNanos(grace);
+			cancelled = true;
+		}
+
+		for(Runnable action : actions) {
+			//An action registered concurrently may already have been run by onCancel
+			if(actions.remove(action)) {
+				run(action);
+			}
+		}
+	}
+
+	private void run(final Runnable action) {
+		try {
+			action.run();
+		} catch(RuntimeException e) {
+			logger.warn("Exception occurred in cancel action: {}", e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,247 @@
+package com.github.kchard.service;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>A local file that holds the {@link WarmState} of a service between runs.</p>
+ *
+ * <p>The file starts with a header holding a format marker, the version of the state, the time it was saved, the length of
+ * the state and its CRC-32 checksum. A checkpoint is only restored if the file is complete, the version matches and, if a maximum
+ * age is set, it was saved recently enough. Otherwise the reason is logged and the state is rebuilt. The file is memory-mapped
+ * when it is restored, so the state is read without copying it onto the heap first.</p>
+ *
+ * <p>A checkpoint is saved to a temporary file in the same directory, forced to disk and then renamed over the previous
+ * checkpoint, so a crash while saving leaves the previous checkpoint intact.</p>
+ *
+ * @author chardk
+ *
+ * @see WarmState
+ * @see AbstractService#setWarmState(WarmState, Checkpoint)
+ */
+public class Checkpoint {
+
+	private static final int MAGIC = 0x5741524D;
+	private static final int VERSION_OFFSET = 4;
+	private static final int SAVED_AT_OFFSET = 8;
+	private static final int LENGTH_OFFSET = 16;
+	private static final int CHECKSUM_OFFSET = 24;
+	private static final int HEADER_SIZE = 32;
+
+	private static final int CHECKSUM_CHUNK = 64 * 1024;
+
+	private final Logger logger = LoggerFactory.getLogger(this.getClass().getName());
+
+	private final File file;
+	private final int version;
+	private final long maxAgeMillis;
+	private final Clock clock;
+
+	/**
+	 * Creates a checkpoint that never becomes stale
+	 *
+	 * @param file The file the state is saved to
+	 * @param version The version of the state, a checkpoint saved with another version is not restored
+	 */
+	public Checkpoint(final File file, final int version) {
+		this(file, version, 0L, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @param file The file the state is saved to
+	 * @param version The version of the state, a checkpoint saved with another version is not restored
+	 * @param maxAge The age after which a checkpoint is stale and is not restored, 0 for no limit
+	 * @param unit The unit of time the age is specified in
+	 */
+	public Checkpoint(final File file, final int version, final long maxAge, final TimeUnit unit) {
+		this(file, version, maxAge, unit, SystemClock.instance());
+	}
+
+	/**
+	 * @param file The file the state is saved to
+	 * @param version The version of the state, a checkpoint saved with another version is not restored
+	 * @param maxAge The age after which a checkpoint is stale and is not restored, 0 for no limit
+	 * @param unit The unit of time the age is specified in
+	 * @param clock The clock used to timestamp checkpoints and measure their age
+	 */
+	public Checkpoint(final File file, final int version, final long maxAge, final TimeUnit unit, final Clock clock) {
+		if(maxAge < 0) {
+			throw new IllegalArgumentException("The maximum age of a checkpoint cannot be negative: " + maxAge);
+		}
+
+		this.file = file;
+		this.version = version;
+		this.maxAgeMillis = unit.toMillis(maxAge);
+		this.clock = clock;
+	}
+
+	public File file() {
+		return file;
+	}
+
+	public int version() {
+		return version;
+	}
+
+	/**
+	 * Restores the state from the checkpoint file if the file is usable
+	 *
+	 * @param state The state to restore
+	 * @return true if the state was restored, false if there was no usable checkpoint or the state failed to restore
+	 */
+	public boolean restore(final WarmState state) {
+		if(!file.isFile()) {
+			logger.info("No checkpoint at {}", file);
+			return false;
+		}
+
+		RandomAccessFile raf = null;
+		try {
+			raf = new RandomAccessFile(file, "r");
+			long size = raf.length();
+			if(size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+				logger.warn("Ignoring checkpoint {} of {} bytes", file, size);
+				return false;
+			}
+
+			ByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0L, size);
+			if(!isUsable(buffer, size)) {
+				return false;
+			}
+
+			buffer.position(HEADER_SIZE);
+			state.restore(buffer.slice());
+			logger.info("Restored {} bytes of state from checkpoint {}", size - HEADER_SIZE, file);
+			return true;
+		} catch(IOException e) {
+			logger.warn("Failed to restore checkpoint {}: {}", file, e.getMessage());
+			return false;
+		} catch(RuntimeException e) {
+			logger.warn("Failed to restore checkpoint {}: {}", file, e.getMessage());
+			return false;
+		} finally {
+			Frames.closeQuietly(raf);
+		}
+	}
+
+	private boolean isUsable(final ByteBuffer buffer, final long size) {
+		if(buffer.getInt(0) != MAGIC) {
+			logger.warn("Ignoring {}, it is not a checkpoint", file);
+			return false;
+		}
+
+		int savedVersion = buffer.getInt(VERSION_OFFSET);
+		if(savedVersion != version) {
+			logger.info("Ignoring checkpoint {} of version {}, expected version {}", new Object[] {file, savedVersion, version});
+			return false;
+		}
+
+		long age = clock.currentTimeMillis() - buffer.getLong(SAVED_AT_OFFSET);
+		if(maxAgeMillis > 0 && age > maxAgeMillis) {
+			logger.info("Ignoring checkpoint {} saved {} ms ago, the maximum age is {} ms", new Object[] {file, age, maxAgeMillis});
+			return false;
+		}
+
+		if(buffer.getLong(LENGTH_OFFSET) != size - HEADER_SIZE) {
+			logger.warn("Ignoring incomplete checkpoint {}", file);
+			return false;
+		}
+
+		if(buffer.getLong(CHECKSUM_OFFSET) != checksum(buffer)) {
+			logger.warn("Ignoring corrupt checkpoint {}", file);
+			return false;
+		}
+
+		return true;
+	}
+
+	private static long checksum(final ByteBuffer buffer) {
+		CRC32 crc = new CRC32();
+		ByteBuffer payload = buffer.duplicate();
+		payload.position(HEADER_SIZE);
+		byte[] chunk = new byte[Math.min(CHECKSUM_CHUNK, payload.remaining())];
+		while(payload.hasRemaining()) {
+			int length = Math.min(chunk.length, payload.remaining());
+			payload.get(chunk, 0, length);
+			crc.update(chunk, 0, length);
+		}
+
+		return crc.getValue();
+	}
+
+	/**
+	 * Saves the state, replacing the previous checkpoint once the state has been written completely
+	 *
+	 * @param state The state to save
+	 * @throws IOException If the state cannot be written, the previous checkpoint is left in place
+	 */
+	public void save(final WarmState state) throws IOException {
+		File directory = file.getAbsoluteFile().getParentFile();
+		if(directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Cannot create directory " + directory);
+		}
+
+		File temporary = new File(file.getPath() + ".tmp");
+		RandomAccessFile raf = new RandomAccessFile(temporary, "rw");
+		boolean saved = false;
+		try {
+			raf.setLength(0L);
+			raf.write(new byte[HEADER_SIZE]);
+
+			CheckedOutputStream checked = new CheckedOutputStream(new FileOutputStream(raf.getFD()), new CRC32());
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(checked, CHECKSUM_CHUNK));
+			state.save(out);
+			out.flush();
+
+			raf.seek(0L);
+			raf.writeInt(MAGIC);
+			raf.writeInt(version);
+			raf.writeLong(clock.currentTimeMillis());
+			raf.writeLong(raf.length() - HEADER_SIZE);
+			raf.writeLong(checked.getChecksum().getValue());
+			raf.getFD().sync();
+			saved = true;
+		} finally {
+			raf.close();
+			if(!saved) {
+				temporary.delete();
+			}
+		}
+
+		if(!temporary.renameTo(file)) {
+			//Some platforms do not rename over an existing file
+			if(!file.delete() || !temporary.renameTo(file)) {
+				temporary.delete();
+				throw new IOException("Cannot replace checkpoint " + file);
+			}
+		}
+
+		logger.info("Saved {} bytes of state to checkpoint {}", file.length() - HEADER_SIZE, file);
+	}
+
+	/**
+	 * Deletes the checkpoint file, so that the state is rebuilt the next time
+	 *
+	 * @return true if there was a checkpoint to delete
+	 */
+	public boolean delete() {
+		return file.delete();
+	}
+
+	@Override
+	public String toString() {
+		return "Checkpoint [file=" + file + ", version=" + version + ", maxAgeMillis=" + maxAgeMillis + "]";
+	}
+}
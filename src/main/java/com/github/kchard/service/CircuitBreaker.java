@@ -0,0 +1,257 @@
+package com.github.kchard.service;
+
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>A circuit breaker that stops calls to a failing or slow dependency.</p>
+ *
+ * <p>The breaker records the outcome of the most recent calls in a window. While it is CLOSED calls are permitted. Once the window
+ * is full and the proportion of failed calls, or of calls slower than the slow call threshold, reaches its rate the breaker OPENS
+ * and rejects every call. After the open duration the breaker becomes HALF_OPEN and permits a number of probe calls: if they all
+ * succeed quickly the breaker closes again, the first failed or slow probe opens it again.</p>
+ *
+ * <p>A breaker is configured before use with the with methods, each of which returns a new breaker. This class is thread safe.</p>
+ *
+ * @author chardk
+ *
+ * @see GuardedConsumer
+ * @see GuardedProducer
+ */
+public class CircuitBreaker {
+
+	public enum CircuitState { CLOSED, OPEN, HALF_OPEN }
+
+	private final Logger logger = LoggerFactory.getLogger(this.getClass().getName());
+
+	private final int windowSize;
+	private final double failureRate;
+	private final double slowCallRate;
+	private final long slowCallNanos;
+	private final long openNanos;
+	private final int probes;
+	private final Clock clock;
+
+	private final boolean[] failed;
+	private final boolean[] slow;
+
+	private CircuitState state = CircuitState.CLOSED;
+	private int index = 0;
+	private int recorded = 0;
+	private int failures = 0;
+	private int slowCalls = 0;
+	private long openedAt;
+	private int probesPermitted = 0;
+	private int probesSucceeded = 0;
+	private long rejected = 0L;
+	private long trips = 0L;
+
+	/**
+	 * @return A breaker that opens when half of the last 20 calls failed, stays open for 5 seconds and closes after 3 successful probes.
+	 * Slow calls are not counted until a slow call threshold is set.
+	 */
+	public static CircuitBreaker defaults() {
+		return new CircuitBreaker(20, 0.5, 1.0, Long.MAX_VALUE, TimeUnit.SECONDS.toNanos(5L), 3, SystemClock.instance());
+	}
+
+	private CircuitBreaker(final int windowSize, final double failureRate, final double slowCallRate, final long slowCallNanos, final long openNanos, final int probes, final Clock clock) {
+		this.windowSize = windowSize;
+		this.failureRate = failureRate;
+		this.slowCallRate = slowCallRate;
+		this.slowCallNanos = slowCallNanos;
+		this.openNanos = openNanos;
+		this.probes = probes;
+		this.clock = clock;
+		this.failed = new boolean[windowSize];
+		this.slow = new boolean[windowSize];
+	}
+
+	/**
+	 * @param windowSize The number of recent calls the failure and slow call rates are calculated over
+	 */
+	public CircuitBreaker withWindow(final int windowSize) {
+		if(windowSize < 1) {
+			throw new IllegalArgumentException("Window size must be at least 1: " + windowSize);
+		}
+
+		return new CircuitBreaker(windowSize, failureRate, slowCallRate, slowCallNanos, openNanos, probes, clock);
+	}
+
+	/**
+	 * @param failureRate The proportion of failed calls, greater than 0 and at most 1, that opens the breaker
+	 */
+	public CircuitBreaker withFailureRate(final double failureRate) {
+		checkRate(failureRate);
+		return new CircuitBreaker(windowSize, failureRate, slowCallRate, slowCallNanos, openNanos, probes, clock);
+	}
+
+	/**
+	 * @param slowCallRate The proportion of slow calls, greater than 0 and at most 1, that opens the breaker
+	 * @param threshold The duration at or above which a call is slow
+	 * @param unit The unit of time the threshold is specified in
+	 */
+	public CircuitBreaker withSlowCalls(final double slowCallRate, final long threshold, final TimeUnit unit) {
+		checkRate(slowCallRate);
+		return new CircuitBreaker(windowSize, failureRate, slowCallRate, unit.toNanos(threshold), openNanos, probes, clock);
+	}
+
+	/**
+	 * @param duration The time the breaker stays open before it permits probe calls
+	 * @param unit The unit of time the duration is specified in
+	 */
+	public CircuitBreaker withOpenDuration(final long duration, final TimeUnit unit) {
+		return new CircuitBreaker(windowSize, failureRate, slowCallRate, slowCallNanos, unit.toNanos(duration), probes, clock);
+	}
+
+	/**
+	 * @param probes The number of successful probe calls required to close a HALF_OPEN breaker
+	 */
+	public CircuitBreaker withProbes(final int probes) {
+		if(probes < 1) {
+			throw new IllegalArgumentException("At least one probe is required: " + probes);
+		}
+
+		return new CircuitBreaker(windowSize, failureRate, slowCallRate, slowCallNanos, openNanos, probes, clock);
+	}
+
+	/**
+	 * @param clock The clock used to time the open duration
+	 */
+	public CircuitBreaker withClock(final Clock clock) {
+		return new CircuitBreaker(windowSize, failureRate, slowCallRate, slowCallNanos, openNanos, probes, clock);
+	}
+
+	/**
+	 * @return true if a call is permitted, in which case its outcome must be reported with {@link #onSuccess(long)} or {@link #onFailure(long)}
+	 */
+	public synchronized boolean tryAcquire() {
+		if(state == CircuitState.OPEN) {
+			if(clock.nanoTime() - openedAt < openNanos) {
+				rejected++;
+				return false;
+			}
+
+			logger.info("Circuit breaker half open, probing with {} calls", probes);
+			state = CircuitState.HALF_OPEN;
+			probesPermitted = 0;
+			probesSucceeded = 0;
+		}
+
+		if(state == CircuitState.HALF_OPEN) {
+			if(probesPermitted >= probes) {
+				rejected++;
+				return false;
+			}
+
+			probesPermitted++;
+		}
+
+		return true;
+	}
+
+	/**
+	 * @param durationNanos The duration of the permitted call that completed normally
+	 */
+	public void onSuccess(final long durationNanos) {
+		record(false, durationNanos >= slowCallNanos);
+	}
+
+	/**
+	 * @param durationNanos The duration of the permitted call that failed
+	 */
+	public void onFailure(final long durationNanos) {
+		record(true, durationNanos >= slowCallNanos);
+	}
+
+	public synchronized CircuitState state() {
+		return state;
+	}
+
+	/**
+	 * @return The time until an OPEN breaker permits probe calls, 0 if it is not OPEN
+	 */
+	public synchronized long remainingOpen(final TimeUnit unit) {
+		if(state != CircuitState.OPEN) {
+			return 0L;
+		}
+
+		return unit.convert(Math.max(0L, openNanos - (clock.nanoTime() - openedAt)), TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * @return The number of calls rejected
+	 */
+	public synchronized long rejected() {
+		return rejected;
+	}
+
+	/**
+	 * @return The number of times the breaker has opened
+	 */
+	public synchronized long trips() {
+		return trips;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "CircuitBreaker [state=" + state + ", failures=" + failures + ", slowCalls=" + slowCalls + ", recorded=" + recorded + ", trips=" + trips + ", rejected=" + rejected + "]";
+	}
+
+	private synchronized void record(final boolean failure, final boolean slowCall) {
+		if(state == CircuitState.HALF_OPEN) {
+			if(failure || slowCall) {
+				open();
+			} else if(++probesSucceeded >= probes) {
+				close();
+			}
+
+			return;
+		}
+
+		if(state == CircuitState.OPEN) {
+			//A call permitted before the breaker opened
+			return;
+		}
+
+		if(recorded == windowSize) {
+			failures -= failed[index] ? 1 : 0;
+			slowCalls -= slow[index] ? 1 : 0;
+		} else {
+			recorded++;
+		}
+
+		failed[index] = failure;
+		slow[index] = slowCall;
+		failures += failure ? 1 : 0;
+		slowCalls += slowCall ? 1 : 0;
+		index = (index + 1) % windowSize;
+
+		if(recorded == windowSize && (failures >= failureRate * windowSize || slowCalls >= slowCallRate * windowSize)) {
+			open();
+		}
+	}
+
+	private void open() {
+		logger.warn("Circuit breaker opened: {}", this);
+		state = CircuitState.OPEN;
+		openedAt = clock.nanoTime();
+		trips++;
+	}
+
+	private void close() {
+		logger.info("Circuit breaker closed after {} successful probes", probesSucceeded);
+		state = CircuitState.CLOSED;
+		index = 0;
+		recorded = 0;
+		failures = 0;
+		slowCalls = 0;
+	}
+
+	private static void checkRate(final double rate) {
+		if(rate <= 0.0 || rate > 1.0) {
+			throw new IllegalArgumentException("Rate must be greater than 0 and at most 1: " + rate);
+		}
+	}
+}
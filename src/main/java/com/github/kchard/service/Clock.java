@@ -0,0 +1,35 @@
+package com.github.kchard.service;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * <p>The source of time and of scheduling used by scheduled services and monitors.</p>
+ *
+ * <p>{@link SystemClock} uses the system time and real threads. {@link VirtualClock} uses virtual time that only moves
+ * when it is advanced, which allows long schedules to be tested deterministically in milliseconds.</p>
+ *
+ * @author chardk
+ *
+ * @see SystemClock
+ * @see VirtualClock
+ */
+public interface Clock {
+
+	/**
+	 * @return The current time in milliseconds since the epoch
+	 */
+	long currentTimeMillis();
+
+	/**
+	 * @return The current value of a monotonic time source in nanoseconds
+	 */
+	long nanoTime();
+
+	/**
+	 * @param threads The number of threads the executor should use
+	 * @param threadFactory The factory used to create the threads
+	 * @return A new executor that schedules tasks according to this clock
+	 */
+	ScheduledExecutorService newScheduledExecutor(int threads, ThreadFactory threadFactory);
+}
@@ -0,0 +1,16 @@
+package com.github.kchard.service;
+
+/**
+ * Converts items to and from the bytes sent in a frame by a {@link TransportSender} and read by a {@link TransportReceiver}.
+ *
+ * @author chardk
+ *
+ * @param <T>
+ * @see SerializingCodec
+ */
+public interface Codec<T> {
+
+	byte[] encode(T item);
+
+	T decode(byte[] bytes);
+}
@@ -49,7 +49,8 @@ public class CommandService extends AbstractService {
 	
 	private void executeCommands(final List<Runnable> commands) {
 		for(Runnable command : commands) {
-			logger.trace("Running: " + command.getClass().getName());
+			logger.trace("Running: {}", command.getClass().getName());
+			emit(ServiceEvent.COMMAND_STARTED, command);
 			command.run();
 		}
 	}
@@ -2,13 +2,23 @@ package com.github.kchard.service;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedList;
 import java.util.List;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * A CompositeService can be used to build complicated services by composing several simple services.
+ * <p>A CompositeService can be used to build complicated services by composing several simple services.</p>
+ * 
+ * <p>The composite watches the state of its children through a {@link MonitorEngine}, the shared engine unless one is given. It becomes STARTED once
+ * no child is PENDING. When a child becomes EXCEPTIONAL the composite applies its {@link SupervisionStrategy}:
+ * by default it reports the exception, which shuts down the whole tree, but it can instead restart the failed child
+ * alone, all children, or the failed child and the children after it, while the remaining children keep running.
+ * Supervision runs on a supervisor thread of the composite's own, so that a slow restart or shutdown does not hold up the monitor engine.
+ * The thread is created when a child fails and exits once it has been idle for a minute.</p>
  * 
  * @author chardk
  *
@@ -19,9 +29,15 @@ public class CompositeService extends AbstractService {
 
 	private final List<AbstractService> services;
 	private final boolean shutdownInReverseOrder;
+	private final SupervisionStrategy supervisionStrategy;
+	private final MonitorEngine engine;
+	private final LinkedList<Long> restartTimes = new LinkedList<Long>();
+	private final ExecutorService supervisor;
+	private final AtomicBoolean supervising = new AtomicBoolean();
+
+    private final StateListener childListener = new ChildStateTrigger();
 
-    private ScheduledExecutorService pendingExecutor;
-    private ScheduledExecutorService exceptionExecutor;
+    private volatile MonitorEngine.Registration childMonitor;
 
 	/**
 	 * A convenience constructor that will default shutdownInReverseOrder to true
@@ -37,8 +53,30 @@ public class CompositeService extends AbstractService {
 	 * @param shutdownInReverseOrder Flag used to indicate whether the services should be shutdown in the reverse order they were started
 	 */
 	public CompositeService(final List<AbstractService> services, final boolean shutdownInReverseOrder) {
+		this(services, shutdownInReverseOrder, SupervisionStrategy.escalate());
+	}
+	
+	/**
+	 * @param services The services to compose
+	 * @param shutdownInReverseOrder Flag used to indicate whether the services should be shutdown in the reverse order they were started
+	 * @param supervisionStrategy The strategy applied when a child service becomes EXCEPTIONAL
+	 */
+	public CompositeService(final List<AbstractService> services, final boolean shutdownInReverseOrder, final SupervisionStrategy supervisionStrategy) {
+		this(services, shutdownInReverseOrder, supervisionStrategy, MonitorEngine.shared());
+	}
+	
+	/**
+	 * @param services The services to compose
+	 * @param shutdownInReverseOrder Flag used to indicate whether the services should be shutdown in the reverse order they were started
+	 * @param supervisionStrategy The strategy applied when a child service becomes EXCEPTIONAL
+	 * @param engine The engine used to watch the children, its clock also measures the restart intensity
+	 */
+	public CompositeService(final List<AbstractService> services, final boolean shutdownInReverseOrder, final SupervisionStrategy supervisionStrategy, final MonitorEngine engine) {
 		this.services = Collections.unmodifiableList(services);
 		this.shutdownInReverseOrder = shutdownInReverseOrder;
+		this.supervisionStrategy = supervisionStrategy;
+		this.engine = engine;
+		this.supervisor = new ThreadPoolExecutor(0, 1, 1L, TimeUnit.MINUTES, new LinkedBlockingQueue<Runnable>(), ThreadPolicy.defaults().withDaemon(true).threadFactory("supervisor:" + name()));
 		
 		this.enableShutdownOnException();
 		for(AbstractService service : services) {
@@ -46,6 +84,17 @@ public class CompositeService extends AbstractService {
 		}
 	}
 
+    public final SupervisionStrategy supervisionStrategy() {
+        return supervisionStrategy;
+    }
+
+    /**
+     * @return The child services in the order they are started, the list cannot be modified
+     */
+    public final List<AbstractService> children() {
+        return services;
+    }
+
     @Override
     protected final boolean requiresPendingStatus() {
         return true;
@@ -56,9 +105,6 @@ public class CompositeService extends AbstractService {
 	 */
 	@Override
 	protected final void doInitialize() {
-        pendingExecutor = Executors.newSingleThreadScheduledExecutor();
-        exceptionExecutor = Executors.newSingleThreadScheduledExecutor();
-
         for (Service service : services) {
 			service.initialize();
 		}
@@ -74,8 +120,13 @@ public class CompositeService extends AbstractService {
 			service.start();
 		}
 
-        pendingExecutor.scheduleWithFixedDelay(new PendingMonitor(), 0, 1000, TimeUnit.MILLISECONDS);
-        exceptionExecutor.scheduleWithFixedDelay(new ExceptionMonitor(), 0, 1000, TimeUnit.MILLISECONDS);
+        childMonitor = engine.register("composite-monitor:" + name(), new ChildMonitor());
+        addStateListener(childListener);
+        for (AbstractService service : services) {
+            service.addStateListener(childListener);
+        }
+
+        childMonitor.trigger();
 	}
 
 	/**
@@ -84,18 +135,31 @@ public class CompositeService extends AbstractService {
 	@Override
 	protected final void doShutdown() {
 
-        if(currentState().compareTo(State.INITIALIZED) > 0) {
-            pendingExecutor.shutdown();
-            exceptionExecutor.shutdown();
+        if(childMonitor != null) {
+            removeStateListener(childListener);
+            for (AbstractService service : services) {
+                service.removeStateListener(childListener);
+            }
+
+            childMonitor.cancel();
         }
 
-        List<Service> copy = new ArrayList<Service>(services);
+        shutdownChildren(services);
+	}
+
+	private void shutdownChildren(final List<AbstractService> children) {
+        List<AbstractService> copy = new ArrayList<AbstractService>(children);
 
 		if (shutdownInReverseOrder) {
 			Collections.reverse(copy);
 		}
 
-		for (Service service : copy) {
+		for (AbstractService service : copy) {
+			//A child that reported an exception has already been shutdown, one that threw from initialize or start has not
+			if(service.hasShutdown()) {
+				continue;
+			}
+
 			try {
 				service.shutdown();
 			} catch(RuntimeException e) {
@@ -105,42 +169,137 @@ public class CompositeService extends AbstractService {
 		}
 	}
 
-    private class PendingMonitor implements Runnable {
+    /**
+     * Restarts the children selected by the supervision strategy, or escalates the exception if the strategy
+     * does not restart children or the restart intensity has been exceeded.
+     * Synchronized so that children cannot be restarted while the composite is shutting down.
+     */
+    private synchronized void supervise(final int failedIndex, final Exception e) {
+        State current = currentState();
+        if(current.compareTo(State.STARTED) > 0 || !services.get(failedIndex).currentState().isExceptional()) {
+            return;
+        }
+
+        if(supervisionStrategy.kind() == SupervisionStrategy.Kind.ESCALATE || !allowRestart()) {
+            reportException(e);
+            return;
+        }
+
+        List<AbstractService> restart;
+        switch(supervisionStrategy.kind()) {
+        case ONE_FOR_ONE:
+            restart = services.subList(failedIndex, failedIndex + 1);
+            break;
+        case REST_FOR_ONE:
+            restart = services.subList(failedIndex, services.size());
+            break;
+        default:
+            restart = services;
+            break;
+        }
+
+        logger.warn("Restarting {} child service(s) of {} after an exception: {}", new Object[] {restart.size(), name(), e.getMessage()});
+        shutdownChildren(restart);
+        for(AbstractService service : restart) {
+            try {
+                service.reset();
+                service.initialize();
+                service.start();
+            } catch(RuntimeException restartException) {
+                //The child is EXCEPTIONAL again and is supervised in the next round, its siblings are still restarted
+                logger.error("Exception occurred while restarting child service: " + restartException.getMessage());
+                shutdownFailedRestart(service);
+            }
+        }
+    }
+
+    /**
+     * A child that threw from initialize or start is EXCEPTIONAL without having been shutdown
+     */
+    private void shutdownFailedRestart(final AbstractService service) {
+        try {
+            service.shutdown();
+        } catch(RuntimeException e) {
+            logger.error("Exception occurred while shutting down child service: " + e.getMessage());
+        }
+    }
+
+    private boolean allowRestart() {
+        long now = engine.clock().currentTimeMillis();
+        long windowStart = now - supervisionStrategy.period(TimeUnit.MILLISECONDS);
+        while(!restartTimes.isEmpty() && restartTimes.getFirst() < windowStart) {
+            restartTimes.removeFirst();
+        }
+
+        if(restartTimes.size() >= supervisionStrategy.maxRestarts()) {
+            logger.error("Restart intensity of {} exceeded, escalating", name());
+            return false;
+        }
+
+        restartTimes.addLast(now);
+        return true;
+    }
+
+    private class ChildStateTrigger implements StateListener {
+
+        @Override
+        public void stateChanged(Service service, State previous, State current) {
+            childMonitor.trigger();
+        }
+    }
+
+    private class ChildMonitor implements Runnable {
 
         @Override
         public void run() {
 
             boolean noPendingServices = true;
-            for(Service service :services) {
-                if(service.currentState() == State.PENDING) {
+            int failedIndex = -1;
+            for(int i = 0; i < services.size(); i++) {
+                State state = services.get(i).currentState();
+                if(state == State.PENDING) {
                     noPendingServices = false;
-                    break;
+                } else if(state == State.EXCEPTIONAL && failedIndex < 0) {
+                    failedIndex = i;
                 }
             }
 
-            if(noPendingServices) {
+            if(failedIndex >= 0) {
+                if(supervising.compareAndSet(false, true)) {
+                    supervisor.execute(new Supervise(failedIndex, services.get(failedIndex).exception()));
+                }
+            } else if(noPendingServices && currentState() == State.PENDING) {
                 pendingServiceStarted();
-                throw new RuntimeException("Stopping scheduled execution");
             }
         }
     }
 
-    private class ExceptionMonitor implements Runnable {
+    /**
+     * Supervises a failed child off the monitor engine thread. Failures seen while it runs are picked up by the check that follows it.
+     */
+    private class Supervise implements Runnable {
+
+        private final int failedIndex;
+        private final Exception e;
+
+        private Supervise(final int failedIndex, final Exception e) {
+            this.failedIndex = failedIndex;
+            this.e = e;
+        }
 
         @Override
         public void run() {
-
-            Exception e = null;
-            for(Service service :services) {
-                if(service.currentState() == State.EXCEPTIONAL) {
-                    e = service.exception();
-                    break;
+            try {
+                supervise(failedIndex, e);
+            } catch(RuntimeException supervisionException) {
+                logger.error("Exception occurred while supervising child services: " + supervisionException.getMessage());
+            } finally {
+                supervising.set(false);
+                MonitorEngine.Registration monitor = childMonitor;
+                if(monitor != null) {
+                    monitor.trigger();
                 }
             }
-
-            if(e != null) {
-                reportException(e);
-            }
         }
     }
 }
@@ -6,7 +6,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * 
+ * <p>A {@link Worker} that takes items from a queue and passes them to a {@link Consumer}.</p>
+ *
+ * <p>Without an {@link ItemFailureHandler} an exception thrown by the consumer stops the worker and the item is lost.
+ * With a handler the failed item is passed to the handler and the worker carries on with the next item.</p>
+ *
  * @author chardk
  *
  * @param <T>
@@ -21,18 +25,57 @@ public class ConsumerWorker<T> implements Worker {
 	private final Consumer<T> consumer;
 	private final BlockingQueue<T> workQueue;
 	
+	private final AbstractService owner;
+	private final ItemFailureHandler<T> failureHandler;
+	
 	private volatile boolean run = true;
 	
 	public ConsumerWorker(final Consumer<T> consumer, final BlockingQueue<T> workQueue) {
+		this(consumer, workQueue, null);
+	}
+	
+	/**
+	 * @param consumer The consumer to invoke
+	 * @param workQueue The queue to take items from
+	 * @param owner The service whose {@link EventSink} receives this worker's events, or null for no events
+	 */
+	public ConsumerWorker(final Consumer<T> consumer, final BlockingQueue<T> workQueue, final AbstractService owner) {
+		this(consumer, workQueue, owner, null);
+	}
+	
+	/**
+	 * @param consumer The consumer to invoke
+	 * @param workQueue The queue to take items from
+	 * @param owner The service whose {@link EventSink} receives this worker's events, or null for no events
+	 * @param failureHandler The handler for items the consumer throws on, or null to stop the worker instead
+	 */
+	public ConsumerWorker(final Consumer<T> consumer, final BlockingQueue<T> workQueue, final AbstractService owner, final ItemFailureHandler<T> failureHandler) {
 		this.consumer = consumer;
 		this.workQueue = workQueue;
+		this.owner = owner;
+		this.failureHandler = failureHandler;
 	}
 	
 	@Override
 	public final void run() {
+		CallProfiler.Probe probe = CallProfiler.probe(owner);
 		while(run) {
 			try {
-				consumer.consume(workQueue.take());
+				if(probe != null && probe.sample()) {
+					consumeSampled(probe);
+					continue;
+				}
+				
+				T item = workQueue.take();
+				if(failureHandler != null) {
+					consumeOrHandle(item);
+					continue;
+				}
+				
+				consumer.consume(item);
+				if(owner != null) {
+					owner.emit(ServiceEvent.ITEM_CONSUMED, item);
+				}
 			} catch (InterruptedException e) {
 				//This handles the case when BlockingQueue.take is interrupted
 				
@@ -47,11 +90,54 @@ public class ConsumerWorker<T> implements Worker {
 				//If more work needs to be done, the code that started this Worker can start additional Workers at its discretion
 				cancel();
 				
-				logger.info("Shutting down " + getClass() + " due to an Exception: " + e.getMessage());
+				logger.info("Shutting down {} due to an Exception: {}", getClass(), e.getMessage());
+				if(owner != null) {
+					owner.emit(ServiceEvent.WORKER_STOPPED, e);
+				}
 			}
 		}
 	}
 	
+	private void consumeSampled(final CallProfiler.Probe probe) throws InterruptedException {
+		probe.queueStarted();
+		T item = workQueue.take();
+		probe.queueEnded();
+		
+		probe.callStarted();
+		if(failureHandler != null) {
+			consumeOrHandle(item);
+			probe.callEnded();
+			probe.record();
+			return;
+		}
+		
+		consumer.consume(item);
+		probe.callEnded();
+		probe.record();
+		if(owner != null) {
+			owner.emit(ServiceEvent.ITEM_CONSUMED, item);
+		}
+	}
+	
+	private void consumeOrHandle(final T item) {
+		try {
+			consumer.consume(item);
+		} catch (RuntimeException e) {
+			logger.debug("Consumer failed on an item: {}", e.getMessage());
+			if(owner != null) {
+				owner.emit(ServiceEvent.ITEM_FAILED, e);
+			}
+			
+			failureHandler.onFailure(item, e);
+			return;
+		}
+		
+		failureHandler.onSuccess(item);
+		if(owner != null) {
+			owner.emit(ServiceEvent.ITEM_CONSUMED, item);
+		}
+	}
+	
 	public final void cancel() {
 		run = false;
 	}
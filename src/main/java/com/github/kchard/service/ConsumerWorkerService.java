@@ -1,8 +1,6 @@
 package com.github.kchard.service;
 
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 /**
  * @author chardk
@@ -11,40 +9,40 @@ import java.util.concurrent.Executors;
  * @see Consumer
  * @see ConsumerWorker
  */
-public class ConsumerWorkerService<T> extends AbstractService {
+public class ConsumerWorkerService<T> extends WorkerService {
 
-	private static final int DEFAULT_MAX_WORKERS = 512;
-	
-	private final Consumer<T> consumer;
 	private final BlockingQueue<T> workQueue;
-	private final int maxWorkers;
-	
-	private ExecutorService workerExecutor;
-	
+
 	public ConsumerWorkerService(final Consumer<T> consumer, final BlockingQueue<T> workQueue) {
 		this(consumer, workQueue, DEFAULT_MAX_WORKERS);
 	}
 	
 	public ConsumerWorkerService(final Consumer<T> consumer, final BlockingQueue<T> workQueue, final int maxWorkers) {
-		this.consumer = consumer;
-		this.workQueue = workQueue;
-		this.maxWorkers = maxWorkers;
-	}
-
-	@Override
-	protected final void doInitialize() {
-		workerExecutor = Executors.newFixedThreadPool(maxWorkers); 
+		this(consumer, workQueue, maxWorkers, null);
 	}
+	
+	/**
+	 * @param consumer The consumer to invoke
+	 * @param workQueue The queue to take items from
+	 * @param maxWorkers The number of workers
+	 * @param failureHandler The handler for items the consumer throws on, or null to stop a worker when its consumer throws
+	 */
+	public ConsumerWorkerService(final Consumer<T> consumer, final BlockingQueue<T> workQueue, final int maxWorkers, final ItemFailureHandler<T> failureHandler) {
+		super(new WorkerFactory() {
 
-	@Override
-	protected final void doStart() {
-		for(int i = 0; i < maxWorkers; i++) {
-			workerExecutor.execute(new ConsumerWorker<T>(consumer, workQueue));
-		}
+			@Override
+			public Worker createWorker(AbstractService owner) {
+				return new ConsumerWorker<T>(consumer, workQueue, owner, failureHandler);
+			}
+		}, maxWorkers);
+		this.workQueue = workQueue;
 	}
 
+	/**
+	 * @return The number of items waiting in the work queue
+	 */
 	@Override
-	protected final void doShutdown() {
-		workerExecutor.shutdownNow();
+	public int queueDepth() {
+		return workQueue.size();
 	}
 }
@@ -0,0 +1,74 @@
+package com.github.kchard.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pins the calling thread to a set of CPUs on Linux by running taskset against the thread's native id.
+ *
+ * @author chardk
+ *
+ * @see ThreadPolicy
+ */
+final class CpuAffinity {
+
+	private static final Logger logger = LoggerFactory.getLogger(CpuAffinity.class.getName());
+
+	private static final Pattern CPU_LIST = Pattern.compile("\\d+(-\\d+)?(,\\d+(-\\d+)?)*");
+	private static final File THREAD_SELF = new File("/proc/thread-self");
+
+	private CpuAffinity() {
+	}
+
+	static boolean isValidCpuList(final String cpuList) {
+		return CPU_LIST.matcher(cpuList).matches();
+	}
+
+	/**
+	 * @return true if the calling thread was pinned
+	 */
+	static boolean pinCurrentThread(final String cpuList) {
+		if(!System.getProperty("os.name", "").toLowerCase().startsWith("linux")) {
+			logger.warn("Thread affinity is only supported on Linux, {} will not be pinned", Thread.currentThread().getName());
+			return false;
+		}
+
+		try {
+			//Resolves to /proc/<pid>/task/<tid>
+			String tid = THREAD_SELF.getCanonicalFile().getName();
+
+			Process process = new ProcessBuilder("taskset", "-p", "-c", cpuList, tid).redirectErrorStream(true).start();
+			drain(process.getInputStream());
+			int exitCode = process.waitFor();
+			if(exitCode != 0) {
+				logger.warn("taskset exited with {}, {} will not be pinned", exitCode, Thread.currentThread().getName());
+				return false;
+			}
+
+			logger.debug("Pinned {} to cpus {}", Thread.currentThread().getName(), cpuList);
+			return true;
+		} catch(IOException e) {
+			logger.warn("Unable to pin {}: {}", Thread.currentThread().getName(), e.getMessage());
+			return false;
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	private static void drain(final InputStream in) throws IOException {
+		try {
+			byte[] buffer = new byte[256];
+			while(in.read(buffer) != -1) {
+				//Discard the output so the process cannot block on a full pipe
+			}
+		} finally {
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,42 @@
+package com.github.kchard.service;
+
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A consumer that moves items to a dead letter queue. Items the queue cannot accept are logged and counted as dropped.
+ *
+ * @author chardk
+ *
+ * @param <T>
+ * @see GuardedConsumer
+ */
+public class DeadLetterConsumer<T> implements Consumer<T> {
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	private final Queue<T> deadLetters;
+	private final AtomicLong dropped = new AtomicLong();
+
+	public DeadLetterConsumer(final Queue<T> deadLetters) {
+		this.deadLetters = deadLetters;
+	}
+
+	@Override
+	public void consume(T item) {
+		if(!deadLetters.offer(item)) {
+			dropped.incrementAndGet();
+			logger.warn("Dead letter queue is full, dropping: {}", item);
+		}
+	}
+
+	/**
+	 * @return The number of items the dead letter queue could not accept
+	 */
+	public long dropped() {
+		return dropped.get();
+	}
+}
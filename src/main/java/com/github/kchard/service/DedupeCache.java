@@ -0,0 +1,187 @@
+package com.github.kchard.service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>A bounded set of recently seen keys, used to drop duplicate items delivered by an at-least-once upstream.</p>
+ *
+ * <p>A key is remembered for the time to live after it was first seen, or until the cache is full and it is the oldest key of
+ * its stripe. A duplicate that arrives after its key was forgotten is not detected, so the capacity and time to live should cover
+ * the window in which the upstream redelivers. The keys are split over stripes by hash, each with its own lock and an equal
+ * share of the capacity, so workers contend only when their keys fall in the same stripe.</p>
+ *
+ * <p>The cache counts hits (duplicates), misses (first sightings), keys evicted to stay within the capacity and keys that expired.</p>
+ *
+ * <p>This class is thread safe.</p>
+ *
+ * @author chardk
+ *
+ * @see DedupingConsumer
+ * @see KeyExtractor
+ */
+public class DedupeCache {
+
+	private static final int STRIPES = 16;
+
+	private final Stripe[] stripes = new Stripe[STRIPES];
+	private final int stripeCapacity;
+	private final long ttlNanos;
+	private final Clock clock;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private final AtomicLong expirations = new AtomicLong();
+
+	/**
+	 * @param capacity The most keys the cache holds, rounded up to a multiple of the number of stripes
+	 * @param ttl The time a key is remembered after it was first seen
+	 * @param unit The unit of time the time to live is specified in
+	 */
+	public DedupeCache(final int capacity, final long ttl, final TimeUnit unit) {
+		this(capacity, ttl, unit, SystemClock.instance());
+	}
+
+	/**
+	 * @param capacity The most keys the cache holds, rounded up to a multiple of the number of stripes
+	 * @param ttl The time a key is remembered after it was first seen
+	 * @param unit The unit of time the time to live is specified in
+	 * @param clock The clock used to expire keys
+	 */
+	public DedupeCache(final int capacity, final long ttl, final TimeUnit unit, final Clock clock) {
+		if(capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be at least 1: " + capacity);
+		}
+
+		if(ttl <= 0) {
+			throw new IllegalArgumentException("The time to live must be greater than 0: " + ttl);
+		}
+
+		this.stripeCapacity = (capacity + STRIPES - 1) / STRIPES;
+		this.ttlNanos = unit.toNanos(ttl);
+		this.clock = clock;
+		for(int i = 0; i < STRIPES; i++) {
+			stripes[i] = new Stripe();
+		}
+	}
+
+	/**
+	 * Records the key as seen
+	 *
+	 * @param key The key of an item
+	 * @return true if the key was not seen within its time to live, false if the item is a duplicate
+	 */
+	public boolean firstSighting(final Object key) {
+		long now = clock.nanoTime();
+		Stripe stripe = stripe(key);
+		synchronized(stripe) {
+			expire(stripe, now);
+			Long seen = stripe.keys.get(key);
+			if(seen != null) {
+				hits.incrementAndGet();
+				return false;
+			}
+
+			stripe.keys.put(key, now);
+			if(stripe.keys.size() > stripeCapacity) {
+				Iterator<Long> oldest = stripe.keys.values().iterator();
+				oldest.next();
+				oldest.remove();
+				evictions.incrementAndGet();
+			}
+		}
+
+		misses.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * Forgets a key, so that the next item with the key is not treated as a duplicate
+	 *
+	 * @param key The key of an item
+	 */
+	public void forget(final Object key) {
+		Stripe stripe = stripe(key);
+		synchronized(stripe) {
+			stripe.keys.remove(key);
+		}
+	}
+
+	/**
+	 * @return The number of keys remembered, including expired keys that have not been removed yet
+	 */
+	public int size() {
+		int size = 0;
+		for(Stripe stripe : stripes) {
+			synchronized(stripe) {
+				size += stripe.keys.size();
+			}
+		}
+
+		return size;
+	}
+
+	/**
+	 * @return The number of duplicates seen
+	 */
+	public long hits() {
+		return hits.get();
+	}
+
+	/**
+	 * @return The number of keys seen for the first time
+	 */
+	public long misses() {
+		return misses.get();
+	}
+
+	/**
+	 * @return The number of keys forgotten before they expired to keep the cache within its capacity
+	 */
+	public long evictions() {
+		return evictions.get();
+	}
+
+	/**
+	 * @return The number of keys forgotten because their time to live passed
+	 */
+	public long expirations() {
+		return expirations.get();
+	}
+
+	private Stripe stripe(final Object key) {
+		int hash = key.hashCode();
+		//Spread the high bits, keys with poor hash codes still fall in different stripes
+		hash ^= (hash >>> 16);
+		hash ^= (hash >>> 8);
+		return stripes[hash & (STRIPES - 1)];
+	}
+
+	/**
+	 * Keys are kept in the order they were first seen, so the expired keys are at the head. The stripe's lock must be held.
+	 */
+	private void expire(final Stripe stripe, final long now) {
+		for(Iterator<Long> iterator = stripe.keys.values().iterator(); iterator.hasNext();) {
+			if(now - iterator.next() < ttlNanos) {
+				return;
+			}
+
+			iterator.remove();
+			expirations.incrementAndGet();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "DedupeCache [size=" + size() + ", hits=" + hits() + ", misses=" + misses() + ", evictions=" + evictions() + ", expirations=" + expirations() + "]";
+	}
+
+	private static final class Stripe {
+
+		private final Map<Object, Long> keys = new LinkedHashMap<Object, Long>();
+	}
+}
@@ -0,0 +1,51 @@
+package com.github.kchard.service;
+
+/**
+ * <p>A consumer that passes each item to another consumer only if no item with the same key was seen recently.</p>
+ *
+ * <p>The key is recorded before the item is consumed, so a duplicate that arrives while the original is still being consumed is
+ * dropped. If the consumer throws, the key is forgotten again so that a retry of the item, for example by a {@link RetryHandler},
+ * is not mistaken for a duplicate. When the consumer is guarded by a circuit breaker or a bulkhead, {@link ServiceBuilder} also
+ * forgets the key of an item the guard rejects, so that the item can be redelivered from its dead letters.</p>
+ *
+ * @author chardk
+ *
+ * @param <T>
+ * @see DedupeCache
+ */
+public class DedupingConsumer<T> implements Consumer<T> {
+
+	private final Consumer<T> consumer;
+	private final KeyExtractor<? super T> keyExtractor;
+	private final DedupeCache cache;
+
+	/**
+	 * @param consumer The consumer of items that are not duplicates
+	 * @param keyExtractor The extractor of the key that identifies an item
+	 * @param cache The keys seen recently
+	 */
+	public DedupingConsumer(final Consumer<T> consumer, final KeyExtractor<? super T> keyExtractor, final DedupeCache cache) {
+		this.consumer = consumer;
+		this.keyExtractor = keyExtractor;
+		this.cache = cache;
+	}
+
+	@Override
+	public void consume(final T item) {
+		Object key = keyExtractor.key(item);
+		if(!cache.firstSighting(key)) {
+			return;
+		}
+
+		try {
+			consumer.consume(item);
+		} catch(RuntimeException e) {
+			cache.forget(key);
+			throw e;
+		}
+	}
+
+	public DedupeCache cache() {
+		return cache;
+	}
+}
@@ -0,0 +1,13 @@
+package com.github.kchard.service;
+
+/**
+ * A {@link Consumer} of primitive doubles that never boxes.
+ *
+ * @author chardk
+ *
+ * @see DoubleChannel
+ */
+public interface DoubleConsumer {
+
+	void consume(double item);
+}
@@ -0,0 +1,37 @@
+package com.github.kchard.service;
+
+/**
+ * Runs {@link DoubleConsumerWorker}s that consume a {@link DoubleChannel} without boxing.
+ *
+ * @author chardk
+ *
+ * @see DoubleConsumer
+ * @see DoubleChannel
+ */
+public class DoubleConsumerWorkerService extends WorkerService {
+
+	private final DoubleChannel channel;
+
+	public DoubleConsumerWorkerService(final DoubleConsumer consumer, final DoubleChannel channel) {
+		this(consumer, channel, DEFAULT_MAX_WORKERS);
+	}
+
+	public DoubleConsumerWorkerService(final DoubleConsumer consumer, final DoubleChannel channel, final int maxWorkers) {
+		super(new WorkerFactory() {
+
+			@Override
+			public Worker createWorker(AbstractService owner) {
+				return new DoubleConsumerWorker(consumer, channel, owner);
+			}
+		}, maxWorkers);
+		this.channel = channel;
+	}
+
+	/**
+	 * @return The number of values waiting in the channel
+	 */
+	@Override
+	public int queueDepth() {
+		return channel.size();
+	}
+}
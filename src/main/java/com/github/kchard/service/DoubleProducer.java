@@ -0,0 +1,13 @@
+package com.github.kchard.service;
+
+/**
+ * A {@link Producer} of primitive doubles that never boxes.
+ *
+ * @author chardk
+ *
+ * @see DoubleChannel
+ */
+public interface DoubleProducer {
+
+	double produce();
+}
@@ -0,0 +1,37 @@
+package com.github.kchard.service;
+
+/**
+ * Runs {@link DoubleProducerWorker}s that fill a {@link DoubleChannel} without boxing.
+ *
+ * @author chardk
+ *
+ * @see DoubleProducer
+ * @see DoubleChannel
+ */
+public class DoubleProducerWorkerService extends WorkerService {
+
+	private final DoubleChannel channel;
+
+	public DoubleProducerWorkerService(final DoubleProducer producer, final DoubleChannel channel) {
+		this(producer, channel, DEFAULT_MAX_WORKERS);
+	}
+
+	public DoubleProducerWorkerService(final DoubleProducer producer, final DoubleChannel channel, final int maxWorkers) {
+		super(new WorkerFactory() {
+
+			@Override
+			public Worker createWorker(AbstractService owner) {
+				return new DoubleProducerWorker(producer, channel, owner);
+			}
+		}, maxWorkers);
+		this.channel = channel;
+	}
+
+	/**
+	 * @return The number of values waiting in the channel
+	 */
+	@Override
+	public int queueDepth() {
+		return channel.size();
+	}
+}
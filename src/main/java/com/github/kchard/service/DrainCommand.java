@@ -0,0 +1,51 @@
+package com.github.kchard.service;
+
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Consumes up to a number of items from a queue each tick, stopping early when the queue is empty or the time budget is used.
+ *
+ * @author chardk
+ *
+ * @param <T>
+ * @see BulkCommand
+ * @see ServiceBuilder.ScheduledConsumerBuilder
+ */
+public class DrainCommand<T> extends BulkCommand {
+
+	private final Consumer<T> consumer;
+	private final Queue<T> queue;
+
+	/**
+	 * Drains up to the given number of items per tick without a time budget
+	 */
+	public DrainCommand(final Consumer<T> consumer, final Queue<T> queue, final int maxItems) {
+		this(consumer, queue, maxItems, 0L, TimeUnit.MILLISECONDS, SystemClock.instance());
+	}
+
+	/**
+	 * @param consumer The consumer of the items
+	 * @param queue The queue to drain
+	 * @param maxItems The most items consumed per tick
+	 * @param budget The time a tick may take, 0 for no limit
+	 * @param unit The unit of time the budget is specified in
+	 * @param clock The clock used to measure the budget
+	 */
+	public DrainCommand(final Consumer<T> consumer, final Queue<T> queue, final int maxItems, final long budget, final TimeUnit unit, final Clock clock) {
+		super(maxItems, budget, unit, clock);
+		this.consumer = consumer;
+		this.queue = queue;
+	}
+
+	@Override
+	protected boolean moveOne() {
+		T item = queue.poll();
+		if(item == null) {
+			return false;
+		}
+
+		consumer.consume(item);
+		return true;
+	}
+}
@@ -0,0 +1,28 @@
+package com.github.kchard.service;
+
+/**
+ * <p>An EventSink receives the {@link ServiceEvent}s emitted by a service and its workers.</p>
+ *
+ * <p>Sinks are invoked on the thread the event occurred on, often a worker thread on the hot path,
+ * so implementations should be cheap and must be thread safe.
+ * {@link #isEnabled(ServiceEvent)} is checked before each event is delivered.</p>
+ *
+ * @author chardk
+ *
+ * @see EventSinks
+ * @see AbstractService#setEventSink(EventSink)
+ */
+public interface EventSink {
+
+	/**
+	 * @return true if this sink wants to receive events of the given type
+	 */
+	boolean isEnabled(ServiceEvent event);
+
+	/**
+	 * @param event The type of event
+	 * @param service The service the event occurred in
+	 * @param subject The object the event is about, see {@link ServiceEvent}
+	 */
+	void onEvent(ServiceEvent event, Service service, Object subject);
+}
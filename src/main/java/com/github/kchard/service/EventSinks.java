@@ -0,0 +1,120 @@
+package com.github.kchard.service;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Factory methods for common {@link EventSink}s.
+ *
+ * @author chardk
+ *
+ * @see EventSink
+ */
+public final class EventSinks {
+
+	private static final EventSink NO_OP = new NoOpEventSink();
+
+	private EventSinks() {
+	}
+
+	/**
+	 * @return A sink that is disabled for every event. This is the default sink of every service.
+	 */
+	public static EventSink noOp() {
+		return NO_OP;
+	}
+
+	/**
+	 * @return A sink that writes lifecycle events at debug level and worker events at trace level
+	 */
+	public static EventSink logging() {
+		return new LoggingEventSink(LoggerFactory.getLogger(EventSink.class.getName()));
+	}
+
+	/**
+	 * @return A sink that delivers each event to all of the given sinks
+	 */
+	public static EventSink compose(final EventSink... sinks) {
+		return new CompositeEventSink(Arrays.asList(sinks));
+	}
+
+	private static final class NoOpEventSink implements EventSink {
+
+		@Override
+		public boolean isEnabled(ServiceEvent event) {
+			return false;
+		}
+
+		@Override
+		public void onEvent(ServiceEvent event, Service service, Object subject) {
+		}
+	}
+
+	private static final class LoggingEventSink implements EventSink {
+
+		private final Logger logger;
+
+		private LoggingEventSink(final Logger logger) {
+			this.logger = logger;
+		}
+
+		@Override
+		public boolean isEnabled(ServiceEvent event) {
+			return isWorkerEvent(event) ? logger.isTraceEnabled() : logger.isDebugEnabled();
+		}
+
+		@Override
+		public void onEvent(ServiceEvent event, Service service, Object subject) {
+			if(isWorkerEvent(event)) {
+				if(logger.isTraceEnabled()) {
+					logger.trace("{} {}: {}", new Object[] {event, service.name(), subject});
+				}
+			} else if(logger.isDebugEnabled()) {
+				logger.debug("{} {}: {}", new Object[] {event, service.name(), subject});
+			}
+		}
+
+		private static boolean isWorkerEvent(final ServiceEvent event) {
+			switch(event) {
+			case COMMAND_STARTED:
+			case ITEM_PRODUCED:
+			case ITEM_CONSUMED:
+				return true;
+			default:
+				return false;
+			}
+		}
+	}
+
+	private static final class CompositeEventSink implements EventSink {
+
+		private final EventSink[] sinks;
+
+		private CompositeEventSink(final List<EventSink> sinks) {
+			this.sinks = sinks.toArray(new EventSink[sinks.size()]);
+		}
+
+		@Override
+		public boolean isEnabled(ServiceEvent event) {
+			for(EventSink sink : sinks) {
+				if(sink.isEnabled(event)) {
+					return true;
+				}
+			}
+
+			return false;
+		}
+
+		@Override
+		public void onEvent(ServiceEvent event, Service service, Object subject) {
+			for(EventSink sink : sinks) {
+				if(sink.isEnabled(event)) {
+					sink.onEvent(event, service, subject);
+				}
+			}
+		}
+	}
+}
@@ -2,8 +2,8 @@ package com.github.kchard.service;
 
 import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 
@@ -21,11 +21,14 @@ import java.util.concurrent.TimeUnit;
 public class FixedRateScheduledService extends AbstractService {
 
 	private long initialDelay;
-	private final long delay;
+	private long delay;
 	private final TimeUnit unit;
 	private final List<Runnable> commands;
+	private final Clock clock;
 	
 	private ScheduledExecutorService executor;
+	private ScheduledFuture<?> future;
+	private ExecuteCommands executeCommands;
 	
 	/**
 	 * 
@@ -35,10 +38,23 @@ public class FixedRateScheduledService extends AbstractService {
 	 * @param unit The unit of time the delay is specified in
 	 */
 	public FixedRateScheduledService(final List<Runnable> commands, final long initialDelay, final long delay, final TimeUnit unit) {
+		this(commands, initialDelay, delay, unit, SystemClock.instance());
+	}
+
+	/**
+	 * 
+	 * @param commands The commands to execute
+	 * @param initialDelay The delay after {@link #start()} is called before the commands will execute the first time
+	 * @param delay The delay after the initial execution before subsequent execution
+	 * @param unit The unit of time the delay is specified in
+	 * @param clock The clock used to schedule the commands
+	 */
+	public FixedRateScheduledService(final List<Runnable> commands, final long initialDelay, final long delay, final TimeUnit unit, final Clock clock) {
 		this.commands = Collections.unmodifiableList(commands);
 		this.initialDelay = initialDelay;
 		this.delay = delay;
 		this.unit = unit;
+		this.clock = clock;
 	}
 
     @Override
@@ -48,12 +64,40 @@ public class FixedRateScheduledService extends AbstractService {
 	
 	@Override
 	protected final void doInitialize() {
-		executor = Executors.newScheduledThreadPool(2);
+		executor = clock.newScheduledExecutor(2, ThreadPolicy.defaults().threadFactory(name()));
 	}
 
 	@Override
 	protected final void doStart() {
-		executor.scheduleAtFixedRate(new ExecuteCommands(), initialDelay, delay, unit);
+		executeCommands = new ExecuteCommands();
+		future = executor.scheduleAtFixedRate(executeCommands, initialDelay, delay, unit);
+	}
+
+	/**
+	 * @return The current period between the start of each execution
+	 */
+	public final synchronized long delay() {
+		return delay;
+	}
+
+	/**
+	 * Changes the period between the start of each execution. If the service is running, the commands are rescheduled on the existing executor
+	 * and the next execution happens no later than the new delay from now.
+	 *
+	 * @param delay The new delay in the unit the service was created with
+	 */
+	public final synchronized void reschedule(final long delay) {
+		if(delay < 1) {
+			throw new IllegalArgumentException("Delay must be greater than 0: " + delay);
+		}
+
+		this.delay = delay;
+		if(future != null && !future.isCancelled() && !executor.isShutdown()) {
+			logger.debug("Rescheduling {} with delay {}", name(), delay);
+			long next = Math.max(0L, Math.min(future.getDelay(unit), delay));
+			future.cancel(false);
+			future = executor.scheduleAtFixedRate(executeCommands, next, delay, unit);
+		}
 	}
 
 	@Override
@@ -66,8 +110,9 @@ public class FixedRateScheduledService extends AbstractService {
 
         private volatile boolean started = false;
 
+		//Synchronized so an execution scheduled by reschedule cannot overlap one that is still running
 		@Override
-		public void run() {
+		public synchronized void run() {
 
             if(!started) {
                 pendingServiceStarted();
@@ -75,11 +120,13 @@ public class FixedRateScheduledService extends AbstractService {
             }
 
 			for(Runnable command : commands) {
-				logger.trace("Running: " + command.getClass().getName());
+				logger.trace("Running: {}", command.getClass().getName());
+				emit(ServiceEvent.COMMAND_STARTED, command);
 				try {
 					command.run();
 				} catch(RuntimeException e) {
 					logger.error("Shutting down executor: " + e);
+					emit(ServiceEvent.COMMAND_FAILED, e);
                     reportException(e);
 				}
 			}
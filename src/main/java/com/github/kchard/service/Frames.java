@@ -0,0 +1,98 @@
+package com.github.kchard.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Reads and writes the frames exchanged by a {@link TransportSender} and a {@link TransportReceiver}. Items travel as a four
+ * byte length followed by the encoded item, credit flows back as four byte counts.
+ *
+ * @author chardk
+ */
+final class Frames {
+
+	/**
+	 * Frames larger than this are treated as a corrupt stream
+	 */
+	static final int MAX_FRAME_LENGTH = 64 * 1024 * 1024;
+
+	private Frames() {
+	}
+
+	static void writeFrame(final WritableByteChannel channel, final byte[] payload) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(4 + payload.length);
+		buffer.putInt(payload.length).put(payload);
+		buffer.flip();
+		writeFully(channel, buffer);
+	}
+
+	/**
+	 * @return The payload of the next frame, or null at the end of the stream
+	 */
+	static byte[] readFrame(final ReadableByteChannel channel) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(4);
+		if(!readFully(channel, header)) {
+			return null;
+		}
+
+		int length = header.getInt(0);
+		if(length < 0 || length > MAX_FRAME_LENGTH) {
+			throw new IOException("Invalid frame length: " + length);
+		}
+
+		ByteBuffer payload = ByteBuffer.allocate(length);
+		if(!readFully(channel, payload)) {
+			throw new IOException("Stream ended within a frame");
+		}
+
+		return payload.array();
+	}
+
+	static void writeInt(final WritableByteChannel channel, final int value) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(4);
+		buffer.putInt(value);
+		buffer.flip();
+		writeFully(channel, buffer);
+	}
+
+	/**
+	 * @return The next value, or -1 at the end of the stream
+	 */
+	static int readInt(final ReadableByteChannel channel) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(4);
+		return readFully(channel, buffer) ? buffer.getInt(0) : -1;
+	}
+
+	static void closeQuietly(final Closeable closeable) {
+		if(closeable != null) {
+			try {
+				closeable.close();
+			} catch(IOException e) {
+				//Nothing more can be done with a channel that failed to close
+			}
+		}
+	}
+
+	private static void writeFully(final WritableByteChannel channel, final ByteBuffer buffer) throws IOException {
+		while(buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	private static boolean readFully(final ReadableByteChannel channel, final ByteBuffer buffer) throws IOException {
+		while(buffer.hasRemaining()) {
+			if(channel.read(buffer) < 0) {
+				if(buffer.position() == 0) {
+					return false;
+				}
+
+				throw new IOException("Stream ended within a frame");
+			}
+		}
+
+		return true;
+	}
+}
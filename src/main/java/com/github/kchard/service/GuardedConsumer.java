@@ -0,0 +1,86 @@
+package com.github.kchard.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>A consumer that calls another consumer through an optional {@link Bulkhead} and an optional {@link CircuitBreaker}.</p>
+ *
+ * <p>An item is rejected without calling the consumer when the bulkhead is full or the breaker is open. Rejected items are
+ * passed to the fallback consumer, for example a {@link DeadLetterConsumer}, so the worker moves straight on to the next item
+ * instead of waiting on a dependency that is failing. Exceptions thrown by the consumer are counted by the breaker and rethrown.</p>
+ *
+ * @author chardk
+ *
+ * @param <T>
+ * @see CircuitBreaker
+ * @see Bulkhead
+ */
+public class GuardedConsumer<T> implements Consumer<T> {
+
+	private final Consumer<T> consumer;
+	private final CircuitBreaker breaker;
+	private final Bulkhead bulkhead;
+	private final Consumer<T> fallback;
+	private final AtomicLong rejected = new AtomicLong();
+
+	/**
+	 * @param consumer The consumer to guard
+	 * @param breaker The circuit breaker, or null for none
+	 * @param bulkhead The bulkhead, or null for none
+	 * @param fallback The consumer of rejected items, or null to discard them
+	 */
+	public GuardedConsumer(final Consumer<T> consumer, final CircuitBreaker breaker, final Bulkhead bulkhead, final Consumer<T> fallback) {
+		this.consumer = consumer;
+		this.breaker = breaker;
+		this.bulkhead = bulkhead;
+		this.fallback = fallback;
+	}
+
+	@Override
+	public void consume(T item) {
+		if(bulkhead != null && !bulkhead.tryEnter()) {
+			reject(item);
+			return;
+		}
+
+		try {
+			if(breaker != null && !breaker.tryAcquire()) {
+				reject(item);
+				return;
+			}
+
+			long start = System.nanoTime();
+			try {
+				consumer.consume(item);
+			} catch(RuntimeException e) {
+				if(breaker != null) {
+					breaker.onFailure(System.nanoTime() - start);
+				}
+
+				throw e;
+			}
+
+			if(breaker != null) {
+				breaker.onSuccess(System.nanoTime() - start);
+			}
+		} finally {
+			if(bulkhead != null) {
+				bulkhead.exit();
+			}
+		}
+	}
+
+	/**
+	 * @return The number of items passed to the fallback instead of the consumer
+	 */
+	public long rejected() {
+		return rejected.get();
+	}
+
+	private void reject(final T item) {
+		rejected.incrementAndGet();
+		if(fallback != null) {
+			fallback.consume(item);
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package com.github.kchard.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>A producer that calls another producer through an optional {@link Bulkhead} and an optional {@link CircuitBreaker}.</p>
+ *
+ * <p>A producer has no item to divert, so instead of rejecting a call the worker waits: for a place in the bulkhead and,
+ * while the breaker is open, until the breaker permits probe calls. With a breaker, an exception thrown by the producer is
+ * counted and the call is tried again once the breaker permits it, so a failing dependency pauses the workers rather than
+ * stopping them. Without a breaker exceptions are rethrown. If the worker is interrupted while it waits an
+ * {@link IllegalStateException} is thrown, which stops it.</p>
+ *
+ * @author chardk
+ *
+ * @param <T>
+ * @see CircuitBreaker
+ * @see Bulkhead
+ */
+public class GuardedProducer<T> implements Producer<T> {
+
+	private static final long MIN_PAUSE_NANOS = TimeUnit.MILLISECONDS.toNanos(1L);
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	private final Producer<T> producer;
+	private final CircuitBreaker breaker;
+	private final Bulkhead bulkhead;
+
+	/**
+	 * @param producer The producer to guard
+	 * @param breaker The circuit breaker, or null for none
+	 * @param bulkhead The bulkhead, or null for none
+	 */
+	public GuardedProducer(final Producer<T> producer, final CircuitBreaker breaker, final Bulkhead bulkhead) {
+		this.producer = producer;
+		this.breaker = breaker;
+		this.bulkhead = bulkhead;
+	}
+
+	@Override
+	public T produce() {
+		if(bulkhead != null) {
+			try {
+				bulkhead.enter();
+			} catch(InterruptedException e) {
+				throw interrupted();
+			}
+		}
+
+		try {
+			while(true) {
+				while(breaker != null && !breaker.tryAcquire()) {
+					//Wait until the breaker half opens, another worker may have taken the probes in the meantime
+					LockSupport.parkNanos(Math.max(MIN_PAUSE_NANOS, breaker.remainingOpen(TimeUnit.NANOSECONDS)));
+					if(Thread.currentThread().isInterrupted()) {
+						throw interrupted();
+					}
+				}
+
+				long start = System.nanoTime();
+				try {
+					T item = producer.produce();
+					if(breaker != null) {
+						breaker.onSuccess(System.nanoTime() - start);
+					}
+
+					return item;
+				} catch(RuntimeException e) {
+					if(breaker == null) {
+						throw e;
+					}
+
+					//The breaker decides when to try again
+					breaker.onFailure(System.nanoTime() - start);
+					logger.debug("Producer failed, retrying through the circuit breaker: {}", e.getMessage());
+				}
+			}
+		} finally {
+			if(bulkhead != null) {
+				bulkhead.exit();
+			}
+		}
+	}
+
+	private static IllegalStateException interrupted() {
+		//Preserve the interrupted status of the Thread
+		Thread.currentThread().interrupt();
+		return new IllegalStateException("Interrupted while waiting to produce");
+	}
+}
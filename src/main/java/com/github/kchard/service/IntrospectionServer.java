@@ -0,0 +1,131 @@
+package com.github.kchard.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * <p>Serves {@link ServiceSnapshot}s of a service tree as JSON over HTTP, using only the HTTP server built into the JDK.</p>
+ *
+ * <p>A GET request to any path returns a snapshot of the whole tree. The throughput of each worker service is measured
+ * since the previous request, or since the service started for the first request. Requests are handled one at a time on a
+ * single daemon thread and the server binds to the loopback address unless another address is given.</p>
+ *
+ * <p>The server is also a {@link StateListener}, added to the root of the tree it starts serving when the root is initialized
+ * and stops when the root is shutdown.</p>
+ *
+ * @author chardk
+ *
+ * @see ServiceSnapshot
+ * @see ServiceBuilder#withIntrospection(int)
+ */
+public class IntrospectionServer implements StateListener {
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	private final Service root;
+	private final InetSocketAddress address;
+
+	private HttpServer server;
+	private ExecutorService executor;
+	private volatile ServiceSnapshot previous;
+
+	/**
+	 * @param root The root of the tree to serve
+	 * @param port The port to listen on the loopback address, 0 for any free port
+	 */
+	public IntrospectionServer(final Service root, final int port) {
+		this(root, new InetSocketAddress("127.0.0.1", port));
+	}
+
+	/**
+	 * @param root The root of the tree to serve
+	 * @param address The address to listen on
+	 */
+	public IntrospectionServer(final Service root, final InetSocketAddress address) {
+		this.root = root;
+		this.address = address;
+	}
+
+	/**
+	 * @throws IllegalStateException If the server cannot listen on its address
+	 */
+	public synchronized void start() {
+		if(server != null) {
+			return;
+		}
+
+		try {
+			server = HttpServer.create(address, 0);
+		} catch(IOException e) {
+			throw new IllegalStateException("Unable to listen on " + address + ": " + e.getMessage(), e);
+		}
+
+		executor = Executors.newSingleThreadExecutor(ThreadPolicy.defaults().withDaemon(true).threadFactory("introspection"));
+		server.setExecutor(executor);
+		server.createContext("/", new SnapshotHandler());
+		server.start();
+		logger.info("Serving snapshots of {} on port {}", root.name(), port());
+	}
+
+	public synchronized void stop() {
+		if(server == null) {
+			return;
+		}
+
+		server.stop(0);
+		executor.shutdownNow();
+		server = null;
+		executor = null;
+	}
+
+	/**
+	 * @return The port the server listens on, or -1 if it is not running
+	 */
+	public synchronized int port() {
+		return server == null ? -1 : server.getAddress().getPort();
+	}
+
+	@Override
+	public void stateChanged(final Service service, final State previous, final State current) {
+		if(current.isInitialized()) {
+			start();
+		} else if(current.isShutdown() || current.isExceptional()) {
+			stop();
+		}
+	}
+
+	private class SnapshotHandler implements HttpHandler {
+
+		@Override
+		public void handle(final HttpExchange exchange) throws IOException {
+			try {
+				if(!"GET".equals(exchange.getRequestMethod())) {
+					exchange.sendResponseHeaders(405, -1);
+					return;
+				}
+
+				ServiceSnapshot snapshot = ServiceSnapshot.of(root);
+				byte[] body = snapshot.toJson(previous).getBytes("UTF-8");
+				previous = snapshot;
+
+				exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+				exchange.sendResponseHeaders(200, body.length);
+				OutputStream out = exchange.getResponseBody();
+				out.write(body);
+				out.close();
+			} finally {
+				exchange.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,23 @@
+package com.github.kchard.service;
+
+/**
+ * Handles items that a {@link ConsumerWorker} failed to consume. A worker with a handler keeps running when its consumer throws.
+ *
+ * @author chardk
+ *
+ * @param <T>
+ * @see RetryHandler
+ */
+public interface ItemFailureHandler<T> {
+
+	/**
+	 * @param item The item the consumer threw on
+	 * @param e The exception thrown
+	 */
+	void onFailure(T item, RuntimeException e);
+
+	/**
+	 * @param item An item that was consumed successfully
+	 */
+	void onSuccess(T item);
+}
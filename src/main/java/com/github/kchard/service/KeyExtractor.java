@@ -0,0 +1,18 @@
+package com.github.kchard.service;
+
+/**
+ * Extracts the key that identifies an item, two items with equal keys are duplicates of each other.
+ *
+ * @author chardk
+ *
+ * @param <T>
+ * @see DedupeCache
+ */
+public interface KeyExtractor<T> {
+
+	/**
+	 * @param item The item
+	 * @return The key of the item, which must implement equals and hashCode and must not be null
+	 */
+	Object key(T item);
+}
@@ -0,0 +1,130 @@
+package com.github.kchard.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>A histogram of latencies that can be recorded concurrently without locking or allocation.</p>
+ *
+ * <p>Values are counted in buckets that are logarithmic in magnitude and linear within each power of two,
+ * so every reported percentile is within about 3% of the recorded value.</p>
+ *
+ * @author chardk
+ *
+ * @see LoadGenerator
+ */
+public class LatencyRecorder {
+
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong total = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * @param latency The latency to record, negative values are recorded as 0
+	 * @param unit The unit of time the latency is specified in
+	 */
+	public void record(final long latency, final TimeUnit unit) {
+		long nanos = Math.max(0L, unit.toNanos(latency));
+		buckets.incrementAndGet(bucket(nanos));
+		count.incrementAndGet();
+		total.addAndGet(nanos);
+
+		long current = max.get();
+		while(nanos > current && !max.compareAndSet(current, nanos)) {
+			current = max.get();
+		}
+	}
+
+	public long count() {
+		return count.get();
+	}
+
+	public long max(final TimeUnit unit) {
+		return unit.convert(max.get(), TimeUnit.NANOSECONDS);
+	}
+
+	public double mean(final TimeUnit unit) {
+		long count = this.count.get();
+		return count == 0 ? 0.0 : (double) total.get() / count / unit.toNanos(1L);
+	}
+
+	/**
+	 * @param percentile The percentile, between 0 and 100
+	 * @param unit The unit of time to report the latency in
+	 * @return The latency at or below which the given percentage of recorded latencies fall, or 0 if nothing was recorded
+	 */
+	public long percentile(final double percentile, final TimeUnit unit) {
+		if(percentile < 0.0 || percentile > 100.0) {
+			throw new IllegalArgumentException("Percentile must be between 0 and 100: " + percentile);
+		}
+
+		long count = this.count.get();
+		if(count == 0) {
+			return 0L;
+		}
+
+		long rank = Math.max(1L, (long) Math.ceil(percentile / 100.0 * count));
+		long seen = 0L;
+		for(int i = 0; i < BUCKETS; i++) {
+			seen += buckets.get(i);
+			if(seen >= rank) {
+				return unit.convert(Math.min(highestValue(i), max.get()), TimeUnit.NANOSECONDS);
+			}
+		}
+
+		return max(unit);
+	}
+
+	/**
+	 * Discards everything recorded so far
+	 */
+	public void reset() {
+		for(int i = 0; i < BUCKETS; i++) {
+			buckets.set(i, 0L);
+		}
+
+		count.set(0L);
+		total.set(0L);
+		max.set(0L);
+	}
+
+	/**
+	 * @param unit The unit of time to report latencies in
+	 * @return A one line summary of the recorded latencies
+	 */
+	public String report(final TimeUnit unit) {
+		return "count=" + count() + ", mean=" + Math.round(mean(unit)) + ", p50=" + percentile(50.0, unit) + ", p90=" + percentile(90.0, unit)
+				+ ", p99=" + percentile(99.0, unit) + ", p99.9=" + percentile(99.9, unit) + ", max=" + max(unit) + " (" + unit.name().toLowerCase() + ")";
+	}
+
+	@Override
+	public String toString() {
+		return report(TimeUnit.MICROSECONDS);
+	}
+
+	static int bucket(final long nanos) {
+		if(nanos < SUB_BUCKETS) {
+			return (int) nanos;
+		}
+
+		int magnitude = 63 - Long.numberOfLeadingZeros(nanos);
+		int shift = magnitude - SUB_BUCKET_BITS;
+		return (shift + 1) * SUB_BUCKETS + (int) ((nanos >>> shift) & (SUB_BUCKETS - 1));
+	}
+
+	static long highestValue(final int bucket) {
+		if(bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+
+		int shift = bucket / SUB_BUCKETS - 1;
+		long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+		return lowest + (1L << shift) - 1;
+	}
+}
@@ -0,0 +1,201 @@
+package com.github.kchard.service;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Defers the initialization and start of a service until it is needed, so that a large tree becomes ready without creating
+ * the threads of children that may never see any work.</p>
+ *
+ * <p>A LazyService is STARTED as soon as it is started, while the service it wraps stays READY. The {@link MonitorEngine} evaluates
+ * the activation condition, see {@link #onFirstItem(WorkerService, long, TimeUnit, MonitorEngine)} and {@link #afterDelay(AbstractService, long, TimeUnit, MonitorEngine)},
+ * and once it is met the wrapped service is initialized and started on an activator thread of the LazyService's own, so that a slow
+ * initialization does not hold up the engine. It can also be activated at any time with {@link #activate()}.
+ * Once activated it runs until the LazyService is shutdown, it is never deactivated.</p>
+ *
+ * <p>An exception in the wrapped service is reported by the LazyService, so the supervision strategy of its parent applies as usual.
+ * Restarting the LazyService resets the wrapped service and defers it again.</p>
+ *
+ * @author chardk
+ *
+ * @see ServiceBuilder#lazyChildren()
+ * @see CompositeService
+ */
+public class LazyService extends AbstractService {
+
+	private final AbstractService delegate;
+	private final Predicate activation;
+	private final long time;
+	private final TimeUnit unit;
+	private final MonitorEngine engine;
+	private final ExecutorService activator;
+
+	private volatile MonitorEngine.Registration activationCheck;
+	private volatile boolean activated = false;
+
+	/**
+	 * @param delegate The service to defer
+	 * @param activation The condition under which the service is activated
+	 * @param interval The interval at which the condition is evaluated while the service has not been activated
+	 * @param unit The unit of time the interval is specified in
+	 * @param engine The engine that evaluates the condition and activates the service
+	 */
+	public LazyService(final AbstractService delegate, final Predicate activation, final long interval, final TimeUnit unit, final MonitorEngine engine) {
+		super("lazy:" + delegate.name());
+		this.delegate = delegate;
+		this.activation = activation;
+		this.time = interval;
+		this.unit = unit;
+		this.engine = engine;
+		this.activator = new ThreadPoolExecutor(0, 1, 1L, TimeUnit.MINUTES, new LinkedBlockingQueue<Runnable>(), ThreadPolicy.defaults().withDaemon(true).threadFactory("activator:" + name()));
+
+		delegate.disableShutdownOnException();
+		delegate.addStateListener(new ReportException());
+	}
+
+	/**
+	 * Defers a worker service until there is an item in its work queue
+	 *
+	 * @param delegate The service to defer, its {@link WorkerService#queueDepth()} must be known
+	 * @param pollInterval The interval at which the depth of the work queue is checked
+	 * @param unit The unit of time the interval is specified in
+	 * @param engine The engine that checks the work queue and activates the service
+	 * @return The lazy service
+	 */
+	public static LazyService onFirstItem(final WorkerService delegate, final long pollInterval, final TimeUnit unit, final MonitorEngine engine) {
+		if(delegate.queueDepth() < 0) {
+			throw new IllegalArgumentException(delegate.name() + " does not know of a work queue");
+		}
+
+		return new LazyService(delegate, new Predicate() {
+
+			@Override
+			public boolean evaluate() {
+				return delegate.queueDepth() > 0;
+			}
+		}, pollInterval, unit, engine);
+	}
+
+	/**
+	 * Defers a service for a fixed time after it is started, typically a scheduled service whose initial delay has been moved here
+	 *
+	 * @param delegate The service to defer
+	 * @param delay The time after {@link #start()} at which the service is activated
+	 * @param unit The unit of time the delay is specified in
+	 * @param engine The engine that activates the service
+	 * @return The lazy service
+	 */
+	public static LazyService afterDelay(final AbstractService delegate, final long delay, final TimeUnit unit, final MonitorEngine engine) {
+		return new LazyService(delegate, null, delay, unit, engine);
+	}
+
+	/**
+	 * @return The deferred service
+	 */
+	public final AbstractService delegate() {
+		return delegate;
+	}
+
+	/**
+	 * @return true once the deferred service has been initialized and started
+	 */
+	public final boolean isActivated() {
+		return activated;
+	}
+
+	/**
+	 * Initializes and starts the deferred service now, unless it already has been or this service is not running
+	 */
+	public final synchronized void activate() {
+		if(activated || !currentState().isStarted()) {
+			return;
+		}
+
+		activated = true;
+		cancelActivation();
+		logger.debug("Activating {}", delegate.name());
+		try {
+			delegate.initialize();
+			delegate.start();
+		} catch(RuntimeException e) {
+			reportException(e);
+		}
+	}
+
+	@Override
+	protected final void doInitialize() {
+		//A restarted service is deferred again
+		State state = delegate.currentState();
+		if(state.isShutdown() || state.isExceptional()) {
+			delegate.reset();
+		}
+
+		activated = false;
+	}
+
+	@Override
+	protected final void doStart() {
+		Runnable activate = new Activate();
+		if(activation == null) {
+			activationCheck = engine.schedule("lazy-activation:" + delegate.name(), activate, time, unit);
+		} else {
+			activationCheck = engine.register("lazy-activation:" + delegate.name(), activate, time, unit);
+			activationCheck.trigger();
+		}
+	}
+
+	@Override
+	protected final void doShutdown() {
+		cancelActivation();
+		State state = delegate.currentState();
+		if(activated && !state.isShutdown() && !state.isExceptional()) {
+			delegate.shutdown();
+		}
+	}
+
+	private void cancelActivation() {
+		MonitorEngine.Registration registration = activationCheck;
+		if(registration != null) {
+			registration.cancel();
+		}
+	}
+
+	private class Activate implements Runnable {
+
+		@Override
+		public void run() {
+			//Only the condition is evaluated on the engine thread
+			if(activation == null || activation.evaluate()) {
+				cancelActivation();
+				activator.execute(new Runnable() {
+
+					@Override
+					public void run() {
+						activate();
+					}
+				});
+			}
+		}
+	}
+
+	private class ReportException implements StateListener {
+
+		@Override
+		public void stateChanged(final Service service, final State previous, final State current) {
+			if(current.isExceptional()) {
+				//Reported from the activator thread, the listener runs while the deferred service holds its own lock
+				activator.execute(new Runnable() {
+
+					@Override
+					public void run() {
+						if(currentState().isStarted()) {
+							reportException(delegate.exception());
+						}
+					}
+				});
+			}
+		}
+	}
+}
@@ -0,0 +1,130 @@
+package com.github.kchard.service;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>A {@link Producer} that offers load according to a {@link LoadProfile} and measures the latency of each item
+ * from the time it was sent until the time it has been consumed.</p>
+ *
+ * <p>In open loop mode every item has an intended send time taken from a single schedule shared by all producer threads.
+ * Latency is measured from that intended time rather than from the time the item was actually produced, so time spent
+ * waiting behind a slow consumer or a full queue is counted instead of silently omitted. In closed loop mode each item is
+ * sent as soon as a previous one has been consumed and its latency is measured from the time it was produced.</p>
+ *
+ * <p>Items are only measured if they are consumed by the consumer returned from {@link #measure(Consumer)}, which is also
+ * what allows a closed loop generator to send more items.</p>
+ *
+ * @author chardk
+ *
+ * @param <T>
+ * @see LoadProfile
+ * @see LoadGeneratorService
+ */
+public class LoadGenerator<T> implements Producer<TimedItem<T>> {
+
+	private static final double NANOS_PER_SECOND = 1000000000.0;
+
+	private final Producer<T> producer;
+	private final LoadProfile profile;
+	private final LatencyRecorder latencies = new LatencyRecorder();
+	private final Semaphore inFlight;
+
+	private boolean started = false;
+	private long startNanos;
+	private long nextNanos;
+
+	public LoadGenerator(final Producer<T> producer, final LoadProfile profile) {
+		this.producer = producer;
+		this.profile = profile;
+		this.inFlight = new Semaphore(profile.concurrency());
+	}
+
+	public LoadProfile profile() {
+		return profile;
+	}
+
+	/**
+	 * @return The latencies measured so far
+	 */
+	public LatencyRecorder latencies() {
+		return latencies;
+	}
+
+	@Override
+	public TimedItem<T> produce() {
+		long intendedNanos = profile.mode() == LoadProfile.Mode.OPEN_LOOP ? awaitArrival() : awaitCompletion();
+		if(Thread.currentThread().isInterrupted()) {
+			//The worker is stopping, its put on the queue is interrupted so the item is never sent
+			return new TimedItem<T>(null, intendedNanos);
+		}
+
+		return new TimedItem<T>(producer.produce(), intendedNanos);
+	}
+
+	/**
+	 * @param consumer The consumer of the generated items
+	 * @return A consumer that consumes the item with the given consumer and then records its latency
+	 */
+	public Consumer<TimedItem<T>> measure(final Consumer<T> consumer) {
+		return new Consumer<TimedItem<T>>() {
+
+			@Override
+			public void consume(TimedItem<T> item) {
+				try {
+					consumer.consume(item.item());
+				} finally {
+					latencies.record(System.nanoTime() - item.intendedNanos(), TimeUnit.NANOSECONDS);
+					if(profile.mode() == LoadProfile.Mode.CLOSED_LOOP) {
+						inFlight.release();
+					}
+				}
+			}
+		};
+	}
+
+	/**
+	 * Ends the current run. The next item produced starts a new schedule with all items in flight again.
+	 */
+	synchronized void finish() {
+		started = false;
+		if(profile.mode() == LoadProfile.Mode.CLOSED_LOOP) {
+			inFlight.drainPermits();
+			inFlight.release(profile.concurrency());
+		}
+	}
+
+	private long awaitArrival() {
+		long intendedNanos = nextArrival();
+		long wait;
+		while((wait = intendedNanos - System.nanoTime()) > 0 && !Thread.currentThread().isInterrupted()) {
+			LockSupport.parkNanos(wait);
+		}
+
+		return intendedNanos;
+	}
+
+	private synchronized long nextArrival() {
+		if(!started) {
+			started = true;
+			startNanos = System.nanoTime();
+			nextNanos = startNanos;
+		}
+
+		long intendedNanos = nextNanos;
+		nextNanos = intendedNanos + Math.max(1L, (long) (NANOS_PER_SECOND / profile.rateAt(intendedNanos - startNanos)));
+		return intendedNanos;
+	}
+
+	private long awaitCompletion() {
+		try {
+			inFlight.acquire();
+		} catch(InterruptedException e) {
+			//Preserve the interrupted status of the Thread
+			Thread.currentThread().interrupt();
+		}
+
+		return System.nanoTime();
+	}
+}
@@ -0,0 +1,47 @@
+package com.github.kchard.service;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>A {@link ProducerWorkerService} that puts the items of a {@link LoadGenerator} on a queue, used to soak test consumers.</p>
+ *
+ * <p>The duration of a run is usually set with {@link ServiceBuilder#runFor(long)}. When the service is shutdown the
+ * latency percentiles measured during the run are logged. An open loop generator needs enough workers to keep up with
+ * its arrival rate while they wait on a full queue.</p>
+ *
+ * @author chardk
+ *
+ * @param <T>
+ * @see LoadGenerator
+ * @see LoadProfile
+ */
+public class LoadGeneratorService<T> extends ProducerWorkerService<TimedItem<T>> {
+
+	private final LoadGenerator<T> generator;
+
+	public LoadGeneratorService(final LoadGenerator<T> generator, final BlockingQueue<TimedItem<T>> workQueue) {
+		this(generator, workQueue, DEFAULT_MAX_WORKERS);
+	}
+
+	public LoadGeneratorService(final LoadGenerator<T> generator, final BlockingQueue<TimedItem<T>> workQueue, final int maxWorkers) {
+		super(generator, workQueue, maxWorkers);
+		this.generator = generator;
+		addStateListener(new ReportOnShutdown());
+	}
+
+	public final LoadGenerator<T> generator() {
+		return generator;
+	}
+
+	private class ReportOnShutdown implements StateListener {
+
+		@Override
+		public void stateChanged(Service service, State previous, State current) {
+			if(current.isShutdown()) {
+				generator.finish();
+				logger.info("Latencies of {} with {}: {}", new Object[] {name(), generator.profile(), generator.latencies().report(TimeUnit.MICROSECONDS)});
+			}
+		}
+	}
+}
@@ -0,0 +1,107 @@
+package com.github.kchard.service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Describes the load offered by a {@link LoadGenerator}.</p>
+ *
+ * <p>An open loop profile sends items at a constant arrival rate regardless of how quickly they are consumed, optionally
+ * ramping linearly up to that rate from a lower one. A closed loop profile keeps a fixed number of items in flight and
+ * sends the next item only when one has been consumed.</p>
+ *
+ * <p>This class is immutable.</p>
+ *
+ * @author chardk
+ *
+ * @see LoadGenerator
+ */
+public final class LoadProfile {
+
+	public enum Mode { OPEN_LOOP, CLOSED_LOOP }
+
+	private final Mode mode;
+	private final double ratePerSecond;
+	private final double rampFromPerSecond;
+	private final long rampNanos;
+	private final int concurrency;
+
+	private LoadProfile(final Mode mode, final double ratePerSecond, final double rampFromPerSecond, final long rampNanos, final int concurrency) {
+		this.mode = mode;
+		this.ratePerSecond = ratePerSecond;
+		this.rampFromPerSecond = rampFromPerSecond;
+		this.rampNanos = rampNanos;
+		this.concurrency = concurrency;
+	}
+
+	/**
+	 * @param ratePerSecond The number of items to send each second
+	 */
+	public static LoadProfile openLoop(final double ratePerSecond) {
+		if(ratePerSecond <= 0.0) {
+			throw new IllegalArgumentException("Rate must be greater than 0: " + ratePerSecond);
+		}
+
+		return new LoadProfile(Mode.OPEN_LOOP, ratePerSecond, ratePerSecond, 0L, 0);
+	}
+
+	/**
+	 * @param concurrency The number of items kept in flight
+	 */
+	public static LoadProfile closedLoop(final int concurrency) {
+		if(concurrency < 1) {
+			throw new IllegalArgumentException("Concurrency must be at least 1: " + concurrency);
+		}
+
+		return new LoadProfile(Mode.CLOSED_LOOP, 0.0, 0.0, 0L, concurrency);
+	}
+
+	/**
+	 * @param fromPerSecond The rate to start at
+	 * @param duration The time taken to ramp linearly up to the rate of this profile
+	 * @param unit The unit of time the duration is specified in
+	 * @return An open loop profile that ramps up to the rate of this profile
+	 */
+	public LoadProfile rampFrom(final double fromPerSecond, final long duration, final TimeUnit unit) {
+		if(mode != Mode.OPEN_LOOP) {
+			throw new IllegalStateException("Only an open loop profile can ramp");
+		}
+
+		if(fromPerSecond <= 0.0) {
+			throw new IllegalArgumentException("Rate must be greater than 0: " + fromPerSecond);
+		}
+
+		return new LoadProfile(mode, ratePerSecond, fromPerSecond, unit.toNanos(duration), concurrency);
+	}
+
+	public Mode mode() {
+		return mode;
+	}
+
+	/**
+	 * @return The number of items in flight for a closed loop profile, 0 for an open loop profile
+	 */
+	public int concurrency() {
+		return concurrency;
+	}
+
+	/**
+	 * @param elapsedNanos The time since the load started
+	 * @return The arrival rate at the given time for an open loop profile, 0 for a closed loop profile
+	 */
+	public double rateAt(final long elapsedNanos) {
+		if(elapsedNanos >= rampNanos) {
+			return ratePerSecond;
+		}
+
+		return rampFromPerSecond + (ratePerSecond - rampFromPerSecond) * elapsedNanos / rampNanos;
+	}
+
+	@Override
+	public String toString() {
+		if(mode == Mode.CLOSED_LOOP) {
+			return "LoadProfile [closed loop, concurrency=" + concurrency + "]";
+		}
+
+		return "LoadProfile [open loop, rate=" + ratePerSecond + "/s, rampFrom=" + rampFromPerSecond + "/s, rampNanos=" + rampNanos + "]";
+	}
+}
@@ -0,0 +1,157 @@
+package com.github.kchard.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>A bounded blocking FIFO queue of primitive longs backed by a preallocated ring buffer.</p>
+ *
+ * <p>Values are stored in a long[] so that no value is ever boxed and no allocation takes place when items are added or removed.
+ * The blocking semantics match those of {@link java.util.concurrent.ArrayBlockingQueue}.</p>
+ *
+ * <p>This class is thread safe.</p>
+ *
+ * @author chardk
+ *
+ * @see LongProducer
+ * @see LongConsumer
+ */
+public class LongChannel {
+
+	private final long[] items;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+	private final Condition notFull = lock.newCondition();
+
+	private int takeIndex;
+	private int putIndex;
+	private int count;
+
+	/**
+	 * @param capacity The maximum number of items the channel can hold
+	 */
+	public LongChannel(final int capacity) {
+		if(capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be greater than 0: " + capacity);
+		}
+
+		this.items = new long[capacity];
+	}
+
+	/**
+	 * Adds an item, waiting if necessary for space to become available.
+	 */
+	public void put(final long item) throws InterruptedException {
+		lock.lockInterruptibly();
+		try {
+			while(count == items.length) {
+				notFull.await();
+			}
+
+			enqueue(item);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Adds an item if space is available.
+	 *
+	 * @return true if the item was added, false if the channel is full
+	 */
+	public boolean offer(final long item) {
+		lock.lock();
+		try {
+			if(count == items.length) {
+				return false;
+			}
+
+			enqueue(item);
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Adds an item, waiting up to the given timeout for space to become available.
+	 *
+	 * @return true if the item was added, false if the timeout elapsed first
+	 */
+	public boolean offer(final long item, final long timeout, final TimeUnit unit) throws InterruptedException {
+		long nanos = unit.toNanos(timeout);
+		lock.lockInterruptibly();
+		try {
+			while(count == items.length) {
+				if(nanos <= 0) {
+					return false;
+				}
+
+				nanos = notFull.awaitNanos(nanos);
+			}
+
+			enqueue(item);
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Removes the oldest item, waiting if necessary for an item to become available.
+	 */
+	public long take() throws InterruptedException {
+		lock.lockInterruptibly();
+		try {
+			while(count == 0) {
+				notEmpty.await();
+			}
+
+			return dequeue();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return The number of items in the channel
+	 */
+	public int size() {
+		lock.lock();
+		try {
+			return count;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public int capacity() {
+		return items.length;
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	private void enqueue(final long item) {
+		items[putIndex] = item;
+		if(++putIndex == items.length) {
+			putIndex = 0;
+		}
+
+		count++;
+		notEmpty.signal();
+	}
+
+	private long dequeue() {
+		long item = items[takeIndex];
+		if(++takeIndex == items.length) {
+			takeIndex = 0;
+		}
+
+		count--;
+		notFull.signal();
+		return item;
+	}
+}
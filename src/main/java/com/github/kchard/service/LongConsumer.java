@@ -0,0 +1,13 @@
+package com.github.kchard.service;
+
+/**
+ * A {@link Consumer} of primitive longs that never boxes.
+ *
+ * @author chardk
+ *
+ * @see LongChannel
+ */
+public interface LongConsumer {
+
+	void consume(long item);
+}
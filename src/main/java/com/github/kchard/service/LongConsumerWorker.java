@@ -0,0 +1,69 @@
+package com.github.kchard.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link Worker} that takes longs from a {@link LongChannel} and passes them to a {@link LongConsumer} without boxing.
+ *
+ * <p>Events emitted by this worker use the channel as their subject.</p>
+ *
+ * @author chardk
+ *
+ * @see LongConsumerWorkerService
+ */
+public class LongConsumerWorker implements Worker {
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	private final LongConsumer consumer;
+	private final LongChannel channel;
+
+	private final AbstractService owner;
+
+	private volatile boolean run = true;
+
+	public LongConsumerWorker(final LongConsumer consumer, final LongChannel channel) {
+		this(consumer, channel, null);
+	}
+
+	/**
+	 * @param consumer The consumer to invoke
+	 * @param channel The channel to take items from
+	 * @param owner The service whose {@link EventSink} receives this worker's events, or null for no events
+	 */
+	public LongConsumerWorker(final LongConsumer consumer, final LongChannel channel, final AbstractService owner) {
+		this.consumer = consumer;
+		this.channel = channel;
+		this.owner = owner;
+	}
+
+	@Override
+	public final void run() {
+		while(run) {
+			try {
+				consumer.consume(channel.take());
+				if(owner != null) {
+					owner.emit(ServiceEvent.ITEM_CONSUMED, channel);
+				}
+			} catch (InterruptedException e) {
+				//Stop the worker and preserve the interrupted status of the Thread
+				cancel();
+				Thread.currentThread().interrupt();
+
+			} catch (RuntimeException e) {
+				//In the case of any other exception, stop the Worker.
+				cancel();
+
+				logger.info("Shutting down {} due to an Exception: {}", getClass(), e.getMessage());
+				if(owner != null) {
+					owner.emit(ServiceEvent.WORKER_STOPPED, e);
+				}
+			}
+		}
+	}
+
+	public final void cancel() {
+		run = false;
+	}
+}
@@ -0,0 +1,37 @@
+package com.github.kchard.service;
+
+/**
+ * Runs {@link LongConsumerWorker}s that consume a {@link LongChannel} without boxing.
+ *
+ * @author chardk
+ *
+ * @see LongConsumer
+ * @see LongChannel
+ */
+public class LongConsumerWorkerService extends WorkerService {
+
+	private final LongChannel channel;
+
+	public LongConsumerWorkerService(final LongConsumer consumer, final LongChannel channel) {
+		this(consumer, channel, DEFAULT_MAX_WORKERS);
+	}
+
+	public LongConsumerWorkerService(final LongConsumer consumer, final LongChannel channel, final int maxWorkers) {
+		super(new WorkerFactory() {
+
+			@Override
+			public Worker createWorker(AbstractService owner) {
+				return new LongConsumerWorker(consumer, channel, owner);
+			}
+		}, maxWorkers);
+		this.channel = channel;
+	}
+
+	/**
+	 * @return The number of values waiting in the channel
+	 */
+	@Override
+	public int queueDepth() {
+		return channel.size();
+	}
+}
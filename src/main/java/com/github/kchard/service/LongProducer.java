@@ -0,0 +1,13 @@
+package com.github.kchard.service;
+
+/**
+ * A {@link Producer} of primitive longs that never boxes.
+ *
+ * @author chardk
+ *
+ * @see LongChannel
+ */
+public interface LongProducer {
+
+	long produce();
+}
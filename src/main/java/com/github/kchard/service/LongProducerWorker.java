@@ -0,0 +1,69 @@
+package com.github.kchard.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link Worker} that puts longs from a {@link LongProducer} on a {@link LongChannel} without boxing.
+ *
+ * <p>Events emitted by this worker use the channel as their subject.</p>
+ *
+ * @author chardk
+ *
+ * @see LongProducerWorkerService
+ */
+public class LongProducerWorker implements Worker {
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	private final LongProducer producer;
+	private final LongChannel channel;
+
+	private final AbstractService owner;
+
+	private volatile boolean run = true;
+
+	public LongProducerWorker(final LongProducer producer, final LongChannel channel) {
+		this(producer, channel, null);
+	}
+
+	/**
+	 * @param producer The producer to invoke
+	 * @param channel The channel to put items on
+	 * @param owner The service whose {@link EventSink} receives this worker's events, or null for no events
+	 */
+	public LongProducerWorker(final LongProducer producer, final LongChannel channel, final AbstractService owner) {
+		this.producer = producer;
+		this.channel = channel;
+		this.owner = owner;
+	}
+
+	@Override
+	public final void run() {
+		while(run) {
+			try {
+				channel.put(producer.produce());
+				if(owner != null) {
+					owner.emit(ServiceEvent.ITEM_PRODUCED, channel);
+				}
+			} catch (InterruptedException e) {
+				//Stop the worker and preserve the interrupted status of the Thread
+				cancel();
+				Thread.currentThread().interrupt();
+
+			} catch (RuntimeException e) {
+				//In the case of any other exception, stop the Worker.
+				cancel();
+
+				logger.info("Shutting down {} due to an Exception: {}", getClass(), e.getMessage());
+				if(owner != null) {
+					owner.emit(ServiceEvent.WORKER_STOPPED, e);
+				}
+			}
+		}
+	}
+
+	public final void cancel() {
+		run = false;
+	}
+}
@@ -0,0 +1,37 @@
+package com.github.kchard.service;
+
+/**
+ * Runs {@link LongProducerWorker}s that fill a {@link LongChannel} without boxing.
+ *
+ * @author chardk
+ *
+ * @see LongProducer
+ * @see LongChannel
+ */
+public class LongProducerWorkerService extends WorkerService {
+
+	private final LongChannel channel;
+
+	public LongProducerWorkerService(final LongProducer producer, final LongChannel channel) {
+		this(producer, channel, DEFAULT_MAX_WORKERS);
+	}
+
+	public LongProducerWorkerService(final LongProducer producer, final LongChannel channel, final int maxWorkers) {
+		super(new WorkerFactory() {
+
+			@Override
+			public Worker createWorker(AbstractService owner) {
+				return new LongProducerWorker(producer, channel, owner);
+			}
+		}, maxWorkers);
+		this.channel = channel;
+	}
+
+	/**
+	 * @return The number of values waiting in the channel
+	 */
+	@Override
+	public int queueDepth() {
+		return channel.size();
+	}
+}
@@ -0,0 +1,431 @@
+package com.github.kchard.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>A single producer, single consumer queue in a memory-mapped file, used to hand items from one JVM to another on the
+ * same machine without a system call per item. The file is usually placed in {@code /dev/shm} so that it is never written
+ * to disk, see {@link #sharedMemoryFile(String)}.</p>
+ *
+ * <p>One process creates the queue with {@link #create(File, int, BinaryCodec)} and the other maps the same file with
+ * {@link #open(File, BinaryCodec)}. The producing process only inserts, for example through a {@link ProducerWorkerService},
+ * and the consuming process only removes, for example through a {@link ConsumerWorkerService}. Within a process each side
+ * is guarded by a lock, so several workers may share a side. The {@link BinaryCodec} encodes items straight into the mapped
+ * file and decodes them straight out of it. {@link #peek()} and {@link #iterator()} decode the queued items without consuming them,
+ * the iterator works on a copy of the items queued when it was created and does not support removal.</p>
+ *
+ * <p>The file starts with a header holding the capacity and, each on a cache line of its own, the producer's position and
+ * item count followed by the consumer's position and item count. A ring of records follows, each record being a four byte
+ * length and the encoded item, padded to eight bytes, of at most half the ring. A record that does not fit before the end of the ring is preceded by a
+ * padding marker and written at the start.</p>
+ *
+ * <p>The positions are published with a plain store ordered by a volatile write and read of a local field, which orders the
+ * accesses to the mapped memory on the JVMs this library supports without using internal APIs. Blocking operations wait for the
+ * other process by parking for increasing intervals of up to a millisecond, as there is no way to signal across processes.</p>
+ *
+ * <p>The mapping is released when the queue is garbage collected, {@link #close()} only closes the file.</p>
+ *
+ * @author chardk
+ *
+ * @param <T>
+ * @see BinaryCodec
+ * @see TransportSender
+ */
+public class MappedQueue<T> extends AbstractQueue<T> implements BlockingQueue<T> {
+
+	private static final int MAGIC = 0x53505343;
+	private static final int CAPACITY_OFFSET = 4;
+	private static final int TAIL_OFFSET = 64;
+	private static final int PRODUCED_OFFSET = 72;
+	private static final int HEAD_OFFSET = 128;
+	private static final int CONSUMED_OFFSET = 136;
+	private static final int HEADER_SIZE = 192;
+
+	private static final int LENGTH_SIZE = 4;
+	private static final int PADDING = -1;
+
+	private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1L);
+
+	private final File file;
+	private final RandomAccessFile raf;
+	private final MappedByteBuffer buffer;
+	private final BinaryCodec<T> codec;
+	private final int capacity;
+	private final int mask;
+
+	private final Object producerLock = new Object();
+	private final Object consumerLock = new Object();
+	private final ByteBuffer producerView;
+	private final ByteBuffer consumerView;
+
+	private long cachedHead;
+	private long cachedTail;
+
+	private volatile long fence;
+
+	private MappedQueue(final File file, final RandomAccessFile raf, final MappedByteBuffer buffer, final BinaryCodec<T> codec, final int capacity) {
+		this.file = file;
+		this.raf = raf;
+		this.buffer = buffer;
+		this.codec = codec;
+		this.capacity = capacity;
+		this.mask = capacity - 1;
+		this.producerView = buffer.duplicate();
+		this.consumerView = buffer.duplicate();
+	}
+
+	/**
+	 * Creates the file, replacing any existing queue in it, and maps it
+	 *
+	 * @param file The file to create
+	 * @param capacity The size of the ring in bytes, a power of two
+	 * @param codec The codec for the items
+	 */
+	public static <T> MappedQueue<T> create(final File file, final int capacity, final BinaryCodec<T> codec) {
+		if(capacity < 16 || Integer.bitCount(capacity) != 1) {
+			throw new IllegalArgumentException("Capacity must be a power of two of at least 16 bytes: " + capacity);
+		}
+
+		RandomAccessFile raf = null;
+		try {
+			raf = new RandomAccessFile(file, "rw");
+			raf.setLength(0L);
+			raf.setLength(HEADER_SIZE + capacity);
+			MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0L, HEADER_SIZE + capacity);
+			buffer.putInt(CAPACITY_OFFSET, capacity);
+			buffer.putLong(TAIL_OFFSET, 0L);
+			buffer.putLong(PRODUCED_OFFSET, 0L);
+			buffer.putLong(HEAD_OFFSET, 0L);
+			buffer.putLong(CONSUMED_OFFSET, 0L);
+			//Written last so that a process opening the file never sees a partial header
+			buffer.putInt(0, MAGIC);
+			return new MappedQueue<T>(file, raf, buffer, codec, capacity);
+		} catch(IOException e) {
+			Frames.closeQuietly(raf);
+			throw new IllegalStateException("Unable to create a queue in " + file + ": " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Maps a queue created by another process
+	 *
+	 * @param file The file of the queue
+	 * @param codec The codec for the items
+	 */
+	public static <T> MappedQueue<T> open(final File file, final BinaryCodec<T> codec) {
+		RandomAccessFile raf = null;
+		try {
+			raf = new RandomAccessFile(file, "rw");
+			if(raf.length() < HEADER_SIZE) {
+				throw new IllegalStateException("Not a queue: " + file);
+			}
+
+			MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0L, raf.length());
+			int capacity = buffer.getInt(CAPACITY_OFFSET);
+			if(buffer.getInt(0) != MAGIC || raf.length() != HEADER_SIZE + (long) capacity) {
+				throw new IllegalStateException("Not a queue: " + file);
+			}
+
+			return new MappedQueue<T>(file, raf, buffer, codec, capacity);
+		} catch(IOException e) {
+			Frames.closeQuietly(raf);
+			throw new IllegalStateException("Unable to open the queue in " + file + ": " + e.getMessage(), e);
+		} catch(RuntimeException e) {
+			Frames.closeQuietly(raf);
+			throw e;
+		}
+	}
+
+	/**
+	 * @param name The name of the queue
+	 * @return The file of that name in the shared memory file system
+	 */
+	public static File sharedMemoryFile(final String name) {
+		return new File("/dev/shm", name);
+	}
+
+	public File file() {
+		return file;
+	}
+
+	/**
+	 * @return The size of the ring in bytes
+	 */
+	public int capacity() {
+		return capacity;
+	}
+
+	/**
+	 * Closes the file, the queue must not be used afterwards
+	 */
+	public void close() {
+		Frames.closeQuietly(raf);
+	}
+
+	@Override
+	public boolean offer(final T item) {
+		if(item == null) {
+			throw new NullPointerException();
+		}
+
+		int size = codec.size(item);
+		int recordSize = align(LENGTH_SIZE + size);
+		//A record that wraps needs the room left before the end of the ring as well, at most its own size
+		if(recordSize > capacity / 2) {
+			throw new IllegalArgumentException("An item of " + size + " bytes does not fit in a queue of " + capacity + " bytes");
+		}
+
+		synchronized(producerLock) {
+			long tail = buffer.getLong(TAIL_OFFSET);
+			int index = (int) (tail & mask);
+			int toEnd = capacity - index;
+			int required = recordSize > toEnd ? toEnd + recordSize : recordSize;
+			if(capacity - (tail - cachedHead) < required) {
+				//The consumer has finished reading the records before its position
+				cachedHead = buffer.getLong(HEAD_OFFSET);
+				fence();
+				if(capacity - (tail - cachedHead) < required) {
+					return false;
+				}
+			}
+
+			if(recordSize > toEnd) {
+				buffer.putInt(HEADER_SIZE + index, PADDING);
+				tail += toEnd;
+				index = 0;
+			}
+
+			int start = HEADER_SIZE + index + LENGTH_SIZE;
+			producerView.limit(start + size).position(start);
+			codec.encode(item, producerView);
+			buffer.putInt(HEADER_SIZE + index, size);
+
+			fence();
+			buffer.putLong(PRODUCED_OFFSET, buffer.getLong(PRODUCED_OFFSET) + 1);
+			buffer.putLong(TAIL_OFFSET, tail + recordSize);
+			return true;
+		}
+	}
+
+	@Override
+	public T poll() {
+		synchronized(consumerLock) {
+			long head = buffer.getLong(HEAD_OFFSET);
+			while(true) {
+				if(head - cachedTail >= 0) {
+					//The producer has finished writing the records before its position
+					cachedTail = buffer.getLong(TAIL_OFFSET);
+					fence();
+					if(head - cachedTail >= 0) {
+						return null;
+					}
+				}
+
+				int index = (int) (head & mask);
+				int size = buffer.getInt(HEADER_SIZE + index);
+				if(size == PADDING) {
+					head += capacity - index;
+					continue;
+				}
+
+				int start = HEADER_SIZE + index + LENGTH_SIZE;
+				consumerView.limit(start + size).position(start);
+				try {
+					return codec.decode(consumerView);
+				} finally {
+					//A record that cannot be decoded is skipped rather than blocking the queue
+					fence();
+					buffer.putLong(CONSUMED_OFFSET, buffer.getLong(CONSUMED_OFFSET) + 1);
+					buffer.putLong(HEAD_OFFSET, head + align(LENGTH_SIZE + size));
+				}
+			}
+		}
+	}
+
+	@Override
+	public T peek() {
+		List<T> head = queued(1);
+		return head.isEmpty() ? null : head.get(0);
+	}
+
+	@Override
+	public void put(final T item) throws InterruptedException {
+		long park = 0L;
+		while(!offer(item)) {
+			park = await(park);
+		}
+	}
+
+	@Override
+	public boolean offer(final T item, final long timeout, final TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		long park = 0L;
+		while(!offer(item)) {
+			if(System.nanoTime() - deadline >= 0) {
+				return false;
+			}
+
+			park = await(park);
+		}
+
+		return true;
+	}
+
+	@Override
+	public T take() throws InterruptedException {
+		long park = 0L;
+		T item;
+		while((item = poll()) == null) {
+			park = await(park);
+		}
+
+		return item;
+	}
+
+	@Override
+	public T poll(final long timeout, final TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		long park = 0L;
+		T item;
+		while((item = poll()) == null) {
+			if(System.nanoTime() - deadline >= 0) {
+				return null;
+			}
+
+			park = await(park);
+		}
+
+		return item;
+	}
+
+	@Override
+	public int drainTo(final Collection<? super T> collection) {
+		return drainTo(collection, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public int drainTo(final Collection<? super T> collection, final int maxElements) {
+		int drained = 0;
+		T item;
+		while(drained < maxElements && (item = poll()) != null) {
+			collection.add(item);
+			drained++;
+		}
+
+		return drained;
+	}
+
+	/**
+	 * @return The number of items in the queue, read from counters that each process updates after its position
+	 */
+	@Override
+	public int size() {
+		fence();
+		long size = buffer.getLong(PRODUCED_OFFSET) - buffer.getLong(CONSUMED_OFFSET);
+		return (int) Math.max(0L, Math.min(size, Integer.MAX_VALUE));
+	}
+
+	/**
+	 * @return An upper bound on the number of items that fit, the free bytes divided by the smallest record
+	 */
+	@Override
+	public int remainingCapacity() {
+		fence();
+		long free = capacity - (buffer.getLong(TAIL_OFFSET) - buffer.getLong(HEAD_OFFSET));
+		return (int) (free / align(LENGTH_SIZE + 1));
+	}
+
+	/**
+	 * @return An iterator over a copy of the items queued when it is created
+	 */
+	@Override
+	public Iterator<T> iterator() {
+		return Collections.unmodifiableList(queued(Integer.MAX_VALUE)).iterator();
+	}
+
+	/**
+	 * Decodes queued items without moving the consumer's position
+	 *
+	 * @param max The most items to decode
+	 * @return The items, oldest first
+	 */
+	private List<T> queued(final int max) {
+		List<T> items = new ArrayList<T>();
+		synchronized(consumerLock) {
+			long head = buffer.getLong(HEAD_OFFSET);
+			long tail = buffer.getLong(TAIL_OFFSET);
+			fence();
+			while(head - tail < 0 && items.size() < max) {
+				int index = (int) (head & mask);
+				int size = buffer.getInt(HEADER_SIZE + index);
+				if(size == PADDING) {
+					head += capacity - index;
+					continue;
+				}
+
+				int start = HEADER_SIZE + index + LENGTH_SIZE;
+				consumerView.limit(start + size).position(start);
+				T item = codec.decode(consumerView);
+
+				//A consumer in another process may have released the record to the producer while it was decoded
+				fence();
+				long consumed = buffer.getLong(HEAD_OFFSET);
+				if(consumed - head > 0) {
+					head = consumed;
+					continue;
+				}
+
+				items.add(item);
+				head += align(LENGTH_SIZE + size);
+			}
+		}
+
+		return items;
+	}
+
+	@Override
+	public String toString() {
+		return "MappedQueue [file=" + file + ", capacity=" + capacity + ", size=" + size() + "]";
+	}
+
+	private static int align(final int size) {
+		return (size + 7) & ~7;
+	}
+
+	private static long await(final long park) throws InterruptedException {
+		if(Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+
+		if(park == 0L) {
+			Thread.yield();
+			return 1000L;
+		}
+
+		LockSupport.parkNanos(park);
+		return Math.min(park * 2, MAX_PARK_NANOS);
+	}
+
+	/**
+	 * Keeps the accesses to the mapped memory before the call from being reordered with those after it. The volatile write keeps
+	 * earlier accesses before it, the volatile read keeps later accesses after it.
+	 */
+	private long fence() {
+		fence = 0L;
+		return fence;
+	}
+}
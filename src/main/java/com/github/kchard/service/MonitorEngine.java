@@ -0,0 +1,281 @@
+package com.github.kchard.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>A MonitorEngine evaluates monitoring checks and deadlines for any number of services on a single thread.</p>
+ *
+ * <p>A check may be evaluated periodically at its own interval, on demand when it is triggered, or both.
+ * Triggers that arrive while an evaluation is already queued are coalesced into that evaluation.
+ * A deadline is a one shot action executed after a delay.</p>
+ *
+ * <p>Every evaluation is timed and the cost is reported per {@link Registration}.</p>
+ *
+ * <p>Checks are executed sequentially, so they should be short and must not block.</p>
+ *
+ * <p>Intervals and deadlines are measured with the {@link Clock} the engine was created with,
+ * so an engine created with a {@link VirtualClock} only evaluates checks when that clock is advanced.</p>
+ *
+ * <p>This class is thread safe.</p>
+ *
+ * @author chardk
+ *
+ * @see ScheduledShutdownMonitor
+ * @see PredicateShutdownMonitor
+ * @see CompositeService
+ */
+public class MonitorEngine {
+
+	private static final MonitorEngine SHARED = new MonitorEngine("service-monitor");
+
+	private final Logger logger = LoggerFactory.getLogger(this.getClass().getName());
+
+	private final Clock clock;
+	private final ScheduledExecutorService executor;
+	private final Set<Registration> registrations = Collections.newSetFromMap(new ConcurrentHashMap<Registration, Boolean>());
+
+	/**
+	 * @return The engine shared by all monitors that are not given an engine explicitly
+	 */
+	public static MonitorEngine shared() {
+		return SHARED;
+	}
+
+	/**
+	 * @param threadName The name of the thread used to evaluate checks
+	 */
+	public MonitorEngine(final String threadName) {
+		this(threadName, SystemClock.instance());
+	}
+
+	/**
+	 * @param threadName The name of the thread used to evaluate checks
+	 * @param clock The clock used to schedule evaluations and deadlines
+	 */
+	public MonitorEngine(final String threadName, final Clock clock) {
+		this.clock = clock;
+		this.executor = clock.newScheduledExecutor(1, new ThreadFactory() {
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, threadName);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+		if(executor instanceof ScheduledThreadPoolExecutor) {
+			((ScheduledThreadPoolExecutor) executor).setContinueExistingPeriodicTasksAfterShutdownPolicy(false);
+			((ScheduledThreadPoolExecutor) executor).setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+		}
+	}
+
+	/**
+	 * @return The clock used to schedule evaluations and deadlines
+	 */
+	public Clock clock() {
+		return clock;
+	}
+
+	/**
+	 * Registers a check that is only evaluated when {@link Registration#trigger()} is called.
+	 *
+	 * @param name The name the evaluation cost is reported under
+	 * @param check The check to evaluate
+	 * @return The registration for the check
+	 */
+	public Registration register(final String name, final Runnable check) {
+		return register(name, check, 0L, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Registers a check that is evaluated at a fixed interval in addition to whenever it is triggered.
+	 *
+	 * @param name The name the evaluation cost is reported under
+	 * @param check The check to evaluate
+	 * @param interval The delay between evaluations, a value less than 1 disables periodic evaluation
+	 * @param unit The unit of time the interval is specified in
+	 * @return The registration for the check
+	 */
+	public Registration register(final String name, final Runnable check, final long interval, final TimeUnit unit) {
+		Registration registration = new Registration(name, check);
+		registrations.add(registration);
+		if(interval > 0) {
+			registration.future = executor.scheduleWithFixedDelay(registration.evaluation, interval, interval, unit);
+		}
+
+		return registration;
+	}
+
+	/**
+	 * Registers an action that is executed once after the given delay unless it is cancelled first.
+	 *
+	 * @param name The name the execution cost is reported under
+	 * @param action The action to execute
+	 * @param delay The delay before the action executes
+	 * @param unit The unit of time the delay is specified in
+	 * @return The registration for the action
+	 */
+	public Registration schedule(final String name, final Runnable action, final long delay, final TimeUnit unit) {
+		final Registration registration = new Registration(name, action);
+		registrations.add(registration);
+		registration.future = executor.schedule(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					registration.evaluation.run();
+				} finally {
+					registration.cancel();
+				}
+			}
+		}, delay, unit);
+
+		return registration;
+	}
+
+	/**
+	 * @return A snapshot of the checks and deadlines that are currently registered
+	 */
+	public List<Registration> registrations() {
+		return new ArrayList<Registration>(registrations);
+	}
+
+	/**
+	 * Stops the engine. Registered checks will no longer be evaluated.
+	 */
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * A handle to a check or deadline registered with a {@link MonitorEngine}.
+	 */
+	public final class Registration {
+
+		private final String name;
+		private final Runnable check;
+		private final AtomicBoolean triggered = new AtomicBoolean(false);
+		private final Runnable evaluation = new Evaluation();
+		private final Runnable triggeredEvaluation = new TriggeredEvaluation();
+
+		private volatile ScheduledFuture<?> future;
+		private volatile boolean cancelled = false;
+
+		private volatile long evaluations = 0L;
+		private volatile long totalEvaluationNanos = 0L;
+		private volatile long maxEvaluationNanos = 0L;
+
+		private Registration(final String name, final Runnable check) {
+			this.name = name;
+			this.check = check;
+		}
+
+		public String name() {
+			return name;
+		}
+
+		/**
+		 * Requests an evaluation of the check as soon as possible. Triggers are coalesced,
+		 * so a check is evaluated at most once for any number of triggers that arrive before it runs.
+		 */
+		public void trigger() {
+			if(!cancelled && triggered.compareAndSet(false, true)) {
+				executor.execute(triggeredEvaluation);
+			}
+		}
+
+		/**
+		 * Stops any further evaluation of the check.
+		 */
+		public void cancel() {
+			cancelled = true;
+			ScheduledFuture<?> future = this.future;
+			if(future != null) {
+				future.cancel(false);
+			}
+
+			if(registrations.remove(this)) {
+				logger.debug("Cancelled monitor: {}", this);
+			}
+		}
+
+		public boolean isCancelled() {
+			return cancelled;
+		}
+
+		/**
+		 * @return The number of times the check has been evaluated
+		 */
+		public long evaluations() {
+			return evaluations;
+		}
+
+		/**
+		 * @return The total time spent evaluating the check
+		 */
+		public long totalEvaluationTime(final TimeUnit unit) {
+			return unit.convert(totalEvaluationNanos, TimeUnit.NANOSECONDS);
+		}
+
+		/**
+		 * @return The longest time spent on a single evaluation of the check
+		 */
+		public long maxEvaluationTime(final TimeUnit unit) {
+			return unit.convert(maxEvaluationNanos, TimeUnit.NANOSECONDS);
+		}
+
+		@Override
+		public String toString() {
+			return name + " [evaluations=" + evaluations + ", totalNanos=" + totalEvaluationNanos + ", maxNanos=" + maxEvaluationNanos + "]";
+		}
+
+		private class Evaluation implements Runnable {
+
+			@Override
+			public void run() {
+				if(cancelled) {
+					return;
+				}
+
+				long start = System.nanoTime();
+				try {
+					check.run();
+				} catch(RuntimeException e) {
+					//Keep evaluating, a single failed evaluation must not stop the monitor or the engine
+					logger.error("Exception occurred while evaluating monitor " + name + ": " + e.getMessage());
+				} finally {
+					long elapsed = System.nanoTime() - start;
+					//Evaluations only ever run on the engine thread
+					evaluations = evaluations + 1;
+					totalEvaluationNanos = totalEvaluationNanos + elapsed;
+					if(elapsed > maxEvaluationNanos) {
+						maxEvaluationNanos = elapsed;
+					}
+				}
+			}
+		}
+
+		private class TriggeredEvaluation implements Runnable {
+
+			@Override
+			public void run() {
+				triggered.set(false);
+				evaluation.run();
+			}
+		}
+	}
+}
@@ -0,0 +1,607 @@
+package com.github.kchard.service;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>A {@link BlockingQueue} made of several lanes, used to serve traffic of different importance with a single pool of workers.</p>
+ *
+ * <p>Producers put items on a lane through the view returned by {@link #lane(int)}. Consumers take items from the queue itself,
+ * so it can be given to a {@link ConsumerWorkerService} like any other queue. The lane an item is taken from is chosen by the
+ * {@link Policy} of the queue:</p>
+ *
+ * <ul>
+ *  <li>STRICT_PRIORITY: always the lowest numbered lane that is not empty. Lower lanes can starve higher lanes.</li>
+ *  <li>WEIGHTED_FAIR: deficit round robin. Each lane in turn may take up to its weight in items before the next lane is served,
+ *  so while every lane is backed up each receives a share of the workers proportional to its weight. An empty lane gives up its turn.</li>
+ * </ul>
+ *
+ * <p>The time each item waits in its lane is measured with the {@link Clock} of the queue and recorded per lane. Items added
+ * to the queue directly are added to lane 0.</p>
+ *
+ * <p>This class is thread safe.</p>
+ *
+ * @author chardk
+ *
+ * @param <T>
+ * @see ConsumerWorkerService
+ */
+public class MultiLaneQueue<T> extends AbstractQueue<T> implements BlockingQueue<T> {
+
+	public enum Policy { STRICT_PRIORITY, WEIGHTED_FAIR }
+
+	private final Policy policy;
+	private final int[] weights;
+	private final int laneCapacity;
+	private final Clock clock;
+
+	private final List<ArrayDeque<Entry<T>>> lanes;
+	private final List<Lane> views;
+	private final LatencyRecorder[] waitTimes;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+	private final Condition[] notFull;
+	private final Condition[] laneNotEmpty;
+
+	private final int[] deficits;
+	private int current = 0;
+	private int count = 0;
+
+	/**
+	 * @param lanes The number of lanes, lane 0 has the highest priority
+	 */
+	public static <T> MultiLaneQueue<T> strictPriority(final int lanes) {
+		return strictPriority(lanes, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @param lanes The number of lanes, lane 0 has the highest priority
+	 * @param laneCapacity The number of items each lane can hold
+	 */
+	public static <T> MultiLaneQueue<T> strictPriority(final int lanes, final int laneCapacity) {
+		return strictPriority(lanes, laneCapacity, SystemClock.instance());
+	}
+
+	/**
+	 * @param lanes The number of lanes, lane 0 has the highest priority
+	 * @param laneCapacity The number of items each lane can hold
+	 * @param clock The clock used to measure waiting times
+	 */
+	public static <T> MultiLaneQueue<T> strictPriority(final int lanes, final int laneCapacity, final Clock clock) {
+		int[] weights = new int[lanes];
+		for(int i = 0; i < lanes; i++) {
+			weights[i] = 1;
+		}
+
+		return new MultiLaneQueue<T>(Policy.STRICT_PRIORITY, weights, laneCapacity, clock);
+	}
+
+	/**
+	 * @param weights The weight of each lane
+	 */
+	public static <T> MultiLaneQueue<T> weightedFair(final int... weights) {
+		return weightedFair(weights, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @param weights The weight of each lane
+	 * @param laneCapacity The number of items each lane can hold
+	 */
+	public static <T> MultiLaneQueue<T> weightedFair(final int[] weights, final int laneCapacity) {
+		return weightedFair(weights, laneCapacity, SystemClock.instance());
+	}
+
+	/**
+	 * @param weights The weight of each lane
+	 * @param laneCapacity The number of items each lane can hold
+	 * @param clock The clock used to measure waiting times
+	 */
+	public static <T> MultiLaneQueue<T> weightedFair(final int[] weights, final int laneCapacity, final Clock clock) {
+		return new MultiLaneQueue<T>(Policy.WEIGHTED_FAIR, weights.clone(), laneCapacity, clock);
+	}
+
+	private MultiLaneQueue(final Policy policy, final int[] weights, final int laneCapacity, final Clock clock) {
+		if(weights.length < 1) {
+			throw new IllegalArgumentException("A queue requires at least one lane");
+		}
+
+		if(laneCapacity < 1) {
+			throw new IllegalArgumentException("Lane capacity must be at least 1: " + laneCapacity);
+		}
+
+		this.policy = policy;
+		this.weights = weights;
+		this.laneCapacity = laneCapacity;
+		this.clock = clock;
+		this.lanes = new ArrayList<ArrayDeque<Entry<T>>>(weights.length);
+		this.views = new ArrayList<Lane>(weights.length);
+		this.waitTimes = new LatencyRecorder[weights.length];
+		this.notFull = new Condition[weights.length];
+		this.laneNotEmpty = new Condition[weights.length];
+		this.deficits = new int[weights.length];
+
+		for(int i = 0; i < weights.length; i++) {
+			if(weights[i] < 1) {
+				throw new IllegalArgumentException("Lane weights must be at least 1: " + weights[i]);
+			}
+
+			lanes.add(new ArrayDeque<Entry<T>>());
+			views.add(new Lane(i));
+			waitTimes[i] = new LatencyRecorder();
+			notFull[i] = lock.newCondition();
+			laneNotEmpty[i] = lock.newCondition();
+		}
+
+		deficits[0] = weights[0];
+	}
+
+	public Policy policy() {
+		return policy;
+	}
+
+	public int lanes() {
+		return lanes.size();
+	}
+
+	/**
+	 * @param lane The lane number
+	 * @return A view used to put items on the lane. Items taken from the view bypass the scheduling policy.
+	 */
+	public BlockingQueue<T> lane(final int lane) {
+		return views.get(lane);
+	}
+
+	/**
+	 * @param lane The lane number
+	 * @return The time items taken from the lane have waited in it
+	 */
+	public LatencyRecorder waitTimes(final int lane) {
+		return waitTimes[lane];
+	}
+
+	/**
+	 * @param lane The lane number
+	 * @return The number of items in the lane
+	 */
+	public int size(final int lane) {
+		lock.lock();
+		try {
+			return lanes.get(lane).size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int size() {
+		lock.lock();
+		try {
+			return count;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean offer(final T item) {
+		return offer(0, item);
+	}
+
+	@Override
+	public boolean offer(final T item, final long timeout, final TimeUnit unit) throws InterruptedException {
+		return offer(0, item, timeout, unit);
+	}
+
+	@Override
+	public void put(final T item) throws InterruptedException {
+		put(0, item);
+	}
+
+	@Override
+	public int remainingCapacity() {
+		return remainingCapacity(0);
+	}
+
+	@Override
+	public T take() throws InterruptedException {
+		lock.lockInterruptibly();
+		try {
+			while(count == 0) {
+				notEmpty.await();
+			}
+
+			return dequeue(select());
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public T poll() {
+		lock.lock();
+		try {
+			return count == 0 ? null : dequeue(select());
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public T poll(final long timeout, final TimeUnit unit) throws InterruptedException {
+		long nanos = unit.toNanos(timeout);
+		lock.lockInterruptibly();
+		try {
+			while(count == 0) {
+				if(nanos <= 0) {
+					return null;
+				}
+
+				nanos = notEmpty.awaitNanos(nanos);
+			}
+
+			return dequeue(select());
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return The head of the lowest numbered lane that is not empty, which is not necessarily the next item taken
+	 */
+	@Override
+	public T peek() {
+		lock.lock();
+		try {
+			for(ArrayDeque<Entry<T>> lane : lanes) {
+				if(!lane.isEmpty()) {
+					return lane.peekFirst().item;
+				}
+			}
+
+			return null;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int drainTo(final Collection<? super T> collection) {
+		return drainTo(collection, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public int drainTo(final Collection<? super T> collection, final int maxElements) {
+		lock.lock();
+		try {
+			int drained = 0;
+			while(drained < maxElements && count > 0) {
+				collection.add(dequeue(select()));
+				drained++;
+			}
+
+			return drained;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean remove(final Object item) {
+		lock.lock();
+		try {
+			for(int i = 0; i < lanes.size(); i++) {
+				if(removeFrom(i, item)) {
+					return true;
+				}
+			}
+
+			return false;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return An iterator over a snapshot of the items of every lane in lane order
+	 */
+	@Override
+	public Iterator<T> iterator() {
+		lock.lock();
+		try {
+			List<T> snapshot = new ArrayList<T>(count);
+			for(ArrayDeque<Entry<T>> lane : lanes) {
+				for(Entry<T> entry : lane) {
+					snapshot.add(entry.item);
+				}
+			}
+
+			return Collections.unmodifiableList(snapshot).iterator();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private boolean offer(final int lane, final T item) {
+		checkItem(item);
+		lock.lock();
+		try {
+			if(lanes.get(lane).size() >= laneCapacity) {
+				return false;
+			}
+
+			enqueue(lane, item);
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private boolean offer(final int lane, final T item, final long timeout, final TimeUnit unit) throws InterruptedException {
+		checkItem(item);
+		long nanos = unit.toNanos(timeout);
+		lock.lockInterruptibly();
+		try {
+			while(lanes.get(lane).size() >= laneCapacity) {
+				if(nanos <= 0) {
+					return false;
+				}
+
+				nanos = notFull[lane].awaitNanos(nanos);
+			}
+
+			enqueue(lane, item);
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void put(final int lane, final T item) throws InterruptedException {
+		checkItem(item);
+		lock.lockInterruptibly();
+		try {
+			while(lanes.get(lane).size() >= laneCapacity) {
+				notFull[lane].await();
+			}
+
+			enqueue(lane, item);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private int remainingCapacity(final int lane) {
+		if(laneCapacity == Integer.MAX_VALUE) {
+			return Integer.MAX_VALUE;
+		}
+
+		lock.lock();
+		try {
+			return laneCapacity - lanes.get(lane).size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private boolean removeFrom(final int lane, final Object item) {
+		for(Iterator<Entry<T>> iterator = lanes.get(lane).iterator(); iterator.hasNext();) {
+			if(iterator.next().item.equals(item)) {
+				iterator.remove();
+				count--;
+				notFull[lane].signal();
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private static void checkItem(final Object item) {
+		if(item == null) {
+			throw new NullPointerException("A queue cannot hold null items");
+		}
+	}
+
+	//The lock must be held by the caller of the methods below
+
+	private void enqueue(final int lane, final T item) {
+		lanes.get(lane).addLast(new Entry<T>(item, clock.nanoTime()));
+		count++;
+		notEmpty.signal();
+		laneNotEmpty[lane].signal();
+	}
+
+	private T dequeue(final int lane) {
+		Entry<T> entry = lanes.get(lane).pollFirst();
+		count--;
+		notFull[lane].signal();
+		waitTimes[lane].record(clock.nanoTime() - entry.nanos, TimeUnit.NANOSECONDS);
+		return entry.item;
+	}
+
+	/**
+	 * @return The lane to take the next item from, the queue must not be empty
+	 */
+	private int select() {
+		if(policy == Policy.STRICT_PRIORITY) {
+			for(int i = 0; i < lanes.size(); i++) {
+				if(!lanes.get(i).isEmpty()) {
+					return i;
+				}
+			}
+		}
+
+		while(true) {
+			if(lanes.get(current).isEmpty()) {
+				//An empty lane gives up its turn and its unused quantum
+				deficits[current] = 0;
+				nextLane();
+			} else if(deficits[current] > 0) {
+				deficits[current]--;
+				return current;
+			} else {
+				nextLane();
+			}
+		}
+	}
+
+	private void nextLane() {
+		current = (current + 1) % lanes.size();
+		deficits[current] += weights[current];
+	}
+
+	private static final class Entry<T> {
+
+		private final T item;
+		private final long nanos;
+
+		private Entry(final T item, final long nanos) {
+			this.item = item;
+			this.nanos = nanos;
+		}
+	}
+
+	private class Lane extends AbstractQueue<T> implements BlockingQueue<T> {
+
+		private final int lane;
+
+		private Lane(final int lane) {
+			this.lane = lane;
+		}
+
+		@Override
+		public boolean offer(final T item) {
+			return MultiLaneQueue.this.offer(lane, item);
+		}
+
+		@Override
+		public boolean offer(final T item, final long timeout, final TimeUnit unit) throws InterruptedException {
+			return MultiLaneQueue.this.offer(lane, item, timeout, unit);
+		}
+
+		@Override
+		public void put(final T item) throws InterruptedException {
+			MultiLaneQueue.this.put(lane, item);
+		}
+
+		@Override
+		public int remainingCapacity() {
+			return MultiLaneQueue.this.remainingCapacity(lane);
+		}
+
+		@Override
+		public T take() throws InterruptedException {
+			lock.lockInterruptibly();
+			try {
+				while(lanes.get(lane).isEmpty()) {
+					laneNotEmpty[lane].await();
+				}
+
+				return dequeue(lane);
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public T poll(final long timeout, final TimeUnit unit) throws InterruptedException {
+			long nanos = unit.toNanos(timeout);
+			lock.lockInterruptibly();
+			try {
+				while(lanes.get(lane).isEmpty()) {
+					if(nanos <= 0) {
+						return null;
+					}
+
+					nanos = laneNotEmpty[lane].awaitNanos(nanos);
+				}
+
+				return dequeue(lane);
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public T poll() {
+			lock.lock();
+			try {
+				return lanes.get(lane).isEmpty() ? null : dequeue(lane);
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public T peek() {
+			lock.lock();
+			try {
+				Entry<T> entry = lanes.get(lane).peekFirst();
+				return entry == null ? null : entry.item;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public int drainTo(final Collection<? super T> collection) {
+			return drainTo(collection, Integer.MAX_VALUE);
+		}
+
+		@Override
+		public int drainTo(final Collection<? super T> collection, final int maxElements) {
+			lock.lock();
+			try {
+				int drained = 0;
+				while(drained < maxElements && !lanes.get(lane).isEmpty()) {
+					collection.add(dequeue(lane));
+					drained++;
+				}
+
+				return drained;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public boolean remove(final Object item) {
+			lock.lock();
+			try {
+				return removeFrom(lane, item);
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public int size() {
+			return MultiLaneQueue.this.size(lane);
+		}
+
+		@Override
+		public Iterator<T> iterator() {
+			lock.lock();
+			try {
+				List<T> snapshot = new ArrayList<T>(lanes.get(lane).size());
+				for(Entry<T> entry : lanes.get(lane)) {
+					snapshot.add(entry.item);
+				}
+
+				return Collections.unmodifiableList(snapshot).iterator();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+}
@@ -1,64 +1,145 @@
 package com.github.kchard.service;
 
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * A monitor used to shutdown a {@link Service} when a given predicate is true.
- * 
+ * <p>A monitor used to shutdown a {@link Service} when a given predicate is true.</p>
+ *
+ * <p>The predicate is evaluated by a {@link MonitorEngine} once the service is PENDING or STARTED: at the monitor interval,
+ * whenever the service changes state and whenever a {@link TriggeredPredicate} is triggered.
+ * A monitor interval of 0 disables periodic evaluation.</p>
+ *
  * @author chardk
  *
  * @see AbstractService
+ * @see MonitorEngine
  */
 public class PredicateShutdownMonitor {
 
 	private final Logger logger = LoggerFactory.getLogger(this.getClass().getName());
-	
+
 	private static final Long DEFAULT_INTERVAL = 1000L;
-	
-	private final Service service;
+
+	private final AbstractService service;
 	private final long monitorInterval;
 	private final Predicate predicate;
-	private final ScheduledExecutorService executor;
-	
-	private boolean startedMonitorThread = false;
-	
+	private final MonitorEngine engine;
+	private final StateListener stateListener = new StateChangeTrigger();
+
+	private boolean startedMonitor = false;
+	private volatile MonitorEngine.Registration stateRegistration;
+	private volatile MonitorEngine.Registration predicateRegistration;
+
 	public PredicateShutdownMonitor(final AbstractService service, Predicate predicate) {
 		this(service, DEFAULT_INTERVAL, predicate);
 	}
-	
+
 	public PredicateShutdownMonitor(final AbstractService service, final long monitorInterval, Predicate predicate) {
+		this(MonitorEngine.shared(), service, monitorInterval, predicate);
+	}
+
+	public PredicateShutdownMonitor(final MonitorEngine engine, final AbstractService service, Predicate predicate) {
+		this(engine, service, DEFAULT_INTERVAL, predicate);
+	}
+
+	public PredicateShutdownMonitor(final MonitorEngine engine, final AbstractService service, final long monitorInterval, Predicate predicate) {
+		this.engine = engine;
 		this.service = service;
 		this.monitorInterval = monitorInterval;
 		this.predicate = predicate;
-		this.executor = Executors.newSingleThreadScheduledExecutor();
 	}
-	
-	public void start() { 
-		if(!startedMonitorThread) {
-			logger.debug("Starting monitor for: " + service.name());
-			executor.scheduleWithFixedDelay(new MonitorRunnable(), monitorInterval, monitorInterval, TimeUnit.MILLISECONDS);
-			startedMonitorThread = true;
+
+	public synchronized void start() {
+		if(!startedMonitor) {
+			logger.debug("Starting monitor for: {}", service.name());
+			stateRegistration = engine.register("predicate-monitor:" + service.name(), new StateCheck());
+			service.addStateListener(stateListener);
+			//Evaluate once in case the service changed state before the listener was added
+			stateRegistration.trigger();
+			startedMonitor = true;
 		}
 	}
-	
-	private class MonitorRunnable implements Runnable {
+
+	/**
+	 * Requests an immediate evaluation of the predicate
+	 */
+	public void trigger() {
+		MonitorEngine.Registration registration = stateRegistration;
+		if(registration != null) {
+			registration.trigger();
+		}
+	}
+
+	/**
+	 * @return true once the monitor has stopped watching the service
+	 */
+	public boolean isStopped() {
+		MonitorEngine.Registration registration = stateRegistration;
+		return registration != null && registration.isCancelled();
+	}
+
+	/**
+	 * @return The registration the cost of evaluating the predicate is reported under, or null if evaluation has not begun
+	 */
+	public MonitorEngine.Registration predicateRegistration() {
+		return predicateRegistration;
+	}
+
+	private void stop() {
+		service.removeStateListener(stateListener);
+		stateRegistration.cancel();
+		if(predicateRegistration != null) {
+			predicateRegistration.cancel();
+			if(predicate instanceof TriggeredPredicate) {
+				((TriggeredPredicate) predicate).detach(predicateRegistration);
+			}
+		}
+	}
+
+	private class StateChangeTrigger implements StateListener {
+
+		@Override
+		public void stateChanged(Service service, State previous, State current) {
+			stateRegistration.trigger();
+		}
+	}
+
+	private class StateCheck implements Runnable {
+
+		@Override
+		public void run() {
+			State state = service.currentState();
+
+			//If the service is shutdown or has an exception, stop monitoring
+			if(state.compareTo(State.STARTED) > 0) {
+				stop();
+				return;
+			}
+
+			//The predicate is not evaluated until the service is running
+			if(state.isPending() || state.isStarted()) {
+				if(predicateRegistration == null) {
+					predicateRegistration = engine.register("predicate:" + service.name(), new PredicateCheck(), monitorInterval, TimeUnit.MILLISECONDS);
+					if(predicate instanceof TriggeredPredicate) {
+						((TriggeredPredicate) predicate).attach(predicateRegistration);
+					}
+				}
+
+				predicateRegistration.trigger();
+			}
+		}
+	}
+
+	private class PredicateCheck implements Runnable {
 
 		@Override
 		public void run() {
-			
 			if(predicate.evaluate()) {
 				service.shutdown();
 			}
-			
-			//If the service is shutdown or has an exception, shutdown the ExecutorService
-			if(service.currentState().compareTo(State.STARTED) > 0 ) {
-				executor.shutdown();
-			}
 		}
 	}
 }
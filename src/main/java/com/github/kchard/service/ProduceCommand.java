@@ -0,0 +1,52 @@
+package com.github.kchard.service;
+
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Produces up to a number of items into a queue each tick, stopping early when the queue is full or the time budget is used.
+ * Nothing is produced for a full {@link BlockingQueue}, an item any other queue refuses is dropped, as it is when a scheduled
+ * producer offers one item per tick.
+ *
+ * @author chardk
+ *
+ * @param <T>
+ * @see BulkCommand
+ * @see ServiceBuilder.ScheduledProducerBuilder
+ */
+public class ProduceCommand<T> extends BulkCommand {
+
+	private final Producer<T> producer;
+	private final Queue<T> queue;
+
+	/**
+	 * Produces up to the given number of items per tick without a time budget
+	 */
+	public ProduceCommand(final Producer<T> producer, final Queue<T> queue, final int maxItems) {
+		this(producer, queue, maxItems, 0L, TimeUnit.MILLISECONDS, SystemClock.instance());
+	}
+
+	/**
+	 * @param producer The producer of the items
+	 * @param queue The queue to fill
+	 * @param maxItems The most items produced per tick
+	 * @param budget The time a tick may take, 0 for no limit
+	 * @param unit The unit of time the budget is specified in
+	 * @param clock The clock used to measure the budget
+	 */
+	public ProduceCommand(final Producer<T> producer, final Queue<T> queue, final int maxItems, final long budget, final TimeUnit unit, final Clock clock) {
+		super(maxItems, budget, unit, clock);
+		this.producer = producer;
+		this.queue = queue;
+	}
+
+	@Override
+	protected boolean moveOne() {
+		if(queue instanceof BlockingQueue && ((BlockingQueue<T>) queue).remainingCapacity() == 0) {
+			return false;
+		}
+
+		return queue.offer(producer.produce());
+	}
+}
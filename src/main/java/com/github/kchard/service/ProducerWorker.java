@@ -1,11 +1,19 @@
 package com.github.kchard.service;
 
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * <p>A {@link Worker} that puts the items of a {@link Producer} or a {@link CancellableProducer} on a queue.</p>
+ *
+ * <p>Cancelling the worker cancels the {@link CancellationToken} passed to a cancellable producer, giving it the shutdown
+ * timeout of the owning {@link WorkerService} to return. A cancellable producer that returns null or throws a
+ * {@link CancellationException} stops the worker quietly.</p>
+ *
  * @author chardk
  *
  * @param <T>
@@ -18,20 +26,61 @@ public class ProducerWorker<T> implements Worker {
 	private final Logger logger = LoggerFactory.getLogger(getClass());
 	
 	private final Producer<T> producer;
+	private final CancellableProducer<T> cancellable;
+	private final CancellationToken token = new CancellationToken();
 	private final BlockingQueue<T> workQueue;
 	
+	private final AbstractService owner;
+	
 	private volatile boolean run = true;
 	
 	public ProducerWorker(final Producer<T> producer, final BlockingQueue<T> workQueue) {
+		this(producer, workQueue, null);
+	}
+	
+	/**
+	 * @param producer The producer to invoke
+	 * @param workQueue The queue to put items on
+	 * @param owner The service whose {@link EventSink} receives this worker's events, or null for no events
+	 */
+	public ProducerWorker(final Producer<T> producer, final BlockingQueue<T> workQueue, final AbstractService owner) {
 		this.producer = producer;
+		this.cancellable = null;
 		this.workQueue = workQueue;
+		this.owner = owner;
+	}
+	
+	/**
+	 * @param producer The producer to invoke with this worker's {@link CancellationToken}
+	 * @param workQueue The queue to put items on
+	 * @param owner The service whose {@link EventSink} receives this worker's events, or null for no events
+	 */
+	public ProducerWorker(final CancellableProducer<T> producer, final BlockingQueue<T> workQueue, final AbstractService owner) {
+		this.producer = null;
+		this.cancellable = producer;
+		this.workQueue = workQueue;
+		this.owner = owner;
 	}
 	
 	@Override
 	public final void run() {
+		CallProfiler.Probe probe = CallProfiler.probe(owner);
 		while(run) {
 			try {
-				workQueue.put(producer.produce());
+				if(probe != null && probe.sample()) {
+					produceSampled(probe);
+					continue;
+				}
+				
+				T item = produce();
+				if(item == null && token.isCancelled()) {
+					continue;
+				}
+				
+				workQueue.put(item);
+				if(owner != null) {
+					owner.emit(ServiceEvent.ITEM_PRODUCED, item);
+				}
 			} catch (InterruptedException e) {
 				//This handles the case when BlockingQueue.take is interrupted
 				
@@ -41,17 +90,61 @@ public class ProducerWorker<T> implements Worker {
 				//Preserve the interrupted status of the Thread
 				Thread.currentThread().interrupt();
 				
+			} catch (CancellationException e) {
+				//The producer gave up on being cancelled
+				cancel();
+				
 			} catch (RuntimeException e) {
 				//In the case of any other exception, stop the Worker.
 				//If more work needs to be done, the code that started this Worker can start additional Workers at its discretion
 				cancel();
 				
-				logger.info("Shutting down " + getClass() + " due to an Exception: " + e.getMessage());
+				logger.info("Shutting down {} due to an Exception: {}", getClass(), e.getMessage());
+				if(owner != null) {
+					owner.emit(ServiceEvent.WORKER_STOPPED, e);
+				}
 			}
 		}
 	}
 	
+	private void produceSampled(final CallProfiler.Probe probe) throws InterruptedException {
+		probe.callStarted();
+		T item = produce();
+		probe.callEnded();
+		if(item == null && token.isCancelled()) {
+			return;
+		}
+		
+		probe.queueStarted();
+		workQueue.put(item);
+		probe.queueEnded();
+		probe.record();
+		if(owner != null) {
+			owner.emit(ServiceEvent.ITEM_PRODUCED, item);
+		}
+	}
+	
+	/**
+	 * @return The item produced, or null if a cancellable producer was cancelled before producing one
+	 */
+	private T produce() {
+		if(cancellable == null) {
+			return producer.produce();
+		}
+		
+		T item = cancellable.produce(token);
+		if(item == null && !token.isCancelled()) {
+			throw new NullPointerException("A producer that has not been cancelled must produce an item");
+		}
+		
+		return item;
+	}
+	
 	public final void cancel() {
 		run = false;
+		if(cancellable != null) {
+			long grace = owner instanceof WorkerService ? ((WorkerService) owner).shutdownTimeout(TimeUnit.NANOSECONDS) : 0L;
+			token.cancel(grace, TimeUnit.NANOSECONDS);
+		}
 	}
 }
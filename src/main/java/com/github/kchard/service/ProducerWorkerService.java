@@ -1,8 +1,6 @@
 package com.github.kchard.service;
 
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 /**
  * @author chardk
@@ -11,40 +9,46 @@ import java.util.concurrent.Executors;
  * @see Worker
  * @see WorkerFactory
  */
-public class ProducerWorkerService<T> extends AbstractService {
+public class ProducerWorkerService<T> extends WorkerService {
 
-private static final int DEFAULT_MAX_WORKERS = 512;
-	
-	private final Producer<T> producer;
 	private final BlockingQueue<T> workQueue;
-	private final int maxWorkers;
-	
-	private ExecutorService workerExecutor;
-	
+
 	public ProducerWorkerService(final Producer<T> consumer, final BlockingQueue<T> workQueue) {
 		this(consumer, workQueue, DEFAULT_MAX_WORKERS);
 	}
 	
 	public ProducerWorkerService(final Producer<T> producer, final BlockingQueue<T> workQueue, final int maxWorkers) {
-		this.producer = producer;
+		super(new WorkerFactory() {
+
+			@Override
+			public Worker createWorker(AbstractService owner) {
+				return new ProducerWorker<T>(producer, workQueue, owner);
+			}
+		}, maxWorkers);
 		this.workQueue = workQueue;
-		this.maxWorkers = maxWorkers;
 	}
 
-	@Override
-	protected final void doInitialize() {
-		workerExecutor = Executors.newFixedThreadPool(maxWorkers); 
-	}
+	/**
+	 * @param producer The producer to invoke, each worker passes it a {@link CancellationToken} that is cancelled when the worker is
+	 * @param workQueue The queue to put items on
+	 * @param maxWorkers The number of workers
+	 */
+	public ProducerWorkerService(final CancellableProducer<T> producer, final BlockingQueue<T> workQueue, final int maxWorkers) {
+		super(new WorkerFactory() {
 
-	@Override
-	protected final void doStart() {
-		for(int i = 0; i < maxWorkers; i++) {
-			workerExecutor.execute(new ProducerWorker<T>(producer, workQueue));
-		}
+			@Override
+			public Worker createWorker(AbstractService owner) {
+				return new ProducerWorker<T>(producer, workQueue, owner);
+			}
+		}, maxWorkers);
+		this.workQueue = workQueue;
 	}
 
+	/**
+	 * @return The number of items waiting in the work queue
+	 */
 	@Override
-	protected final void doShutdown() {
-		workerExecutor.shutdownNow();
+	public int queueDepth() {
+		return workQueue.size();
 	}
 }
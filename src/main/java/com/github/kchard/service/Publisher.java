@@ -0,0 +1,23 @@
+package com.github.kchard.service;
+
+/**
+ * <p>A source of items that are sent to a {@link Subscriber} only as fast as the subscriber requests them.</p>
+ *
+ * <p>This interface, {@link Subscriber} and {@link Subscription} have the same methods and contract as
+ * {@code java.util.concurrent.Flow} and Reactive Streams, which are not available on the platform this library targets.
+ * Adapting between them takes a single delegating class.</p>
+ *
+ * @author chardk
+ *
+ * @param <T>
+ * @see PublisherService
+ */
+public interface Publisher<T> {
+
+	/**
+	 * Starts a new subscription. The subscriber's {@link Subscriber#onSubscribe(Subscription)} is always called first.
+	 *
+	 * @param subscriber The subscriber
+	 */
+	void subscribe(Subscriber<? super T> subscriber);
+}
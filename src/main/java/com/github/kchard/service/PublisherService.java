@@ -0,0 +1,267 @@
+package com.github.kchard.service;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>A worker service that exposes a {@link Producer} as a {@link Publisher}.</p>
+ *
+ * <p>Unlike a {@link ProducerWorkerService}, whose workers block on a full queue, the workers of this service only
+ * call the producer once a subscriber has requested an item, and wait for demand otherwise. Each item is sent to one
+ * subscriber, so several subscribers share the items between them, taking turns when more than one has demand.</p>
+ *
+ * <p>Subscribers may subscribe at any time. Demand signalled before the service starts is served once it starts.
+ * When the service is shutdown every subscription is completed, a subscriber that subscribes afterwards is completed immediately.
+ * A producer exception stops the worker that called it, as with a {@link ProducerWorker}, and the item it was producing
+ * remains requested.</p>
+ *
+ * @author chardk
+ *
+ * @param <T>
+ * @see Publisher
+ * @see SubscriberService
+ */
+public class PublisherService<T> extends WorkerService implements Publisher<T> {
+
+	private final List<PublisherSubscription> subscriptions = new CopyOnWriteArrayList<PublisherSubscription>();
+	private final AtomicInteger nextSubscription = new AtomicInteger();
+	private final Object demandLock = new Object();
+
+	private long demandSignals = 0L;
+
+	public PublisherService(final Producer<T> producer) {
+		this(producer, DEFAULT_MAX_WORKERS);
+	}
+
+	public PublisherService(final Producer<T> producer, final int maxWorkers) {
+		super(new WorkerFactory() {
+
+			@Override
+			@SuppressWarnings("unchecked")
+			public Worker createWorker(AbstractService owner) {
+				return ((PublisherService<T>) owner).new PublishingWorker(producer);
+			}
+		}, maxWorkers);
+
+		addStateListener(new CompleteOnShutdown());
+	}
+
+	@Override
+	public void subscribe(final Subscriber<? super T> subscriber) {
+		if(subscriber == null) {
+			throw new NullPointerException("Subscriber must not be null");
+		}
+
+		PublisherSubscription subscription = new PublisherSubscription(subscriber);
+		subscriptions.add(subscription);
+		subscriber.onSubscribe(subscription);
+		if(currentState().compareTo(State.STARTED) > 0) {
+			subscription.complete();
+		}
+	}
+
+	/**
+	 * @return The number of active subscriptions
+	 */
+	public int subscribers() {
+		return subscriptions.size();
+	}
+
+	private void signalDemand() {
+		synchronized(demandLock) {
+			demandSignals++;
+			demandLock.notifyAll();
+		}
+	}
+
+	/**
+	 * Waits until a subscriber has demand and claims one item of it, subscribers are tried in turn
+	 */
+	private PublisherSubscription claimDemand() throws InterruptedException {
+		while(true) {
+			long seen;
+			synchronized(demandLock) {
+				seen = demandSignals;
+			}
+
+			int size = subscriptions.size();
+			int start = nextSubscription.getAndIncrement();
+			for(int i = 0; i < size; i++) {
+				PublisherSubscription subscription;
+				try {
+					subscription = subscriptions.get(Math.abs((start + i) % size));
+				} catch(IndexOutOfBoundsException e) {
+					//A subscription was removed while searching, search again
+					break;
+				}
+
+				if(subscription.claim()) {
+					return subscription;
+				}
+			}
+
+			synchronized(demandLock) {
+				while(demandSignals == seen) {
+					demandLock.wait();
+				}
+			}
+		}
+	}
+
+	private class PublishingWorker implements Worker {
+
+		private final Logger logger = LoggerFactory.getLogger(getClass());
+
+		private final Producer<T> producer;
+
+		private volatile boolean run = true;
+
+		private PublishingWorker(final Producer<T> producer) {
+			this.producer = producer;
+		}
+
+		@Override
+		public void run() {
+			while(run) {
+				PublisherSubscription subscription;
+				try {
+					subscription = claimDemand();
+				} catch(InterruptedException e) {
+					cancel();
+					Thread.currentThread().interrupt();
+					continue;
+				}
+
+				T item;
+				try {
+					item = producer.produce();
+				} catch(RuntimeException e) {
+					subscription.unclaim();
+					cancel();
+
+					logger.info("Shutting down {} due to an Exception: {}", getClass(), e.getMessage());
+					emit(ServiceEvent.WORKER_STOPPED, e);
+					continue;
+				}
+
+				if(subscription.deliver(item)) {
+					emit(ServiceEvent.ITEM_PRODUCED, item);
+				}
+			}
+		}
+
+		@Override
+		public void cancel() {
+			run = false;
+		}
+	}
+
+	private class PublisherSubscription implements Subscription {
+
+		private final Subscriber<? super T> subscriber;
+		private final AtomicLong demand = new AtomicLong();
+
+		private volatile boolean cancelled = false;
+		private boolean terminated = false;
+
+		private PublisherSubscription(final Subscriber<? super T> subscriber) {
+			this.subscriber = subscriber;
+		}
+
+		@Override
+		public void request(final long n) {
+			if(n <= 0) {
+				fail(new IllegalArgumentException("Requests must be positive: " + n));
+				return;
+			}
+
+			while(true) {
+				long current = demand.get();
+				long next = current + n < 0 ? Long.MAX_VALUE : current + n;
+				if(demand.compareAndSet(current, next)) {
+					break;
+				}
+			}
+
+			signalDemand();
+		}
+
+		@Override
+		public void cancel() {
+			cancelled = true;
+			subscriptions.remove(this);
+		}
+
+		private boolean claim() {
+			while(!cancelled) {
+				long current = demand.get();
+				if(current == 0) {
+					return false;
+				}
+
+				//Unbounded demand is never used up
+				if(current == Long.MAX_VALUE || demand.compareAndSet(current, current - 1)) {
+					return true;
+				}
+			}
+
+			return false;
+		}
+
+		private void unclaim() {
+			if(demand.get() != Long.MAX_VALUE) {
+				demand.incrementAndGet();
+			}
+		}
+
+		private synchronized boolean deliver(final T item) {
+			if(cancelled || terminated) {
+				return false;
+			}
+
+			try {
+				subscriber.onNext(item);
+				return true;
+			} catch(RuntimeException e) {
+				//A subscriber must not throw, it is treated as having cancelled
+				logger.error("Cancelling subscription after an exception in onNext: " + e.getMessage());
+				terminated = true;
+				cancel();
+				return false;
+			}
+		}
+
+		private synchronized void complete() {
+			if(!terminated) {
+				terminated = true;
+				subscriptions.remove(this);
+				subscriber.onComplete();
+			}
+		}
+
+		private synchronized void fail(final Throwable throwable) {
+			if(!terminated) {
+				terminated = true;
+				cancel();
+				subscriber.onError(throwable);
+			}
+		}
+	}
+
+	private class CompleteOnShutdown implements StateListener {
+
+		@Override
+		public void stateChanged(final Service service, final State previous, final State current) {
+			if(current.isShutdown() || current.isExceptional()) {
+				for(PublisherSubscription subscription : subscriptions) {
+					subscription.complete();
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,143 @@
+package com.github.kchard.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>The pending reply to a request submitted to a {@link RequestReplyService}.</p>
+ *
+ * <p>A reply completes with the value returned by the {@link RequestHandler}, with the exception it threw, with a
+ * {@link TimeoutException} if its deadline passes first, or by being cancelled. A reply that is cancelled or expires
+ * while it is still queued is never handled. A reply that expires while it is being handled fails immediately,
+ * the handler is left to finish and its result is discarded. It still holds its place in the capacity of the service until it returns.</p>
+ *
+ * @author chardk
+ *
+ * @param <R> The type of reply
+ * @see RequestReplyService
+ */
+public class Reply<R> extends FutureTask<R> {
+
+	private final List<Runnable> listeners = new ArrayList<Runnable>();
+
+	private boolean completed = false;
+	private volatile TimeoutException timeout;
+	private volatile MonitorEngine.Registration deadline;
+
+	//Held by the completion of the reply and by a handler that is running, the reply is settled once both are released
+	private final AtomicInteger holds = new AtomicInteger(1);
+	private final AtomicBoolean settled = new AtomicBoolean();
+	private volatile Runnable settledListener;
+
+	Reply(final Callable<R> callable) {
+		super(callable);
+	}
+
+	/**
+	 * Runs the listener once the reply is done, immediately if it already is.
+	 * Listeners run on the thread that completes the reply, so they should be short and must not block.
+	 *
+	 * @param listener The listener to run
+	 */
+	public void addListener(final Runnable listener) {
+		synchronized(listeners) {
+			if(!completed) {
+				listeners.add(listener);
+				return;
+			}
+		}
+
+		listener.run();
+	}
+
+	/**
+	 * Runs the listener once the reply is done and its handler, if it was started, has returned.
+	 * Must be set before the reply is handed to a worker or given a deadline.
+	 */
+	void onSettled(final Runnable listener) {
+		this.settledListener = listener;
+	}
+
+	@Override
+	public void run() {
+		holds.incrementAndGet();
+		try {
+			super.run();
+		} finally {
+			release();
+		}
+	}
+
+	private void release() {
+		if(holds.decrementAndGet() == 0 && settled.compareAndSet(false, true)) {
+			Runnable listener = settledListener;
+			if(listener != null) {
+				listener.run();
+			}
+		}
+	}
+
+	void setDeadline(final MonitorEngine.Registration deadline) {
+		this.deadline = deadline;
+		if(isDone()) {
+			deadline.cancel();
+		}
+	}
+
+	/**
+	 * Fails the reply with a {@link TimeoutException} unless it has already completed
+	 */
+	void expire() {
+		TimeoutException timeout = new TimeoutException("No reply within the deadline");
+		this.timeout = timeout;
+		setException(timeout);
+	}
+
+	/**
+	 * @return true if the reply failed because its deadline passed
+	 */
+	public boolean isExpired() {
+		TimeoutException timeout = this.timeout;
+		if(timeout == null || !isDone() || isCancelled()) {
+			return false;
+		}
+
+		try {
+			get();
+			return false;
+		} catch(ExecutionException e) {
+			//The deadline may have passed just after the reply completed
+			return e.getCause() == timeout;
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	@Override
+	protected void done() {
+		MonitorEngine.Registration deadline = this.deadline;
+		if(deadline != null) {
+			deadline.cancel();
+		}
+
+		List<Runnable> listeners;
+		synchronized(this.listeners) {
+			completed = true;
+			listeners = new ArrayList<Runnable>(this.listeners);
+			this.listeners.clear();
+		}
+
+		for(Runnable listener : listeners) {
+			listener.run();
+		}
+
+		release();
+	}
+}
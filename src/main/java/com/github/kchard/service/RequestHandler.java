@@ -0,0 +1,15 @@
+package com.github.kchard.service;
+
+/**
+ * Handles a request submitted to a {@link RequestReplyService} and returns the reply.
+ *
+ * @author chardk
+ *
+ * @param <T> The type of request
+ * @param <R> The type of reply
+ * @see RequestReplyService
+ */
+public interface RequestHandler<T, R> {
+
+	R handle(T request) throws Exception;
+}
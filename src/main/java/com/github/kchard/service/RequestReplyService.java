@@ -0,0 +1,241 @@
+package com.github.kchard.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>A service that handles requests on a pool of workers and returns each reply through a {@link Reply}.</p>
+ *
+ * <p>The number of requests in flight, queued or being handled, is bounded. A request submitted while the service is at
+ * capacity, or is not running, is rejected immediately with a {@link RejectedExecutionException} rather than queued.
+ * A request may be given a deadline, which is enforced by a {@link MonitorEngine}. A request whose deadline passes while it is
+ * being handled stays in flight until its handler returns, so no more than the bounded number of handlers ever run at once. Replies that are still queued when the
+ * service is shutdown are cancelled.</p>
+ *
+ * <p>This class is thread safe.</p>
+ *
+ * @author chardk
+ *
+ * @param <T> The type of request
+ * @param <R> The type of reply
+ * @see RequestHandler
+ * @see Reply
+ */
+public class RequestReplyService<T, R> extends WorkerService {
+
+	private final RequestHandler<T, R> handler;
+	private final BlockingQueue<Reply<R>> queue;
+	private final int maxInFlight;
+	private final Semaphore inFlight;
+	private final MonitorEngine engine;
+
+	private final AtomicLong rejected = new AtomicLong();
+	private final AtomicLong expired = new AtomicLong();
+
+	/**
+	 * @param handler The handler of the requests
+	 * @param maxInFlight The number of requests that may be in flight before further requests are rejected
+	 */
+	public RequestReplyService(final RequestHandler<T, R> handler, final int maxInFlight) {
+		this(handler, DEFAULT_MAX_WORKERS, maxInFlight);
+	}
+
+	/**
+	 * @param handler The handler of the requests
+	 * @param maxWorkers The number of workers handling requests
+	 * @param maxInFlight The number of requests that may be in flight before further requests are rejected
+	 */
+	public RequestReplyService(final RequestHandler<T, R> handler, final int maxWorkers, final int maxInFlight) {
+		this(handler, maxWorkers, maxInFlight, MonitorEngine.shared());
+	}
+
+	/**
+	 * @param handler The handler of the requests
+	 * @param maxWorkers The number of workers handling requests
+	 * @param maxInFlight The number of requests that may be in flight before further requests are rejected
+	 * @param engine The engine used to enforce deadlines
+	 */
+	public RequestReplyService(final RequestHandler<T, R> handler, final int maxWorkers, final int maxInFlight, final MonitorEngine engine) {
+		this(handler, maxWorkers, maxInFlight, engine, new LinkedBlockingQueue<Reply<R>>());
+	}
+
+	private RequestReplyService(final RequestHandler<T, R> handler, final int maxWorkers, final int maxInFlight, final MonitorEngine engine, final BlockingQueue<Reply<R>> queue) {
+		super(new WorkerFactory() {
+
+			@Override
+			public Worker createWorker(AbstractService owner) {
+				return new ConsumerWorker<Reply<R>>(new HandleReply<R>(owner), queue, owner);
+			}
+		}, maxWorkers);
+
+		if(maxInFlight < 1) {
+			throw new IllegalArgumentException("At least one request must be allowed in flight: " + maxInFlight);
+		}
+
+		this.handler = handler;
+		this.queue = queue;
+		this.maxInFlight = maxInFlight;
+		this.inFlight = new Semaphore(maxInFlight);
+		this.engine = engine;
+		addStateListener(new CancelOnShutdown());
+	}
+
+	/**
+	 * Submits a request without a deadline
+	 *
+	 * @param request The request
+	 * @return The pending reply
+	 * @throws RejectedExecutionException If the service is at capacity or is not running
+	 */
+	public Reply<R> submit(final T request) {
+		return submit(request, 0L, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @param request The request
+	 * @param timeout The time after which the reply fails with a {@link java.util.concurrent.TimeoutException}, 0 for no deadline
+	 * @param unit The unit of time the timeout is specified in
+	 * @return The pending reply, already cancelled if the service was shutdown while the request was being submitted
+	 * @throws RejectedExecutionException If the service is at capacity or is not running
+	 */
+	public Reply<R> submit(final T request, final long timeout, final TimeUnit unit) {
+		if(!currentState().isStarted()) {
+			rejected.incrementAndGet();
+			throw new RejectedExecutionException(name() + " is not running: " + currentState());
+		}
+
+		if(!inFlight.tryAcquire()) {
+			rejected.incrementAndGet();
+			throw new RejectedExecutionException(name() + " already has " + maxInFlight + " requests in flight");
+		}
+
+		final Reply<R> reply = new Reply<R>(new Callable<R>() {
+
+			@Override
+			public R call() throws Exception {
+				return handler.handle(request);
+			}
+		});
+		reply.onSettled(new ReleaseCapacity(reply));
+
+		if(timeout > 0) {
+			reply.setDeadline(engine.schedule("reply-deadline:" + name(), new Runnable() {
+
+				@Override
+				public void run() {
+					reply.expire();
+					if(reply.isExpired()) {
+						expired.incrementAndGet();
+					}
+				}
+			}, timeout, unit));
+		}
+
+		queue.add(reply);
+
+		//A shutdown that began after the check above may already have drained the queue
+		if(!currentState().isStarted() && queue.remove(reply)) {
+			reply.cancel(false);
+		}
+
+		return reply;
+	}
+
+	/**
+	 * @return The number of requests queued or being handled
+	 */
+	public int inFlight() {
+		return maxInFlight - inFlight.availablePermits();
+	}
+
+	public int maxInFlight() {
+		return maxInFlight;
+	}
+
+	/**
+	 * @return The number of requests rejected since the service was created
+	 */
+	public long rejected() {
+		return rejected.get();
+	}
+
+	/**
+	 * @return The number of replies that failed because their deadline passed
+	 */
+	public long expired() {
+		return expired.get();
+	}
+
+	/**
+	 * @return The number of requests waiting for a worker
+	 */
+	@Override
+	public int queueDepth() {
+		return queue.size();
+	}
+
+	private static class HandleReply<R> implements Consumer<Reply<R>> {
+
+		private final AbstractService owner;
+
+		private HandleReply(final AbstractService owner) {
+			this.owner = owner;
+		}
+
+		@Override
+		public void consume(Reply<R> reply) {
+			//A handler may swallow the interrupt sent at shutdown, so the worker can still take a queued reply
+			if(owner.currentState().compareTo(State.STARTED) > 0) {
+				reply.cancel(false);
+				return;
+			}
+
+			//A reply that was cancelled or expired while queued is not handled
+			reply.run();
+		}
+	}
+
+	private class ReleaseCapacity implements Runnable {
+
+		private final Reply<R> reply;
+
+		private ReleaseCapacity(final Reply<R> reply) {
+			this.reply = reply;
+		}
+
+		@Override
+		public void run() {
+			//A reply that did not run to completion may still be queued
+			if(reply.isCancelled() || reply.isExpired()) {
+				queue.remove(reply);
+			}
+
+			inFlight.release();
+		}
+	}
+
+	private class CancelOnShutdown implements StateListener {
+
+		@Override
+		public void stateChanged(Service service, State previous, State current) {
+			if(current.isShutdown() || current.isExceptional()) {
+				List<Reply<R>> queued = new ArrayList<Reply<R>>();
+				queue.drainTo(queued);
+				if(!queued.isEmpty()) {
+					logger.debug("Cancelling {} queued requests of {}", queued.size(), name());
+				}
+
+				for(Reply<R> reply : queued) {
+					reply.cancel(false);
+				}
+			}
+		}
+	}
+}
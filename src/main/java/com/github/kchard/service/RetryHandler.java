@@ -0,0 +1,147 @@
+package com.github.kchard.service;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>An {@link ItemFailureHandler} that retries failed items and moves items that keep failing to a dead letter queue.</p>
+ *
+ * <p>A failed item is put back on the work queue after the delay given by the {@link RetryPolicy}. The delays are timed by a
+ * {@link MonitorEngine}, so retries do not hold up a worker and a few poison items do not reduce the throughput of the rest.
+ * Once an item has been retried the maximum number of times, or if the work queue is full when it is retried, it is offered to
+ * the dead letter queue. Without a dead letter queue, or if that queue is full, the item is logged and dropped.</p>
+ *
+ * <p>Attempts are tracked by item identity, so the same instance should not be queued more than once at the same time.
+ * Only failed items are tracked, an item that succeeds while no retries are pending does not touch any shared state.</p>
+ *
+ * <p>This class is thread safe.</p>
+ *
+ * @author chardk
+ *
+ * @param <T>
+ * @see RetryPolicy
+ */
+public class RetryHandler<T> implements ItemFailureHandler<T> {
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	private final RetryPolicy policy;
+	private final BlockingQueue<T> workQueue;
+	private final Queue<T> deadLetters;
+	private final MonitorEngine engine;
+	private final Map<T, Integer> attempts = new IdentityHashMap<T, Integer>();
+	//The size of attempts, written while holding its lock and read without it
+	private volatile int pending = 0;
+
+	private final AtomicLong retries = new AtomicLong();
+	private final AtomicLong deadLettered = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+
+	/**
+	 * @param policy The retry policy
+	 * @param workQueue The queue failed items are put back on
+	 * @param deadLetters The queue items that cannot be retried are moved to, or null to drop them
+	 * @param engine The engine used to time the retry delays
+	 */
+	public RetryHandler(final RetryPolicy policy, final BlockingQueue<T> workQueue, final Queue<T> deadLetters, final MonitorEngine engine) {
+		this.policy = policy;
+		this.workQueue = workQueue;
+		this.deadLetters = deadLetters;
+		this.engine = engine;
+	}
+
+	@Override
+	public void onFailure(final T item, final RuntimeException e) {
+		int retry;
+		synchronized(attempts) {
+			Integer previous = attempts.get(item);
+			retry = previous == null ? 1 : previous + 1;
+			if(retry <= policy.maxRetries()) {
+				attempts.put(item, retry);
+			} else {
+				attempts.remove(item);
+			}
+
+			pending = attempts.size();
+		}
+
+		if(retry > policy.maxRetries()) {
+			deadLetter(item, e);
+			return;
+		}
+
+		retries.incrementAndGet();
+		engine.schedule("retry", new Runnable() {
+
+			@Override
+			public void run() {
+				if(!workQueue.offer(item)) {
+					forget(item);
+					deadLetter(item, e);
+				}
+			}
+		}, policy.delay(retry, TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+	}
+
+	@Override
+	public void onSuccess(final T item) {
+		forget(item);
+	}
+
+	/**
+	 * @return The number of retries scheduled
+	 */
+	public long retries() {
+		return retries.get();
+	}
+
+	/**
+	 * @return The number of items moved to the dead letter queue
+	 */
+	public long deadLettered() {
+		return deadLettered.get();
+	}
+
+	/**
+	 * @return The number of items that could not be retried and were dropped
+	 */
+	public long dropped() {
+		return dropped.get();
+	}
+
+	/**
+	 * @return The number of items waiting to be retried or being retried
+	 */
+	public int pending() {
+		return pending;
+	}
+
+	private void forget(final T item) {
+		//A retried item is tracked before it is put back on the work queue, so a worker that takes it sees pending > 0
+		if(pending == 0) {
+			return;
+		}
+
+		synchronized(attempts) {
+			attempts.remove(item);
+			pending = attempts.size();
+		}
+	}
+
+	private void deadLetter(final T item, final RuntimeException e) {
+		if(deadLetters != null && deadLetters.offer(item)) {
+			deadLettered.incrementAndGet();
+			logger.debug("Moved item to the dead letter queue after: {}", e.getMessage());
+		} else {
+			dropped.incrementAndGet();
+			logger.warn("Dropping item that could not be consumed: {} ({})", item, e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package com.github.kchard.service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Describes how many times an item that failed to be consumed is retried and how long to wait before each retry.</p>
+ *
+ * <p>This class is immutable.</p>
+ *
+ * @author chardk
+ *
+ * @see RetryHandler
+ */
+public final class RetryPolicy {
+
+	private static final RetryPolicy NONE = new RetryPolicy(0, 0L, 1.0);
+
+	private final int maxRetries;
+	private final long delayNanos;
+	private final double backoff;
+
+	private RetryPolicy(final int maxRetries, final long delayNanos, final double backoff) {
+		this.maxRetries = maxRetries;
+		this.delayNanos = delayNanos;
+		this.backoff = backoff;
+	}
+
+	/**
+	 * @return A policy that never retries
+	 */
+	public static RetryPolicy none() {
+		return NONE;
+	}
+
+	/**
+	 * @param maxRetries The number of times an item is retried
+	 * @param delay The delay before each retry
+	 * @param unit The unit of time the delay is specified in
+	 */
+	public static RetryPolicy retry(final int maxRetries, final long delay, final TimeUnit unit) {
+		if(maxRetries < 0) {
+			throw new IllegalArgumentException("Retries must not be negative: " + maxRetries);
+		}
+
+		return new RetryPolicy(maxRetries, unit.toNanos(delay), 1.0);
+	}
+
+	/**
+	 * @param multiplier The factor the delay grows by after each retry, at least 1
+	 */
+	public RetryPolicy withBackoff(final double multiplier) {
+		if(multiplier < 1.0) {
+			throw new IllegalArgumentException("Backoff multiplier must be at least 1: " + multiplier);
+		}
+
+		return new RetryPolicy(maxRetries, delayNanos, multiplier);
+	}
+
+	public int maxRetries() {
+		return maxRetries;
+	}
+
+	/**
+	 * @param retry The retry, starting at 1
+	 * @param unit The unit of time to return the delay in
+	 * @return The delay before the given retry
+	 */
+	public long delay(final int retry, final TimeUnit unit) {
+		double nanos = delayNanos * Math.pow(backoff, Math.max(0, retry - 1));
+		return unit.convert(nanos >= Long.MAX_VALUE ? Long.MAX_VALUE : (long) nanos, TimeUnit.NANOSECONDS);
+	}
+
+	@Override
+	public String toString() {
+		return "RetryPolicy [maxRetries=" + maxRetries + ", delayNanos=" + delayNanos + ", backoff=" + backoff + "]";
+	}
+}
@@ -2,7 +2,6 @@ package com.github.kchard.service;
 
 import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
@@ -21,6 +20,7 @@ public class ScheduledService extends AbstractService {
 	private long initialDelay;
 	private final TimeUnit unit;
 	private final List<Runnable> commands;
+	private final Clock clock;
 	
 	private ScheduledExecutorService executor;
 	
@@ -31,9 +31,21 @@ public class ScheduledService extends AbstractService {
 	 * @param unit The unit of time the delay is specified in
 	 */
 	public ScheduledService(final List<Runnable> commands, final long initialDelay, final TimeUnit unit) {
+		this(commands, initialDelay, unit, SystemClock.instance());
+	}
+
+	/**
+	 * 
+	 * @param commands The commands to execute
+	 * @param initialDelay The delay after {@link #start()} is called before the commands will execute
+	 * @param unit The unit of time the delay is specified in
+	 * @param clock The clock used to schedule the commands
+	 */
+	public ScheduledService(final List<Runnable> commands, final long initialDelay, final TimeUnit unit, final Clock clock) {
 		this.commands = Collections.unmodifiableList(commands);
 		this.initialDelay = initialDelay;
 		this.unit = unit;
+		this.clock = clock;
 	}
 
     @Override
@@ -43,7 +55,7 @@ public class ScheduledService extends AbstractService {
 
 	@Override
 	protected final void doInitialize() {
-		executor = Executors.newSingleThreadScheduledExecutor();
+		executor = clock.newScheduledExecutor(1, ThreadPolicy.defaults().threadFactory(name()));
 	}
 
 	@Override
@@ -64,11 +76,13 @@ public class ScheduledService extends AbstractService {
             pendingServiceStarted();
 
             for(Runnable command : commands) {
-				logger.trace("Running: " + command.getClass().getName());
+				logger.trace("Running: {}", command.getClass().getName());
+				emit(ServiceEvent.COMMAND_STARTED, command);
 				try {
 					command.run();
 				} catch(RuntimeException e) {
                     logger.error("Shutting down executor: " + e);
+                    emit(ServiceEvent.COMMAND_FAILED, e);
                     reportException(e);
 				}
 			}
@@ -1,86 +1,130 @@
 package com.github.kchard.service;
 
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * A monitor used to schedule the shutdown of a {@link Service} after a given time has elapsed.
- * 
+ * <p>A monitor used to schedule the shutdown of a {@link Service} after a given time has elapsed.</p>
+ *
+ * <p>The monitor does not poll. It listens for state changes of the service and registers a deadline
+ * with a {@link MonitorEngine} once the service has STARTED. The deadline is cancelled if the service
+ * is shutdown or becomes exceptional before it expires.</p>
+ *
  * @author chardk
  *
  * @see AbstractService
+ * @see MonitorEngine
  */
 public class ScheduledShutdownMonitor {
 
 	private final Logger logger = LoggerFactory.getLogger(this.getClass().getName());
-	
-	private static final Long DEFAULT_INTERVAL = 1000L;
-	
-	private final Service service;
-	private final long monitorInterval;
+
+	private final AbstractService service;
 	private final long shutdownAfter;
 	private final TimeUnit timeUnit;
-	private final ScheduledExecutorService executor;
-	
-	private boolean startedMonitorThread = false;
-	
+	private final MonitorEngine engine;
+	private final StateListener stateListener = new StateChangeTrigger();
+
+	private boolean startedMonitor = false;
+	private volatile MonitorEngine.Registration stateRegistration;
+	private volatile MonitorEngine.Registration deadline;
+
 	public ScheduledShutdownMonitor(final AbstractService service, final long shutdownAfter) {
-		this(service, DEFAULT_INTERVAL, shutdownAfter, TimeUnit.SECONDS);
+		this(service, shutdownAfter, TimeUnit.SECONDS);
 	}
-	
-	public ScheduledShutdownMonitor(final AbstractService service, final long monitorInterval, final long shutdownAfter) {
-		this(service, monitorInterval, shutdownAfter, TimeUnit.SECONDS);
+
+	public ScheduledShutdownMonitor(final AbstractService service, final long shutdownAfter, final TimeUnit timeUnit) {
+		this(MonitorEngine.shared(), service, shutdownAfter, timeUnit);
 	}
-	
-	public ScheduledShutdownMonitor(final AbstractService service, final long monitorInterval, final long shutdownAfter, final TimeUnit timeUnit) {
+
+	public ScheduledShutdownMonitor(final MonitorEngine engine, final AbstractService service, final long shutdownAfter, final TimeUnit timeUnit) {
+		this.engine = engine;
 		this.service = service;
-		this.monitorInterval = monitorInterval;
 		this.shutdownAfter = shutdownAfter;
 		this.timeUnit = timeUnit;
-		this.executor = Executors.newSingleThreadScheduledExecutor();
 	}
-	
-	public void start() { 
-		if(!startedMonitorThread) {
-			logger.debug("Starting monitor for: " + service.name());
-			executor.scheduleWithFixedDelay(new MonitorRunnable(), monitorInterval, monitorInterval, TimeUnit.MILLISECONDS);
-			startedMonitorThread = true;
+
+	/**
+	 * @deprecated The monitor reacts to state changes and no longer polls, the monitorInterval is ignored
+	 */
+	@Deprecated
+	public ScheduledShutdownMonitor(final AbstractService service, final long monitorInterval, final long shutdownAfter) {
+		this(service, shutdownAfter, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * @deprecated The monitor reacts to state changes and no longer polls, the monitorInterval is ignored
+	 */
+	@Deprecated
+	public ScheduledShutdownMonitor(final AbstractService service, final long monitorInterval, final long shutdownAfter, final TimeUnit timeUnit) {
+		this(service, shutdownAfter, timeUnit);
+	}
+
+	public synchronized void start() {
+		if(!startedMonitor) {
+			logger.debug("Starting monitor for: {}", service.name());
+			stateRegistration = engine.register("shutdown-monitor:" + service.name(), new StateCheck());
+			service.addStateListener(stateListener);
+			//Evaluate once in case the service changed state before the listener was added
+			stateRegistration.trigger();
+			startedMonitor = true;
+		}
+	}
+
+	/**
+	 * @return true once the monitor has stopped watching the service
+	 */
+	public boolean isStopped() {
+		MonitorEngine.Registration registration = stateRegistration;
+		return registration != null && registration.isCancelled();
+	}
+
+	private void stop() {
+		service.removeStateListener(stateListener);
+		stateRegistration.cancel();
+		if(deadline != null) {
+			deadline.cancel();
+		}
+	}
+
+	private class StateChangeTrigger implements StateListener {
+
+		@Override
+		public void stateChanged(Service service, State previous, State current) {
+			stateRegistration.trigger();
 		}
 	}
-	
-	private class MonitorRunnable implements Runnable {
 
-		private boolean startedShutdownThread = false;
-		
+	private class StateCheck implements Runnable {
+
 		@Override
 		public void run() {
-			
-			//Once the service has started schedule shutdown of the service.
-			if (State.STARTED.equals(service.currentState()) && !startedShutdownThread) {
-				executor.schedule(new ShutdownRunnable(), shutdownAfter, timeUnit);
-				startedShutdownThread = true;
+			State state = service.currentState();
+
+			//If the service is shutdown or has an exception, stop monitoring
+			if(state.compareTo(State.STARTED) > 0) {
+				stop();
+				return;
 			}
-			
-			//If the service is shutdown or has an exception, shutdown the ExecutorService
-			if(service.currentState().compareTo(State.STARTED) > 0 ) {
-				executor.shutdown();
+
+			//Once the service has started schedule shutdown of the service.
+			if(state.isStarted() && deadline == null) {
+				deadline = engine.schedule("shutdown-deadline:" + service.name(), new ShutdownRunnable(), shutdownAfter, timeUnit);
 			}
 		}
 	}
-	
+
 	private class ShutdownRunnable implements Runnable {
 
 		@Override
 		public void run() {
 			try {
-				logger.debug("Shutting down monitored service: " + service.name());
+				logger.debug("Shutting down monitored service: {}", service.name());
 				service.shutdown();
 			} finally {
-				executor.shutdown();
+				stop();
 			}
 		}
 	}
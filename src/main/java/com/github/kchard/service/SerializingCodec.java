@@ -0,0 +1,44 @@
+package com.github.kchard.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+/**
+ * A {@link Codec} that uses Java serialization, convenient but slower and larger than a codec written for the item type.
+ *
+ * @author chardk
+ *
+ * @param <T>
+ */
+public class SerializingCodec<T extends Serializable> implements Codec<T> {
+
+	@Override
+	public byte[] encode(final T item) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ObjectOutputStream out = new ObjectOutputStream(bytes);
+			out.writeObject(item);
+			out.close();
+			return bytes.toByteArray();
+		} catch(IOException e) {
+			throw new IllegalArgumentException("Unable to serialize " + item + ": " + e.getMessage(), e);
+		}
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public T decode(final byte[] bytes) {
+		try {
+			ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+			return (T) in.readObject();
+		} catch(IOException e) {
+			throw new IllegalArgumentException("Unable to deserialize an item: " + e.getMessage(), e);
+		} catch(ClassNotFoundException e) {
+			throw new IllegalArgumentException("Unable to deserialize an item: " + e.getMessage(), e);
+		}
+	}
+}
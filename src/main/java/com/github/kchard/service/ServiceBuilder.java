@@ -6,15 +6,30 @@ import java.util.Queue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 
 
 public class ServiceBuilder {
 	
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+	
 	private List<Runnable> initializationCommands = new ArrayList<Runnable>();
 	private List<Runnable> startupCommands = new ArrayList<Runnable>();
 	private List<Runnable> shutdownCommands = new ArrayList<Runnable>();
 	private Long runFor;
 	private Predicate predicate;
+	private Long predicateInterval;
+	private EventSink eventSink;
+	private SupervisionStrategy supervisionStrategy = SupervisionStrategy.escalate();
+	private Clock clock = SystemClock.instance();
+	private MonitorEngine engine;
+	private Integer introspectionPort;
+	private Long lazyPollInterval;
+	private WarmState warmState;
+	private Checkpoint checkpoint;
+	private Integer profileSampleEvery;
 	
 	private List<AbstractService> services = new ArrayList<AbstractService>();
 	
@@ -48,6 +63,109 @@ public class ServiceBuilder {
 		return this;
 	}
 	
+	/**
+	 * @param predicate The predicate used to determine when the service should shutdown
+	 * @param monitorInterval The interval in milliseconds at which the predicate is evaluated, 0 to only evaluate it when triggered
+	 * 
+	 * @see TriggeredPredicate
+	 */
+	public ServiceBuilder runUntil(Predicate predicate, long monitorInterval) {
+		this.predicate = predicate;
+		this.predicateInterval = monitorInterval;
+		return this;
+	}
+	
+	/**
+	 * @param eventSink The sink that receives the {@link ServiceEvent}s of the built service and each of its direct children
+	 */
+	public ServiceBuilder withEventSink(EventSink eventSink) {
+		this.eventSink = eventSink;
+		return this;
+	}
+	
+	/**
+	 * @param supervisionStrategy The strategy applied when a child of the built service becomes EXCEPTIONAL
+	 */
+	public ServiceBuilder supervise(SupervisionStrategy supervisionStrategy) {
+		this.supervisionStrategy = supervisionStrategy;
+		return this;
+	}
+	
+	/**
+	 * Serves JSON snapshots of the built service tree on the loopback address while the service runs.
+	 * 
+	 * @param port The port to listen on, 0 for any free port
+	 * 
+	 * @see IntrospectionServer
+	 */
+	public ServiceBuilder withIntrospection(int port) {
+		this.introspectionPort = port;
+		return this;
+	}
+	
+	/**
+	 * Sets the clock used by the monitors of the built service and by scheduled services and retries added after this call.
+	 * 
+	 * @param clock The clock, for example a {@link VirtualClock} to test schedules without waiting for them
+	 */
+	public ServiceBuilder withClock(Clock clock) {
+		this.clock = clock == null ? SystemClock.instance() : clock;
+		this.engine = null;
+		return this;
+	}
+	
+	/**
+	 * Samples the calls of the consumer and producer worker services added after this call to their consumer or producer, each service has a
+	 * {@link CallProfiler} of its own. The profile of each service is logged when the built service is shutdown.
+	 * 
+	 * @param sampleEvery The number of calls per sample
+	 * 
+	 * @see WorkerService#profiler()
+	 */
+	public ServiceBuilder withProfiling(int sampleEvery) {
+		this.profileSampleEvery = sampleEvery;
+		return this;
+	}
+	
+	/**
+	 * Restores the state from the checkpoint, or rebuilds it, before any child of the built service is initialized,
+	 * and saves it once every child has been shutdown.
+	 * 
+	 * @param warmState The state the children need before they can do useful work
+	 * @param checkpoint The checkpoint the state is restored from and saved to, or null to always rebuild the state
+	 * 
+	 * @see AbstractService#setWarmState(WarmState, Checkpoint)
+	 */
+	public ServiceBuilder withWarmState(WarmState warmState, Checkpoint checkpoint) {
+		this.warmState = warmState;
+		this.checkpoint = checkpoint;
+		return this;
+	}
+	
+	/**
+	 * Defers the consumers and scheduled services added after this call until they are needed, checking work queues every 10 milliseconds
+	 * 
+	 * @see #lazyChildren(long, TimeUnit)
+	 */
+	public ServiceBuilder lazyChildren() {
+		return lazyChildren(10L, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Defers the consumers and scheduled services added after this call until they are needed. A consumer of a work queue
+	 * is initialized and started once an item is put on its queue, a scheduled service once its initial delay has passed.
+	 * Other services, such as producers and subscribers, are not deferred. The built service becomes STARTED without waiting for deferred children.
+	 * 
+	 * @param pollInterval The interval at which the work queues of deferred services are checked
+	 * @param unit The unit of time the interval is specified in
+	 * 
+	 * @see LazyService
+	 */
+	public ServiceBuilder lazyChildren(long pollInterval, TimeUnit unit) {
+		this.lazyPollInterval = unit.toNanos(pollInterval);
+		return this;
+	}
+	
 	public ScheduledServiceBuilder schedule() {
 		return new ScheduledServiceBuilder(this);
 	}
@@ -56,8 +174,105 @@ public class ServiceBuilder {
 		return new ConsumerWorkerServiceBuilder<T>(this, consumer);
 	}
 	
+	public <T> BatchConsumerWorkerServiceBuilder<T> batchConsumers(BatchConsumer<T> consumer) {
+		return new BatchConsumerWorkerServiceBuilder<T>(this, consumer);
+	}
+	
 	public <T> ProducerWorkerServiceBuilder<T> producers(Producer<T> producer) {
-		return new ProducerWorkerServiceBuilder<T>(this, producer);
+		return new ProducerWorkerServiceBuilder<T>(this, producer, null);
+	}
+	
+	/**
+	 * @param producer A producer that is told when its worker is cancelled, it cannot be guarded by a circuit breaker or a bulkhead
+	 */
+	public <T> ProducerWorkerServiceBuilder<T> cancellableProducers(CancellableProducer<T> producer) {
+		return new ProducerWorkerServiceBuilder<T>(this, null, producer);
+	}
+	
+	/**
+	 * @param generator The generator of the load, its {@link LoadGenerator#measure(Consumer)} consumer should consume the queue
+	 */
+	public <T> LoadGeneratorServiceBuilder<T> load(LoadGenerator<T> generator) {
+		return new LoadGeneratorServiceBuilder<T>(this, generator);
+	}
+	
+	public <T> SlotProducerWorkerServiceBuilder<T> slotProducers(SlotProducer<T> producer) {
+		return new SlotProducerWorkerServiceBuilder<T>(this, producer);
+	}
+	
+	public LongConsumerWorkerServiceBuilder longConsumers(LongConsumer consumer) {
+		return new LongConsumerWorkerServiceBuilder(this, consumer);
+	}
+	
+	public LongProducerWorkerServiceBuilder longProducers(LongProducer producer) {
+		return new LongProducerWorkerServiceBuilder(this, producer);
+	}
+	
+	public DoubleConsumerWorkerServiceBuilder doubleConsumers(DoubleConsumer consumer) {
+		return new DoubleConsumerWorkerServiceBuilder(this, consumer);
+	}
+	
+	public DoubleProducerWorkerServiceBuilder doubleProducers(DoubleProducer producer) {
+		return new DoubleProducerWorkerServiceBuilder(this, producer);
+	}
+	
+	private MonitorEngine engine() {
+		//Monitors and retries share a single engine thread unless they run on a clock of their own
+		if(engine == null) {
+			engine = clock == SystemClock.instance() ? MonitorEngine.shared() : new MonitorEngine("service-monitor", clock);
+		}
+		
+		return engine;
+	}
+	
+	private void addWorkerService(WorkerService service, ThreadPolicy threadPolicy) {
+		addWorkerService(service, threadPolicy, false);
+	}
+	
+	/**
+	 * Adds a service that consumes its work queue, it is the only kind of worker service that is deferred by {@link #lazyChildren()}
+	 */
+	private void addConsumerService(WorkerService service, ThreadPolicy threadPolicy) {
+		addWorkerService(service, threadPolicy, true);
+	}
+	
+	private void addWorkerService(WorkerService service, ThreadPolicy threadPolicy, boolean deferrable) {
+		if(threadPolicy != null) {
+			service.setThreadPolicy(threadPolicy);
+		}
+		
+		if(profileSampleEvery != null && (service instanceof ConsumerWorkerService || service instanceof ProducerWorkerService)) {
+			final WorkerService profiled = service;
+			profiled.setProfiler(new CallProfiler(profileSampleEvery));
+			onShutdown(new Runnable() {
+				
+				@Override
+				public void run() {
+					logger.info("Profile of {}: {}", profiled.name(), profiled.profiler().report());
+				}
+			});
+		}
+		
+		//Producers also report the depth of a queue, but it is their output and only they fill it
+		if(lazyPollInterval != null && deferrable) {
+			services.add(LazyService.onFirstItem(service, lazyPollInterval, TimeUnit.NANOSECONDS, engine()));
+		} else {
+			services.add(service);
+		}
+	}
+	
+	private void addScheduledService(ScheduledServiceFactory factory, long initialDelay, TimeUnit unit) {
+		if(lazyPollInterval != null) {
+			//The initial delay is spent deferred, the service starts its schedule as soon as it is activated
+			services.add(LazyService.afterDelay(factory.create(0L), initialDelay, unit, engine()));
+		} else {
+			services.add(factory.create(initialDelay));
+		}
+	}
+	
+	private interface ScheduledServiceFactory {
+		
+		AbstractService create(long initialDelay);
 	}
 	
 	public AbstractService build() { 
@@ -66,14 +281,37 @@ public class ServiceBuilder {
 			services.add(0, new CommandService(initializationCommands, startupCommands, shutdownCommands));
 		}
 	
-		final AbstractService compositeService = new CompositeService(services);
+		final MonitorEngine engine = engine();
+		final AbstractService compositeService = new CompositeService(services, true, supervisionStrategy, engine);
+		
+		if(warmState != null) {
+			compositeService.setWarmState(warmState, checkpoint);
+		}
+		
+		if(eventSink != null) {
+			compositeService.setEventSink(eventSink);
+			for(AbstractService service : services) {
+				service.setEventSink(eventSink);
+				if(service instanceof LazyService) {
+					((LazyService) service).delegate().setEventSink(eventSink);
+				}
+			}
+		}
+		
+		if(introspectionPort != null) {
+			compositeService.addStateListener(new IntrospectionServer(compositeService, introspectionPort));
+		}
 		
 		if(runFor != null && runFor > 0) {
-			new ScheduledShutdownMonitor(compositeService, runFor).start();
+			new ScheduledShutdownMonitor(engine, compositeService, runFor, TimeUnit.SECONDS).start();
 		}
 		
 		if(predicate != null) {
-			new PredicateShutdownMonitor(compositeService, predicate).start();
+			if(predicateInterval != null) {
+				new PredicateShutdownMonitor(engine, compositeService, predicateInterval, predicate).start();
+			} else {
+				new PredicateShutdownMonitor(engine, compositeService, predicate).start();
+			}
 		}
 		
 		return compositeService;
@@ -114,18 +352,55 @@ public class ServiceBuilder {
 			return new ScheduledConsumerBuilder<T>(this, consumer);
 		}
 		
+		/**
+		 * Schedules a command that moves items in bulk and logs the items it moved per tick when the built service is shutdown.
+		 * Keep a reference to the command to read {@link BulkCommand#itemsPerTick()} and {@link BulkCommand#lastTick()} while the service runs.
+		 * 
+		 * @see DrainCommand
+		 * @see ProduceCommand
+		 */
+		public ScheduledServiceBuilder bulkCommand(final BulkCommand command) {
+			commands.add(command);
+			serviceBuilder.onShutdown(new Runnable() {
+				
+				@Override
+				public void run() {
+					serviceBuilder.logger.info("Scheduled {}", command);
+				}
+			});
+			return this;
+		}
+		
 		public ServiceBuilder once() {
-			serviceBuilder.services.add(new ScheduledService(commands, initialDelay, unit));
+			serviceBuilder.addScheduledService(new ScheduledServiceFactory() {
+				
+				@Override
+				public AbstractService create(long initialDelay) {
+					return new ScheduledService(commands, initialDelay, unit, serviceBuilder.clock);
+				}
+			}, initialDelay, unit);
 			return serviceBuilder;
 		}
 		
-		public ServiceBuilder withDelay(long delay) {
-			serviceBuilder.services.add(new FixedDelayScheduledService(commands, initialDelay, delay, unit));
+		public ServiceBuilder withDelay(final long delay) {
+			serviceBuilder.addScheduledService(new ScheduledServiceFactory() {
+				
+				@Override
+				public AbstractService create(long initialDelay) {
+					return new FixedDelayScheduledService(commands, initialDelay, delay, unit, serviceBuilder.clock);
+				}
+			}, initialDelay, unit);
 			return serviceBuilder;
 		}
 		
-		public ServiceBuilder withRate(long delay) {
-			serviceBuilder.services.add(new FixedRateScheduledService(commands, initialDelay, delay, unit));
+		public ServiceBuilder withRate(final long delay) {
+			serviceBuilder.addScheduledService(new ScheduledServiceFactory() {
+				
+				@Override
+				public AbstractService create(long initialDelay) {
+					return new FixedRateScheduledService(commands, initialDelay, delay, unit, serviceBuilder.clock);
+				}
+			}, initialDelay, unit);
 			return serviceBuilder;
 		}
 	}
@@ -134,14 +409,41 @@ public class ServiceBuilder {
 		
 		private final ScheduledServiceBuilder builder;
 		private final Producer<T> producer;
+		private int maxItems = 1;
+		private long budget = 0L;
+		private TimeUnit budgetUnit = TimeUnit.MILLISECONDS;
 		
 		public ScheduledProducerBuilder(ScheduledServiceBuilder builder, Producer<T> producer) {
 			this.builder = builder;
 			this.producer = producer;
 		}
 		
+		/**
+		 * @param maxItems The most items produced per tick, production stops early when the queue is full
+		 * 
+		 * @see ProduceCommand
+		 */
+		public ScheduledProducerBuilder<T> produceUpTo(int maxItems) {
+			this.maxItems = maxItems;
+			return this;
+		}
+		
+		/**
+		 * @param budget The time a tick may spend producing, 0 for no limit
+		 * @param unit The unit of time the budget is specified in
+		 */
+		public ScheduledProducerBuilder<T> withTimeBudget(long budget, TimeUnit unit) {
+			this.budget = budget;
+			this.budgetUnit = unit;
+			return this;
+		}
+		
 		public ScheduledServiceBuilder forQueue(final Queue<T> queue) {
 			
+			if(maxItems > 1 || budget > 0) {
+				return builder.bulkCommand(new ProduceCommand<T>(producer, queue, maxItems, budget, budgetUnit, builder.serviceBuilder.clock));
+			}
+			
 			Runnable runnable = new Runnable() {
 				
 				@Override
@@ -159,14 +461,41 @@ public class ServiceBuilder {
 		
 		private final ScheduledServiceBuilder builder;
 		private final Consumer<T> consumer;
+		private int maxItems = 1;
+		private long budget = 0L;
+		private TimeUnit budgetUnit = TimeUnit.MILLISECONDS;
 		
 		public ScheduledConsumerBuilder(ScheduledServiceBuilder builder, Consumer<T> consumer) {
 			this.builder = builder;
 			this.consumer = consumer;
 		}
 		
+		/**
+		 * @param maxItems The most items consumed per tick, draining stops early when the queue is empty
+		 * 
+		 * @see DrainCommand
+		 */
+		public ScheduledConsumerBuilder<T> drainUpTo(int maxItems) {
+			this.maxItems = maxItems;
+			return this;
+		}
+		
+		/**
+		 * @param budget The time a tick may spend draining, 0 for no limit
+		 * @param unit The unit of time the budget is specified in
+		 */
+		public ScheduledConsumerBuilder<T> withTimeBudget(long budget, TimeUnit unit) {
+			this.budget = budget;
+			this.budgetUnit = unit;
+			return this;
+		}
+		
 		public ScheduledServiceBuilder forQueue(final Queue<T> queue) {
 			
+			if(maxItems > 1 || budget > 0) {
+				return builder.bulkCommand(new DrainCommand<T>(consumer, queue, maxItems, budget, budgetUnit, builder.serviceBuilder.clock));
+			}
+			
 			Runnable runnable = new Runnable() {
 				
 				@Override
@@ -189,6 +518,14 @@ public class ServiceBuilder {
 		
 		private Consumer<T> consumer;
 		private int maxWorkers;
+		private ThreadPolicy threadPolicy;
+		private CircuitBreaker breaker;
+		private Bulkhead bulkhead;
+		private Consumer<T> fallback;
+		private Queue<T> deadLetters;
+		private RetryPolicy retryPolicy;
+		private KeyExtractor<? super T> keyExtractor;
+		private DedupeCache dedupeCache;
 		
 		private ConsumerWorkerServiceBuilder(ServiceBuilder serviceBuilder, Consumer<T> consumer) {
 			this.serviceBuilder = serviceBuilder;
@@ -200,11 +537,261 @@ public class ServiceBuilder {
 			return this;
 		}
 		
+		/**
+		 * @param threadPolicy The policy used to create the worker threads
+		 */
+		public ConsumerWorkerServiceBuilder<T> withThreadPolicy(ThreadPolicy threadPolicy) {
+			this.threadPolicy = threadPolicy;
+			return this;
+		}
+		
+		/**
+		 * @param breaker The circuit breaker every call to the consumer goes through
+		 */
+		public ConsumerWorkerServiceBuilder<T> withCircuitBreaker(CircuitBreaker breaker) {
+			this.breaker = breaker;
+			return this;
+		}
+		
+		/**
+		 * @param bulkhead The bulkhead that limits concurrent calls to the consumer
+		 */
+		public ConsumerWorkerServiceBuilder<T> withBulkhead(Bulkhead bulkhead) {
+			this.bulkhead = bulkhead;
+			return this;
+		}
+		
+		/**
+		 * @param fallback The consumer of items rejected by the circuit breaker or the bulkhead
+		 */
+		public ConsumerWorkerServiceBuilder<T> withFallback(Consumer<T> fallback) {
+			this.fallback = fallback;
+			return this;
+		}
+		
+		/**
+		 * @param deadLetters The queue that receives items rejected by the circuit breaker or the bulkhead, unless a fallback is set,
+		 * and items the consumer keeps throwing on once their retries are exhausted
+		 */
+		public ConsumerWorkerServiceBuilder<T> withDeadLetters(Queue<T> deadLetters) {
+			this.deadLetters = deadLetters;
+			return fallback == null ? withFallback(new DeadLetterConsumer<T>(deadLetters)) : this;
+		}
+		
+		/**
+		 * Keeps the workers running when the consumer throws, failed items are put back on the work queue as the policy allows
+		 * and then moved to the dead letter queue, if any. Only applies to {@link #forQueue(BlockingQueue)}.
+		 * 
+		 * @param retryPolicy The policy for retrying failed items
+		 * 
+		 * @see RetryHandler
+		 */
+		public ConsumerWorkerServiceBuilder<T> withRetries(RetryPolicy retryPolicy) {
+			this.retryPolicy = retryPolicy;
+			return this;
+		}
+		
+		/**
+		 * Drops items whose key was seen recently, the cache is logged when the built service is shutdown
+		 * 
+		 * @param keyExtractor The extractor of the key that identifies an item
+		 * @param capacity The most keys remembered
+		 * @param ttl The time a key is remembered after it was first seen
+		 * @param unit The unit of time the time to live is specified in
+		 * 
+		 * @see DedupingConsumer
+		 */
+		public ConsumerWorkerServiceBuilder<T> dedupeBy(KeyExtractor<? super T> keyExtractor, int capacity, long ttl, TimeUnit unit) {
+			final DedupeCache cache = new DedupeCache(capacity, ttl, unit, serviceBuilder.clock);
+			serviceBuilder.onShutdown(new Runnable() {
+				
+				@Override
+				public void run() {
+					serviceBuilder.logger.info("Deduplicated with {}", cache);
+				}
+			});
+			
+			return dedupeBy(keyExtractor, cache);
+		}
+		
+		/**
+		 * Drops items whose key was seen recently
+		 * 
+		 * @param keyExtractor The extractor of the key that identifies an item
+		 * @param cache The keys seen recently, its metrics can be read while the service runs
+		 */
+		public ConsumerWorkerServiceBuilder<T> dedupeBy(KeyExtractor<? super T> keyExtractor, DedupeCache cache) {
+			this.keyExtractor = keyExtractor;
+			this.dedupeCache = cache;
+			return this;
+		}
+		
 		public ServiceBuilder forQueue(BlockingQueue<T> workQueue) {
+			Consumer<T> consumer = guarded();
+			ItemFailureHandler<T> failureHandler = null;
+			if(retryPolicy != null || deadLetters != null) {
+				RetryPolicy policy = retryPolicy == null ? RetryPolicy.none() : retryPolicy;
+				failureHandler = new RetryHandler<T>(policy, workQueue, deadLetters, serviceBuilder.engine());
+			}
+			
+			int workers = maxWorkers > 0 ? maxWorkers : WorkerService.DEFAULT_MAX_WORKERS;
+			serviceBuilder.addConsumerService(new ConsumerWorkerService<T>(consumer, workQueue, workers, failureHandler), threadPolicy);
+			return serviceBuilder;
+		}
+		
+		/**
+		 * Consumes the items of a publisher, requesting no more than the buffer can hold
+		 * 
+		 * @param publisher The publisher subscribed to when the service starts
+		 * @param bufferSize The most items requested but not yet consumed
+		 * 
+		 * @see SubscriberService
+		 */
+		public ServiceBuilder forPublisher(Publisher<T> publisher, int bufferSize) {
+			Consumer<T> consumer = guarded();
+			int workers = maxWorkers > 0 ? maxWorkers : WorkerService.DEFAULT_MAX_WORKERS;
+			serviceBuilder.addWorkerService(new SubscriberService<T>(publisher, consumer, bufferSize, workers), threadPolicy);
+			return serviceBuilder;
+		}
+		
+		/**
+		 * Consumes preallocated slots, each slot is recycled once the consumer returns. A slot rejected by the circuit breaker
+		 * or the bulkhead is discarded, it cannot be passed to a fallback or a dead letter queue that would keep it after it is
+		 * recycled. For the same reason a key used to drop duplicates must be copied out of the slot, not be the slot itself.
+		 */
+		public ServiceBuilder forSlots(SlotQueue<T> slotQueue) {
+			if(fallback != null || deadLetters != null) {
+				throw new IllegalStateException("A slot is recycled once it is consumed, it cannot be passed to a fallback or a dead letter queue");
+			}
+			
+			if(keyExtractor != null) {
+				keyExtractor = new SlotKeyExtractor<T>(keyExtractor);
+			}
+			
+			Consumer<T> consumer = guarded();
 			if(maxWorkers > 0) {
-				serviceBuilder.services.add(new ConsumerWorkerService<T>(consumer, workQueue, maxWorkers));
+				serviceBuilder.addConsumerService(new SlotConsumerWorkerService<T>(consumer, slotQueue, maxWorkers), threadPolicy);
 			} else {
-				serviceBuilder.services.add(new ConsumerWorkerService<T>(consumer, workQueue));
+				serviceBuilder.addConsumerService(new SlotConsumerWorkerService<T>(consumer, slotQueue), threadPolicy);
+			}
+			
+			return serviceBuilder;
+		}
+		
+		private Consumer<T> guarded() {
+			Consumer<T> guarded = consumer;
+			if(breaker != null || bulkhead != null) {
+				//A rejected item was not consumed, so a redelivery of it must not be dropped as a duplicate
+				Consumer<T> rejected = keyExtractor == null ? fallback : new ForgetRejected<T>(keyExtractor, dedupeCache, fallback);
+				guarded = new GuardedConsumer<T>(consumer, breaker, bulkhead, rejected);
+			}
+			
+			//Duplicates are dropped before they take a place in the bulkhead or a call permitted by the breaker
+			return keyExtractor == null ? guarded : new DedupingConsumer<T>(guarded, keyExtractor, dedupeCache);
+		}
+		
+		/**
+		 * Rejects a slot used as its own key, the cache would keep the slot after it is recycled
+		 */
+		private static class SlotKeyExtractor<T> implements KeyExtractor<T> {
+			
+			private final KeyExtractor<? super T> keyExtractor;
+			
+			private SlotKeyExtractor(KeyExtractor<? super T> keyExtractor) {
+				this.keyExtractor = keyExtractor;
+			}
+			
+			@Override
+			public Object key(T slot) {
+				Object key = keyExtractor.key(slot);
+				if(key == slot) {
+					throw new IllegalStateException("The key of a slot must be copied out of the slot");
+				}
+				
+				return key;
+			}
+		}
+		
+		/**
+		 * Forgets the key of an item rejected by the circuit breaker or the bulkhead before passing it to the fallback
+		 */
+		private static class ForgetRejected<T> implements Consumer<T> {
+			
+			private final KeyExtractor<? super T> keyExtractor;
+			private final DedupeCache cache;
+			private final Consumer<T> fallback;
+			
+			private ForgetRejected(KeyExtractor<? super T> keyExtractor, DedupeCache cache, Consumer<T> fallback) {
+				this.keyExtractor = keyExtractor;
+				this.cache = cache;
+				this.fallback = fallback;
+			}
+			
+			@Override
+			public void consume(T item) {
+				cache.forget(keyExtractor.key(item));
+				if(fallback != null) {
+					fallback.consume(item);
+				}
+			}
+		}
+	}
+	
+	public static class BatchConsumerWorkerServiceBuilder<T> {
+		
+		private final ServiceBuilder serviceBuilder;
+		
+		private BatchConsumer<T> consumer;
+		private int maxWorkers;
+		private ThreadPolicy threadPolicy;
+		private long targetP99 = 10L;
+		private TimeUnit unit = TimeUnit.MILLISECONDS;
+		private int minBatchSize = 1;
+		private int maxBatchSize = 1024;
+		
+		private BatchConsumerWorkerServiceBuilder(ServiceBuilder serviceBuilder, BatchConsumer<T> consumer) {
+			this.serviceBuilder = serviceBuilder;
+			this.consumer = consumer;
+		}
+		
+		public BatchConsumerWorkerServiceBuilder<T> maxConsumers(int maxWorkers) {
+			this.maxWorkers = maxWorkers;
+			return this;
+		}
+		
+		/**
+		 * @param threadPolicy The policy used to create the worker threads
+		 */
+		public BatchConsumerWorkerServiceBuilder<T> withThreadPolicy(ThreadPolicy threadPolicy) {
+			this.threadPolicy = threadPolicy;
+			return this;
+		}
+		
+		/**
+		 * @param targetP99 The p99 latency of a consume call the batch size is tuned towards, 10 milliseconds by default
+		 */
+		public BatchConsumerWorkerServiceBuilder<T> targetP99(long targetP99, TimeUnit unit) {
+			this.targetP99 = targetP99;
+			this.unit = unit;
+			return this;
+		}
+		
+		/**
+		 * @param minBatchSize The smallest batch size, 1 by default
+		 * @param maxBatchSize The largest batch size, 1024 by default
+		 */
+		public BatchConsumerWorkerServiceBuilder<T> batchSizes(int minBatchSize, int maxBatchSize) {
+			this.minBatchSize = minBatchSize;
+			this.maxBatchSize = maxBatchSize;
+			return this;
+		}
+		
+		public ServiceBuilder forQueue(BlockingQueue<T> workQueue) {
+			BatchSizeController controller = new BatchSizeController(targetP99, unit, minBatchSize, maxBatchSize);
+			if(maxWorkers > 0) {
+				serviceBuilder.addConsumerService(new BatchConsumerWorkerService<T>(consumer, workQueue, controller, maxWorkers), threadPolicy);
+			} else {
+				serviceBuilder.addConsumerService(new BatchConsumerWorkerService<T>(consumer, workQueue, controller), threadPolicy);
 			}
 			
 			return serviceBuilder;
@@ -216,11 +803,18 @@ public class ServiceBuilder {
 		private final ServiceBuilder serviceBuilder;
 		
 		private Producer<T> producer;
+		private CancellableProducer<T> cancellable;
 		private int maxWorkers;
+		private ThreadPolicy threadPolicy;
+		private CircuitBreaker breaker;
+		private Bulkhead bulkhead;
+		private long shutdownTimeout;
+		private TimeUnit shutdownTimeoutUnit = TimeUnit.MILLISECONDS;
 		
-		private ProducerWorkerServiceBuilder(ServiceBuilder serviceBuilder, Producer<T> producer) {
+		private ProducerWorkerServiceBuilder(ServiceBuilder serviceBuilder, Producer<T> producer, CancellableProducer<T> cancellable) {
 			this.serviceBuilder = serviceBuilder;
 			this.producer = producer;
+			this.cancellable = cancellable;
 		}
 		
 		public ProducerWorkerServiceBuilder<T> maxProducers(int maxWorkers) {
@@ -228,11 +822,278 @@ public class ServiceBuilder {
 			return this;
 		}
 		
+		/**
+		 * @param threadPolicy The policy used to create the worker threads
+		 */
+		public ProducerWorkerServiceBuilder<T> withThreadPolicy(ThreadPolicy threadPolicy) {
+			this.threadPolicy = threadPolicy;
+			return this;
+		}
+		
+		/**
+		 * @param breaker The circuit breaker every call to the producer goes through
+		 */
+		public ProducerWorkerServiceBuilder<T> withCircuitBreaker(CircuitBreaker breaker) {
+			this.breaker = breaker;
+			return this;
+		}
+		
+		/**
+		 * @param bulkhead The bulkhead that limits concurrent calls to the producer
+		 */
+		public ProducerWorkerServiceBuilder<T> withBulkhead(Bulkhead bulkhead) {
+			this.bulkhead = bulkhead;
+			return this;
+		}
+		
+		/**
+		 * @param timeout The time the producers are given to return after a shutdown before they are reported as stragglers
+		 * @param unit The unit of time the timeout is specified in
+		 * 
+		 * @see WorkerService#setShutdownTimeout(long, TimeUnit)
+		 */
+		public ProducerWorkerServiceBuilder<T> withShutdownTimeout(long timeout, TimeUnit unit) {
+			this.shutdownTimeout = timeout;
+			this.shutdownTimeoutUnit = unit;
+			return this;
+		}
+		
 		public ServiceBuilder forQueue(BlockingQueue<T> workQueue) {
+			int workers = maxWorkers > 0 ? maxWorkers : WorkerService.DEFAULT_MAX_WORKERS;
+			ProducerWorkerService<T> service;
+			if(cancellable != null) {
+				if(breaker != null || bulkhead != null) {
+					throw new IllegalStateException("A cancellable producer cannot be guarded by a circuit breaker or a bulkhead");
+				}
+				
+				service = new ProducerWorkerService<T>(cancellable, workQueue, workers);
+			} else {
+				Producer<T> producer = breaker == null && bulkhead == null ? this.producer : new GuardedProducer<T>(this.producer, breaker, bulkhead);
+				service = new ProducerWorkerService<T>(producer, workQueue, workers);
+			}
+			
+			service.setShutdownTimeout(shutdownTimeout, shutdownTimeoutUnit);
+			serviceBuilder.addWorkerService(service, threadPolicy);
+			return serviceBuilder;
+		}
+	}
+	
+	public static class LoadGeneratorServiceBuilder<T> {
+		
+		private final ServiceBuilder serviceBuilder;
+		
+		private LoadGenerator<T> generator;
+		private int maxWorkers;
+		private ThreadPolicy threadPolicy;
+		
+		private LoadGeneratorServiceBuilder(ServiceBuilder serviceBuilder, LoadGenerator<T> generator) {
+			this.serviceBuilder = serviceBuilder;
+			this.generator = generator;
+		}
+		
+		public LoadGeneratorServiceBuilder<T> maxProducers(int maxWorkers) {
+			this.maxWorkers = maxWorkers;
+			return this;
+		}
+		
+		/**
+		 * @param threadPolicy The policy used to create the worker threads
+		 */
+		public LoadGeneratorServiceBuilder<T> withThreadPolicy(ThreadPolicy threadPolicy) {
+			this.threadPolicy = threadPolicy;
+			return this;
+		}
+		
+		public ServiceBuilder forQueue(BlockingQueue<TimedItem<T>> workQueue) {
+			if(maxWorkers > 0) {
+				serviceBuilder.addWorkerService(new LoadGeneratorService<T>(generator, workQueue, maxWorkers), threadPolicy);
+			} else {
+				serviceBuilder.addWorkerService(new LoadGeneratorService<T>(generator, workQueue), threadPolicy);
+			}
+			
+			return serviceBuilder;
+		}
+	}
+	
+	public static class SlotProducerWorkerServiceBuilder<T> {
+		
+		private final ServiceBuilder serviceBuilder;
+		
+		private SlotProducer<T> producer;
+		private int maxWorkers;
+		private ThreadPolicy threadPolicy;
+		
+		private SlotProducerWorkerServiceBuilder(ServiceBuilder serviceBuilder, SlotProducer<T> producer) {
+			this.serviceBuilder = serviceBuilder;
+			this.producer = producer;
+		}
+		
+		public SlotProducerWorkerServiceBuilder<T> maxProducers(int maxWorkers) {
+			this.maxWorkers = maxWorkers;
+			return this;
+		}
+		
+		/**
+		 * @param threadPolicy The policy used to create the worker threads
+		 */
+		public SlotProducerWorkerServiceBuilder<T> withThreadPolicy(ThreadPolicy threadPolicy) {
+			this.threadPolicy = threadPolicy;
+			return this;
+		}
+		
+		public ServiceBuilder forSlots(SlotQueue<T> slotQueue) {
+			if(maxWorkers > 0) {
+				serviceBuilder.addWorkerService(new SlotProducerWorkerService<T>(producer, slotQueue, maxWorkers), threadPolicy);
+			} else {
+				serviceBuilder.addWorkerService(new SlotProducerWorkerService<T>(producer, slotQueue), threadPolicy);
+			}
+			
+			return serviceBuilder;
+		}
+	}
+	
+	public static class LongConsumerWorkerServiceBuilder {
+		
+		private final ServiceBuilder serviceBuilder;
+		
+		private LongConsumer consumer;
+		private int maxWorkers;
+		private ThreadPolicy threadPolicy;
+		
+		private LongConsumerWorkerServiceBuilder(ServiceBuilder serviceBuilder, LongConsumer consumer) {
+			this.serviceBuilder = serviceBuilder;
+			this.consumer = consumer;
+		}
+		
+		public LongConsumerWorkerServiceBuilder maxConsumers(int maxWorkers) {
+			this.maxWorkers = maxWorkers;
+			return this;
+		}
+		
+		/**
+		 * @param threadPolicy The policy used to create the worker threads
+		 */
+		public LongConsumerWorkerServiceBuilder withThreadPolicy(ThreadPolicy threadPolicy) {
+			this.threadPolicy = threadPolicy;
+			return this;
+		}
+		
+		public ServiceBuilder forChannel(LongChannel channel) {
+			if(maxWorkers > 0) {
+				serviceBuilder.addConsumerService(new LongConsumerWorkerService(consumer, channel, maxWorkers), threadPolicy);
+			} else {
+				serviceBuilder.addConsumerService(new LongConsumerWorkerService(consumer, channel), threadPolicy);
+			}
+			
+			return serviceBuilder;
+		}
+	}
+	
+	public static class LongProducerWorkerServiceBuilder {
+		
+		private final ServiceBuilder serviceBuilder;
+		
+		private LongProducer producer;
+		private int maxWorkers;
+		private ThreadPolicy threadPolicy;
+		
+		private LongProducerWorkerServiceBuilder(ServiceBuilder serviceBuilder, LongProducer producer) {
+			this.serviceBuilder = serviceBuilder;
+			this.producer = producer;
+		}
+		
+		public LongProducerWorkerServiceBuilder maxProducers(int maxWorkers) {
+			this.maxWorkers = maxWorkers;
+			return this;
+		}
+		
+		/**
+		 * @param threadPolicy The policy used to create the worker threads
+		 */
+		public LongProducerWorkerServiceBuilder withThreadPolicy(ThreadPolicy threadPolicy) {
+			this.threadPolicy = threadPolicy;
+			return this;
+		}
+		
+		public ServiceBuilder forChannel(LongChannel channel) {
+			if(maxWorkers > 0) {
+				serviceBuilder.addWorkerService(new LongProducerWorkerService(producer, channel, maxWorkers), threadPolicy);
+			} else {
+				serviceBuilder.addWorkerService(new LongProducerWorkerService(producer, channel), threadPolicy);
+			}
+			
+			return serviceBuilder;
+		}
+	}
+	
+	public static class DoubleConsumerWorkerServiceBuilder {
+		
+		private final ServiceBuilder serviceBuilder;
+		
+		private DoubleConsumer consumer;
+		private int maxWorkers;
+		private ThreadPolicy threadPolicy;
+		
+		private DoubleConsumerWorkerServiceBuilder(ServiceBuilder serviceBuilder, DoubleConsumer consumer) {
+			this.serviceBuilder = serviceBuilder;
+			this.consumer = consumer;
+		}
+		
+		public DoubleConsumerWorkerServiceBuilder maxConsumers(int maxWorkers) {
+			this.maxWorkers = maxWorkers;
+			return this;
+		}
+		
+		/**
+		 * @param threadPolicy The policy used to create the worker threads
+		 */
+		public DoubleConsumerWorkerServiceBuilder withThreadPolicy(ThreadPolicy threadPolicy) {
+			this.threadPolicy = threadPolicy;
+			return this;
+		}
+		
+		public ServiceBuilder forChannel(DoubleChannel channel) {
+			if(maxWorkers > 0) {
+				serviceBuilder.addConsumerService(new DoubleConsumerWorkerService(consumer, channel, maxWorkers), threadPolicy);
+			} else {
+				serviceBuilder.addConsumerService(new DoubleConsumerWorkerService(consumer, channel), threadPolicy);
+			}
+			
+			return serviceBuilder;
+		}
+	}
+	
+	public static class DoubleProducerWorkerServiceBuilder {
+		
+		private final ServiceBuilder serviceBuilder;
+		
+		private DoubleProducer producer;
+		private int maxWorkers;
+		private ThreadPolicy threadPolicy;
+		
+		private DoubleProducerWorkerServiceBuilder(ServiceBuilder serviceBuilder, DoubleProducer producer) {
+			this.serviceBuilder = serviceBuilder;
+			this.producer = producer;
+		}
+		
+		public DoubleProducerWorkerServiceBuilder maxProducers(int maxWorkers) {
+			this.maxWorkers = maxWorkers;
+			return this;
+		}
+		
+		/**
+		 * @param threadPolicy The policy used to create the worker threads
+		 */
+		public DoubleProducerWorkerServiceBuilder withThreadPolicy(ThreadPolicy threadPolicy) {
+			this.threadPolicy = threadPolicy;
+			return this;
+		}
+		
+		public ServiceBuilder forChannel(DoubleChannel channel) {
 			if(maxWorkers > 0) {
-				serviceBuilder.services.add(new ProducerWorkerService<T>(producer, workQueue, maxWorkers));
+				serviceBuilder.addWorkerService(new DoubleProducerWorkerService(producer, channel, maxWorkers), threadPolicy);
 			} else {
-				serviceBuilder.services.add(new ProducerWorkerService<T>(producer, workQueue));
+				serviceBuilder.addWorkerService(new DoubleProducerWorkerService(producer, channel), threadPolicy);
 			}
 			
 			return serviceBuilder;
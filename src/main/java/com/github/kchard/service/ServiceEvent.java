@@ -0,0 +1,27 @@
+package com.github.kchard.service;
+
+/**
+ * <p>Defines the structured events emitted by services and workers to an {@link EventSink}.</p>
+ *
+ * <p>Each event is emitted with a subject, an object that already exists at the point the event occurs
+ * so that emitting an event never allocates:</p>
+ *
+ * <ul>
+ * 	<li>INITIALIZING, STARTING, SHUTTING_DOWN: the current {@link State}</li>
+ *  <li>STATE_CHANGED: the new {@link State}</li>
+ *  <li>COMMAND_STARTED: the {@link Runnable} about to run</li>
+ *  <li>COMMAND_FAILED: the {@link RuntimeException} thrown by the command</li>
+ *  <li>ITEM_PRODUCED: the item returned by the {@link Producer}, or the channel for primitive producers</li>
+ *  <li>ITEM_CONSUMED: the item passed to the {@link Consumer}, or the channel for primitive consumers</li>
+ *  <li>WORKER_STOPPED: the {@link Exception} that stopped the worker or null</li>
+ *  <li>ITEM_FAILED: the {@link RuntimeException} thrown by the {@link Consumer}, when the worker has an {@link ItemFailureHandler}</li>
+ *  <li>WORKER_STRAGGLING: the {@link Thread} of a worker that did not stop within the shutdown timeout of its {@link WorkerService}</li>
+ * </ul>
+ *
+ * @author chardk
+ *
+ * @see EventSink
+ */
+public enum ServiceEvent {
+	INITIALIZING, STARTING, SHUTTING_DOWN, STATE_CHANGED, COMMAND_STARTED, COMMAND_FAILED, ITEM_PRODUCED, ITEM_CONSUMED, WORKER_STOPPED, ITEM_FAILED, WORKER_STRAGGLING;
+}
@@ -0,0 +1,301 @@
+package com.github.kchard.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>A read-only view of a service tree at a point in time.</p>
+ *
+ * <p>{@link #of(Service)} walks the tree from the given service through the children of every {@link CompositeService}
+ * and the deferred service of every {@link LazyService}, and records, for each node, its id, name, {@link State}, {@link ActionTimes} and exception. For a {@link WorkerService}
+ * it also records the number of workers, the number of busy threads, the depth of the work queue and the number of items processed.
+ * Nodes that are not worker services report -1 for these values.</p>
+ *
+ * <p>Taking a snapshot does not block the services in the tree for longer than it takes to read their state, so it is
+ * safe to take snapshots of a tree in production. Two snapshots of the same tree give the recent throughput of each node,
+ * a worker service whose queue is growing while its throughput is zero is most likely stuck.</p>
+ *
+ * <p>This class is immutable.</p>
+ *
+ * @author chardk
+ *
+ * @see IntrospectionServer
+ */
+public final class ServiceSnapshot {
+
+	private final String id;
+	private final String name;
+	private final String type;
+	private final State state;
+	private final ActionTimes actionTimes;
+	private final String exception;
+	private final int workers;
+	private final int activeThreads;
+	private final int queueDepth;
+	private final long itemsProcessed;
+	private final long takenAt;
+	private final List<ServiceSnapshot> children;
+
+	private ServiceSnapshot(final Service service, final long takenAt, final List<ServiceSnapshot> children) {
+		this.id = service.id();
+		this.name = service.name();
+		this.type = service.getClass().getSimpleName();
+		this.state = service.currentState();
+		this.actionTimes = service.actionTimes();
+		Exception e = service.exception();
+		this.exception = e == null ? null : String.valueOf(e.getMessage());
+		if(service instanceof WorkerService) {
+			WorkerService workerService = (WorkerService) service;
+			this.workers = workerService.workerCount();
+			this.activeThreads = workerService.activeThreads();
+			this.queueDepth = workerService.queueDepth();
+			this.itemsProcessed = workerService.itemsProcessed();
+		} else {
+			this.workers = -1;
+			this.activeThreads = -1;
+			this.queueDepth = -1;
+			this.itemsProcessed = -1L;
+		}
+
+		this.takenAt = takenAt;
+		this.children = children;
+	}
+
+	/**
+	 * @param service The root of the tree
+	 * @return A snapshot of the service and all of its descendants
+	 */
+	public static ServiceSnapshot of(final Service service) {
+		return of(service, System.currentTimeMillis());
+	}
+
+	private static ServiceSnapshot of(final Service service, final long takenAt) {
+		List<ServiceSnapshot> children = Collections.emptyList();
+		if(service instanceof CompositeService) {
+			List<AbstractService> services = ((CompositeService) service).children();
+			children = new ArrayList<ServiceSnapshot>(services.size());
+			for(Service child : services) {
+				children.add(of(child, takenAt));
+			}
+
+			children = Collections.unmodifiableList(children);
+		} else if(service instanceof LazyService) {
+			children = Collections.singletonList(of(((LazyService) service).delegate(), takenAt));
+		}
+
+		return new ServiceSnapshot(service, takenAt, children);
+	}
+
+	public String id() {
+		return id;
+	}
+
+	public String name() {
+		return name;
+	}
+
+	/**
+	 * @return The simple class name of the service
+	 */
+	public String type() {
+		return type;
+	}
+
+	public State state() {
+		return state;
+	}
+
+	public ActionTimes actionTimes() {
+		return actionTimes;
+	}
+
+	/**
+	 * @return The message of the exception that stopped the service, or null
+	 */
+	public String exception() {
+		return exception;
+	}
+
+	/**
+	 * @return The number of running workers, or -1 for services without workers
+	 */
+	public int workers() {
+		return workers;
+	}
+
+	/**
+	 * @return The approximate number of threads busy running a worker, or -1 for services without workers
+	 */
+	public int activeThreads() {
+		return activeThreads;
+	}
+
+	/**
+	 * @return The number of items waiting in the work queue, or -1 if unknown
+	 */
+	public int queueDepth() {
+		return queueDepth;
+	}
+
+	/**
+	 * @return The number of items processed since the service was created, or -1 for services without workers
+	 */
+	public long itemsProcessed() {
+		return itemsProcessed;
+	}
+
+	/**
+	 * @return The time the snapshot was taken in milliseconds since the epoch
+	 */
+	public long takenAt() {
+		return takenAt;
+	}
+
+	public List<ServiceSnapshot> children() {
+		return children;
+	}
+
+	/**
+	 * @return The mean number of items processed per second since the service started, or 0 if unknown
+	 */
+	public double throughput() {
+		long started = actionTimes.started();
+		if(itemsProcessed < 0 || started < 0 || takenAt <= started) {
+			return 0.0;
+		}
+
+		return itemsProcessed * 1000.0 / (takenAt - started);
+	}
+
+	/**
+	 * @param previous An earlier snapshot of the same service, may be null
+	 * @return The number of items processed per second between the two snapshots, or the mean throughput if
+	 * there is no earlier snapshot to compare with
+	 */
+	public double throughputSince(final ServiceSnapshot previous) {
+		if(previous == null || !id.equals(previous.id) || previous.itemsProcessed < 0 || takenAt <= previous.takenAt) {
+			return throughput();
+		}
+
+		return (itemsProcessed - previous.itemsProcessed) * 1000.0 / (takenAt - previous.takenAt);
+	}
+
+	/**
+	 * @return This snapshot and those of all descendants, parents before their children
+	 */
+	public List<ServiceSnapshot> flatten() {
+		List<ServiceSnapshot> all = new ArrayList<ServiceSnapshot>();
+		flatten(all);
+		return all;
+	}
+
+	private void flatten(final List<ServiceSnapshot> all) {
+		all.add(this);
+		for(ServiceSnapshot child : children) {
+			child.flatten(all);
+		}
+	}
+
+	public String toJson() {
+		return toJson(null);
+	}
+
+	/**
+	 * @param previous An earlier snapshot of the same tree used to report recent throughput, may be null
+	 * @return The tree as a JSON object
+	 */
+	public String toJson(final ServiceSnapshot previous) {
+		Map<String, ServiceSnapshot> previousById = new HashMap<String, ServiceSnapshot>();
+		if(previous != null) {
+			for(ServiceSnapshot snapshot : previous.flatten()) {
+				previousById.put(snapshot.id, snapshot);
+			}
+		}
+
+		StringBuilder json = new StringBuilder();
+		appendJson(json, previousById);
+		return json.toString();
+	}
+
+	private void appendJson(final StringBuilder json, final Map<String, ServiceSnapshot> previousById) {
+		json.append('{');
+		appendString(json.append("\"id\":"), id);
+		appendString(json.append(",\"name\":"), name);
+		appendString(json.append(",\"type\":"), type);
+		appendString(json.append(",\"state\":"), state.name());
+		appendString(json.append(",\"exception\":"), exception);
+		json.append(",\"actionTimes\":{\"created\":").append(actionTimes.created())
+			.append(",\"initialized\":").append(actionTimes.initialized())
+			.append(",\"started\":").append(actionTimes.started())
+			.append(",\"shutdown\":").append(actionTimes.shutdown())
+			.append(",\"exception\":").append(actionTimes.exception()).append('}');
+		if(workers >= 0) {
+			json.append(",\"workers\":").append(workers)
+				.append(",\"activeThreads\":").append(activeThreads)
+				.append(",\"queueDepth\":").append(queueDepth)
+				.append(",\"itemsProcessed\":").append(itemsProcessed)
+				.append(",\"throughput\":").append(round(throughputSince(previousById.get(id))));
+		}
+
+		json.append(",\"children\":[");
+		for(int i = 0; i < children.size(); i++) {
+			if(i > 0) {
+				json.append(',');
+			}
+
+			children.get(i).appendJson(json, previousById);
+		}
+
+		json.append("]}");
+	}
+
+	private static String round(final double value) {
+		return String.valueOf(Math.round(value * 100.0) / 100.0);
+	}
+
+	private static void appendString(final StringBuilder json, final String value) {
+		if(value == null) {
+			json.append("null");
+			return;
+		}
+
+		json.append('"');
+		for(int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch(c) {
+			case '"':
+				json.append("\\\"");
+				break;
+			case '\\':
+				json.append("\\\\");
+				break;
+			case '\n':
+				json.append("\\n");
+				break;
+			case '\r':
+				json.append("\\r");
+				break;
+			case '\t':
+				json.append("\\t");
+				break;
+			default:
+				if(c < 0x20) {
+					json.append(String.format("\\u%04x", (int) c));
+				} else {
+					json.append(c);
+				}
+			}
+		}
+
+		json.append('"');
+	}
+
+	@Override
+	public String toString() {
+		return "ServiceSnapshot [name=" + name + ", state=" + state + ", workers=" + workers + ", queueDepth=" + queueDepth
+				+ ", itemsProcessed=" + itemsProcessed + ", children=" + children.size() + "]";
+	}
+}
@@ -0,0 +1,75 @@
+package com.github.kchard.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link Worker} that takes published slots from a {@link SlotQueue}, passes them to a {@link Consumer}
+ * and releases them for reuse once the consumer returns.
+ *
+ * @author chardk
+ *
+ * @param <T>
+ * @see SlotConsumerWorkerService
+ */
+public class SlotConsumerWorker<T> implements Worker {
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	private final Consumer<T> consumer;
+	private final SlotQueue<T> slotQueue;
+
+	private final AbstractService owner;
+
+	private volatile boolean run = true;
+
+	public SlotConsumerWorker(final Consumer<T> consumer, final SlotQueue<T> slotQueue) {
+		this(consumer, slotQueue, null);
+	}
+
+	/**
+	 * @param consumer The consumer to invoke
+	 * @param slotQueue The queue to take and release slots on
+	 * @param owner The service whose {@link EventSink} receives this worker's events, or null for no events
+	 */
+	public SlotConsumerWorker(final Consumer<T> consumer, final SlotQueue<T> slotQueue, final AbstractService owner) {
+		this.consumer = consumer;
+		this.slotQueue = slotQueue;
+		this.owner = owner;
+	}
+
+	@Override
+	public final void run() {
+		while(run) {
+			T slot = null;
+			try {
+				slot = slotQueue.take();
+				consumer.consume(slot);
+				if(owner != null) {
+					owner.emit(ServiceEvent.ITEM_CONSUMED, slot);
+				}
+			} catch (InterruptedException e) {
+				//Stop the worker and preserve the interrupted status of the Thread
+				cancel();
+				Thread.currentThread().interrupt();
+
+			} catch (RuntimeException e) {
+				//In the case of any other exception, stop the Worker.
+				cancel();
+
+				logger.info("Shutting down {} due to an Exception: {}", getClass(), e.getMessage());
+				if(owner != null) {
+					owner.emit(ServiceEvent.WORKER_STOPPED, e);
+				}
+			} finally {
+				if(slot != null) {
+					slotQueue.release(slot);
+				}
+			}
+		}
+	}
+
+	public final void cancel() {
+		run = false;
+	}
+}
@@ -0,0 +1,37 @@
+package com.github.kchard.service;
+
+/**
+ * Runs {@link SlotConsumerWorker}s that hand off preallocated slots through a {@link SlotQueue}.
+ *
+ * @author chardk
+ *
+ * @param <T>
+ * @see SlotQueue
+ */
+public class SlotConsumerWorkerService<T> extends WorkerService {
+
+	private final SlotQueue<T> slotQueue;
+
+	public SlotConsumerWorkerService(final Consumer<T> consumer, final SlotQueue<T> slotQueue) {
+		this(consumer, slotQueue, DEFAULT_MAX_WORKERS);
+	}
+
+	public SlotConsumerWorkerService(final Consumer<T> consumer, final SlotQueue<T> slotQueue, final int maxWorkers) {
+		super(new WorkerFactory() {
+
+			@Override
+			public Worker createWorker(AbstractService owner) {
+				return new SlotConsumerWorker<T>(consumer, slotQueue, owner);
+			}
+		}, maxWorkers);
+		this.slotQueue = slotQueue;
+	}
+
+	/**
+	 * @return The number of slots waiting in the slot queue
+	 */
+	@Override
+	public int queueDepth() {
+		return slotQueue.size();
+	}
+}
@@ -0,0 +1,13 @@
+package com.github.kchard.service;
+
+/**
+ * Creates the slots preallocated by a {@link SlotQueue}.
+ *
+ * @author chardk
+ *
+ * @param <T>
+ */
+public interface SlotFactory<T> {
+
+	T newSlot();
+}
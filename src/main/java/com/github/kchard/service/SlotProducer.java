@@ -0,0 +1,17 @@
+package com.github.kchard.service;
+
+/**
+ * A producer that fills a preallocated slot in place instead of returning a new item.
+ *
+ * @author chardk
+ *
+ * @param <T>
+ * @see SlotQueue
+ */
+public interface SlotProducer<T> {
+
+	/**
+	 * @param slot A recycled slot to overwrite with the next item
+	 */
+	void produce(T slot);
+}
@@ -0,0 +1,79 @@
+package com.github.kchard.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link Worker} that claims slots from a {@link SlotQueue}, fills them with a {@link SlotProducer} and publishes them.
+ *
+ * @author chardk
+ *
+ * @param <T>
+ * @see SlotProducerWorkerService
+ */
+public class SlotProducerWorker<T> implements Worker {
+
+	private final Logger logger = LoggerFactory.getLogger(getClass());
+
+	private final SlotProducer<T> producer;
+	private final SlotQueue<T> slotQueue;
+
+	private final AbstractService owner;
+
+	private volatile boolean run = true;
+
+	public SlotProducerWorker(final SlotProducer<T> producer, final SlotQueue<T> slotQueue) {
+		this(producer, slotQueue, null);
+	}
+
+	/**
+	 * @param producer The producer to invoke
+	 * @param slotQueue The queue to claim and publish slots on
+	 * @param owner The service whose {@link EventSink} receives this worker's events, or null for no events
+	 */
+	public SlotProducerWorker(final SlotProducer<T> producer, final SlotQueue<T> slotQueue, final AbstractService owner) {
+		this.producer = producer;
+		this.slotQueue = slotQueue;
+		this.owner = owner;
+	}
+
+	@Override
+	public final void run() {
+		while(run) {
+			T slot = null;
+			try {
+				slot = slotQueue.claim();
+				producer.produce(slot);
+				T published = slot;
+				slotQueue.publish(published);
+				//Once published the slot belongs to the consumers, even if the event sink throws
+				slot = null;
+				if(owner != null) {
+					owner.emit(ServiceEvent.ITEM_PRODUCED, published);
+				}
+			} catch (InterruptedException e) {
+				//Stop the worker and preserve the interrupted status of the Thread
+				cancel();
+				Thread.currentThread().interrupt();
+
+			} catch (RuntimeException e) {
+				//In the case of any other exception, stop the Worker.
+				cancel();
+
+				logger.info("Shutting down {} due to an Exception: {}", getClass(), e.getMessage());
+				if(owner != null) {
+					owner.emit(ServiceEvent.WORKER_STOPPED, e);
+				}
+			} finally {
+				//A slot that was claimed but not published goes back to the free list
+				if(slot != null) {
+					slotQueue.release(slot);
+				}
+			}
+		}
+	}
+
+	public final void cancel() {
+		run = false;
+	}
+}
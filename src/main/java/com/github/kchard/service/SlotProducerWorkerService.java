@@ -0,0 +1,37 @@
+package com.github.kchard.service;
+
+/**
+ * Runs {@link SlotProducerWorker}s that hand off preallocated slots through a {@link SlotQueue}.
+ *
+ * @author chardk
+ *
+ * @param <T>
+ * @see SlotQueue
+ */
+public class SlotProducerWorkerService<T> extends WorkerService {
+
+	private final SlotQueue<T> slotQueue;
+
+	public SlotProducerWorkerService(final SlotProducer<T> producer, final SlotQueue<T> slotQueue) {
+		this(producer, slotQueue, DEFAULT_MAX_WORKERS);
+	}
+
+	public SlotProducerWorkerService(final SlotProducer<T> producer, final SlotQueue<T> slotQueue, final int maxWorkers) {
+		super(new WorkerFactory() {
+
+			@Override
+			public Worker createWorker(AbstractService owner) {
+				return new SlotProducerWorker<T>(producer, slotQueue, owner);
+			}
+		}, maxWorkers);
+		this.slotQueue = slotQueue;
+	}
+
+	/**
+	 * @return The number of slots waiting in the slot queue
+	 */
+	@Override
+	public int queueDepth() {
+		return slotQueue.size();
+	}
+}
@@ -0,0 +1,89 @@
+package com.github.kchard.service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * <p>A bounded hand-off between producers and consumers that recycles a fixed set of preallocated slots.</p>
+ *
+ * <p>All slots are created up front. A producer claims a free slot, fills it in place and publishes it.
+ * A consumer takes a published slot and releases it once it has been consumed, returning it to the free list.
+ * Both lists are array backed, so once the queue has been created the hand-off does not allocate.</p>
+ *
+ * <p>A consumer must not keep a reference to a slot after it has been released, the slot will be overwritten.</p>
+ *
+ * <p>This class is thread safe.</p>
+ *
+ * @author chardk
+ *
+ * @param <T>
+ * @see SlotProducer
+ * @see SlotProducerWorker
+ * @see SlotConsumerWorker
+ */
+public class SlotQueue<T> {
+
+	private final int capacity;
+	private final BlockingQueue<T> free;
+	private final BlockingQueue<T> published;
+
+	/**
+	 * @param slotFactory Creates the slots
+	 * @param capacity The number of slots to preallocate
+	 */
+	public SlotQueue(final SlotFactory<T> slotFactory, final int capacity) {
+		this.capacity = capacity;
+		this.free = new ArrayBlockingQueue<T>(capacity);
+		this.published = new ArrayBlockingQueue<T>(capacity);
+
+		for(int i = 0; i < capacity; i++) {
+			free.add(slotFactory.newSlot());
+		}
+	}
+
+	/**
+	 * @return A free slot, waiting if necessary for one to be released
+	 */
+	public T claim() throws InterruptedException {
+		return free.take();
+	}
+
+	/**
+	 * Makes a filled slot available to consumers
+	 */
+	public void publish(final T slot) throws InterruptedException {
+		published.put(slot);
+	}
+
+	/**
+	 * @return The oldest published slot, waiting if necessary for one to be published
+	 */
+	public T take() throws InterruptedException {
+		return published.take();
+	}
+
+	/**
+	 * @return The oldest published slot or null if none is available
+	 */
+	public T poll() {
+		return published.poll();
+	}
+
+	/**
+	 * Returns a consumed slot to the free list
+	 */
+	public void release(final T slot) {
+		free.offer(slot);
+	}
+
+	/**
+	 * @return The number of published slots waiting to be consumed
+	 */
+	public int size() {
+		return published.size();
+	}
+
+	public int capacity() {
+		return capacity;
+	}
+}
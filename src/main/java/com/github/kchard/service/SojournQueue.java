@@ -0,0 +1,477 @@
+package com.github.kchard.service;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>A {@link BlockingQueue} that stamps each item with the time it was added and records, when the item is taken, how long it
+ * waited in the queue. Give the same queue to the producers and the consumers of a service to see how much of the latency of
+ * an item is spent waiting for a worker, see {@link #sojournTimes()}.</p>
+ *
+ * <p>A queue created with {@link #shedding(int, long, long, TimeUnit, Queue)} also sheds load the way CoDel does. As long as
+ * items taken from the queue have waited less than the target, or the queue is drained, nothing is shed. Once every item taken
+ * for a whole interval has waited longer than the target, the queue has a standing backlog: the next item taken is shed and
+ * further items are shed at intervals that shrink with the square root of the number shed, until an item that waited less
+ * than the target is taken. Short bursts are therefore absorbed and only a persistent backlog is shed, oldest items first.
+ * Shed items are offered to the dead letter queue, if any, and are otherwise dropped.</p>
+ *
+ * <p>Waiting times are measured with the {@link Clock} of the queue. Items are shed while a consumer takes from the queue,
+ * so a queue nobody takes from keeps its items.</p>
+ *
+ * <p>This class is thread safe.</p>
+ *
+ * @author chardk
+ *
+ * @param <T>
+ * @see ConsumerWorkerService
+ * @see LatencyRecorder
+ */
+public class SojournQueue<T> extends AbstractQueue<T> implements BlockingQueue<T> {
+
+	private final int capacity;
+	private final long targetNanos;
+	private final long intervalNanos;
+	private final Queue<? super T> deadLetters;
+	private final Clock clock;
+
+	private final ArrayDeque<Entry<T>> items = new ArrayDeque<Entry<T>>();
+	private final LatencyRecorder sojournTimes = new LatencyRecorder();
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+	private final Condition notFull = lock.newCondition();
+
+	private long firstAboveTime = 0L;
+	private long dropNext = 0L;
+	private boolean dropping = false;
+	private boolean okToDrop = false;
+	private int dropCount = 0;
+	private int lastDropCount = 0;
+	private long shed = 0L;
+	private long deadLettered = 0L;
+
+	/**
+	 * @param capacity The number of items the queue can hold
+	 * @return A queue that records waiting times and never sheds
+	 */
+	public static <T> SojournQueue<T> tracking(final int capacity) {
+		return tracking(capacity, SystemClock.instance());
+	}
+
+	/**
+	 * @param capacity The number of items the queue can hold
+	 * @param clock The clock used to measure waiting times
+	 * @return A queue that records waiting times and never sheds
+	 */
+	public static <T> SojournQueue<T> tracking(final int capacity, final Clock clock) {
+		return new SojournQueue<T>(capacity, 0L, 0L, null, clock);
+	}
+
+	/**
+	 * @param capacity The number of items the queue can hold
+	 * @param target The waiting time above which items are shed once it is exceeded for a whole interval
+	 * @param interval The time the target must be exceeded before shedding starts, typically the time it takes to handle a burst
+	 * @param unit The unit of time the target and interval are specified in
+	 * @param deadLetters The queue shed items are offered to, or null to drop them
+	 * @return A queue that records waiting times and sheds a standing backlog
+	 */
+	public static <T> SojournQueue<T> shedding(final int capacity, final long target, final long interval, final TimeUnit unit, final Queue<? super T> deadLetters) {
+		return shedding(capacity, target, interval, unit, deadLetters, SystemClock.instance());
+	}
+
+	/**
+	 * @param capacity The number of items the queue can hold
+	 * @param target The waiting time above which items are shed once it is exceeded for a whole interval
+	 * @param interval The time the target must be exceeded before shedding starts, typically the time it takes to handle a burst
+	 * @param unit The unit of time the target and interval are specified in
+	 * @param deadLetters The queue shed items are offered to, or null to drop them
+	 * @param clock The clock used to measure waiting times
+	 * @return A queue that records waiting times and sheds a standing backlog
+	 */
+	public static <T> SojournQueue<T> shedding(final int capacity, final long target, final long interval, final TimeUnit unit, final Queue<? super T> deadLetters, final Clock clock) {
+		if(target <= 0 || interval <= 0) {
+			throw new IllegalArgumentException("The target and interval must be greater than 0: " + target + ", " + interval);
+		}
+
+		return new SojournQueue<T>(capacity, unit.toNanos(target), unit.toNanos(interval), deadLetters, clock);
+	}
+
+	private SojournQueue(final int capacity, final long targetNanos, final long intervalNanos, final Queue<? super T> deadLetters, final Clock clock) {
+		if(capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be at least 1: " + capacity);
+		}
+
+		this.capacity = capacity;
+		this.targetNanos = targetNanos;
+		this.intervalNanos = intervalNanos;
+		this.deadLetters = deadLetters;
+		this.clock = clock;
+	}
+
+	/**
+	 * @return The time items taken from the queue waited in it, shed items are not included
+	 */
+	public LatencyRecorder sojournTimes() {
+		return sojournTimes;
+	}
+
+	/**
+	 * @return The number of items shed, including those moved to the dead letter queue
+	 */
+	public long shed() {
+		lock.lock();
+		try {
+			return shed;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return The number of shed items the dead letter queue accepted
+	 */
+	public long deadLettered() {
+		lock.lock();
+		try {
+			return deadLettered;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return true while the queue is shedding a standing backlog
+	 */
+	public boolean isShedding() {
+		lock.lock();
+		try {
+			return dropping;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int size() {
+		lock.lock();
+		try {
+			return items.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean offer(final T item) {
+		checkItem(item);
+		lock.lock();
+		try {
+			if(items.size() >= capacity) {
+				return false;
+			}
+
+			enqueue(item);
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean offer(final T item, final long timeout, final TimeUnit unit) throws InterruptedException {
+		checkItem(item);
+		long nanos = unit.toNanos(timeout);
+		lock.lockInterruptibly();
+		try {
+			while(items.size() >= capacity) {
+				if(nanos <= 0) {
+					return false;
+				}
+
+				nanos = notFull.awaitNanos(nanos);
+			}
+
+			enqueue(item);
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void put(final T item) throws InterruptedException {
+		checkItem(item);
+		lock.lockInterruptibly();
+		try {
+			while(items.size() >= capacity) {
+				notFull.await();
+			}
+
+			enqueue(item);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int remainingCapacity() {
+		lock.lock();
+		try {
+			return capacity - items.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public T take() throws InterruptedException {
+		lock.lockInterruptibly();
+		try {
+			while(true) {
+				while(items.isEmpty()) {
+					notEmpty.await();
+				}
+
+				//Every item may have been shed
+				T item = dequeue();
+				if(item != null) {
+					return item;
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public T poll() {
+		lock.lock();
+		try {
+			return items.isEmpty() ? null : dequeue();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public T poll(final long timeout, final TimeUnit unit) throws InterruptedException {
+		long nanos = unit.toNanos(timeout);
+		lock.lockInterruptibly();
+		try {
+			while(true) {
+				while(items.isEmpty()) {
+					if(nanos <= 0) {
+						return null;
+					}
+
+					nanos = notEmpty.awaitNanos(nanos);
+				}
+
+				T item = dequeue();
+				if(item != null) {
+					return item;
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public T peek() {
+		lock.lock();
+		try {
+			return items.isEmpty() ? null : items.peekFirst().item;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int drainTo(final Collection<? super T> collection) {
+		return drainTo(collection, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public int drainTo(final Collection<? super T> collection, final int maxElements) {
+		lock.lock();
+		try {
+			int drained = 0;
+			while(drained < maxElements && !items.isEmpty()) {
+				T item = dequeue();
+				if(item != null) {
+					collection.add(item);
+					drained++;
+				}
+			}
+
+			return drained;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean remove(final Object item) {
+		lock.lock();
+		try {
+			for(Iterator<Entry<T>> iterator = items.iterator(); iterator.hasNext();) {
+				if(iterator.next().item.equals(item)) {
+					iterator.remove();
+					notFull.signal();
+					return true;
+				}
+			}
+
+			return false;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return An iterator over a snapshot of the items in the order they were added
+	 */
+	@Override
+	public Iterator<T> iterator() {
+		lock.lock();
+		try {
+			List<T> snapshot = new ArrayList<T>(items.size());
+			for(Entry<T> entry : items) {
+				snapshot.add(entry.item);
+			}
+
+			return Collections.unmodifiableList(snapshot).iterator();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private static void checkItem(final Object item) {
+		if(item == null) {
+			throw new NullPointerException("A queue cannot hold null items");
+		}
+	}
+
+	//The lock must be held by the caller of the methods below
+
+	private void enqueue(final T item) {
+		items.addLast(new Entry<T>(item, clock.nanoTime()));
+		notEmpty.signal();
+	}
+
+	/**
+	 * @return The next item that is not shed, or null if every item was shed, the queue must not be empty
+	 */
+	private T dequeue() {
+		long now = clock.nanoTime();
+		Entry<T> entry = pop(now);
+		if(targetNanos > 0) {
+			entry = control(entry, now);
+		}
+
+		if(entry == null) {
+			return null;
+		}
+
+		sojournTimes.record(now - entry.nanos, TimeUnit.NANOSECONDS);
+		return entry.item;
+	}
+
+	/**
+	 * The CoDel control loop, sheds entries while the queue has a standing backlog
+	 */
+	private Entry<T> control(Entry<T> entry, final long now) {
+		if(dropping) {
+			if(!okToDrop) {
+				dropping = false;
+			}
+
+			while(dropping && now - dropNext >= 0) {
+				shed(entry);
+				dropCount++;
+				entry = pop(now);
+				if(!okToDrop) {
+					dropping = false;
+				} else {
+					dropNext = controlLaw(dropNext, dropCount);
+				}
+			}
+		} else if(okToDrop) {
+			shed(entry);
+			entry = pop(now);
+			dropping = true;
+
+			//Resume close to the previous drop rate if the backlog came back soon after the last shedding ended
+			int delta = dropCount - lastDropCount;
+			dropCount = delta > 1 && now - dropNext < 16 * intervalNanos ? delta : 1;
+			dropNext = controlLaw(now, dropCount);
+			lastDropCount = dropCount;
+		}
+
+		return entry;
+	}
+
+	private Entry<T> pop(final long now) {
+		Entry<T> entry = items.pollFirst();
+		if(entry == null) {
+			firstAboveTime = 0L;
+			okToDrop = false;
+			return null;
+		}
+
+		notFull.signal();
+		if(targetNanos == 0) {
+			return entry;
+		}
+
+		//An item that waited less than the target, or the last item, means there is no standing backlog
+		if(now - entry.nanos < targetNanos || items.isEmpty()) {
+			firstAboveTime = 0L;
+			okToDrop = false;
+		} else if(firstAboveTime == 0L) {
+			firstAboveTime = now + intervalNanos;
+			okToDrop = false;
+		} else {
+			okToDrop = now - firstAboveTime >= 0;
+		}
+
+		return entry;
+	}
+
+	private long controlLaw(final long time, final int count) {
+		return time + (long) (intervalNanos / Math.sqrt(count));
+	}
+
+	private void shed(final Entry<T> entry) {
+		if(entry == null) {
+			return;
+		}
+
+		shed++;
+		if(deadLetters != null && deadLetters.offer(entry.item)) {
+			deadLettered++;
+		}
+	}
+
+	private static final class Entry<T> {
+
+		private final T item;
+		private final long nanos;
+
+		private Entry(final T item, final long nanos) {
+			this.item = item;
+			this.nanos = nanos;
+		}
+	}
+}
@@ -0,0 +1,16 @@
+package com.github.kchard.service;
+
+/**
+ * A StateListener is notified each time an {@link AbstractService} changes {@link State}.
+ *
+ * <p>Listeners are invoked on the thread performing the transition while the service's lock is held,
+ * so implementations should return quickly and must not call back into the service.</p>
+ *
+ * @author chardk
+ *
+ * @see AbstractService#addStateListener(StateListener)
+ */
+public interface StateListener {
+
+	void stateChanged(Service service, State previous, State current);
+}
@@ -0,0 +1,34 @@
+package com.github.kchard.service;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>A counter that many threads can increment without contending on a single cache line.</p>
+ *
+ * <p>Each thread increments one of several padded cells chosen by its id, the cells are only added up when the counter is read.
+ * The sum is not a snapshot, increments made while it is being read may or may not be included.</p>
+ *
+ * @author chardk
+ */
+final class StripedCounter {
+
+	private static final int STRIPES = 16;
+	//Eight longs keep each cell on a cache line of its own
+	private static final int PADDING = 8;
+
+	private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+	void increment() {
+		int stripe = (int) (Thread.currentThread().getId() & (STRIPES - 1));
+		cells.incrementAndGet(stripe * PADDING);
+	}
+
+	long sum() {
+		long sum = 0L;
+		for(int i = 0; i < STRIPES; i++) {
+			sum += cells.get(i * PADDING);
+		}
+
+		return sum;
+	}
+}
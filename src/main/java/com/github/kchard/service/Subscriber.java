@@ -0,0 +1,33 @@
+package com.github.kchard.service;
+
+/**
+ * Receives the items of a {@link Publisher}. The calls made to a subscriber for one subscription never overlap.
+ *
+ * @author chardk
+ *
+ * @param <T>
+ * @see Publisher
+ * @see SubscriberService
+ */
+public interface Subscriber<T> {
+
+	/**
+	 * @param subscription The subscription used to request items and to cancel
+	 */
+	void onSubscribe(Subscription subscription);
+
+	/**
+	 * @param item The next item, only sent once it has been requested
+	 */
+	void onNext(T item);
+
+	/**
+	 * The subscription has ended because of an error, no more calls follow
+	 */
+	void onError(Throwable throwable);
+
+	/**
+	 * The subscription has ended normally, no more calls follow
+	 */
+	void onComplete();
+}
@@ -0,0 +1,199 @@
+package com.github.kchard.service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>A consumer worker service fed by a {@link Publisher} instead of a queue that producers block on.</p>
+ *
+ * <p>The service subscribes to the publisher when it starts and cancels its subscription when it is shutdown, so it can
+ * be restarted like any other service. It never requests more items than its buffer can hold: the full buffer is
+ * requested when it starts, less any items left over from before a restart, and the items are requested again once they have been consumed, in batches of a quarter of
+ * the buffer. The publisher therefore never waits on a full buffer and a slow consumer slows the publisher down.</p>
+ *
+ * <p>An error signalled by the publisher is reported as the exception of this service. Completion is recorded, items
+ * already in the buffer are still consumed.</p>
+ *
+ * @author chardk
+ *
+ * @param <T>
+ * @see Subscriber
+ * @see PublisherService
+ */
+public class SubscriberService<T> extends ConsumerWorkerService<T> implements Subscriber<T> {
+
+	private final Publisher<T> publisher;
+	private final BlockingQueue<T> buffer;
+	private final Demand<T> demand;
+
+	private volatile boolean complete = false;
+
+	/**
+	 * @param publisher The publisher to subscribe to
+	 * @param consumer The consumer of the items
+	 * @param bufferSize The most items requested but not yet consumed
+	 */
+	public SubscriberService(final Publisher<T> publisher, final Consumer<T> consumer, final int bufferSize) {
+		this(publisher, consumer, bufferSize, DEFAULT_MAX_WORKERS);
+	}
+
+	/**
+	 * @param publisher The publisher to subscribe to
+	 * @param consumer The consumer of the items
+	 * @param bufferSize The most items requested but not yet consumed
+	 * @param maxWorkers The number of workers
+	 */
+	public SubscriberService(final Publisher<T> publisher, final Consumer<T> consumer, final int bufferSize, final int maxWorkers) {
+		this(publisher, consumer, new ArrayBlockingQueue<T>(checkBufferSize(bufferSize)), maxWorkers);
+	}
+
+	private SubscriberService(final Publisher<T> publisher, final Consumer<T> consumer, final BlockingQueue<T> buffer, final int maxWorkers) {
+		this(publisher, new Demand<T>(buffer), consumer, maxWorkers);
+	}
+
+	private SubscriberService(final Publisher<T> publisher, final Demand<T> demand, final Consumer<T> consumer, final int maxWorkers) {
+		super(new RequestAfterConsume<T>(consumer, demand), demand.buffer, maxWorkers);
+		this.publisher = publisher;
+		this.buffer = demand.buffer;
+		this.demand = demand;
+		addStateListener(new SubscriptionLifecycle());
+	}
+
+	private static int checkBufferSize(final int bufferSize) {
+		if(bufferSize < 1) {
+			throw new IllegalArgumentException("The buffer must hold at least one item: " + bufferSize);
+		}
+
+		return bufferSize;
+	}
+
+	@Override
+	public void onSubscribe(final Subscription subscription) {
+		if(!demand.subscribe(subscription)) {
+			logger.warn("Cancelling a second subscription of {}", name());
+			subscription.cancel();
+		}
+	}
+
+	@Override
+	public void onNext(final T item) {
+		if(!buffer.offer(item)) {
+			logger.error("Publisher sent more items than {} requested, cancelling", name());
+			demand.cancel();
+		}
+	}
+
+	@Override
+	public void onError(final Throwable throwable) {
+		demand.terminated();
+		reportException(throwable instanceof Exception ? (Exception) throwable : new RuntimeException(throwable));
+	}
+
+	@Override
+	public void onComplete() {
+		demand.terminated();
+		complete = true;
+		logger.debug("Subscription of {} is complete", name());
+	}
+
+	/**
+	 * @return True if the publisher has completed the current subscription
+	 */
+	public boolean isComplete() {
+		return complete;
+	}
+
+	/**
+	 * Tracks the subscription and the items consumed since demand was last signalled
+	 */
+	private static final class Demand<T> {
+
+		private final BlockingQueue<T> buffer;
+		private final int batch;
+		private final AtomicInteger consumed = new AtomicInteger();
+
+		private Subscription subscription;
+
+		private Demand(final BlockingQueue<T> buffer) {
+			this.buffer = buffer;
+			this.batch = Math.max(1, buffer.remainingCapacity() / 4);
+		}
+
+		private synchronized boolean subscribe(final Subscription subscription) {
+			if(this.subscription != null) {
+				return false;
+			}
+
+			//Items left over from a previous subscription still take up room, they are requested again once consumed
+			this.subscription = subscription;
+			int room = buffer.remainingCapacity();
+			consumed.set(0);
+			if(room > 0) {
+				subscription.request(room);
+			}
+
+			return true;
+		}
+
+		private void consumed() {
+			if(consumed.incrementAndGet() >= batch) {
+				int n = consumed.getAndSet(0);
+				if(n > 0) {
+					request(n);
+				}
+			}
+		}
+
+		private synchronized void request(final int n) {
+			if(subscription != null) {
+				subscription.request(n);
+			}
+		}
+
+		private synchronized void terminated() {
+			subscription = null;
+		}
+
+		private synchronized void cancel() {
+			if(subscription != null) {
+				subscription.cancel();
+				subscription = null;
+			}
+		}
+	}
+
+	private static final class RequestAfterConsume<T> implements Consumer<T> {
+
+		private final Consumer<T> consumer;
+		private final Demand<T> demand;
+
+		private RequestAfterConsume(final Consumer<T> consumer, final Demand<T> demand) {
+			this.consumer = consumer;
+			this.demand = demand;
+		}
+
+		@Override
+		public void consume(final T item) {
+			try {
+				consumer.consume(item);
+			} finally {
+				//The item has left the buffer whether or not it was consumed
+				demand.consumed();
+			}
+		}
+	}
+
+	private class SubscriptionLifecycle implements StateListener {
+
+		@Override
+		public void stateChanged(final Service service, final State previous, final State current) {
+			if(current.isStarted()) {
+				complete = false;
+				publisher.subscribe(SubscriberService.this);
+			} else if(current.isShutdown() || current.isExceptional()) {
+				demand.cancel();
+			}
+		}
+	}
+}
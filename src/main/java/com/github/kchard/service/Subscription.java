@@ -0,0 +1,25 @@
+package com.github.kchard.service;
+
+/**
+ * The link between a {@link Publisher} and a {@link Subscriber}, through which the subscriber signals its demand.
+ *
+ * @author chardk
+ *
+ * @see Publisher
+ * @see Subscriber
+ */
+public interface Subscription {
+
+	/**
+	 * Adds to the number of items the publisher may send. A request that is not positive ends the subscription with an
+	 * {@link IllegalArgumentException}.
+	 *
+	 * @param n The number of additional items, {@link Long#MAX_VALUE} for no limit
+	 */
+	void request(long n);
+
+	/**
+	 * Asks the publisher to stop sending items, the publisher may send a few more that were already on their way
+	 */
+	void cancel();
+}
@@ -0,0 +1,86 @@
+package com.github.kchard.service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Defines how a {@link CompositeService} reacts when one of its children becomes EXCEPTIONAL.</p>
+ *
+ * <ul>
+ * 	<li>ESCALATE: the composite reports the exception and the whole tree is shutdown. This is the default.</li>
+ *  <li>ONE_FOR_ONE: only the failed child is restarted</li>
+ *  <li>ONE_FOR_ALL: every child is restarted</li>
+ *  <li>REST_FOR_ONE: the failed child and every child after it are restarted</li>
+ * </ul>
+ *
+ * <p>Restarts are limited by an intensity: if more than maxRestarts restarts would happen within the period,
+ * the failure is escalated instead. The default intensity allows 1 restart every 5 seconds.</p>
+ *
+ * <p>Instances are immutable.</p>
+ *
+ * @author chardk
+ *
+ * @see CompositeService
+ */
+public final class SupervisionStrategy {
+
+	public enum Kind {
+		ESCALATE, ONE_FOR_ONE, ONE_FOR_ALL, REST_FOR_ONE;
+	}
+
+	private static final int DEFAULT_MAX_RESTARTS = 1;
+	private static final long DEFAULT_PERIOD = 5000L;
+
+	private static final SupervisionStrategy ESCALATE = new SupervisionStrategy(Kind.ESCALATE, 0, 0L);
+
+	private final Kind kind;
+	private final int maxRestarts;
+	private final long periodMillis;
+
+	private SupervisionStrategy(final Kind kind, final int maxRestarts, final long periodMillis) {
+		this.kind = kind;
+		this.maxRestarts = maxRestarts;
+		this.periodMillis = periodMillis;
+	}
+
+	public static SupervisionStrategy escalate() {
+		return ESCALATE;
+	}
+
+	public static SupervisionStrategy oneForOne() {
+		return new SupervisionStrategy(Kind.ONE_FOR_ONE, DEFAULT_MAX_RESTARTS, DEFAULT_PERIOD);
+	}
+
+	public static SupervisionStrategy oneForAll() {
+		return new SupervisionStrategy(Kind.ONE_FOR_ALL, DEFAULT_MAX_RESTARTS, DEFAULT_PERIOD);
+	}
+
+	public static SupervisionStrategy restForOne() {
+		return new SupervisionStrategy(Kind.REST_FOR_ONE, DEFAULT_MAX_RESTARTS, DEFAULT_PERIOD);
+	}
+
+	/**
+	 * @param maxRestarts The maximum number of restarts allowed within the period
+	 * @param period The length of the period
+	 * @param unit The unit of time the period is specified in
+	 * @return A strategy of the same kind with the given restart intensity
+	 */
+	public SupervisionStrategy withIntensity(final int maxRestarts, final long period, final TimeUnit unit) {
+		if(maxRestarts < 0 || period < 1) {
+			throw new IllegalArgumentException("Invalid restart intensity: " + maxRestarts + " in " + period + " " + unit);
+		}
+
+		return new SupervisionStrategy(kind, maxRestarts, unit.toMillis(period));
+	}
+
+	public Kind kind() {
+		return kind;
+	}
+
+	public int maxRestarts() {
+		return maxRestarts;
+	}
+
+	public long period(final TimeUnit unit) {
+		return unit.convert(periodMillis, TimeUnit.MILLISECONDS);
+	}
+}
@@ -0,0 +1,37 @@
+package com.github.kchard.service;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * A {@link Clock} backed by the system time and {@link ScheduledThreadPoolExecutor}s.
+ *
+ * @author chardk
+ */
+public final class SystemClock implements Clock {
+
+	private static final SystemClock INSTANCE = new SystemClock();
+
+	private SystemClock() {
+	}
+
+	public static SystemClock instance() {
+		return INSTANCE;
+	}
+
+	@Override
+	public long currentTimeMillis() {
+		return System.currentTimeMillis();
+	}
+
+	@Override
+	public long nanoTime() {
+		return System.nanoTime();
+	}
+
+	@Override
+	public ScheduledExecutorService newScheduledExecutor(final int threads, final ThreadFactory threadFactory) {
+		return new ScheduledThreadPoolExecutor(threads, threadFactory);
+	}
+}
@@ -0,0 +1,122 @@
+package com.github.kchard.service;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>Describes how the threads of a {@link WorkerService} are created: their name prefix, daemon flag, priority and CPU affinity.</p>
+ *
+ * <p>By default threads are named after the service that owns them, followed by a sequence number.
+ * On Linux threads can be pinned to a set of CPUs, specified in the list format used by taskset, e.g. "2,3" or "4-7".
+ * Pinning is best effort, a thread that cannot be pinned logs a warning and runs unpinned.</p>
+ *
+ * <p>Instances are immutable, each with method returns a new policy.</p>
+ *
+ * @author chardk
+ *
+ * @see WorkerService#setThreadPolicy(ThreadPolicy)
+ */
+public final class ThreadPolicy {
+
+	private static final ThreadPolicy DEFAULTS = new ThreadPolicy(null, false, Thread.NORM_PRIORITY, null);
+
+	private final String namePrefix;
+	private final boolean daemon;
+	private final int priority;
+	private final String cpuList;
+
+	private ThreadPolicy(final String namePrefix, final boolean daemon, final int priority, final String cpuList) {
+		this.namePrefix = namePrefix;
+		this.daemon = daemon;
+		this.priority = priority;
+		this.cpuList = cpuList;
+	}
+
+	/**
+	 * @return Non daemon threads of normal priority, named after their service and not pinned
+	 */
+	public static ThreadPolicy defaults() {
+		return DEFAULTS;
+	}
+
+	/**
+	 * @param namePrefix The prefix of each thread name, null to use the name of the service
+	 */
+	public ThreadPolicy withNamePrefix(final String namePrefix) {
+		return new ThreadPolicy(namePrefix, daemon, priority, cpuList);
+	}
+
+	public ThreadPolicy withDaemon(final boolean daemon) {
+		return new ThreadPolicy(namePrefix, daemon, priority, cpuList);
+	}
+
+	/**
+	 * @param priority A priority between {@link Thread#MIN_PRIORITY} and {@link Thread#MAX_PRIORITY}
+	 */
+	public ThreadPolicy withPriority(final int priority) {
+		if(priority < Thread.MIN_PRIORITY || priority > Thread.MAX_PRIORITY) {
+			throw new IllegalArgumentException("Invalid thread priority: " + priority);
+		}
+
+		return new ThreadPolicy(namePrefix, daemon, priority, cpuList);
+	}
+
+	/**
+	 * @param cpuList The CPUs to pin each thread to in taskset list format, null to not pin threads
+	 */
+	public ThreadPolicy withAffinity(final String cpuList) {
+		if(cpuList != null && !CpuAffinity.isValidCpuList(cpuList)) {
+			throw new IllegalArgumentException("Invalid cpu list: " + cpuList);
+		}
+
+		return new ThreadPolicy(namePrefix, daemon, priority, cpuList);
+	}
+
+	public String namePrefix() {
+		return namePrefix;
+	}
+
+	public boolean daemon() {
+		return daemon;
+	}
+
+	public int priority() {
+		return priority;
+	}
+
+	public String cpuList() {
+		return cpuList;
+	}
+
+	/**
+	 * @param serviceName The name of the service the threads belong to
+	 * @return A factory that creates threads according to this policy
+	 */
+	public ThreadFactory threadFactory(final String serviceName) {
+		final String prefix = namePrefix == null ? serviceName : namePrefix;
+		final AtomicInteger sequence = new AtomicInteger();
+
+		return new ThreadFactory() {
+
+			@Override
+			public Thread newThread(final Runnable runnable) {
+				Runnable target = runnable;
+				if(cpuList != null) {
+					target = new Runnable() {
+
+						@Override
+						public void run() {
+							CpuAffinity.pinCurrentThread(cpuList);
+							runnable.run();
+						}
+					};
+				}
+
+				Thread thread = new Thread(target, prefix + "-" + sequence.incrementAndGet());
+				thread.setDaemon(daemon);
+				thread.setPriority(priority);
+				return thread;
+			}
+		};
+	}
+}
@@ -0,0 +1,36 @@
+package com.github.kchard.service;
+
+/**
+ * An item produced by a {@link LoadGenerator}, stamped with the time it was due to be sent.
+ *
+ * @author chardk
+ *
+ * @param <T>
+ * @see LoadGenerator
+ */
+public final class TimedItem<T> {
+
+	private final T item;
+	private final long intendedNanos;
+
+	public TimedItem(final T item, final long intendedNanos) {
+		this.item = item;
+		this.intendedNanos = intendedNanos;
+	}
+
+	public T item() {
+		return item;
+	}
+
+	/**
+	 * @return The {@link System#nanoTime()} at which the item was due to be sent
+	 */
+	public long intendedNanos() {
+		return intendedNanos;
+	}
+
+	@Override
+	public String toString() {
+		return "TimedItem [item=" + item + ", intendedNanos=" + intendedNanos + "]";
+	}
+}
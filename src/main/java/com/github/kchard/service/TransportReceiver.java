@@ -0,0 +1,289 @@
+package com.github.kchard.service;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Collection;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Receives the items sent by {@link TransportSender}s and puts them on a bounded queue for local consumers, for
+ * example with {@code consumers(consumer).forQueue(receiver.queue())}.</p>
+ *
+ * <p>The receiver listens once it is initialized, so that {@link #port()} is known before it starts. Each connection
+ * is granted credit for the room left in the queue and is granted more as consumers take items, in batches of a quarter of the
+ * capacity. A sender therefore never has more items in flight than the queue can hold.</p>
+ *
+ * <p>A receiver serves one sender at a time, a new connection replaces the current one so that a sender that reconnects is
+ * served at once. To spread work across processes, run a receiver in each consumer process and a sender for each of them
+ * sharing the producer's queue.</p>
+ *
+ * <p>Items are only removed from the queue through the {@link BlockingQueue} methods that take from its head, removing
+ * items any other way does not grant credit for them.</p>
+ *
+ * @author chardk
+ *
+ * @param <T>
+ * @see TransportSender
+ * @see Codec
+ */
+public class TransportReceiver<T> extends AbstractService {
+
+	private final Codec<T> codec;
+	private final SocketAddress address;
+	private final CreditQueue<T> queue;
+	private final int creditBatch;
+
+	private final AtomicLong received = new AtomicLong();
+	private final AtomicLong connections = new AtomicLong();
+	private final AtomicInteger freed = new AtomicInteger();
+
+	private ServerSocketChannel server;
+	private ExecutorService executor;
+	private volatile SocketChannel current;
+
+	/**
+	 * Listens on the loopback address
+	 *
+	 * @param codec The codec used to decode items
+	 * @param port The port to listen on, 0 for any free port
+	 * @param capacity The capacity of the queue
+	 */
+	public TransportReceiver(final Codec<T> codec, final int port, final int capacity) {
+		this(codec, new InetSocketAddress("127.0.0.1", port), capacity);
+	}
+
+	/**
+	 * @param codec The codec used to decode items
+	 * @param address The address to listen on
+	 * @param capacity The capacity of the queue
+	 */
+	public TransportReceiver(final Codec<T> codec, final SocketAddress address, final int capacity) {
+		this.codec = codec;
+		this.address = address;
+		this.queue = new CreditQueue<T>(capacity, this);
+		this.creditBatch = Math.max(1, capacity / 4);
+	}
+
+	/**
+	 * @return The queue received items are put on
+	 */
+	public BlockingQueue<T> queue() {
+		return queue;
+	}
+
+	/**
+	 * @return The port the receiver listens on, or -1 before it is initialized
+	 */
+	public synchronized int port() {
+		return server == null ? -1 : server.socket().getLocalPort();
+	}
+
+	/**
+	 * @return The number of items received
+	 */
+	public long received() {
+		return received.get();
+	}
+
+	/**
+	 * @return The number of connections accepted
+	 */
+	public long connections() {
+		return connections.get();
+	}
+
+	@Override
+	protected synchronized void doInitialize() {
+		try {
+			server = ServerSocketChannel.open();
+			server.socket().setReuseAddress(true);
+			server.socket().bind(address);
+		} catch(IOException e) {
+			Frames.closeQuietly(server);
+			throw new IllegalStateException("Unable to listen on " + address + ": " + e.getMessage(), e);
+		}
+
+		executor = Executors.newCachedThreadPool(ThreadPolicy.defaults().threadFactory(name()));
+	}
+
+	@Override
+	protected void doStart() {
+		executor.execute(new Acceptor());
+	}
+
+	@Override
+	protected synchronized void doShutdown() {
+		Frames.closeQuietly(server);
+		Frames.closeQuietly(current);
+		if(executor != null) {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Called by the queue when consumers take items, grants the credit to the current connection once a batch has been freed
+	 */
+	private void itemsRemoved(final int count) {
+		if(freed.addAndGet(count) < creditBatch) {
+			return;
+		}
+
+		int credit = freed.getAndSet(0);
+		SocketChannel channel = current;
+		if(credit > 0 && channel != null) {
+			grant(channel, credit);
+		}
+	}
+
+	private void grant(final SocketChannel channel, final int credit) {
+		try {
+			synchronized(channel) {
+				Frames.writeInt(channel, credit);
+			}
+		} catch(IOException e) {
+			//The reader of the connection notices it has failed
+			logger.debug("Unable to grant credit: {}", e.getMessage());
+		}
+	}
+
+	private class Acceptor implements Runnable {
+
+		@Override
+		public void run() {
+			while(server.isOpen()) {
+				SocketChannel channel;
+				try {
+					channel = server.accept();
+				} catch(IOException e) {
+					if(server.isOpen()) {
+						logger.error("Exception occurred accepting a connection: " + e.getMessage());
+					}
+
+					return;
+				}
+
+				//A sender that reconnects may not have noticed its previous connection failing, it is replaced
+				connections.incrementAndGet();
+				SocketChannel previous = current;
+				current = channel;
+				Frames.closeQuietly(previous);
+				//Credit freed before this connection was made is covered by the room left in the queue
+				freed.set(0);
+				int room = queue.remainingCapacity();
+				if(room > 0) {
+					grant(channel, room);
+				}
+
+				try {
+					executor.execute(new Reader(channel));
+				} catch(RuntimeException e) {
+					Frames.closeQuietly(channel);
+					return;
+				}
+			}
+		}
+	}
+
+	private class Reader implements Runnable {
+
+		private final SocketChannel channel;
+
+		private Reader(final SocketChannel channel) {
+			this.channel = channel;
+		}
+
+		@Override
+		public void run() {
+			try {
+				byte[] payload;
+				while((payload = Frames.readFrame(channel)) != null) {
+					T item;
+					try {
+						item = codec.decode(payload);
+					} catch(RuntimeException e) {
+						logger.error("Dropping an item that could not be decoded: " + e.getMessage());
+						itemsRemoved(1);
+						continue;
+					}
+
+					//Credit keeps a well behaved sender within the capacity, put only blocks a sender that ignores it
+					queue.put(item);
+					received.incrementAndGet();
+				}
+			} catch(IOException e) {
+				logger.debug("Connection to {} ended: {}", name(), e.getMessage());
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				Frames.closeQuietly(channel);
+				if(current == channel) {
+					current = null;
+				}
+			}
+		}
+	}
+
+	/**
+	 * A queue that reports the items taken from it so that they can be granted as credit
+	 */
+	private static final class CreditQueue<T> extends LinkedBlockingQueue<T> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final transient TransportReceiver<T> receiver;
+
+		private CreditQueue(final int capacity, final TransportReceiver<T> receiver) {
+			super(capacity);
+			this.receiver = receiver;
+		}
+
+		@Override
+		public T take() throws InterruptedException {
+			T item = super.take();
+			receiver.itemsRemoved(1);
+			return item;
+		}
+
+		@Override
+		public T poll() {
+			return removed(super.poll());
+		}
+
+		@Override
+		public T poll(final long timeout, final TimeUnit unit) throws InterruptedException {
+			return removed(super.poll(timeout, unit));
+		}
+
+		@Override
+		public int drainTo(final Collection<? super T> collection) {
+			return drainTo(collection, Integer.MAX_VALUE);
+		}
+
+		@Override
+		public int drainTo(final Collection<? super T> collection, final int maxElements) {
+			int drained = super.drainTo(collection, maxElements);
+			if(drained > 0) {
+				receiver.itemsRemoved(drained);
+			}
+
+			return drained;
+		}
+
+		private T removed(final T item) {
+			if(item != null) {
+				receiver.itemsRemoved(1);
+			}
+
+			return item;
+		}
+	}
+}
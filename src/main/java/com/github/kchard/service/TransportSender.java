@@ -0,0 +1,258 @@
+package com.github.kchard.service;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Sends the items put on its queue to a {@link TransportReceiver}, usually in another process on the same machine.</p>
+ *
+ * <p>Producers put items on {@link #queue()}, for example with {@code producers(producer).forQueue(sender.queue())}, and the
+ * sender writes each one as a length prefixed frame to a socket channel. The receiver grants credit for as many items as it
+ * has room for, the sender never writes more items than it has credit for, so a slow receiver fills the queue and producers
+ * block as they would on a local queue. Several senders may share a queue to spread its items across several receivers,
+ * each receiver takes as many items as it has credit for.</p>
+ *
+ * <p>If the connection cannot be made or is lost the sender reconnects with a backoff until it is shutdown. An item whose
+ * write failed is sent again on the next connection, items that were written but not yet read by a receiver that fails are lost.
+ * Items left on the queue when the sender is shutdown remain on the queue.</p>
+ *
+ * @author chardk
+ *
+ * @param <T>
+ * @see TransportReceiver
+ * @see Codec
+ */
+public class TransportSender<T> extends AbstractService {
+
+	static final int DEFAULT_CAPACITY = 1024;
+
+	private static final long MIN_BACKOFF_MILLIS = 10L;
+	private static final long MAX_BACKOFF_MILLIS = 2000L;
+
+	private final Codec<T> codec;
+	private final SocketAddress address;
+	private final BlockingQueue<T> queue;
+
+	private final AtomicLong sent = new AtomicLong();
+	private final AtomicLong connections = new AtomicLong();
+
+	private ExecutorService executor;
+	private volatile Connection connection;
+
+	/**
+	 * Sends to a receiver on the loopback address through a queue of the default capacity
+	 *
+	 * @param codec The codec used to encode items
+	 * @param port The port of the receiver
+	 */
+	public TransportSender(final Codec<T> codec, final int port) {
+		this(codec, new InetSocketAddress("127.0.0.1", port), new LinkedBlockingQueue<T>(DEFAULT_CAPACITY));
+	}
+
+	/**
+	 * @param codec The codec used to encode items
+	 * @param address The address of the receiver
+	 * @param queue The queue items are sent from
+	 */
+	public TransportSender(final Codec<T> codec, final SocketAddress address, final BlockingQueue<T> queue) {
+		this.codec = codec;
+		this.address = address;
+		this.queue = queue;
+	}
+
+	/**
+	 * @return The queue items are sent from
+	 */
+	public BlockingQueue<T> queue() {
+		return queue;
+	}
+
+	/**
+	 * @return The number of items sent
+	 */
+	public long sent() {
+		return sent.get();
+	}
+
+	/**
+	 * @return The number of connections made, more than one means the sender has reconnected
+	 */
+	public long connections() {
+		return connections.get();
+	}
+
+	/**
+	 * @return The credit left on the current connection, or -1 if not connected
+	 */
+	public int credits() {
+		Connection current = connection;
+		return current == null ? -1 : current.credits();
+	}
+
+	@Override
+	protected void doInitialize() {
+		executor = Executors.newCachedThreadPool(ThreadPolicy.defaults().threadFactory(name()));
+	}
+
+	@Override
+	protected void doStart() {
+		executor.execute(new Writer());
+	}
+
+	@Override
+	protected void doShutdown() {
+		if(executor != null) {
+			executor.shutdownNow();
+		}
+
+		Connection current = connection;
+		if(current != null) {
+			current.close();
+		}
+	}
+
+	private class Writer implements Runnable {
+
+		private T unsent;
+
+		@Override
+		public void run() {
+			long backoff = MIN_BACKOFF_MILLIS;
+			while(!Thread.currentThread().isInterrupted()) {
+				SocketChannel channel;
+				try {
+					channel = SocketChannel.open(address);
+				} catch(IOException e) {
+					logger.debug("Unable to connect {} to {}, retrying in {} ms: {}", new Object[] {name(), address, backoff, e.getMessage()});
+					try {
+						Thread.sleep(backoff);
+					} catch(InterruptedException interrupted) {
+						Thread.currentThread().interrupt();
+					}
+
+					backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+					continue;
+				}
+
+				backoff = MIN_BACKOFF_MILLIS;
+				connections.incrementAndGet();
+				Connection current = new Connection(channel);
+				connection = current;
+				try {
+					executor.execute(new CreditReader(current));
+					send(current);
+				} catch(IOException e) {
+					logger.info("Connection of {} to {} lost: {}", new Object[] {name(), address, e.getMessage()});
+				} catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} catch(RuntimeException e) {
+					//The executor rejects the credit reader once the sender is shutdown
+					logger.debug("Stopping {}: {}", name(), e.getMessage());
+					Thread.currentThread().interrupt();
+				} finally {
+					current.close();
+					connection = null;
+				}
+			}
+		}
+
+		private void send(final Connection current) throws IOException, InterruptedException {
+			while(true) {
+				current.acquireCredit();
+				if(unsent == null) {
+					unsent = queue.take();
+				}
+
+				byte[] payload;
+				try {
+					payload = codec.encode(unsent);
+				} catch(RuntimeException e) {
+					logger.error("Dropping an item that could not be encoded: " + e.getMessage());
+					unsent = null;
+					current.releaseCredit();
+					continue;
+				}
+
+				Frames.writeFrame(current.channel, payload);
+				unsent = null;
+				sent.incrementAndGet();
+			}
+		}
+	}
+
+	private class CreditReader implements Runnable {
+
+		private final Connection current;
+
+		private CreditReader(final Connection current) {
+			this.current = current;
+		}
+
+		@Override
+		public void run() {
+			try {
+				int credit;
+				while((credit = Frames.readInt(current.channel)) > 0) {
+					current.grant(credit);
+				}
+			} catch(IOException e) {
+				logger.debug("Credit stream of {} ended: {}", name(), e.getMessage());
+			} finally {
+				current.close();
+			}
+		}
+	}
+
+	private static final class Connection {
+
+		private final SocketChannel channel;
+
+		private int credits = 0;
+		private boolean open = true;
+
+		private Connection(final SocketChannel channel) {
+			this.channel = channel;
+		}
+
+		private synchronized void grant(final int credit) {
+			credits += credit;
+			notifyAll();
+		}
+
+		private synchronized void acquireCredit() throws IOException, InterruptedException {
+			while(open && credits == 0) {
+				wait();
+			}
+
+			if(!open) {
+				throw new IOException("Connection closed");
+			}
+
+			credits--;
+		}
+
+		private synchronized void releaseCredit() {
+			credits++;
+		}
+
+		private synchronized int credits() {
+			return open ? credits : -1;
+		}
+
+		private void close() {
+			synchronized(this) {
+				open = false;
+				notifyAll();
+			}
+
+			Frames.closeQuietly(channel);
+		}
+	}
+}
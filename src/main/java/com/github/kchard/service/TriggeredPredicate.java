@@ -0,0 +1,37 @@
+package com.github.kchard.service;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * <p>A {@link Predicate} that can tell its monitors when it may have changed.</p>
+ *
+ * <p>Calling {@link #trigger()} causes every {@link PredicateShutdownMonitor} watching this predicate to evaluate it
+ * immediately rather than waiting for its next interval. Combined with a monitor interval of 0
+ * the predicate is only evaluated when it is triggered or the monitored service changes state.</p>
+ *
+ * @author chardk
+ *
+ * @see PredicateShutdownMonitor
+ */
+public abstract class TriggeredPredicate implements Predicate {
+
+	private final List<MonitorEngine.Registration> registrations = new CopyOnWriteArrayList<MonitorEngine.Registration>();
+
+	/**
+	 * Requests evaluation of this predicate by all of its monitors
+	 */
+	public final void trigger() {
+		for(MonitorEngine.Registration registration : registrations) {
+			registration.trigger();
+		}
+	}
+
+	final void attach(final MonitorEngine.Registration registration) {
+		registrations.add(registration);
+	}
+
+	final void detach(final MonitorEngine.Registration registration) {
+		registrations.remove(registration);
+	}
+}
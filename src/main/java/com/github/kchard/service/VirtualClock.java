@@ -0,0 +1,408 @@
+package com.github.kchard.service;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * <p>A {@link Clock} whose time only moves when it is advanced, used to test schedules deterministically.</p>
+ *
+ * <p>Executors created by this clock do not own any threads. Their tasks are queued by due time and run on the thread that
+ * calls {@link #advance(long, TimeUnit)}, in due time order and, for tasks due at the same time, in the order they were scheduled.
+ * A task that is executed rather than scheduled is due immediately and runs on the next call to {@link #advance(long, TimeUnit)}
+ * or {@link #runPending()}.</p>
+ *
+ * <p>Time does not pass while a task runs unless the task calls {@link #elapse(long, TimeUnit)}, which lets tests simulate
+ * commands that take longer than their period. Fixed rate tasks that overrun are run back to back, fixed delay tasks are
+ * rescheduled relative to the time the run completed, as with a {@link java.util.concurrent.ScheduledThreadPoolExecutor}.</p>
+ *
+ * <p>Shutting down an executor cancels all of its queued tasks.</p>
+ *
+ * <p>This class is thread safe, but only one thread at a time may advance the clock.</p>
+ *
+ * @author chardk
+ *
+ * @see Clock
+ * @see SystemClock
+ */
+public class VirtualClock implements Clock {
+
+	private final long epochMillis;
+	private final PriorityQueue<VirtualTask<?>> tasks = new PriorityQueue<VirtualTask<?>>();
+
+	private long nanos = 0L;
+	private long sequence = 0L;
+	private boolean advancing = false;
+
+	/**
+	 * Creates a clock that starts at the epoch
+	 */
+	public VirtualClock() {
+		this(0L);
+	}
+
+	/**
+	 * @param epochMillis The value {@link #currentTimeMillis()} returns before the clock is first advanced
+	 */
+	public VirtualClock(final long epochMillis) {
+		this.epochMillis = epochMillis;
+	}
+
+	@Override
+	public long currentTimeMillis() {
+		return epochMillis + TimeUnit.NANOSECONDS.toMillis(nanoTime());
+	}
+
+	@Override
+	public synchronized long nanoTime() {
+		return nanos;
+	}
+
+	/**
+	 * Creates an executor that runs its tasks in virtual time. The thread count and factory are ignored.
+	 */
+	@Override
+	public ScheduledExecutorService newScheduledExecutor(final int threads, final ThreadFactory threadFactory) {
+		return new VirtualExecutor();
+	}
+
+	/**
+	 * Moves the clock forward, running every task that becomes due on the calling thread.
+	 *
+	 * @param time The amount of time to advance the clock by
+	 * @param unit The unit of time the amount is specified in
+	 * @return The number of tasks that were run
+	 */
+	public int advance(final long time, final TimeUnit unit) {
+		if(time < 0) {
+			throw new IllegalArgumentException("A clock cannot be advanced backwards: " + time);
+		}
+
+		long target;
+		synchronized(this) {
+			if(advancing) {
+				throw new IllegalStateException("The clock is already being advanced, use elapse to pass time within a task");
+			}
+
+			advancing = true;
+			target = nanos + unit.toNanos(time);
+		}
+
+		int runs = 0;
+		try {
+			while(true) {
+				VirtualTask<?> task;
+				synchronized(this) {
+					task = tasks.peek();
+					//Tasks that overran may have moved the clock past the target, nothing more starts after it
+					if(task == null || task.time > target || nanos > target) {
+						nanos = Math.max(nanos, target);
+						return runs;
+					}
+
+					tasks.poll();
+					nanos = Math.max(nanos, task.time);
+				}
+
+				task.run();
+				runs++;
+			}
+		} finally {
+			synchronized(this) {
+				advancing = false;
+			}
+		}
+	}
+
+	/**
+	 * Runs every task that is already due without moving the clock.
+	 *
+	 * @return The number of tasks that were run
+	 */
+	public int runPending() {
+		return advance(0L, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Moves the clock forward without running any tasks. Intended to be called from a task to simulate the time it takes,
+	 * tasks that become due are run once the current task returns.
+	 *
+	 * @param time The amount of time to pass
+	 * @param unit The unit of time the amount is specified in
+	 */
+	public synchronized void elapse(final long time, final TimeUnit unit) {
+		if(time < 0) {
+			throw new IllegalArgumentException("Time cannot elapse backwards: " + time);
+		}
+
+		nanos += unit.toNanos(time);
+	}
+
+	/**
+	 * @return The number of tasks waiting to run across all executors of this clock
+	 */
+	public synchronized int pendingTasks() {
+		return tasks.size();
+	}
+
+	private synchronized void enqueue(final VirtualTask<?> task, final long time) {
+		task.time = time;
+		task.sequence = sequence++;
+		tasks.add(task);
+	}
+
+	private List<Runnable> dequeue(final VirtualExecutor executor) {
+		List<Runnable> removed = new ArrayList<Runnable>();
+		synchronized(this) {
+			for(Iterator<VirtualTask<?>> iterator = tasks.iterator(); iterator.hasNext();) {
+				VirtualTask<?> task = iterator.next();
+				if(task.executor == executor) {
+					iterator.remove();
+					removed.add(task);
+				}
+			}
+		}
+
+		for(Runnable task : removed) {
+			((VirtualTask<?>) task).cancel(false);
+		}
+
+		return removed;
+	}
+
+	private class VirtualExecutor extends AbstractExecutorService implements ScheduledExecutorService {
+
+		private volatile boolean shutdown = false;
+
+		@Override
+		public void execute(final Runnable command) {
+			schedule(command, 0L, TimeUnit.NANOSECONDS);
+		}
+
+		@Override
+		public ScheduledFuture<?> schedule(final Runnable command, final long delay, final TimeUnit unit) {
+			return submit(new VirtualTask<Object>(this, Executors.callable(command), 0L), unit.toNanos(delay));
+		}
+
+		@Override
+		public <V> ScheduledFuture<V> schedule(final Callable<V> callable, final long delay, final TimeUnit unit) {
+			return submit(new VirtualTask<V>(this, callable, 0L), unit.toNanos(delay));
+		}
+
+		@Override
+		public ScheduledFuture<?> scheduleAtFixedRate(final Runnable command, final long initialDelay, final long period, final TimeUnit unit) {
+			if(period <= 0) {
+				throw new IllegalArgumentException("Period must be greater than 0: " + period);
+			}
+
+			return submit(new VirtualTask<Object>(this, Executors.callable(command), unit.toNanos(period)), unit.toNanos(initialDelay));
+		}
+
+		@Override
+		public ScheduledFuture<?> scheduleWithFixedDelay(final Runnable command, final long initialDelay, final long delay, final TimeUnit unit) {
+			if(delay <= 0) {
+				throw new IllegalArgumentException("Delay must be greater than 0: " + delay);
+			}
+
+			//A negative period marks a fixed delay task, as in ScheduledThreadPoolExecutor
+			return submit(new VirtualTask<Object>(this, Executors.callable(command), -unit.toNanos(delay)), unit.toNanos(initialDelay));
+		}
+
+		private <V> VirtualTask<V> submit(final VirtualTask<V> task, final long delayNanos) {
+			if(shutdown) {
+				throw new RejectedExecutionException("Executor has been shutdown");
+			}
+
+			synchronized(VirtualClock.this) {
+				enqueue(task, nanos + Math.max(0L, delayNanos));
+			}
+
+			return task;
+		}
+
+		@Override
+		public void shutdown() {
+			shutdown = true;
+			dequeue(this);
+		}
+
+		@Override
+		public List<Runnable> shutdownNow() {
+			shutdown = true;
+			return dequeue(this);
+		}
+
+		@Override
+		public boolean isShutdown() {
+			return shutdown;
+		}
+
+		@Override
+		public boolean isTerminated() {
+			return shutdown;
+		}
+
+		@Override
+		public boolean awaitTermination(final long timeout, final TimeUnit unit) {
+			return shutdown;
+		}
+	}
+
+	private class VirtualTask<V> implements ScheduledFuture<V>, Runnable {
+
+		private final VirtualExecutor executor;
+		private final Callable<V> callable;
+		private final long period;
+
+		private long time;
+		private long sequence;
+
+		private boolean done = false;
+		private boolean cancelled = false;
+		private V result;
+		private Throwable exception;
+
+		private VirtualTask(final VirtualExecutor executor, final Callable<V> callable, final long period) {
+			this.executor = executor;
+			this.callable = callable;
+			this.period = period;
+		}
+
+		@Override
+		public void run() {
+			synchronized(this) {
+				if(done) {
+					return;
+				}
+			}
+
+			try {
+				V value = callable.call();
+				if(period == 0) {
+					complete(value, null);
+				} else if(!isDone() && !executor.isShutdown()) {
+					//Fixed rate tasks are due a period after they were last due, fixed delay tasks a delay after the run completed
+					synchronized(VirtualClock.this) {
+						enqueue(this, period > 0 ? time + period : nanos - period);
+					}
+				}
+			} catch(Exception e) {
+				//As with ScheduledThreadPoolExecutor, an exception suppresses further runs of a periodic task
+				complete(null, e);
+			}
+		}
+
+		private synchronized void complete(final V value, final Throwable e) {
+			if(!done) {
+				result = value;
+				exception = e;
+				done = true;
+				notifyAll();
+			}
+		}
+
+		@Override
+		public boolean cancel(final boolean mayInterruptIfRunning) {
+			synchronized(this) {
+				if(done) {
+					return false;
+				}
+
+				cancelled = true;
+				done = true;
+				notifyAll();
+			}
+
+			synchronized(VirtualClock.this) {
+				tasks.remove(this);
+			}
+
+			return true;
+		}
+
+		@Override
+		public synchronized boolean isCancelled() {
+			return cancelled;
+		}
+
+		@Override
+		public synchronized boolean isDone() {
+			return done;
+		}
+
+		@Override
+		public synchronized V get() throws InterruptedException, ExecutionException {
+			while(!done) {
+				wait();
+			}
+
+			return result();
+		}
+
+		@Override
+		public synchronized V get(final long timeout, final TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+			long deadline = System.nanoTime() + unit.toNanos(timeout);
+			while(!done) {
+				long remaining = deadline - System.nanoTime();
+				if(remaining <= 0) {
+					throw new TimeoutException();
+				}
+
+				TimeUnit.NANOSECONDS.timedWait(this, remaining);
+			}
+
+			return result();
+		}
+
+		private V result() throws ExecutionException {
+			if(cancelled) {
+				throw new CancellationException();
+			}
+
+			if(exception != null) {
+				throw new ExecutionException(exception);
+			}
+
+			return result;
+		}
+
+		@Override
+		public long getDelay(final TimeUnit unit) {
+			synchronized(VirtualClock.this) {
+				return unit.convert(time - nanos, TimeUnit.NANOSECONDS);
+			}
+		}
+
+		@Override
+		public int compareTo(final Delayed other) {
+			if(other == this) {
+				return 0;
+			}
+
+			if(other instanceof VirtualTask) {
+				VirtualTask<?> task = (VirtualTask<?>) other;
+				if(time != task.time) {
+					return time < task.time ? -1 : 1;
+				}
+
+				return sequence < task.sequence ? -1 : 1;
+			}
+
+			long difference = getDelay(TimeUnit.NANOSECONDS) - other.getDelay(TimeUnit.NANOSECONDS);
+			return difference < 0 ? -1 : (difference > 0 ? 1 : 0);
+		}
+	}
+}
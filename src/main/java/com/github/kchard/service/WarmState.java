@@ -0,0 +1,39 @@
+package com.github.kchard.service;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * <p>State a service builds before it can do useful work, such as in-memory lookup tables, that can be saved when the service
+ * is shutdown and restored the next time it is initialized instead of being rebuilt.</p>
+ *
+ * @author chardk
+ *
+ * @see Checkpoint
+ * @see AbstractService#setWarmState(WarmState, Checkpoint)
+ */
+public interface WarmState {
+
+	/**
+	 * Builds the state from scratch, called when there is no usable checkpoint
+	 */
+	void rebuild();
+
+	/**
+	 * Restores the state from a checkpoint. If this method throws, the state is rebuilt instead.
+	 *
+	 * @param checkpoint The saved state, positioned at its start and limited to its end. The buffer may map the checkpoint file
+	 * and must not be used once this method returns.
+	 * @throws IOException If the saved state cannot be read
+	 */
+	void restore(ByteBuffer checkpoint) throws IOException;
+
+	/**
+	 * Saves the state so that it can be restored later
+	 *
+	 * @param out The output to write the state to
+	 * @throws IOException If the state cannot be written
+	 */
+	void save(DataOutput out) throws IOException;
+}
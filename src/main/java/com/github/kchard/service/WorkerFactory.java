@@ -0,0 +1,17 @@
+package com.github.kchard.service;
+
+/**
+ * Creates the {@link Worker}s run by a {@link WorkerService}.
+ *
+ * @author chardk
+ *
+ * @see WorkerService
+ */
+public interface WorkerFactory {
+
+	/**
+	 * @param owner The service that will run the worker
+	 * @return A new worker
+	 */
+	Worker createWorker(AbstractService owner);
+}
@@ -0,0 +1,363 @@
+package com.github.kchard.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>A service that runs a number of {@link Worker}s, each on its own thread, from the time it is started until it is shutdown.</p>
+ *
+ * <p>The number of workers can be changed at any time with {@link #resize(int)}. Growing the pool starts only the additional workers.
+ * Shrinking the pool cancels the surplus workers and interrupts their threads, so a worker waiting for an item returns at once.
+ * A worker in the middle of an item finishes it unless the consumer or producer gives up when interrupted.
+ * The work queue is left untouched in both cases.</p>
+ *
+ * <p>Shutting the service down cancels every worker and interrupts its thread, it does not wait for the threads to return, see
+ * {@link #awaitTermination(long, TimeUnit)}. With a shutdown timeout, see {@link #setShutdownTimeout(long, TimeUnit)}, a thread of its own
+ * waits up to the timeout for the worker threads and reports those that did not return, with what they were doing, as stragglers.
+ * The wait does not hold up the thread that shut the service down, which is often the {@link MonitorEngine} thread.</p>
+ *
+ * <p>The number of workers, the number of items processed and the depth of the work queue can be read at any time,
+ * see {@link ServiceSnapshot}. The calls of consumer and producer workers can be sampled with a {@link CallProfiler}.</p>
+ *
+ * @author chardk
+ *
+ * @see Worker
+ * @see WorkerFactory
+ * @see ConsumerWorkerService
+ * @see ProducerWorkerService
+ */
+public class WorkerService extends AbstractService {
+
+	static final int DEFAULT_MAX_WORKERS = 512;
+
+	private final WorkerFactory workerFactory;
+	private final List<Worker> workers = new ArrayList<Worker>();
+	//A copy of the size of workers, read without the lock so that a snapshot is not held up by a service that is shutting down
+	private volatile int workerCount;
+	private final StripedCounter itemsProcessed = new StripedCounter();
+
+	private int maxWorkers;
+	private volatile ThreadPolicy threadPolicy = ThreadPolicy.defaults();
+	private volatile CallProfiler profiler;
+	private volatile long shutdownTimeoutNanos = 0L;
+	private final Map<Worker, TrackedWorker> trackedWorkers = new ConcurrentHashMap<Worker, TrackedWorker>();
+	private volatile List<String> stragglers = Collections.emptyList();
+	private volatile ThreadPoolExecutor workerExecutor;
+
+	public WorkerService(final WorkerFactory workerFactory) {
+		this(workerFactory, DEFAULT_MAX_WORKERS);
+	}
+
+	public WorkerService(final WorkerFactory workerFactory, final int maxWorkers) {
+		this.workerFactory = workerFactory;
+		this.maxWorkers = maxWorkers;
+	}
+
+	/**
+	 * Sets the policy used to create worker threads. The policy takes effect when the service is initialized.
+	 *
+	 * @param threadPolicy The policy, or null for {@link ThreadPolicy#defaults()}
+	 */
+	public final void setThreadPolicy(final ThreadPolicy threadPolicy) {
+		this.threadPolicy = threadPolicy == null ? ThreadPolicy.defaults() : threadPolicy;
+	}
+
+	public final ThreadPolicy threadPolicy() {
+		return threadPolicy;
+	}
+
+	/**
+	 * Sets the profiler that samples the calls of this service's workers to their consumer or producer.
+	 * The profiler takes effect for workers started after this call.
+	 *
+	 * @param profiler The profiler, or null to stop profiling
+	 */
+	public final void setProfiler(final CallProfiler profiler) {
+		this.profiler = profiler;
+	}
+
+	/**
+	 * @return The profiler of this service's workers, or null if they are not profiled
+	 */
+	public final CallProfiler profiler() {
+		return profiler;
+	}
+
+	/**
+	 * Sets how long the worker threads are given to return after a shutdown before they are reported as stragglers.
+	 * A {@link CancellableProducer} is given the same time to return once its token is cancelled.
+	 *
+	 * @param timeout The time to wait, 0 to not report stragglers
+	 * @param unit The unit of time the timeout is specified in
+	 */
+	public final void setShutdownTimeout(final long timeout, final TimeUnit unit) {
+		if(timeout < 0) {
+			throw new IllegalArgumentException("The shutdown timeout cannot be negative: " + timeout);
+		}
+
+		this.shutdownTimeoutNanos = unit.toNanos(timeout);
+	}
+
+	/**
+	 * @param unit The unit of time to report in
+	 * @return How long the worker threads are given to return after a shutdown
+	 */
+	public final long shutdownTimeout(final TimeUnit unit) {
+		return unit.convert(shutdownTimeoutNanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * @return The names of the worker threads that had not returned when the last shutdown stopped waiting for them, empty until
+	 * the shutdown timeout has passed
+	 */
+	public final List<String> stragglers() {
+		return stragglers;
+	}
+
+	/**
+	 * Waits for the worker threads to return after the service is shutdown
+	 *
+	 * @param timeout The most time to wait
+	 * @param unit The unit of time the timeout is specified in
+	 * @return true if the threads returned, false if the timeout passed first or the service was never initialized
+	 * @throws InterruptedException If the calling thread is interrupted while waiting
+	 */
+	public final boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+		ThreadPoolExecutor executor = workerExecutor;
+		return executor != null && executor.awaitTermination(timeout, unit);
+	}
+
+	/**
+	 * @return The number of workers this service runs
+	 */
+	public final synchronized int maxWorkers() {
+		return maxWorkers;
+	}
+
+	/**
+	 * Changes the number of workers. If the service is running, workers are started or cancelled immediately
+	 * to match the new size, otherwise the new size is used when the service starts.
+	 *
+	 * @param maxWorkers The new number of workers
+	 */
+	public final synchronized void resize(final int maxWorkers) {
+		if(maxWorkers < 1) {
+			throw new IllegalArgumentException("A worker service requires at least one worker: " + maxWorkers);
+		}
+
+		int previous = this.maxWorkers;
+		this.maxWorkers = maxWorkers;
+		if(workerExecutor == null || workerExecutor.isShutdown() || maxWorkers == previous) {
+			return;
+		}
+
+		logger.debug("Resizing {} to {} workers", name(), maxWorkers);
+		if(maxWorkers > previous) {
+			workerExecutor.setMaximumPoolSize(maxWorkers);
+			workerExecutor.setCorePoolSize(maxWorkers);
+		} else {
+			//Surplus threads terminate once their cancelled worker returns
+			workerExecutor.setCorePoolSize(maxWorkers);
+			workerExecutor.setMaximumPoolSize(maxWorkers);
+		}
+
+		if(!workers.isEmpty()) {
+			while(workers.size() < maxWorkers) {
+				startWorker();
+			}
+
+			while(workers.size() > maxWorkers) {
+				stopWorker(workers.remove(workers.size() - 1));
+			}
+
+			workerCount = workers.size();
+		}
+	}
+
+	/**
+	 * @return The number of workers currently running
+	 */
+	public final int workerCount() {
+		return workerCount;
+	}
+
+	/**
+	 * @return The approximate number of worker threads currently running a worker
+	 */
+	public final int activeThreads() {
+		ThreadPoolExecutor executor = workerExecutor;
+		return executor == null ? 0 : executor.getActiveCount();
+	}
+
+	/**
+	 * @return The number of items this service's workers have produced or consumed, batch consumers count each item of a batch
+	 */
+	public final long itemsProcessed() {
+		return itemsProcessed.sum();
+	}
+
+	/**
+	 * @return The number of items waiting in the work queue, or -1 if this service does not know of a queue
+	 */
+	public int queueDepth() {
+		return -1;
+	}
+
+	@Override
+	final void itemProcessed() {
+		itemsProcessed.increment();
+	}
+
+	@Override
+	protected final void doInitialize() {
+		workerExecutor = new ThreadPoolExecutor(maxWorkers, maxWorkers, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), threadPolicy.threadFactory(name()));
+	}
+
+	@Override
+	protected final void doStart() {
+		for(int i = 0; i < maxWorkers; i++) {
+			startWorker();
+		}
+
+		workerCount = workers.size();
+	}
+
+	@Override
+	protected final void doShutdown() {
+		for(Worker worker : workers) {
+			worker.cancel();
+		}
+
+		workers.clear();
+		workerCount = 0;
+		stragglers = Collections.emptyList();
+		if(workerExecutor != null) {
+			for(Runnable neverRun : workerExecutor.shutdownNow()) {
+				trackedWorkers.remove(((TrackedWorker) neverRun).worker);
+			}
+
+			if(shutdownTimeoutNanos > 0) {
+				//Waiting here would hold this service's lock, and often the monitor engine thread, for the whole timeout
+				Runnable await = new AwaitWorkers(workerExecutor, shutdownTimeoutNanos);
+				ThreadPolicy.defaults().withDaemon(true).threadFactory("shutdown:" + name()).newThread(await).start();
+			}
+		}
+	}
+
+	private void reportStragglers(final long timeoutNanos) {
+		List<String> names = new ArrayList<String>();
+		for(TrackedWorker tracked : trackedWorkers.values()) {
+			Thread thread = tracked.thread();
+			if(thread == null) {
+				continue;
+			}
+
+			StackTraceElement[] stack = thread.getStackTrace();
+			logger.warn("Worker thread {} of {} did not stop within {} ms, it is at {}",
+					new Object[] {thread.getName(), name(), TimeUnit.NANOSECONDS.toMillis(timeoutNanos), stack.length > 0 ? stack[0] : "an unknown location"});
+			emit(ServiceEvent.WORKER_STRAGGLING, thread);
+			names.add(thread.getName());
+		}
+
+		stragglers = Collections.unmodifiableList(names);
+	}
+
+	private void startWorker() {
+		Worker worker = workerFactory.createWorker(this);
+		TrackedWorker tracked = new TrackedWorker(worker);
+		workers.add(worker);
+		trackedWorkers.put(worker, tracked);
+		workerExecutor.execute(tracked);
+	}
+
+	private void stopWorker(final Worker worker) {
+		TrackedWorker tracked = trackedWorkers.get(worker);
+		if(tracked == null) {
+			worker.cancel();
+		} else {
+			tracked.stop();
+		}
+	}
+
+	/**
+	 * Waits for the worker threads of a shutdown to return and reports those that do not
+	 */
+	private class AwaitWorkers implements Runnable {
+
+		private final ThreadPoolExecutor executor;
+		private final long timeoutNanos;
+
+		private AwaitWorkers(final ThreadPoolExecutor executor, final long timeoutNanos) {
+			this.executor = executor;
+			this.timeoutNanos = timeoutNanos;
+		}
+
+		@Override
+		public void run() {
+			try {
+				if(executor.awaitTermination(timeoutNanos, TimeUnit.NANOSECONDS)) {
+					return;
+				}
+			} catch(InterruptedException e) {
+				return;
+			}
+
+			//A service that was restarted in the meantime has workers of its own
+			if(executor == workerExecutor) {
+				reportStragglers(timeoutNanos);
+			}
+		}
+	}
+
+	/**
+	 * Records the thread a worker runs on, so that a surplus worker can be interrupted and a worker that does not stop can be reported
+	 */
+	private class TrackedWorker implements Runnable {
+
+		private final Worker worker;
+		private Thread thread;
+
+		private TrackedWorker(final Worker worker) {
+			this.worker = worker;
+		}
+
+		@Override
+		public void run() {
+			synchronized(this) {
+				thread = Thread.currentThread();
+			}
+
+			try {
+				worker.run();
+			} finally {
+				synchronized(this) {
+					thread = null;
+					//An interruption meant for this worker must not reach the next worker the pool runs on this thread
+					Thread.interrupted();
+				}
+
+				trackedWorkers.remove(worker);
+			}
+		}
+
+		private synchronized Thread thread() {
+			return thread;
+		}
+
+		/**
+		 * Cancels the worker and interrupts its thread if it is running, so that it does not wait for another item
+		 */
+		private synchronized void stop() {
+			worker.cancel();
+			if(thread != null) {
+				thread.interrupt();
+			}
+		}
+	}
+}
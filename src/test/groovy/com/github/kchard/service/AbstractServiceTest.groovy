@@ -218,6 +218,52 @@ class AbstractServiceTest {
         assertTrue(service.actionTimes().exception() != -1)
     }
 
+	@Test
+	void testResetAfterShutdown() {
+
+		service.initialize()
+		service.start()
+		service.shutdown()
+
+		long created = service.actionTimes().created()
+		service.reset()
+
+		assertEquals(State.READY, service.currentState())
+		assertEquals(created, service.actionTimes().created())
+		assertTrue(service.actionTimes().shutdown() == -1)
+
+		service.initialize()
+		service.start()
+
+		assertEquals(State.STARTED, service.currentState())
+	}
+
+	@Test
+	void testResetAfterException() {
+
+		reportException = true
+
+		service.initialize()
+		service.start()
+		assertEquals(State.EXCEPTIONAL, service.currentState())
+
+		reportException = false
+		service.restart()
+
+		assertEquals(State.STARTED, service.currentState())
+		assertNull(service.exception())
+		assertTrue(service.actionTimes().exception() == -1)
+	}
+
+	@Test
+	void testResetWhileRunning() {
+
+		service.initialize()
+		service.start()
+		service.reset()
+
+		assertEquals(State.STARTED, service.currentState())
+	}
 
 	private class AService extends AbstractService {
 
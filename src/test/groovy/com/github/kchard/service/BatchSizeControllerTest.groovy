@@ -0,0 +1,84 @@
+package com.github.kchard.service
+
+import static java.util.concurrent.TimeUnit.*
+import static org.junit.Assert.*
+
+import org.junit.Test
+
+class BatchSizeControllerTest {
+
+	static final long FAST = MICROSECONDS.toNanos(100L)
+	static final long SLOW = MILLISECONDS.toNanos(50L)
+
+	BatchSizeController controller = new BatchSizeController(10L, MILLISECONDS, 1, 8, 4)
+	BatchSizeController.Window worker = controller.newWindow()
+
+	void window(long latency, int queueDepth) {
+		4.times { worker.record(latency, queueDepth) }
+	}
+
+	@Test
+	void testGrowsAdditivelyWhileBackedUp() {
+
+		window(FAST, 100)
+		assertEquals(2, controller.batchSize())
+
+		window(FAST, 100)
+		assertEquals(3, controller.batchSize())
+		assertEquals(2L, controller.adjustments())
+	}
+
+	@Test
+	void testStaysSmallWithoutBacklog() {
+
+		5.times { window(FAST, 0) }
+
+		assertEquals(1, controller.batchSize())
+		assertEquals(0L, controller.adjustments())
+	}
+
+	@Test
+	void testHalvesWhenOverTarget() {
+
+		10.times { window(FAST, 100) }
+		assertEquals(8, controller.batchSize())
+
+		window(SLOW, 100)
+		assertEquals(4, controller.batchSize())
+		assertTrue(controller.lastP99(MILLISECONDS) >= 48L)
+
+		window(SLOW, 100)
+		window(SLOW, 100)
+		window(SLOW, 100)
+		assertEquals(1, controller.batchSize())
+	}
+
+	@Test
+	void testWindowsArePerWorker() {
+
+		def other = controller.newWindow()
+
+		3.times {
+			worker.record(FAST, 100)
+			other.record(SLOW, 100)
+		}
+		assertEquals(1, controller.batchSize())
+
+		worker.record(FAST, 100)
+		assertEquals(2, controller.batchSize())
+
+		other.record(SLOW, 100)
+		assertEquals(1, controller.batchSize())
+		assertEquals(2L, controller.adjustments())
+	}
+
+	@Test
+	void testFixed() {
+
+		def fixed = BatchSizeController.fixed(16)
+		def window = fixed.newWindow()
+		100.times { window.record(SLOW, 1000) }
+
+		assertEquals(16, fixed.batchSize())
+	}
+}
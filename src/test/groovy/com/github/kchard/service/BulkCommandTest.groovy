@@ -0,0 +1,109 @@
+package com.github.kchard.service
+
+import static java.util.concurrent.TimeUnit.*
+import static org.junit.Assert.*
+
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.LinkedBlockingQueue
+
+import org.junit.Before
+import org.junit.Test
+
+class BulkCommandTest {
+
+	VirtualClock clock
+	List<Integer> consumed
+
+	@Before
+	void setUp() {
+		clock = new VirtualClock()
+		consumed = []
+	}
+
+	@Test
+	void testDrainStopsAtMaxItemsOrEmptyQueue() {
+
+		def queue = new LinkedBlockingQueue<Integer>((1..25).toList())
+		def drain = new DrainCommand<Integer>([consume: { consumed << it }] as Consumer, queue, 10)
+
+		drain.run()
+		drain.run()
+		drain.run()
+		drain.run()
+
+		assertEquals((1..25).toList(), consumed)
+		assertEquals(4L, drain.ticks())
+		assertEquals(25L, drain.items())
+		assertEquals(0, drain.lastTick())
+		assertEquals(10, drain.maxTick())
+		assertEquals(6.25, drain.itemsPerTick(), 0.0)
+	}
+
+	@Test
+	void testDrainStopsWhenTimeBudgetIsUsed() {
+
+		def queue = new LinkedBlockingQueue<Integer>((1..100).toList())
+		def slow = [consume: { consumed << it; clock.elapse(3L, MILLISECONDS) }] as Consumer
+		def drain = new DrainCommand<Integer>(slow, queue, 100, 10L, MILLISECONDS, clock)
+
+		drain.run()
+
+		assertEquals(4, drain.lastTick())
+		assertEquals(1L, drain.budgetExhausted())
+		assertEquals(96, queue.size())
+	}
+
+	@Test
+	void testProduceStopsWhenQueueIsFull() {
+
+		def queue = new ArrayBlockingQueue<Integer>(15)
+		int next = 0
+		def produce = new ProduceCommand<Integer>([produce: { next++ }] as Producer, queue, 10)
+
+		produce.run()
+		produce.run()
+
+		assertEquals(15, queue.size())
+		assertEquals(15, next)
+		assertEquals([10, 5], [produce.maxTick(), produce.lastTick()])
+	}
+
+	@Test
+	void testScheduledConsumerKeepsUpWithABurst() {
+
+		def queue = new LinkedBlockingQueue<Integer>((1..1000).toList())
+		def service = new ServiceBuilder()
+			.withClock(clock)
+			.schedule().consumer([consume: { consumed << it }] as Consumer).drainUpTo(250).forQueue(queue).withRate(100L)
+			.build()
+
+		service.initialize()
+		service.start()
+		clock.advance(300L, MILLISECONDS)
+		service.shutdown()
+
+		assertEquals(1000, consumed.size())
+		assertTrue(queue.isEmpty())
+	}
+
+	@Test
+	void testBulkCommandCanBeReadWhileRunning() {
+
+		def queue = new LinkedBlockingQueue<Integer>((1..1000).toList())
+		def drain = new DrainCommand<Integer>([consume: { consumed << it }] as Consumer, queue, 250, 0L, MILLISECONDS, clock)
+		def service = new ServiceBuilder()
+			.withClock(clock)
+			.schedule().bulkCommand(drain).withRate(100L)
+			.build()
+
+		service.initialize()
+		service.start()
+		clock.advance(150L, MILLISECONDS)
+
+		assertEquals(2L, drain.ticks())
+		assertEquals(250.0d, drain.itemsPerTick(), 0.0d)
+		assertEquals(250, drain.lastTick())
+
+		service.shutdown()
+	}
+}
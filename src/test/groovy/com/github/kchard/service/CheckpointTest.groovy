@@ -0,0 +1,160 @@
+package com.github.kchard.service
+
+import static org.junit.Assert.*
+
+import java.io.DataOutput
+import java.nio.ByteBuffer
+import java.util.concurrent.TimeUnit
+
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+
+class CheckpointTest {
+
+	static class LookupTable implements WarmState {
+
+		Map<Integer, Long> table = [:]
+		int rebuilds = 0
+
+		void rebuild() {
+			rebuilds++
+			table.clear()
+			(1..1000).each { table[it] = it * 31L }
+		}
+
+		void restore(ByteBuffer checkpoint) {
+			table.clear()
+			int size = checkpoint.getInt()
+			size.times {
+				int key = checkpoint.getInt()
+				table[key] = checkpoint.getLong()
+			}
+		}
+
+		void save(DataOutput out) {
+			out.writeInt(table.size())
+			table.each { key, value ->
+				out.writeInt(key)
+				out.writeLong(value)
+			}
+		}
+	}
+
+	File directory
+	File file
+
+	@Before
+	void setUp() {
+		directory = File.createTempFile("checkpoint", "")
+		directory.delete()
+		file = new File(directory, "state.ckpt")
+	}
+
+	@After
+	void tearDown() {
+		directory.listFiles()?.each { it.delete() }
+		directory.delete()
+	}
+
+	AbstractService serviceWith(LookupTable state, Checkpoint checkpoint) {
+		new ServiceBuilder().withWarmState(state, checkpoint).build()
+	}
+
+	void run(AbstractService service) {
+		service.initialize()
+		service.start()
+		service.shutdown()
+	}
+
+	@Test
+	void testStateIsRestoredInsteadOfRebuilt() {
+
+		def first = new LookupTable()
+		def service = serviceWith(first, new Checkpoint(file, 1))
+		run(service)
+		assertEquals(1, first.rebuilds)
+		assertFalse(service.restoredFromCheckpoint())
+		assertTrue(file.isFile())
+		assertFalse(new File(file.path + ".tmp").exists())
+
+		def second = new LookupTable()
+		service = serviceWith(second, new Checkpoint(file, 1))
+		service.initialize()
+		assertTrue(service.restoredFromCheckpoint())
+		assertEquals(0, second.rebuilds)
+		assertEquals(first.table, second.table)
+		service.shutdown()
+	}
+
+	@Test
+	void testOtherVersionIsRebuilt() {
+
+		run(serviceWith(new LookupTable(), new Checkpoint(file, 1)))
+
+		def state = new LookupTable()
+		def service = serviceWith(state, new Checkpoint(file, 2))
+		service.initialize()
+		assertFalse(service.restoredFromCheckpoint())
+		assertEquals(1, state.rebuilds)
+	}
+
+	@Test
+	void testStaleCheckpointIsRebuilt() {
+
+		def clock = new VirtualClock(System.currentTimeMillis())
+		def checkpoint = new Checkpoint(file, 1, 1L, TimeUnit.HOURS, clock)
+		run(serviceWith(new LookupTable(), checkpoint))
+
+		clock.advance(59L, TimeUnit.MINUTES)
+		def fresh = new LookupTable()
+		assertTrue(checkpoint.restore(fresh))
+
+		clock.advance(2L, TimeUnit.MINUTES)
+		assertFalse(checkpoint.restore(new LookupTable()))
+	}
+
+	@Test
+	void testCorruptCheckpointIsRebuilt() {
+
+		run(serviceWith(new LookupTable(), new Checkpoint(file, 1)))
+
+		def raf = new RandomAccessFile(file, "rw")
+		raf.seek(raf.length() - 1)
+		int last = raf.read()
+		raf.seek(raf.length() - 1)
+		raf.write(last ^ 0xFF)
+		raf.close()
+
+		def state = new LookupTable()
+		def service = serviceWith(state, new Checkpoint(file, 1))
+		service.initialize()
+		assertFalse(service.restoredFromCheckpoint())
+		assertEquals(1, state.rebuilds)
+	}
+
+	@Test
+	void testTruncatedCheckpointIsRebuilt() {
+
+		run(serviceWith(new LookupTable(), new Checkpoint(file, 1)))
+
+		def raf = new RandomAccessFile(file, "rw")
+		raf.setLength(raf.length() - 12)
+		raf.close()
+
+		assertFalse(new Checkpoint(file, 1).restore(new LookupTable()))
+	}
+
+	@Test
+	void testFailedServiceDoesNotSaveItsState() {
+
+		def state = new LookupTable()
+		def failing = [run: { throw new IllegalStateException("failed") }] as Runnable
+		def service = new ServiceBuilder().withWarmState(state, new Checkpoint(file, 1)).onStartup(failing).build()
+
+		service.initialize()
+		service.start()
+
+		assertFalse(file.exists())
+	}
+}
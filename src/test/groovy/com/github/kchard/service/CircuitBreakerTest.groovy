@@ -0,0 +1,146 @@
+package com.github.kchard.service
+
+import static java.util.concurrent.TimeUnit.*
+import static org.junit.Assert.*
+
+import java.util.concurrent.ArrayBlockingQueue
+
+import org.junit.Test
+
+import com.github.kchard.service.CircuitBreaker.CircuitState
+
+class CircuitBreakerTest {
+
+	VirtualClock clock = new VirtualClock()
+	CircuitBreaker breaker = CircuitBreaker.defaults().withWindow(4).withFailureRate(0.5d).withOpenDuration(1L, SECONDS).withProbes(2).withClock(clock)
+
+	void calls(int successes, int failures) {
+		successes.times { assertTrue(breaker.tryAcquire()); breaker.onSuccess(0L) }
+		failures.times { assertTrue(breaker.tryAcquire()); breaker.onFailure(0L) }
+	}
+
+	@Test
+	void testOpensAtFailureRate() {
+
+		calls(3, 1)
+		assertEquals(CircuitState.CLOSED, breaker.state())
+
+		calls(0, 1)
+		assertEquals(CircuitState.OPEN, breaker.state())
+		assertFalse(breaker.tryAcquire())
+		assertEquals(1L, breaker.rejected())
+		assertEquals(1L, breaker.trips())
+	}
+
+	@Test
+	void testHalfOpenProbesClose() {
+
+		calls(0, 4)
+		clock.advance(999L, MILLISECONDS)
+		assertFalse(breaker.tryAcquire())
+
+		clock.advance(1L, MILLISECONDS)
+		assertTrue(breaker.tryAcquire())
+		assertEquals(CircuitState.HALF_OPEN, breaker.state())
+		assertTrue(breaker.tryAcquire())
+		assertFalse(breaker.tryAcquire())
+
+		breaker.onSuccess(0L)
+		breaker.onSuccess(0L)
+		assertEquals(CircuitState.CLOSED, breaker.state())
+		calls(3, 1)
+		assertEquals(CircuitState.CLOSED, breaker.state())
+	}
+
+	@Test
+	void testFailedProbeReopens() {
+
+		calls(0, 4)
+		clock.advance(1L, SECONDS)
+		assertTrue(breaker.tryAcquire())
+		breaker.onFailure(0L)
+
+		assertEquals(CircuitState.OPEN, breaker.state())
+		assertEquals(SECONDS.toMillis(1L), breaker.remainingOpen(MILLISECONDS))
+		assertEquals(2L, breaker.trips())
+	}
+
+	@Test
+	void testSlowCallsOpen() {
+
+		breaker = breaker.withSlowCalls(0.75d, 100L, MILLISECONDS)
+		3.times { assertTrue(breaker.tryAcquire()); breaker.onSuccess(MILLISECONDS.toNanos(100L)) }
+		assertTrue(breaker.tryAcquire())
+		breaker.onSuccess(MILLISECONDS.toNanos(1L))
+
+		assertEquals(CircuitState.OPEN, breaker.state())
+	}
+
+	@Test
+	void testGuardedConsumerRoutesRejectedItemsToDeadLetters() {
+
+		def consumed = []
+		def deadLetters = new ArrayBlockingQueue<String>(10)
+		def consumer = new GuardedConsumer<String>([consume: { String item -> consumed << item }] as Consumer, breaker, new Bulkhead(1), new DeadLetterConsumer<String>(deadLetters))
+
+		consumer.consume("a")
+		calls(0, 3)
+		consumer.consume("b")
+
+		assertEquals(["a"], consumed)
+		assertEquals(["b"], deadLetters.collect())
+		assertEquals(1L, consumer.rejected())
+	}
+
+	@Test
+	void testGuardedConsumerFullBulkhead() {
+
+		def bulkhead = new Bulkhead(1)
+		def deadLetters = new ArrayBlockingQueue<String>(1)
+		def fallback = new DeadLetterConsumer<String>(deadLetters)
+		def consumer = new GuardedConsumer<String>([consume: { String item -> fail() }] as Consumer, null, bulkhead, fallback)
+
+		assertTrue(bulkhead.tryEnter())
+		consumer.consume("a")
+		consumer.consume("b")
+
+		assertEquals(["a"], deadLetters.collect())
+		assertEquals(1L, fallback.dropped())
+		assertEquals(2L, bulkhead.rejected())
+		assertEquals(1, bulkhead.active())
+	}
+
+	@Test
+	void testGuardedConsumerCountsFailures() {
+
+		def consumer = new GuardedConsumer<String>([consume: { String item -> throw new IllegalStateException() }] as Consumer, breaker, null, null)
+
+		4.times {
+			try {
+				consumer.consume("a")
+				fail()
+			} catch(IllegalStateException e) {
+			}
+		}
+
+		assertEquals(CircuitState.OPEN, breaker.state())
+	}
+
+	@Test
+	void testGuardedProducerRetriesThroughBreaker() {
+
+		def attempts = 0
+		def fast = CircuitBreaker.defaults().withWindow(2).withOpenDuration(5L, MILLISECONDS).withProbes(1)
+		def producer = new GuardedProducer<String>([produce: {
+			if(++attempts <= 3) {
+				throw new IllegalStateException("down")
+			}
+
+			"item"
+		}] as Producer, fast, new Bulkhead(1))
+
+		assertEquals("item", producer.produce())
+		assertEquals(4, attempts)
+		assertTrue(fast.trips() >= 1L)
+	}
+}
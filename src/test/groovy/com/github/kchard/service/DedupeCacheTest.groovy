@@ -0,0 +1,114 @@
+package com.github.kchard.service
+
+import static java.util.concurrent.TimeUnit.*
+import static org.junit.Assert.*
+
+import org.junit.Before
+import org.junit.Test
+
+class DedupeCacheTest {
+
+	VirtualClock clock
+
+	@Before
+	void setUp() {
+		clock = new VirtualClock()
+	}
+
+	@Test
+	void testDuplicateIsDetected() {
+
+		def cache = new DedupeCache(100, 1L, MINUTES, clock)
+
+		assertTrue(cache.firstSighting("a"))
+		assertTrue(cache.firstSighting("b"))
+		assertFalse(cache.firstSighting("a"))
+		assertFalse(cache.firstSighting("a"))
+
+		assertEquals(2L, cache.misses())
+		assertEquals(2L, cache.hits())
+		assertEquals(2, cache.size())
+	}
+
+	@Test
+	void testKeyExpiresAfterTimeToLive() {
+
+		def cache = new DedupeCache(100, 10L, SECONDS, clock)
+
+		assertTrue(cache.firstSighting("a"))
+		clock.advance(9L, SECONDS)
+		assertFalse(cache.firstSighting("a"))
+		clock.advance(1L, SECONDS)
+		assertTrue(cache.firstSighting("a"))
+
+		assertEquals(1L, cache.expirations())
+		assertEquals(2L, cache.misses())
+		assertEquals(1L, cache.hits())
+	}
+
+	@Test
+	void testOldestKeyIsEvictedAtCapacity() {
+
+		//A single key per stripe
+		def cache = new DedupeCache(1, 1L, MINUTES, clock)
+
+		assertTrue(cache.firstSighting(1))
+		assertTrue(cache.firstSighting(17))
+		assertTrue(cache.firstSighting(1))
+
+		assertEquals(2L, cache.evictions())
+		assertEquals(1, cache.size())
+	}
+
+	@Test
+	void testCapacityIsShared() {
+
+		def cache = new DedupeCache(1600, 1L, MINUTES, clock)
+		(1..10000).each { cache.firstSighting(it) }
+
+		assertTrue(cache.size() <= 1600)
+		assertEquals(10000L, cache.misses())
+		assertEquals(10000L - cache.size(), cache.evictions())
+		assertFalse(cache.firstSighting(10000))
+	}
+
+	@Test
+	void testDuplicatesAreNotConsumed() {
+
+		def consumed = []
+		def consumer = new DedupingConsumer<String>([consume: { consumed << it }] as Consumer,
+		                                            [key: { it.split(":")[0] }] as KeyExtractor,
+		                                            new DedupeCache(100, 1L, MINUTES, clock))
+
+		["1:a", "2:b", "1:c", "3:d", "2:e"].each { consumer.consume(it) }
+
+		assertEquals(["1:a", "2:b", "3:d"], consumed)
+		assertEquals(2L, consumer.cache().hits())
+	}
+
+	@Test
+	void testFailedItemIsNotADuplicate() {
+
+		def attempts = 0
+		def consumer = new DedupingConsumer<String>([consume: { if(++attempts == 1) throw new IllegalStateException() }] as Consumer,
+		                                            [key: { it }] as KeyExtractor,
+		                                            new DedupeCache(100, 1L, MINUTES, clock))
+
+		try {
+			consumer.consume("a")
+			fail()
+		} catch(IllegalStateException e) {
+		}
+
+		consumer.consume("a")
+		consumer.consume("a")
+
+		assertEquals(2, attempts)
+		assertEquals(1L, consumer.cache().hits())
+	}
+
+	@Test(expected = IllegalArgumentException)
+	void testCapacityIsRequired() {
+		new DedupeCache(0, 1L, MINUTES, clock)
+	}
+}
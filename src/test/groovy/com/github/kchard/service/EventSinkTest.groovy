@@ -0,0 +1,80 @@
+package com.github.kchard.service
+
+import static org.junit.Assert.*
+
+import org.junit.Before
+import org.junit.Test
+
+class EventSinkTest {
+
+	def events
+
+	EventSink sink
+
+	@Before
+	void setUp() {
+		events = []
+
+		sink = [isEnabled: { ServiceEvent event -> true },
+		        onEvent: { ServiceEvent event, Service service, Object subject -> events.add([event, subject]) }] as EventSink
+	}
+
+	@Test
+	void testLifecycleEvents() {
+
+		def command = [run: {}] as Runnable
+		def service = new CommandService([command], [], [])
+		service.setEventSink(sink)
+
+		service.initialize()
+		service.start()
+		service.shutdown()
+
+		assertEquals([[ServiceEvent.INITIALIZING, State.READY],
+		              [ServiceEvent.COMMAND_STARTED, command],
+		              [ServiceEvent.STATE_CHANGED, State.INITIALIZED],
+		              [ServiceEvent.STARTING, State.INITIALIZED],
+		              [ServiceEvent.STATE_CHANGED, State.STARTED],
+		              [ServiceEvent.SHUTTING_DOWN, State.STARTED],
+		              [ServiceEvent.STATE_CHANGED, State.SHUTDOWN]], events)
+	}
+
+	@Test
+	void testDisabledEventsAreNotDelivered() {
+
+		sink = [isEnabled: { ServiceEvent event -> event == ServiceEvent.STATE_CHANGED },
+		        onEvent: { ServiceEvent event, Service service, Object subject -> events.add(event) }] as EventSink
+
+		def service = new CommandService([[run: {}] as Runnable], [], [])
+		service.setEventSink(sink)
+
+		service.initialize()
+
+		assertEquals([ServiceEvent.STATE_CHANGED], events)
+	}
+
+	@Test
+	void testNullSinkDisablesEvents() {
+
+		def service = new CommandService([], [], [])
+		service.setEventSink(null)
+
+		assertSame(EventSinks.noOp(), service.eventSink())
+	}
+
+	@Test
+	void testComposedSink() {
+
+		def other = []
+		def otherSink = [isEnabled: { ServiceEvent event -> event == ServiceEvent.INITIALIZING },
+		                 onEvent: { ServiceEvent event, Service service, Object subject -> other.add(event) }] as EventSink
+
+		def service = new CommandService([], [], [])
+		service.setEventSink(EventSinks.compose(sink, otherSink))
+
+		service.initialize()
+
+		assertEquals(2, events.size())
+		assertEquals([ServiceEvent.INITIALIZING], other)
+	}
+}
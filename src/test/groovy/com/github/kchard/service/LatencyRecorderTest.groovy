@@ -0,0 +1,58 @@
+package com.github.kchard.service
+
+import static java.util.concurrent.TimeUnit.*
+import static org.junit.Assert.*
+
+import org.junit.Test
+
+class LatencyRecorderTest {
+
+	@Test
+	void testPercentiles() {
+
+		def recorder = new LatencyRecorder()
+		(1..1000).each { recorder.record(it, MICROSECONDS) }
+
+		assertEquals(1000L, recorder.count())
+		assertEquals(1000L, recorder.max(MICROSECONDS))
+		assertEquals(500.5d, recorder.mean(MICROSECONDS), 0.001d)
+		assertWithin(500L, recorder.percentile(50.0d, MICROSECONDS))
+		assertWithin(990L, recorder.percentile(99.0d, MICROSECONDS))
+		assertEquals(1000L, recorder.percentile(100.0d, MICROSECONDS))
+	}
+
+	@Test
+	void testBucketsCoverEveryValue() {
+
+		[0L, 1L, 31L, 32L, 33L, 1000L, 123456789L, Long.MAX_VALUE].each { long value ->
+			int bucket = LatencyRecorder.bucket(value)
+			assertTrue(LatencyRecorder.highestValue(bucket) >= value)
+			assertTrue(bucket == 0 || LatencyRecorder.highestValue(bucket - 1) < value)
+		}
+	}
+
+	@Test
+	void testReset() {
+
+		def recorder = new LatencyRecorder()
+		recorder.record(5L, MILLISECONDS)
+		recorder.reset()
+
+		assertEquals(0L, recorder.count())
+		assertEquals(0L, recorder.percentile(99.0d, MILLISECONDS))
+	}
+
+	@Test
+	void testRampReachesTargetRate() {
+
+		def profile = LoadProfile.openLoop(1000.0d).rampFrom(100.0d, 10L, SECONDS)
+
+		assertEquals(100.0d, profile.rateAt(0L), 0.001d)
+		assertEquals(550.0d, profile.rateAt(SECONDS.toNanos(5L)), 0.001d)
+		assertEquals(1000.0d, profile.rateAt(SECONDS.toNanos(60L)), 0.001d)
+	}
+
+	static void assertWithin(long expected, long actual) {
+		assertTrue("Expected about " + expected + " but was " + actual, Math.abs(actual - expected) <= expected * 0.04d)
+	}
+}
@@ -0,0 +1,58 @@
+package com.github.kchard.service
+
+import static org.junit.Assert.*
+
+import java.util.concurrent.TimeUnit
+
+import org.junit.Test
+
+class LongChannelTest {
+
+	@Test
+	void testFifoOrderAcrossWrap() {
+
+		def channel = new LongChannel(3)
+
+		channel.put(1L)
+		channel.put(2L)
+		assertEquals(1L, channel.take())
+
+		channel.put(3L)
+		channel.put(4L)
+
+		assertEquals(3, channel.size())
+		assertEquals(2L, channel.take())
+		assertEquals(3L, channel.take())
+		assertEquals(4L, channel.take())
+		assertTrue(channel.isEmpty())
+	}
+
+	@Test
+	void testOfferWhenFull() {
+
+		def channel = new LongChannel(1)
+
+		assertTrue(channel.offer(1L))
+		assertFalse(channel.offer(2L))
+		assertFalse(channel.offer(2L, 1, TimeUnit.MILLISECONDS))
+		assertEquals(1L, channel.take())
+	}
+
+	@Test
+	void testDoubleChannel() {
+
+		def channel = new DoubleChannel(2)
+
+		channel.put(1.5d)
+		channel.put(2.5d)
+
+		assertFalse(channel.offer(3.5d))
+		assertEquals(1.5d, channel.take(), 0d)
+		assertEquals(2.5d, channel.take(), 0d)
+	}
+
+	@Test(expected = IllegalArgumentException)
+	void testInvalidCapacity() {
+		new LongChannel(0)
+	}
+}
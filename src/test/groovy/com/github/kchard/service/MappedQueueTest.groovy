@@ -0,0 +1,127 @@
+package com.github.kchard.service
+
+import static org.junit.Assert.*
+
+import java.nio.ByteBuffer
+
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+
+class MappedQueueTest {
+
+	static class StringCodec implements BinaryCodec<String> {
+
+		int size(String item) { item.length() }
+		void encode(String item, ByteBuffer target) { target.put(item.getBytes("US-ASCII")) }
+		String decode(ByteBuffer source) {
+			byte[] bytes = new byte[source.remaining()]
+			source.get(bytes)
+			new String(bytes, "US-ASCII")
+		}
+	}
+
+	File file
+	MappedQueue<String> producer
+	MappedQueue<String> consumer
+
+	@Before
+	void setUp() {
+		file = File.createTempFile("mapped-queue", ".q")
+		producer = MappedQueue.create(file, 64, new StringCodec())
+		consumer = MappedQueue.open(file, new StringCodec())
+	}
+
+	@After
+	void tearDown() {
+		producer.close()
+		consumer.close()
+		file.delete()
+	}
+
+	@Test
+	void testItemsWrapAroundTheRing() {
+
+		def sent = []
+		def received = []
+		(1..200).each {
+			def item = "x" * (it % 23)
+			if(!producer.offer(item)) {
+				while(consumer.size() > 0) {
+					received << consumer.poll()
+				}
+				assertTrue(producer.offer(item))
+			}
+			sent << item
+		}
+		while(consumer.size() > 0) {
+			received << consumer.poll()
+		}
+
+		assertEquals(sent, received)
+		assertNull(consumer.poll())
+	}
+
+	@Test
+	void testPeekAndIterateWithoutConsuming() {
+
+		assertNull(consumer.peek())
+		assertFalse(consumer.iterator().hasNext())
+
+		//The third item wraps around the ring behind a padding record
+		assertTrue(producer.offer("a" * 20))
+		assertTrue(producer.offer("b" * 20))
+		assertEquals("a" * 20, consumer.poll())
+		assertTrue(producer.offer("c" * 20))
+
+		assertEquals("b" * 20, consumer.peek())
+		assertEquals(["b" * 20, "c" * 20], consumer.iterator().collect())
+		assertTrue(consumer.contains("c" * 20))
+		assertEquals("b" * 20, consumer.element())
+		assertEquals(2, consumer.size())
+
+		assertEquals("b" * 20, consumer.poll())
+		assertEquals(["c" * 20], producer.toArray() as List)
+	}
+
+	@Test
+	void testOfferFailsWhenFull() {
+
+		//Each record takes 16 bytes of the 64 byte ring
+		(1..4).each { assertTrue(producer.offer("item" + it)) }
+		assertFalse(producer.offer("item5"))
+		assertEquals(4, consumer.size())
+		assertEquals(0, producer.remainingCapacity())
+
+		assertEquals("item1", consumer.poll())
+		assertTrue(producer.offer("item5"))
+		assertEquals(["item2", "item3", "item4", "item5"], (1..4).collect { consumer.take() })
+	}
+
+	@Test(expected = IllegalArgumentException)
+	void testItemLargerThanHalfTheRingIsRejected() {
+		producer.offer("x" * 30)
+	}
+
+	@Test(expected = IllegalStateException)
+	void testOpenRejectsOtherFiles() {
+		def other = File.createTempFile("not-a-queue", ".q")
+		other.deleteOnExit()
+		other.bytes = new byte[1024]
+		MappedQueue.open(other, new StringCodec())
+	}
+
+	@Test
+	void testHandOffBetweenThreads() {
+
+		def received = []
+		def reader = Thread.start {
+			10000.times { received << consumer.take() }
+		}
+
+		(1..10000).each { producer.put(String.valueOf(it)) }
+		reader.join(5000)
+
+		assertEquals((1..10000).collect { String.valueOf(it) }, received)
+	}
+}
@@ -0,0 +1,107 @@
+package com.github.kchard.service
+
+import static java.util.concurrent.TimeUnit.*
+import static org.junit.Assert.*
+
+import org.junit.Test
+
+class MultiLaneQueueTest {
+
+	@Test
+	void testStrictPriority() {
+
+		def queue = MultiLaneQueue.<String>strictPriority(3)
+		queue.lane(2).put("low")
+		queue.lane(1).put("medium")
+		queue.lane(0).put("high")
+		queue.lane(1).put("medium2")
+
+		assertEquals(4, queue.size())
+		assertEquals(["high", "medium", "medium2", "low"], (1..4).collect { queue.take() })
+		assertNull(queue.poll())
+	}
+
+	@Test
+	void testWeightedFairSharesByWeight() {
+
+		def queue = MultiLaneQueue.<String>weightedFair(3, 1)
+		12.times {
+			queue.lane(0).put("a")
+			queue.lane(1).put("b")
+		}
+
+		def taken = []
+		queue.drainTo(taken, 12)
+
+		assertEquals("aaabaaabaaab", taken.join(""))
+	}
+
+	@Test
+	void testWeightedFairSkipsEmptyLanes() {
+
+		def queue = MultiLaneQueue.<String>weightedFair(1, 1, 1)
+		3.times { queue.lane(2).put("c") }
+		queue.lane(0).put("a")
+
+		assertEquals(["a", "c", "c", "c"], (1..4).collect { queue.take() })
+	}
+
+	@Test
+	void testLaneCapacity() {
+
+		def queue = MultiLaneQueue.<String>strictPriority(2, 1)
+
+		assertTrue(queue.lane(1).offer("x"))
+		assertFalse(queue.lane(1).offer("y"))
+		assertFalse(queue.lane(1).offer("y", 1L, MILLISECONDS))
+		assertTrue(queue.lane(0).offer("z"))
+		assertEquals(0, queue.lane(1).remainingCapacity())
+	}
+
+	@Test
+	void testWaitTimesPerLane() {
+
+		def queue = MultiLaneQueue.<String>strictPriority(2)
+		queue.lane(0).put("a")
+		queue.lane(1).put("b")
+		queue.lane(1).put("c")
+		queue.take()
+		queue.take()
+
+		assertEquals(1L, queue.waitTimes(0).count())
+		assertEquals(1L, queue.waitTimes(1).count())
+		assertEquals(1, queue.size(1))
+	}
+
+	@Test
+	void testViewsAndRemove() {
+
+		def queue = MultiLaneQueue.<String>weightedFair(2, 1)
+		queue.add("direct")
+		queue.lane(1).add("b")
+
+		assertEquals(["direct"], queue.lane(0).collect())
+		assertTrue(queue.remove("b"))
+		assertEquals(0, queue.lane(1).size())
+		assertEquals("direct", queue.lane(0).poll(1L, MILLISECONDS))
+		assertNull(queue.poll(1L, MILLISECONDS))
+	}
+
+	@Test
+	void testWaitTimesUseQueueClock() {
+
+		def clock = new VirtualClock()
+		def queue = MultiLaneQueue.<String>strictPriority(2, 10, clock)
+		queue.lane(0).add("a")
+		queue.lane(1).add("b")
+
+		clock.advance(10L, MILLISECONDS)
+		assertEquals("a", queue.poll())
+
+		clock.advance(20L, MILLISECONDS)
+		assertEquals("b", queue.poll())
+
+		assertEquals(10L, queue.waitTimes(0).max(MILLISECONDS))
+		assertEquals(30L, queue.waitTimes(1).max(MILLISECONDS))
+	}
+}
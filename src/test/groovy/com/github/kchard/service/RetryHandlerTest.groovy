@@ -0,0 +1,103 @@
+package com.github.kchard.service
+
+import static java.util.concurrent.TimeUnit.*
+import static org.junit.Assert.*
+
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.LinkedBlockingQueue
+
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+
+class RetryHandlerTest {
+
+	VirtualClock clock
+	MonitorEngine engine
+	LinkedBlockingQueue<String> work
+	LinkedBlockingQueue<String> deadLetters
+
+	@Before
+	void setUp() {
+		clock = new VirtualClock()
+		engine = new MonitorEngine("retry-test", clock)
+		work = new LinkedBlockingQueue<String>()
+		deadLetters = new LinkedBlockingQueue<String>()
+	}
+
+	@After
+	void tearDown() {
+		engine.shutdown()
+	}
+
+	@Test
+	void testBackoffDelays() {
+
+		def policy = RetryPolicy.retry(3, 100L, MILLISECONDS).withBackoff(2.0)
+
+		assertEquals(3, policy.maxRetries())
+		assertEquals([100L, 200L, 400L], (1..3).collect { policy.delay(it, MILLISECONDS) })
+		assertEquals(0, RetryPolicy.none().maxRetries())
+	}
+
+	@Test
+	void testItemIsRequeuedAfterDelayThenDeadLettered() {
+
+		def handler = new RetryHandler<String>(RetryPolicy.retry(2, 100L, MILLISECONDS).withBackoff(2.0), work, deadLetters, engine)
+		def item = "poison"
+		def failure = new IllegalStateException("bad item")
+
+		handler.onFailure(item, failure)
+		clock.advance(99L, MILLISECONDS)
+		assertTrue(work.isEmpty())
+		clock.advance(1L, MILLISECONDS)
+		assertSame(item, work.poll())
+
+		handler.onFailure(item, failure)
+		clock.advance(199L, MILLISECONDS)
+		assertTrue(work.isEmpty())
+		clock.advance(1L, MILLISECONDS)
+		assertSame(item, work.poll())
+
+		handler.onFailure(item, failure)
+		assertSame(item, deadLetters.poll())
+		assertEquals(2L, handler.retries())
+		assertEquals(1L, handler.deadLettered())
+		assertEquals(0, handler.pending())
+	}
+
+	@Test
+	void testSuccessForgetsAttempts() {
+
+		def handler = new RetryHandler<String>(RetryPolicy.retry(1, 10L, MILLISECONDS), work, deadLetters, engine)
+		def item = "flaky"
+
+		handler.onSuccess("healthy")
+		assertEquals(0, handler.pending())
+
+		handler.onFailure(item, new IllegalStateException())
+		handler.onSuccess("healthy")
+		assertEquals(1, handler.pending())
+		clock.advance(10L, MILLISECONDS)
+		handler.onSuccess(work.poll())
+		assertEquals(0, handler.pending())
+
+		handler.onFailure(item, new IllegalStateException())
+		assertTrue(deadLetters.isEmpty())
+		assertEquals(2L, handler.retries())
+	}
+
+	@Test
+	void testFullWorkQueueDeadLettersAndMissingDeadLetterQueueDrops() {
+
+		def full = new ArrayBlockingQueue<String>(1)
+		full.add("other")
+		def handler = new RetryHandler<String>(RetryPolicy.retry(1, 10L, MILLISECONDS), full, null, engine)
+
+		handler.onFailure("item", new IllegalStateException())
+		clock.advance(10L, MILLISECONDS)
+
+		assertEquals(1L, handler.dropped())
+		assertEquals(0, handler.pending())
+	}
+}
@@ -0,0 +1,137 @@
+package com.github.kchard.service
+
+import static java.util.concurrent.TimeUnit.*
+import static org.junit.Assert.*
+
+import org.junit.Before
+import org.junit.Test
+
+class SojournQueueTest {
+
+	VirtualClock clock
+	LinkedList<Integer> deadLetters
+
+	@Before
+	void setUp() {
+		clock = new VirtualClock()
+		deadLetters = new LinkedList<Integer>()
+	}
+
+	SojournQueue<Integer> codel() {
+		SojournQueue.shedding(1000, 5L, 100L, MILLISECONDS, deadLetters, clock)
+	}
+
+	@Test
+	void testWaitingTimeIsRecorded() {
+
+		def queue = SojournQueue.tracking(10, clock)
+		queue.put(1)
+		clock.advance(7L, MILLISECONDS)
+		queue.put(2)
+		clock.advance(3L, MILLISECONDS)
+
+		assertEquals(1, queue.take())
+		assertEquals(2, queue.poll(0L, MILLISECONDS))
+		assertEquals(2L, queue.sojournTimes().count())
+		assertEquals(10L, queue.sojournTimes().max(MILLISECONDS))
+		assertEquals(6.5, queue.sojournTimes().mean(MILLISECONDS), 0.001)
+	}
+
+	@Test
+	void testTrackingQueueNeverSheds() {
+
+		def queue = SojournQueue.tracking(1000, clock)
+		(1..100).each { queue.put(it) }
+
+		def taken = []
+		100.times {
+			clock.advance(10L, MILLISECONDS)
+			taken << queue.poll()
+		}
+
+		assertEquals((1..100).toList(), taken)
+		assertEquals(0L, queue.shed())
+	}
+
+	@Test
+	void testBurstShorterThanIntervalIsNotShed() {
+
+		def queue = codel()
+		(1..10).each { queue.put(it) }
+		clock.advance(50L, MILLISECONDS)
+
+		def taken = []
+		queue.drainTo(taken)
+
+		assertEquals((1..10).toList(), taken)
+		assertEquals(0L, queue.shed())
+		assertFalse(queue.isShedding())
+	}
+
+	@Test
+	void testStandingBacklogIsShedOldestFirst() {
+
+		def queue = codel()
+		(1..100).each { queue.put(it) }
+
+		def taken = []
+		30.times {
+			clock.advance(10L, MILLISECONDS)
+			taken << queue.poll()
+		}
+
+		assertTrue(queue.isShedding())
+		assertEquals([11, 22, 31], deadLetters)
+		assertEquals(3L, queue.shed())
+		assertEquals(3L, queue.deadLettered())
+		assertEquals(30L, queue.sojournTimes().count())
+
+		//Every item is either taken, shed or still queued, in order
+		assertEquals((1..100).toList(), (taken + deadLetters + queue.toList()).sort())
+
+		//The drop rate increases while the backlog stands
+		def before = queue.shed()
+		10.times {
+			clock.advance(10L, MILLISECONDS)
+			queue.poll()
+		}
+		assertTrue(queue.shed() - before >= 2)
+	}
+
+	@Test
+	void testSheddingStopsOnceItemsAreFresh() {
+
+		def queue = codel()
+		(1..100).each { queue.put(it) }
+		30.times {
+			clock.advance(10L, MILLISECONDS)
+			queue.poll()
+		}
+		assertTrue(queue.isShedding())
+
+		queue.clear()
+		queue.put(1000)
+		queue.put(1001)
+		clock.advance(1L, MILLISECONDS)
+		def shed = queue.shed()
+
+		assertEquals(1000, queue.take())
+		assertFalse(queue.isShedding())
+		assertEquals(shed, queue.shed())
+	}
+
+	@Test
+	void testLastItemIsNeverShed() {
+
+		def queue = SojournQueue.shedding(1000, 5L, 100L, MILLISECONDS, null, clock)
+		(1..3).each { queue.put(it) }
+		clock.advance(200L, MILLISECONDS)
+		assertEquals(1, queue.poll())
+
+		clock.advance(200L, MILLISECONDS)
+		assertEquals(3, queue.take())
+		assertEquals(0, queue.size())
+		assertEquals(1L, queue.shed())
+		assertEquals(0L, queue.deadLettered())
+	}
+}
@@ -0,0 +1,66 @@
+package com.github.kchard.service
+
+import static org.junit.Assert.*
+
+import org.junit.Test
+
+class ThreadPolicyTest {
+
+	static final Runnable NOTHING = [run: {}] as Runnable
+
+	@Test
+	void testDefaultsNameThreadsAfterService() {
+
+		def factory = ThreadPolicy.defaults().threadFactory("orders")
+
+		Thread first = factory.newThread(NOTHING)
+		Thread second = factory.newThread(NOTHING)
+
+		assertEquals("orders-1", first.getName())
+		assertEquals("orders-2", second.getName())
+		assertFalse(first.isDaemon())
+		assertEquals(Thread.NORM_PRIORITY, first.getPriority())
+	}
+
+	@Test
+	void testPolicy() {
+
+		def policy = ThreadPolicy.defaults().withNamePrefix("consumer").withDaemon(true).withPriority(Thread.MAX_PRIORITY)
+
+		Thread thread = policy.threadFactory("orders").newThread(NOTHING)
+
+		assertEquals("consumer-1", thread.getName())
+		assertTrue(thread.isDaemon())
+		assertEquals(Thread.MAX_PRIORITY, thread.getPriority())
+	}
+
+	@Test
+	void testPinnedThreadStillRuns() {
+
+		def ran = false
+		Thread thread = ThreadPolicy.defaults().withAffinity("0").threadFactory("pinned").newThread([run: { ran = true }] as Runnable)
+
+		thread.start()
+		thread.join(5000)
+
+		assertTrue(ran)
+	}
+
+	@Test
+	void testValidCpuLists() {
+		assertTrue(CpuAffinity.isValidCpuList("0"))
+		assertTrue(CpuAffinity.isValidCpuList("0,2-3,8"))
+		assertFalse(CpuAffinity.isValidCpuList("0;rm"))
+		assertFalse(CpuAffinity.isValidCpuList(""))
+	}
+
+	@Test(expected = IllegalArgumentException)
+	void testInvalidPriority() {
+		ThreadPolicy.defaults().withPriority(11)
+	}
+
+	@Test(expected = IllegalArgumentException)
+	void testInvalidAffinity() {
+		ThreadPolicy.defaults().withAffinity("all")
+	}
+}
@@ -0,0 +1,121 @@
+package com.github.kchard.service
+
+import static java.util.concurrent.TimeUnit.*
+import static org.junit.Assert.*
+
+import org.junit.Before
+import org.junit.Test
+
+class VirtualClockTest {
+
+	VirtualClock clock
+	List<Long> runs
+
+	@Before
+	void setUp() {
+		clock = new VirtualClock()
+		runs = []
+	}
+
+	Runnable recordRun(long duration = 0L) {
+		[run: {
+			runs << clock.nanoTime()
+			clock.elapse(duration, MILLISECONDS)
+		}] as Runnable
+	}
+
+	@Test
+	void testFixedRateForAnHour() {
+
+		def service = new FixedRateScheduledService([recordRun()], 0L, 1000L, MILLISECONDS, clock)
+		service.initialize()
+		service.start()
+
+		clock.advance(1L, HOURS)
+
+		assertEquals(3601, runs.size())
+		assertEquals(HOURS.toNanos(1L), runs.last())
+		assertEquals(State.STARTED, service.currentState())
+
+		service.shutdown()
+		assertEquals(0, clock.pendingTasks())
+	}
+
+	@Test
+	void testFixedRateOverrunRunsBackToBack() {
+
+		def service = new FixedRateScheduledService([recordRun(1500L)], 0L, 1000L, MILLISECONDS, clock)
+		service.initialize()
+		service.start()
+
+		clock.advance(4L, SECONDS)
+
+		assertEquals([0L, 1500L, 3000L], runs.collect { NANOSECONDS.toMillis(it) })
+		service.shutdown()
+	}
+
+	@Test
+	void testFixedDelayOverrunDelaysFromCompletion() {
+
+		def service = new FixedDelayScheduledService([recordRun(1500L)], 0L, 1000L, MILLISECONDS, clock)
+		service.initialize()
+		service.start()
+
+		clock.advance(6L, SECONDS)
+
+		assertEquals([0L, 2500L, 5000L], runs.collect { NANOSECONDS.toMillis(it) })
+		service.shutdown()
+	}
+
+	@Test
+	void testScheduledServiceRunsOnceAfterDelay() {
+
+		def service = new ScheduledService([recordRun()], 10L, MINUTES, clock)
+		service.initialize()
+		service.start()
+
+		clock.advance(10L, MINUTES)
+		clock.advance(1L, HOURS)
+
+		assertEquals([MINUTES.toNanos(10L)], runs)
+		assertEquals(State.STARTED, service.currentState())
+	}
+
+	@Test
+	void testRunForShutsDownAtDeadline() {
+
+		def service = new ServiceBuilder()
+			.withClock(clock)
+			.runFor(3600L)
+			.schedule().command(recordRun()).withRate(1000L)
+			.build()
+
+		service.initialize()
+		service.start()
+		clock.runPending()
+		assertEquals(State.STARTED, service.currentState())
+
+		clock.advance(3600L * 1000L - 1L, MILLISECONDS)
+		assertEquals(State.STARTED, service.currentState())
+
+		clock.advance(1L, MILLISECONDS)
+		assertEquals(State.SHUTDOWN, service.currentState())
+		assertEquals(3600, runs.size())
+	}
+
+	@Test
+	void testTasksDueTogetherRunInScheduleOrder() {
+
+		def executor = clock.newScheduledExecutor(1, null)
+		def order = []
+		executor.schedule([run: { order << "b" }] as Runnable, 5L, SECONDS)
+		executor.schedule([run: { order << "a" }] as Runnable, 1L, SECONDS)
+		executor.schedule([run: { order << "c" }] as Runnable, 5L, SECONDS)
+		executor.execute([run: { order << "now" }] as Runnable)
+
+		assertEquals(1, clock.runPending())
+		clock.advance(5L, SECONDS)
+
+		assertEquals(["now", "a", "b", "c"], order)
+	}
+}